@@ -0,0 +1,75 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.uncommons.maths.random.MersenneTwisterRNG;
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+
+/**
+ * Set-up code shared by the benchmarks.
+ * @author Daniel Dyer
+ */
+final class BenchmarkData
+{
+    private static final long SEED = 42;
+
+    private BenchmarkData()
+    {
+        // Prevents instantiation of utility class.
+    }
+
+
+    /**
+     * @return A repeatable random number generator, so that every run of a benchmark
+     * does the same work.
+     */
+    static Random createRNG()
+    {
+        return new MersenneTwisterRNG(createSeed(16));
+    }
+
+
+    /**
+     * @param length The number of seed bytes.
+     * @return A fixed seed of the specified length.
+     */
+    static byte[] createSeed(int length)
+    {
+        byte[] seed = new byte[length];
+        new Random(SEED).nextBytes(seed);
+        return seed;
+    }
+
+
+    /**
+     * Creates a population of integers with random, positive fitness scores.
+     * @param size The number of candidates.
+     * @param rng The source of the fitness scores.
+     * @return An unsorted population.
+     */
+    static List<EvaluatedCandidate<Integer>> createEvaluatedPopulation(int size, Random rng)
+    {
+        List<EvaluatedCandidate<Integer>> population = new ArrayList<EvaluatedCandidate<Integer>>(size);
+        for (int i = 0; i < size; i++)
+        {
+            population.add(new EvaluatedCandidate<Integer>(i, rng.nextDouble() * 100));
+        }
+        return population;
+    }
+}
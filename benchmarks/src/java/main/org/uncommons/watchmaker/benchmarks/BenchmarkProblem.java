@@ -0,0 +1,300 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.uncommons.maths.binary.BitString;
+import org.uncommons.maths.random.Probability;
+import org.uncommons.watchmaker.examples.biomorphs.Biomorph;
+import org.uncommons.watchmaker.examples.biomorphs.BiomorphFactory;
+import org.uncommons.watchmaker.examples.biomorphs.BiomorphRasteriser;
+import org.uncommons.watchmaker.examples.biomorphs.CanopyCoverageEvaluator;
+import org.uncommons.watchmaker.examples.biomorphs.LSystemInterpreter;
+import org.uncommons.watchmaker.examples.biomorphs.RandomBiomorphMutation;
+import org.uncommons.watchmaker.framework.CandidateFactory;
+import org.uncommons.watchmaker.framework.EvolutionaryOperator;
+import org.uncommons.watchmaker.framework.FitnessEvaluator;
+import org.uncommons.watchmaker.framework.factories.BitStringFactory;
+import org.uncommons.watchmaker.framework.factories.ListPermutationFactory;
+import org.uncommons.watchmaker.framework.factories.StringFactory;
+import org.uncommons.watchmaker.framework.operators.BitStringCrossover;
+import org.uncommons.watchmaker.framework.operators.BitStringMutation;
+import org.uncommons.watchmaker.framework.operators.EvolutionPipeline;
+import org.uncommons.watchmaker.framework.operators.ListOrderCrossover;
+import org.uncommons.watchmaker.framework.operators.ListOrderMutation;
+import org.uncommons.watchmaker.framework.operators.StringCrossover;
+import org.uncommons.watchmaker.framework.operators.StringMutation;
+
+/**
+ * A problem used by the {@link MacroBenchmark}: everything needed to evolve solutions
+ * apart from the choice of engine.  Problems are deterministic given the seed of the
+ * random number generator that the engine uses.
+ * @param <T> The type of candidate solution.
+ * @author Daniel Dyer
+ */
+abstract class BenchmarkProblem<T>
+{
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ ".toCharArray();
+    private static final String TARGET = "THE QUICK BROWN FOX JUMPS OVER THE LAZY WATCHMAKER";
+
+    private final String name;
+
+    protected BenchmarkProblem(String name)
+    {
+        this.name = name;
+    }
+
+
+    public String getName()
+    {
+        return name;
+    }
+
+
+    public abstract CandidateFactory<T> getCandidateFactory();
+
+    public abstract EvolutionaryOperator<T> getEvolutionScheme();
+
+    public abstract FitnessEvaluator<? super T> getFitnessEvaluator();
+
+
+    /**
+     * @return The standard set of problems: OneMax, the travelling salesman problem,
+     * string matching and biomorph evolution.
+     */
+    public static List<BenchmarkProblem<?>> getStandardProblems()
+    {
+        return Arrays.<BenchmarkProblem<?>>asList(new OneMax(1024),
+                                                  new TravellingSalesman(200),
+                                                  new StringMatching(TARGET),
+                                                  new Biomorphs());
+    }
+
+
+    /**
+     * Maximise the number of ones in a bit string.
+     */
+    private static final class OneMax extends BenchmarkProblem<BitString>
+    {
+        private final int length;
+
+        OneMax(int length)
+        {
+            super("OneMax");
+            this.length = length;
+        }
+
+        @Override
+        public CandidateFactory<BitString> getCandidateFactory()
+        {
+            return new BitStringFactory(length);
+        }
+
+        @Override
+        public EvolutionaryOperator<BitString> getEvolutionScheme()
+        {
+            List<EvolutionaryOperator<BitString>> operators = new ArrayList<EvolutionaryOperator<BitString>>(2);
+            operators.add(new BitStringCrossover());
+            operators.add(new BitStringMutation(new Probability(1.0 / length)));
+            return new EvolutionPipeline<BitString>(operators);
+        }
+
+        @Override
+        public FitnessEvaluator<BitString> getFitnessEvaluator()
+        {
+            return new FitnessEvaluator<BitString>()
+            {
+                public double getFitness(BitString candidate, List<? extends BitString> population)
+                {
+                    return candidate.countSetBits();
+                }
+
+                public boolean isNatural()
+                {
+                    return true;
+                }
+            };
+        }
+    }
+
+
+    /**
+     * Find the shortest route that visits every one of a fixed set of randomly-placed cities.
+     */
+    private static final class TravellingSalesman extends BenchmarkProblem<List<Integer>>
+    {
+        private final double[][] distances;
+
+        TravellingSalesman(int cityCount)
+        {
+            super("TravellingSalesman");
+            Random rng = new Random(cityCount);
+            double[] x = new double[cityCount];
+            double[] y = new double[cityCount];
+            for (int i = 0; i < cityCount; i++)
+            {
+                x[i] = rng.nextDouble() * 1000;
+                y[i] = rng.nextDouble() * 1000;
+            }
+            distances = new double[cityCount][cityCount];
+            for (int i = 0; i < cityCount; i++)
+            {
+                for (int j = 0; j < cityCount; j++)
+                {
+                    distances[i][j] = Math.hypot(x[i] - x[j], y[i] - y[j]);
+                }
+            }
+        }
+
+        @Override
+        public CandidateFactory<List<Integer>> getCandidateFactory()
+        {
+            List<Integer> cities = new ArrayList<Integer>(distances.length);
+            for (int i = 0; i < distances.length; i++)
+            {
+                cities.add(i);
+            }
+            return new ListPermutationFactory<Integer>(cities);
+        }
+
+        @Override
+        public EvolutionaryOperator<List<Integer>> getEvolutionScheme()
+        {
+            List<EvolutionaryOperator<List<Integer>>> operators = new ArrayList<EvolutionaryOperator<List<Integer>>>(2);
+            operators.add(new ListOrderCrossover<Integer>());
+            operators.add(new ListOrderMutation<Integer>());
+            return new EvolutionPipeline<List<Integer>>(operators);
+        }
+
+        @Override
+        public FitnessEvaluator<List<Integer>> getFitnessEvaluator()
+        {
+            return new FitnessEvaluator<List<Integer>>()
+            {
+                public double getFitness(List<Integer> candidate, List<? extends List<Integer>> population)
+                {
+                    double length = 0;
+                    int previous = candidate.get(candidate.size() - 1);
+                    for (int city : candidate)
+                    {
+                        length += distances[previous][city];
+                        previous = city;
+                    }
+                    return length;
+                }
+
+                public boolean isNatural()
+                {
+                    return false;
+                }
+            };
+        }
+    }
+
+
+    /**
+     * Evolve a string to match a target string.
+     */
+    private static final class StringMatching extends BenchmarkProblem<String>
+    {
+        private final String target;
+
+        StringMatching(String target)
+        {
+            super("StringMatching");
+            this.target = target;
+        }
+
+        @Override
+        public CandidateFactory<String> getCandidateFactory()
+        {
+            return new StringFactory(ALPHABET, target.length());
+        }
+
+        @Override
+        public EvolutionaryOperator<String> getEvolutionScheme()
+        {
+            List<EvolutionaryOperator<String>> operators = new ArrayList<EvolutionaryOperator<String>>(2);
+            operators.add(new StringCrossover());
+            operators.add(new StringMutation(ALPHABET, new Probability(0.02)));
+            return new EvolutionPipeline<String>(operators);
+        }
+
+        @Override
+        public FitnessEvaluator<String> getFitnessEvaluator()
+        {
+            return new FitnessEvaluator<String>()
+            {
+                public double getFitness(String candidate, List<? extends String> population)
+                {
+                    int errors = 0;
+                    for (int i = 0; i < candidate.length(); i++)
+                    {
+                        if (candidate.charAt(i) != target.charAt(i))
+                        {
+                            ++errors;
+                        }
+                    }
+                    return errors;
+                }
+
+                public boolean isNatural()
+                {
+                    return false;
+                }
+            };
+        }
+    }
+
+
+    /**
+     * Evolve L-system biomorphs that cover as much of the canvas as possible.  Fitness
+     * evaluation derives and draws each L-system, so this is the most expensive problem.
+     */
+    private static final class Biomorphs extends BenchmarkProblem<Biomorph>
+    {
+        private static final int MAX_COMMANDS = 20000;
+
+        Biomorphs()
+        {
+            super("Biomorphs");
+        }
+
+        @Override
+        public CandidateFactory<Biomorph> getCandidateFactory()
+        {
+            return new BiomorphFactory();
+        }
+
+        @Override
+        public EvolutionaryOperator<Biomorph> getEvolutionScheme()
+        {
+            return new RandomBiomorphMutation(new Probability(0.4));
+        }
+
+        @Override
+        public FitnessEvaluator<Biomorph> getFitnessEvaluator()
+        {
+            // Limit the length of derived strings so that exploding L-systems don't dominate.
+            return new CanopyCoverageEvaluator(new LSystemInterpreter(LSystemInterpreter.DEFAULT_GENERATIONS, MAX_COMMANDS),
+                                               LSystemInterpreter.STEP_LENGTH,
+                                               BiomorphRasteriser.REFERENCE_SIZE);
+        }
+    }
+}
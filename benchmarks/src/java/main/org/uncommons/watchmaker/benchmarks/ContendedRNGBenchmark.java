@@ -0,0 +1,105 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uncommons.maths.random.MersenneTwisterRNG;
+import org.uncommons.maths.random.PCG32RNG;
+import org.uncommons.maths.random.ThreadLocalRNG;
+import org.uncommons.maths.random.Xoshiro256StarStarRNG;
+
+/**
+ * Measures the throughput of random number generation when several threads need random
+ * numbers at once, as they do in multi-threaded evolutionary operators.  A single
+ * {@link MersenneTwisterRNG} shared by all threads, which locks on every call, is compared
+ * with per-thread unsynchronised generators provided by a {@link ThreadLocalRNG}.
+ * @author Daniel Dyer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ContendedRNGBenchmark
+{
+    @Param({"SharedMersenneTwisterRNG",
+            "ThreadLocalXoshiro256StarStarRNG",
+            "ThreadLocalPCG32RNG"})
+    private String generator;
+
+    private Random shared;
+    private ThreadLocalRNG threadLocal;
+
+
+    @Setup
+    public void setUp()
+    {
+        if (generator.equals("SharedMersenneTwisterRNG"))
+        {
+            shared = new MersenneTwisterRNG(BenchmarkData.createSeed(16));
+        }
+        else if (generator.equals("ThreadLocalXoshiro256StarStarRNG"))
+        {
+            threadLocal = new ThreadLocalRNG(new Xoshiro256StarStarRNG(BenchmarkData.createSeed(32)));
+        }
+        else if (generator.equals("ThreadLocalPCG32RNG"))
+        {
+            threadLocal = new ThreadLocalRNG(new PCG32RNG(BenchmarkData.createSeed(16)));
+        }
+        else
+        {
+            throw new IllegalArgumentException("Unknown RNG: " + generator);
+        }
+    }
+
+
+    /**
+     * Bounded integers are what selection strategies and operators mostly use.
+     */
+    @Benchmark
+    public int nextBoundedInt()
+    {
+        return getRNG().nextInt(1000);
+    }
+
+
+    @Benchmark
+    public double nextDouble()
+    {
+        return getRNG().nextDouble();
+    }
+
+
+    private Random getRNG()
+    {
+        return shared != null ? shared : threadLocal.get();
+    }
+}
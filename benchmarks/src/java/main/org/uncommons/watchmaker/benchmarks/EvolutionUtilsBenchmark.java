@@ -0,0 +1,131 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.EvolutionUtils;
+import org.uncommons.watchmaker.framework.PopulationData;
+
+/**
+ * Measures the sorting and statistics that the engines do every generation.  Sorting
+ * is done in place, so each sorting benchmark sorts a fresh copy of the same unsorted
+ * population.  The cost of the copy on its own is measured by {@link #copy()}.
+ * @author Daniel Dyer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvolutionUtilsBenchmark
+{
+    @Param({"100", "1000", "10000"})
+    private int populationSize;
+
+    private List<EvaluatedCandidate<Integer>> population;
+    private int eliteCount;
+    private long startTime;
+
+
+    @Setup
+    public void setUp()
+    {
+        population = BenchmarkData.createEvaluatedPopulation(populationSize, BenchmarkData.createRNG());
+        eliteCount = Math.max(1, populationSize / 20);
+        startTime = System.currentTimeMillis();
+    }
+
+
+    @Benchmark
+    public List<EvaluatedCandidate<Integer>> copy()
+    {
+        return new ArrayList<EvaluatedCandidate<Integer>>(population);
+    }
+
+
+    @Benchmark
+    public List<EvaluatedCandidate<Integer>> sortEvaluatedPopulation()
+    {
+        List<EvaluatedCandidate<Integer>> copy = new ArrayList<EvaluatedCandidate<Integer>>(population);
+        EvolutionUtils.sortEvaluatedPopulation(copy, true);
+        return copy;
+    }
+
+
+    /**
+     * Partial sort of the fittest 5% of the population, as used for elitism.
+     */
+    @Benchmark
+    public List<EvaluatedCandidate<Integer>> sortFittest()
+    {
+        List<EvaluatedCandidate<Integer>> copy = new ArrayList<EvaluatedCandidate<Integer>>(population);
+        EvolutionUtils.sortFittest(copy, true, eliteCount);
+        return copy;
+    }
+
+
+    /**
+     * Creating the population data on its own, without calculating any statistics.
+     */
+    @Benchmark
+    public PopulationData<Integer> getPopulationData()
+    {
+        return EvolutionUtils.getPopulationData(population, true, eliteCount, 0, startTime);
+    }
+
+
+    /**
+     * The statistics that are calculated in a single pass over the fitness scores.
+     */
+    @Benchmark
+    public void summaryStatistics(Blackhole blackhole)
+    {
+        PopulationData<Integer> data = EvolutionUtils.getPopulationData(population, true, eliteCount, 0, startTime);
+        blackhole.consume(data.getMeanFitness());
+        blackhole.consume(data.getFitnessStandardDeviation());
+        blackhole.consume(data.getWorstCandidateFitness());
+    }
+
+
+    /**
+     * The statistics that need a sorted copy of the fitness scores.
+     */
+    @Benchmark
+    public void quantileStatistics(Blackhole blackhole)
+    {
+        PopulationData<Integer> data = EvolutionUtils.getPopulationData(population, true, eliteCount, 0, startTime);
+        blackhole.consume(data.getMedianFitness());
+        blackhole.consume(data.getFitnessQuantile(0.25));
+        blackhole.consume(data.getFitnessQuantile(0.75));
+        blackhole.consume(data.getDistinctFitnessCount());
+    }
+}
@@ -0,0 +1,418 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.uncommons.maths.random.MersenneTwisterRNG;
+import org.uncommons.maths.random.Probability;
+import org.uncommons.watchmaker.framework.AbstractEvolutionEngine;
+import org.uncommons.watchmaker.framework.EvolutionEngine;
+import org.uncommons.watchmaker.framework.EvolutionStrategyEngine;
+import org.uncommons.watchmaker.framework.GenerationalEvolutionEngine;
+import org.uncommons.watchmaker.framework.SteadyStateEvolutionEngine;
+import org.uncommons.watchmaker.framework.evaluation.ThreadPoolEvaluationExecutor;
+import org.uncommons.watchmaker.framework.islands.IslandEvolution;
+import org.uncommons.watchmaker.framework.islands.RingMigration;
+import org.uncommons.watchmaker.framework.selection.TournamentSelection;
+import org.uncommons.watchmaker.framework.termination.GenerationCount;
+
+/**
+ * <p>End-to-end throughput benchmark.  Each of the engines ({@link GenerationalEvolutionEngine},
+ * {@link SteadyStateEvolutionEngine}, {@link EvolutionStrategyEngine} and {@link IslandEvolution})
+ * is run for a fixed number of generations on each of the {@link BenchmarkProblem#getStandardProblems()
+ * standard problems}, with fixed seeds, at thread counts from one up to the number of processors.
+ * Generations per second, evaluations per second, allocation rate and peak heap usage are
+ * measured for each configuration.</p>
+ *
+ * <p>Results are written as JSON, one configuration per line.  If the results of a previous
+ * run are specified as a baseline, any configuration whose throughput has fallen by more than
+ * the tolerance is reported as a regression and the program exits with a non-zero status.</p>
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar org.uncommons.watchmaker.benchmarks.MacroBenchmark
+ *      [-threads N] [-population N] [-generations N] [-repeats N]
+ *      [-output FILE] [-baseline FILE] [-tolerance FRACTION]
+ * </pre>
+ * @author Daniel Dyer
+ */
+public final class MacroBenchmark
+{
+    private static final String[] ENGINES = {"Generational", "SteadyState", "EvolutionStrategy", "Islands"};
+    private static final int EPOCH_LENGTH = 10;
+    private static final int MIGRANT_COUNT = 2;
+    private static final int ES_OFFSPRING_MULTIPLIER = 5;
+
+    private final int maxThreads;
+    private final int populationSize;
+    private final int generations;
+    private final int repeats;
+    private final MemoryMonitor memory = new MemoryMonitor();
+
+
+    private MacroBenchmark(int maxThreads, int populationSize, int generations, int repeats)
+    {
+        if (maxThreads <= 0 || populationSize < 10 || generations < EPOCH_LENGTH || repeats <= 0)
+        {
+            throw new IllegalArgumentException("Invalid benchmark configuration.");
+        }
+        this.maxThreads = maxThreads;
+        this.populationSize = populationSize;
+        this.generations = generations;
+        this.repeats = repeats;
+    }
+
+
+    /**
+     * Entry point for the benchmark.
+     * @param args Program arguments (see the class description).
+     */
+    public static void main(String[] args) throws Exception
+    {
+        Map<String, String> options = parseOptions(args);
+        MacroBenchmark benchmark = new MacroBenchmark(getInt(options, "threads", Runtime.getRuntime().availableProcessors()),
+                                                      getInt(options, "population", 200),
+                                                      getInt(options, "generations", 100),
+                                                      getInt(options, "repeats", 3));
+        List<MacroBenchmarkResult> results;
+        try
+        {
+            results = benchmark.runAll();
+        }
+        finally
+        {
+            benchmark.memory.close();
+        }
+
+        String output = options.get("output");
+        if (output == null)
+        {
+            benchmark.writeResults(results, new PrintWriter(new OutputStreamWriter(System.out, "UTF-8")));
+        }
+        else
+        {
+            benchmark.writeResults(results, new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8")));
+        }
+
+        String baseline = options.get("baseline");
+        if (baseline != null)
+        {
+            double tolerance = options.containsKey("tolerance") ? Double.parseDouble(options.get("tolerance")) : 0.1;
+            int regressions = compare(readResults(new File(baseline)), results, tolerance, System.err);
+            if (regressions > 0)
+            {
+                System.exit(1);
+            }
+        }
+    }
+
+
+    private List<MacroBenchmarkResult> runAll() throws InterruptedException
+    {
+        List<MacroBenchmarkResult> results = new ArrayList<MacroBenchmarkResult>();
+        for (BenchmarkProblem<?> problem : BenchmarkProblem.getStandardProblems())
+        {
+            for (String engine : ENGINES)
+            {
+                for (int threads : getThreadCounts(maxThreads))
+                {
+                    System.err.println("Running " + problem.getName() + " with " + engine + " on "
+                                       + threads + " thread(s)...");
+                    run(problem, engine, threads); // Warm-up, not measured.
+                    MacroBenchmarkResult fastest = null;
+                    for (int i = 0; i < repeats; i++)
+                    {
+                        MacroBenchmarkResult result = run(problem, engine, threads);
+                        if (fastest == null || result.getSeconds() < fastest.getSeconds())
+                        {
+                            fastest = result;
+                        }
+                    }
+                    results.add(fastest);
+                }
+            }
+        }
+        return results;
+    }
+
+
+    /**
+     * @return 1, 2, 4 and so on up to, and including, the maximum.
+     */
+    private static List<Integer> getThreadCounts(int maxThreads)
+    {
+        List<Integer> counts = new ArrayList<Integer>();
+        for (int threads = 1; threads < maxThreads; threads *= 2)
+        {
+            counts.add(threads);
+        }
+        counts.add(maxThreads);
+        return counts;
+    }
+
+
+    private <T> MacroBenchmarkResult run(BenchmarkProblem<T> problem,
+                                         String engine,
+                                         int threads) throws InterruptedException
+    {
+        ThreadPoolEvaluationExecutor executor = threads > 1 && !engine.equals("Islands")
+            ? new ThreadPoolEvaluationExecutor(threads)
+            : null;
+        try
+        {
+            long evaluations;
+            long generationCount;
+            memory.start();
+            long startTime = System.nanoTime();
+            if (engine.equals("Islands"))
+            {
+                // There is one island per thread and the islands run on a pool of that size.
+                // The islands evaluate their own populations on the thread that runs them, so
+                // the pool is the only source of parallelism.  The population is shared
+                // between the islands to keep the work the same.
+                List<EvolutionEngine<T>> islands = new ArrayList<EvolutionEngine<T>>(threads);
+                for (int i = 0; i < threads; i++)
+                {
+                    GenerationalEvolutionEngine<T> island = createGenerationalEngine(problem, createRNG(i + 1));
+                    island.setSingleThreaded(true);
+                    islands.add(island);
+                }
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                IslandEvolution<T> islandEvolution = new IslandEvolution<T>(islands,
+                                                                            new RingMigration(),
+                                                                            problem.getFitnessEvaluator().isNatural(),
+                                                                            createRNG(0),
+                                                                            pool);
+                int islandPopulation = Math.max(10, populationSize / threads);
+                try
+                {
+                    islandEvolution.evolve(islandPopulation,
+                                           getEliteCount(islandPopulation),
+                                           EPOCH_LENGTH,
+                                           MIGRANT_COUNT,
+                                           new GenerationCount(generations / EPOCH_LENGTH));
+                }
+                finally
+                {
+                    pool.shutdown();
+                }
+                evaluations = islandEvolution.getMetrics().getEvaluationCount();
+                generationCount = (generations / EPOCH_LENGTH) * EPOCH_LENGTH;
+            }
+            else
+            {
+                AbstractEvolutionEngine<T> evolutionEngine = createEngine(problem, engine, createRNG(0));
+                if (executor == null)
+                {
+                    evolutionEngine.setSingleThreaded(true);
+                }
+                else
+                {
+                    evolutionEngine.setEvaluationExecutor(executor);
+                }
+                boolean strategy = evolutionEngine instanceof EvolutionStrategyEngine;
+                evolutionEngine.evolvePopulation(strategy ? populationSize / ES_OFFSPRING_MULTIPLIER : populationSize,
+                                                 strategy ? 0 : getEliteCount(populationSize),
+                                                 new GenerationCount(generations));
+                evaluations = evolutionEngine.getMetrics().getEvaluationCount();
+                generationCount = generations;
+            }
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            memory.stop();
+            return new MacroBenchmarkResult(problem.getName(),
+                                            engine,
+                                            threads,
+                                            generationCount,
+                                            evaluations,
+                                            seconds,
+                                            memory.getAllocatedBytes(),
+                                            memory.getPeakHeapBytes());
+        }
+        finally
+        {
+            if (executor != null)
+            {
+                executor.close();
+            }
+        }
+    }
+
+
+    private <T> AbstractEvolutionEngine<T> createEngine(BenchmarkProblem<T> problem, String engine, Random rng)
+    {
+        if (engine.equals("Generational"))
+        {
+            return createGenerationalEngine(problem, rng);
+        }
+        else if (engine.equals("SteadyState"))
+        {
+            return new SteadyStateEvolutionEngine<T>(problem.getCandidateFactory(),
+                                                     problem.getEvolutionScheme(),
+                                                     problem.getFitnessEvaluator(),
+                                                     new TournamentSelection(new Probability(0.7)),
+                                                     populationSize / 10,
+                                                     false,
+                                                     rng);
+        }
+        else if (engine.equals("EvolutionStrategy"))
+        {
+            return new EvolutionStrategyEngine<T>(problem.getCandidateFactory(),
+                                                  problem.getEvolutionScheme(),
+                                                  problem.getFitnessEvaluator(),
+                                                  true,
+                                                  ES_OFFSPRING_MULTIPLIER,
+                                                  rng);
+        }
+        throw new IllegalArgumentException("Unknown engine: " + engine);
+    }
+
+
+    private static <T> GenerationalEvolutionEngine<T> createGenerationalEngine(BenchmarkProblem<T> problem, Random rng)
+    {
+        return new GenerationalEvolutionEngine<T>(problem.getCandidateFactory(),
+                                                  problem.getEvolutionScheme(),
+                                                  problem.getFitnessEvaluator(),
+                                                  new TournamentSelection(new Probability(0.7)),
+                                                  rng);
+    }
+
+
+    private static int getEliteCount(int populationSize)
+    {
+        return Math.max(1, populationSize / 20);
+    }
+
+
+    /**
+     * @param stream Distinguishes the generators used by different islands.
+     * @return A generator that is seeded the same way on every run.
+     */
+    private static Random createRNG(int stream)
+    {
+        byte[] seed = BenchmarkData.createSeed(16);
+        seed[0] ^= stream;
+        return new MersenneTwisterRNG(seed);
+    }
+
+
+    private void writeResults(List<MacroBenchmarkResult> results, PrintWriter writer)
+    {
+        writer.println("{");
+        writer.println("  \"javaVersion\": \"" + System.getProperty("java.version") + "\",");
+        writer.println("  \"processors\": " + Runtime.getRuntime().availableProcessors() + ",");
+        writer.println("  \"populationSize\": " + populationSize + ",");
+        writer.println("  \"generations\": " + generations + ",");
+        writer.println("  \"results\": [");
+        for (int i = 0; i < results.size(); i++)
+        {
+            writer.println("    " + results.get(i).toJSON() + (i < results.size() - 1 ? "," : ""));
+        }
+        writer.println("  ]");
+        writer.println("}");
+        writer.flush();
+    }
+
+
+    private static List<MacroBenchmarkResult> readResults(File file) throws IOException
+    {
+        List<MacroBenchmarkResult> results = new ArrayList<MacroBenchmarkResult>();
+        for (String line : Files.readAllLines(file.toPath(), Charset.forName("UTF-8")))
+        {
+            MacroBenchmarkResult result = MacroBenchmarkResult.fromJSON(line);
+            if (result != null)
+            {
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+
+    /**
+     * Reports each configuration whose generations per second or evaluations per second
+     * have fallen by more than the tolerance since the baseline.
+     * @return The number of regressions.
+     */
+    static int compare(List<MacroBenchmarkResult> baseline,
+                       List<MacroBenchmarkResult> results,
+                       double tolerance,
+                       PrintStream report)
+    {
+        Map<String, MacroBenchmarkResult> previous = new HashMap<String, MacroBenchmarkResult>();
+        for (MacroBenchmarkResult result : baseline)
+        {
+            previous.put(result.getKey(), result);
+        }
+        int regressions = 0;
+        for (MacroBenchmarkResult result : results)
+        {
+            MacroBenchmarkResult before = previous.get(result.getKey());
+            if (before != null)
+            {
+                double generationChange = result.getGenerationsPerSecond() / before.getGenerationsPerSecond() - 1;
+                double evaluationChange = result.getEvaluationsPerSecond() / before.getEvaluationsPerSecond() - 1;
+                if (generationChange < -tolerance || evaluationChange < -tolerance)
+                {
+                    report.println(String.format(Locale.ENGLISH,
+                                                 "REGRESSION %s: generations/sec %+.1f%%, evaluations/sec %+.1f%%",
+                                                 result.getKey(),
+                                                 generationChange * 100,
+                                                 evaluationChange * 100));
+                    ++regressions;
+                }
+            }
+        }
+        report.println(regressions + " regression(s) in " + results.size() + " configuration(s).");
+        return regressions;
+    }
+
+
+    /**
+     * Parses options of the form {@code -name value}.
+     */
+    private static Map<String, String> parseOptions(String[] args)
+    {
+        Map<String, String> options = new HashMap<String, String>();
+        for (int i = 0; i < args.length; i += 2)
+        {
+            if (!args[i].startsWith("-") || i + 1 >= args.length)
+            {
+                throw new IllegalArgumentException("Expected -option value, found: " + args[i]);
+            }
+            options.put(args[i].substring(1), args[i + 1]);
+        }
+        return options;
+    }
+
+
+    private static int getInt(Map<String, String> options, String name, int defaultValue)
+    {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+}
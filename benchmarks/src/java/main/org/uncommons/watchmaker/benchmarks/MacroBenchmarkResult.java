@@ -0,0 +1,197 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.benchmarks;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The measurements from one configuration of the {@link MacroBenchmark}.  Results are
+ * written as single-line JSON objects so that the output of different builds can be
+ * compared line-by-line, and so that they can be read back without a JSON library.
+ * @author Daniel Dyer
+ */
+final class MacroBenchmarkResult
+{
+    private static final Pattern STRING_FIELD = Pattern.compile("\"(\\w+)\"\\s*:\\s*\"([^\"]*)\"");
+    private static final Pattern NUMBER_FIELD = Pattern.compile("\"(\\w+)\"\\s*:\\s*(-?[0-9.eE+-]+)");
+
+    private final String problem;
+    private final String engine;
+    private final int threads;
+    private final long generations;
+    private final long evaluations;
+    private final double seconds;
+    private final long allocatedBytes;
+    private final long peakHeapBytes;
+
+
+    MacroBenchmarkResult(String problem,
+                         String engine,
+                         int threads,
+                         long generations,
+                         long evaluations,
+                         double seconds,
+                         long allocatedBytes,
+                         long peakHeapBytes)
+    {
+        this.problem = problem;
+        this.engine = engine;
+        this.threads = threads;
+        this.generations = generations;
+        this.evaluations = evaluations;
+        this.seconds = seconds;
+        this.allocatedBytes = allocatedBytes;
+        this.peakHeapBytes = peakHeapBytes;
+    }
+
+
+    /**
+     * @return A key that identifies the configuration (problem, engine and thread count)
+     * that this result was measured for.
+     */
+    public String getKey()
+    {
+        return problem + '/' + engine + '/' + threads;
+    }
+
+
+    public double getSeconds()
+    {
+        return seconds;
+    }
+
+
+    public double getGenerationsPerSecond()
+    {
+        return generations / seconds;
+    }
+
+
+    public double getEvaluationsPerSecond()
+    {
+        return evaluations / seconds;
+    }
+
+
+    /**
+     * @return The number of bytes allocated per second by all threads.
+     */
+    public double getAllocationRate()
+    {
+        return allocatedBytes / seconds;
+    }
+
+
+    public long getPeakHeapBytes()
+    {
+        return peakHeapBytes;
+    }
+
+
+    public String toJSON()
+    {
+        return String.format(Locale.ENGLISH,
+                             "{\"problem\": \"%s\", \"engine\": \"%s\", \"threads\": %d, "
+                             + "\"generations\": %d, \"evaluations\": %d, \"seconds\": %.4f, "
+                             + "\"generationsPerSecond\": %.2f, \"evaluationsPerSecond\": %.2f, "
+                             + "\"allocatedBytes\": %d, \"allocationRate\": %.0f, \"peakHeapBytes\": %d}",
+                             problem,
+                             engine,
+                             threads,
+                             generations,
+                             evaluations,
+                             seconds,
+                             getGenerationsPerSecond(),
+                             getEvaluationsPerSecond(),
+                             allocatedBytes,
+                             getAllocationRate(),
+                             peakHeapBytes);
+    }
+
+
+    /**
+     * Reads a result written by {@link #toJSON()}.
+     * @param line A line of output from a previous run.
+     * @return The result, or null if the line does not contain a result.
+     */
+    public static MacroBenchmarkResult fromJSON(String line)
+    {
+        Matcher strings = STRING_FIELD.matcher(line);
+        String problem = null;
+        String engine = null;
+        while (strings.find())
+        {
+            if (strings.group(1).equals("problem"))
+            {
+                problem = strings.group(2);
+            }
+            else if (strings.group(1).equals("engine"))
+            {
+                engine = strings.group(2);
+            }
+        }
+        if (problem == null || engine == null)
+        {
+            return null;
+        }
+        Matcher numbers = NUMBER_FIELD.matcher(line);
+        int threads = 0;
+        long generations = 0;
+        long evaluations = 0;
+        double seconds = 0;
+        long allocatedBytes = 0;
+        long peakHeapBytes = 0;
+        while (numbers.find())
+        {
+            String name = numbers.group(1);
+            String value = numbers.group(2);
+            if (name.equals("threads"))
+            {
+                threads = Integer.parseInt(value);
+            }
+            else if (name.equals("generations"))
+            {
+                generations = Long.parseLong(value);
+            }
+            else if (name.equals("evaluations"))
+            {
+                evaluations = Long.parseLong(value);
+            }
+            else if (name.equals("seconds"))
+            {
+                seconds = Double.parseDouble(value);
+            }
+            else if (name.equals("allocatedBytes"))
+            {
+                allocatedBytes = Long.parseLong(value);
+            }
+            else if (name.equals("peakHeapBytes"))
+            {
+                peakHeapBytes = Long.parseLong(value);
+            }
+        }
+        return new MacroBenchmarkResult(problem,
+                                        engine,
+                                        threads,
+                                        generations,
+                                        evaluations,
+                                        seconds,
+                                        allocatedBytes,
+                                        peakHeapBytes);
+    }
+}
@@ -0,0 +1,220 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.benchmarks;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Measures how much memory is allocated by all threads in the JVM, and the peak heap
+ * usage, while a benchmark runs.  Per-thread allocation counters miss threads that
+ * finish before the measurement ends (such as those used by island evolution), so the
+ * amount allocated is instead calculated from the growth of the heap plus the amount
+ * freed by each garbage collection, as reported by garbage collection notifications.
+ * @author Daniel Dyer
+ */
+final class MemoryMonitor implements NotificationListener
+{
+    private static final long SETTLE_TIMEOUT_MILLIS = 2000;
+
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+    private final Set<String> heapPoolNames = new HashSet<String>();
+    private final List<GarbageCollectorMXBean> collectors = new ArrayList<GarbageCollectorMXBean>();
+    private final AtomicLong freedBytes = new AtomicLong();
+    private final AtomicLong notificationCount = new AtomicLong();
+    private final long initialCollectionCount;
+
+    private long startUsage;
+    private long startFreed;
+    private long allocatedBytes;
+    private long peakHeapBytes;
+
+
+    MemoryMonitor()
+    {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP)
+            {
+                heapPools.add(pool);
+                heapPoolNames.add(pool.getName());
+            }
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            collectors.add(collector);
+            ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+        }
+        // Collections that happened before the listener was registered are never notified.
+        initialCollectionCount = getCollectionCount();
+    }
+
+
+    /**
+     * Collects garbage so that the measurement starts from as little live data as possible,
+     * then starts measuring.
+     */
+    public void start() throws InterruptedException
+    {
+        System.gc();
+        awaitNotifications();
+        for (MemoryPoolMXBean pool : heapPools)
+        {
+            pool.resetPeakUsage();
+        }
+        startUsage = getHeapUsage();
+        startFreed = freedBytes.get();
+    }
+
+
+    /**
+     * Stops measuring.  The results are available from {@link #getAllocatedBytes()} and
+     * {@link #getPeakHeapBytes()}.
+     */
+    public void stop() throws InterruptedException
+    {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools)
+        {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        long endUsage = getHeapUsage();
+        awaitNotifications();
+        // Summing the peaks of each pool over-estimates if they peaked at different times,
+        // but it cannot be less than the true peak.
+        peakHeapBytes = peak;
+        allocatedBytes = Math.max(0, endUsage - startUsage + freedBytes.get() - startFreed);
+    }
+
+
+    /**
+     * @return The number of bytes allocated between the last calls to {@link #start()}
+     * and {@link #stop()}.
+     */
+    public long getAllocatedBytes()
+    {
+        return allocatedBytes;
+    }
+
+
+    /**
+     * @return An upper bound on the heap usage between the last calls to {@link #start()}
+     * and {@link #stop()}.
+     */
+    public long getPeakHeapBytes()
+    {
+        return peakHeapBytes;
+    }
+
+
+    public void close()
+    {
+        for (GarbageCollectorMXBean collector : collectors)
+        {
+            try
+            {
+                ((NotificationEmitter) collector).removeNotificationListener(this);
+            }
+            catch (ListenerNotFoundException ex)
+            {
+                // Already removed.
+            }
+        }
+    }
+
+
+    public void handleNotification(Notification notification, Object handback)
+    {
+        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()))
+        {
+            GarbageCollectionNotificationInfo info
+                = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            Map<String, MemoryUsage> before = info.getGcInfo().getMemoryUsageBeforeGc();
+            Map<String, MemoryUsage> after = info.getGcInfo().getMemoryUsageAfterGc();
+            long freed = 0;
+            for (String pool : heapPoolNames)
+            {
+                if (before.containsKey(pool) && after.containsKey(pool))
+                {
+                    freed += before.get(pool).getUsed() - after.get(pool).getUsed();
+                }
+            }
+            freedBytes.addAndGet(freed);
+            synchronized (notificationCount)
+            {
+                notificationCount.incrementAndGet();
+                notificationCount.notifyAll();
+            }
+        }
+    }
+
+
+    private long getHeapUsage()
+    {
+        long used = 0;
+        for (MemoryPoolMXBean pool : heapPools)
+        {
+            used += pool.getUsage().getUsed();
+        }
+        return used;
+    }
+
+
+    /**
+     * Notifications are delivered asynchronously, so wait until there has been one for
+     * every collection so far.  Some collectors count cycles that are not notified, so
+     * give up waiting after a short time.
+     */
+    private void awaitNotifications() throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + SETTLE_TIMEOUT_MILLIS;
+        synchronized (notificationCount)
+        {
+            long remaining;
+            while (initialCollectionCount + notificationCount.get() < getCollectionCount()
+                   && (remaining = deadline - System.currentTimeMillis()) > 0)
+            {
+                notificationCount.wait(remaining);
+            }
+        }
+    }
+
+
+    private long getCollectionCount()
+    {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors)
+        {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+}
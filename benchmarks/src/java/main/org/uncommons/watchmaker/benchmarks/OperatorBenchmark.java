@@ -0,0 +1,255 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uncommons.maths.random.Probability;
+import org.uncommons.watchmaker.framework.CandidateFactory;
+import org.uncommons.watchmaker.framework.EvolutionaryOperator;
+import org.uncommons.watchmaker.framework.factories.AbstractCandidateFactory;
+import org.uncommons.watchmaker.framework.factories.BitStringFactory;
+import org.uncommons.watchmaker.framework.factories.ListPermutationFactory;
+import org.uncommons.watchmaker.framework.factories.StringFactory;
+import org.uncommons.watchmaker.framework.operators.BitStringCrossover;
+import org.uncommons.watchmaker.framework.operators.BitStringMutation;
+import org.uncommons.watchmaker.framework.operators.ByteArrayCrossover;
+import org.uncommons.watchmaker.framework.operators.CharArrayCrossover;
+import org.uncommons.watchmaker.framework.operators.DoubleArrayCrossover;
+import org.uncommons.watchmaker.framework.operators.IntArrayCrossover;
+import org.uncommons.watchmaker.framework.operators.ListCrossover;
+import org.uncommons.watchmaker.framework.operators.ListInversion;
+import org.uncommons.watchmaker.framework.operators.ListOrderCrossover;
+import org.uncommons.watchmaker.framework.operators.ListOrderMutation;
+import org.uncommons.watchmaker.framework.operators.ObjectArrayCrossover;
+import org.uncommons.watchmaker.framework.operators.StringCrossover;
+import org.uncommons.watchmaker.framework.operators.StringMutation;
+
+/**
+ * Measures the cost of applying each of the crossover and mutation operators to a
+ * whole population, for different population and genome sizes.
+ * @author Daniel Dyer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperatorBenchmark
+{
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ ".toCharArray();
+
+    @Param({"BitStringCrossover",
+            "ByteArrayCrossover",
+            "CharArrayCrossover",
+            "DoubleArrayCrossover",
+            "IntArrayCrossover",
+            "ObjectArrayCrossover",
+            "StringCrossover",
+            "ListCrossover",
+            "ListOrderCrossover",
+            "BitStringMutation",
+            "StringMutation",
+            "ListOrderMutation",
+            "ListInversion"})
+    private String operator;
+
+    @Param({"100", "1000"})
+    private int populationSize;
+
+    @Param({"16", "256", "4096"})
+    private int genomeSize;
+
+    private Workload<?> workload;
+    private Random rng;
+
+
+    @Setup
+    public void setUp()
+    {
+        rng = BenchmarkData.createRNG();
+        workload = createWorkload();
+    }
+
+
+    @Benchmark
+    public List<?> apply()
+    {
+        return workload.apply(rng);
+    }
+
+
+    private Workload<?> createWorkload()
+    {
+        if (operator.equals("BitStringCrossover"))
+        {
+            return workload(new BitStringCrossover(), new BitStringFactory(genomeSize));
+        }
+        else if (operator.equals("BitStringMutation"))
+        {
+            return workload(new BitStringMutation(new Probability(0.01)), new BitStringFactory(genomeSize));
+        }
+        else if (operator.equals("ByteArrayCrossover"))
+        {
+            return workload(new ByteArrayCrossover(), new AbstractCandidateFactory<byte[]>()
+            {
+                public byte[] generateRandomCandidate(Random rng)
+                {
+                    byte[] candidate = new byte[genomeSize];
+                    rng.nextBytes(candidate);
+                    return candidate;
+                }
+            });
+        }
+        else if (operator.equals("CharArrayCrossover"))
+        {
+            return workload(new CharArrayCrossover(), new AbstractCandidateFactory<char[]>()
+            {
+                public char[] generateRandomCandidate(Random rng)
+                {
+                    char[] candidate = new char[genomeSize];
+                    for (int i = 0; i < candidate.length; i++)
+                    {
+                        candidate[i] = ALPHABET[rng.nextInt(ALPHABET.length)];
+                    }
+                    return candidate;
+                }
+            });
+        }
+        else if (operator.equals("DoubleArrayCrossover"))
+        {
+            return workload(new DoubleArrayCrossover(), new AbstractCandidateFactory<double[]>()
+            {
+                public double[] generateRandomCandidate(Random rng)
+                {
+                    double[] candidate = new double[genomeSize];
+                    for (int i = 0; i < candidate.length; i++)
+                    {
+                        candidate[i] = rng.nextDouble();
+                    }
+                    return candidate;
+                }
+            });
+        }
+        else if (operator.equals("IntArrayCrossover"))
+        {
+            return workload(new IntArrayCrossover(), new AbstractCandidateFactory<int[]>()
+            {
+                public int[] generateRandomCandidate(Random rng)
+                {
+                    int[] candidate = new int[genomeSize];
+                    for (int i = 0; i < candidate.length; i++)
+                    {
+                        candidate[i] = rng.nextInt();
+                    }
+                    return candidate;
+                }
+            });
+        }
+        else if (operator.equals("ObjectArrayCrossover"))
+        {
+            return workload(new ObjectArrayCrossover<Integer>(), new AbstractCandidateFactory<Integer[]>()
+            {
+                public Integer[] generateRandomCandidate(Random rng)
+                {
+                    Integer[] candidate = new Integer[genomeSize];
+                    for (int i = 0; i < candidate.length; i++)
+                    {
+                        candidate[i] = rng.nextInt();
+                    }
+                    return candidate;
+                }
+            });
+        }
+        else if (operator.equals("StringCrossover"))
+        {
+            return workload(new StringCrossover(), new StringFactory(ALPHABET, genomeSize));
+        }
+        else if (operator.equals("StringMutation"))
+        {
+            return workload(new StringMutation(ALPHABET, new Probability(0.01)), new StringFactory(ALPHABET, genomeSize));
+        }
+        else if (operator.equals("ListCrossover"))
+        {
+            return workload(new ListCrossover<Integer>(), createPermutationFactory());
+        }
+        else if (operator.equals("ListOrderCrossover"))
+        {
+            return workload(new ListOrderCrossover<Integer>(), createPermutationFactory());
+        }
+        else if (operator.equals("ListOrderMutation"))
+        {
+            return workload(new ListOrderMutation<Integer>(), createPermutationFactory());
+        }
+        else if (operator.equals("ListInversion"))
+        {
+            return workload(new ListInversion<Integer>(new Probability(0.1)), createPermutationFactory());
+        }
+        throw new IllegalArgumentException("Unknown operator: " + operator);
+    }
+
+
+    private CandidateFactory<List<Integer>> createPermutationFactory()
+    {
+        List<Integer> elements = new ArrayList<Integer>(genomeSize);
+        for (int i = 0; i < genomeSize; i++)
+        {
+            elements.add(i);
+        }
+        return new ListPermutationFactory<Integer>(elements);
+    }
+
+
+    private <T> Workload<T> workload(EvolutionaryOperator<T> evolutionaryOperator, CandidateFactory<T> factory)
+    {
+        return new Workload<T>(evolutionaryOperator, factory.generateInitialPopulation(populationSize, rng));
+    }
+
+
+    /**
+     * An operator together with a population of candidates of the type that it operates on.
+     */
+    private static final class Workload<T>
+    {
+        private final EvolutionaryOperator<T> operator;
+        private final List<T> population;
+
+        Workload(EvolutionaryOperator<T> operator, List<T> population)
+        {
+            this.operator = operator;
+            this.population = population;
+        }
+
+        List<T> apply(Random rng)
+        {
+            return operator.apply(population, rng);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.benchmarks;
+
+import java.security.GeneralSecurityException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uncommons.maths.random.AESCounterRNG;
+import org.uncommons.maths.random.CMWC4096RNG;
+import org.uncommons.maths.random.CellularAutomatonRNG;
+import org.uncommons.maths.random.JavaRNG;
+import org.uncommons.maths.random.MersenneTwisterRNG;
+import org.uncommons.maths.random.PCG32RNG;
+import org.uncommons.maths.random.XORShiftRNG;
+import org.uncommons.maths.random.Xoshiro256StarStarRNG;
+
+/**
+ * Measures the throughput of each of the random number generators, with
+ * {@link java.util.Random} for comparison.  Each generator is created from a
+ * fixed seed so that no time is spent waiting for seed data.
+ * @author Daniel Dyer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RNGBenchmark
+{
+    @Param({"MersenneTwisterRNG",
+            "XORShiftRNG",
+            "CMWC4096RNG",
+            "CellularAutomatonRNG",
+            "AESCounterRNG",
+            "JavaRNG",
+            "Xoshiro256StarStarRNG",
+            "PCG32RNG",
+            "Random"})
+    private String generator;
+
+    private final byte[] bytes = new byte[1024];
+    private Random rng;
+
+
+    @Setup
+    public void setUp() throws GeneralSecurityException
+    {
+        rng = createRNG(generator);
+    }
+
+
+    @Benchmark
+    public int nextInt()
+    {
+        return rng.nextInt();
+    }
+
+
+    /**
+     * Bounded integers are what selection strategies and operators mostly use.
+     */
+    @Benchmark
+    public int nextBoundedInt()
+    {
+        return rng.nextInt(1000);
+    }
+
+
+    @Benchmark
+    public double nextDouble()
+    {
+        return rng.nextDouble();
+    }
+
+
+    @Benchmark
+    public byte[] nextBytes()
+    {
+        rng.nextBytes(bytes);
+        return bytes;
+    }
+
+
+    private static Random createRNG(String name) throws GeneralSecurityException
+    {
+        if (name.equals("MersenneTwisterRNG"))
+        {
+            return new MersenneTwisterRNG(BenchmarkData.createSeed(16));
+        }
+        else if (name.equals("XORShiftRNG"))
+        {
+            return new XORShiftRNG(BenchmarkData.createSeed(20));
+        }
+        else if (name.equals("CMWC4096RNG"))
+        {
+            return new CMWC4096RNG(BenchmarkData.createSeed(16384));
+        }
+        else if (name.equals("CellularAutomatonRNG"))
+        {
+            return new CellularAutomatonRNG(BenchmarkData.createSeed(4));
+        }
+        else if (name.equals("AESCounterRNG"))
+        {
+            return new AESCounterRNG(BenchmarkData.createSeed(16));
+        }
+        else if (name.equals("JavaRNG"))
+        {
+            return new JavaRNG(BenchmarkData.createSeed(8));
+        }
+        else if (name.equals("Xoshiro256StarStarRNG"))
+        {
+            return new Xoshiro256StarStarRNG(BenchmarkData.createSeed(32));
+        }
+        else if (name.equals("PCG32RNG"))
+        {
+            return new PCG32RNG(BenchmarkData.createSeed(16));
+        }
+        else if (name.equals("Random"))
+        {
+            return new Random(42);
+        }
+        throw new IllegalArgumentException("Unknown RNG: " + name);
+    }
+}
@@ -0,0 +1,139 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uncommons.maths.random.Probability;
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.EvolutionUtils;
+import org.uncommons.watchmaker.framework.PopulationView;
+import org.uncommons.watchmaker.framework.SelectionStrategy;
+import org.uncommons.watchmaker.framework.selection.RankSelection;
+import org.uncommons.watchmaker.framework.selection.RouletteWheelSelection;
+import org.uncommons.watchmaker.framework.selection.SigmaScaling;
+import org.uncommons.watchmaker.framework.selection.StochasticUniversalSampling;
+import org.uncommons.watchmaker.framework.selection.TournamentSelection;
+import org.uncommons.watchmaker.framework.selection.TruncationSelection;
+
+/**
+ * Measures the cost of selecting a whole generation's worth of parents with each of the
+ * selection strategies.  Selection is done the way the engines do it, through
+ * {@link EvolutionUtils#select(SelectionStrategy, PopulationView, boolean, int, Random)},
+ * from a population that has been sorted if the strategy requires it.
+ * @author Daniel Dyer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectionBenchmark
+{
+    @Param({"RouletteWheelSelection",
+            "StochasticUniversalSampling",
+            "TournamentSelection",
+            "TruncationSelection",
+            "RankSelection",
+            "SigmaScaling"})
+    private String strategy;
+
+    @Param({"100", "1000", "10000"})
+    private int populationSize;
+
+    private SelectionStrategy<Object> selection;
+    private PopulationView<Integer> population;
+    private List<EvaluatedCandidate<Integer>> candidates;
+    private Random rng;
+
+
+    @Setup
+    public void setUp()
+    {
+        selection = createStrategy(strategy);
+        rng = BenchmarkData.createRNG();
+        candidates = BenchmarkData.createEvaluatedPopulation(populationSize, rng);
+        if (EvolutionUtils.requiresSortedPopulation(selection))
+        {
+            EvolutionUtils.sortEvaluatedPopulation(candidates, true);
+        }
+        population = new PopulationView<Integer>(candidates);
+    }
+
+
+    /**
+     * Selection from a {@link PopulationView}, as done by the evolution engines.
+     */
+    @Benchmark
+    public List<Integer> selectFromView()
+    {
+        return EvolutionUtils.select(selection, population, true, populationSize, rng);
+    }
+
+
+    /**
+     * Selection from a list of {@link EvaluatedCandidate} objects, as done by code that
+     * calls the strategy directly.
+     */
+    @Benchmark
+    public List<Integer> selectFromList()
+    {
+        return selection.select(candidates, true, populationSize, rng);
+    }
+
+
+    private static SelectionStrategy<Object> createStrategy(String name)
+    {
+        if (name.equals("RouletteWheelSelection"))
+        {
+            return new RouletteWheelSelection();
+        }
+        else if (name.equals("StochasticUniversalSampling"))
+        {
+            return new StochasticUniversalSampling();
+        }
+        else if (name.equals("TournamentSelection"))
+        {
+            return new TournamentSelection(new Probability(0.7));
+        }
+        else if (name.equals("TruncationSelection"))
+        {
+            return new TruncationSelection(0.5);
+        }
+        else if (name.equals("RankSelection"))
+        {
+            return new RankSelection();
+        }
+        else if (name.equals("SigmaScaling"))
+        {
+            return new SigmaScaling();
+        }
+        throw new IllegalArgumentException("Unknown selection strategy: " + name);
+    }
+}
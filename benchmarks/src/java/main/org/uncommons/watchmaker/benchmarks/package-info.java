@@ -0,0 +1,31 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+/**
+ * <p>JMH microbenchmarks for selection strategies, evolutionary operators, random number
+ * generators and the population utilities.  Build the self-contained benchmark JAR with
+ * {@code mvn -Pbenchmarks package} and run it with JMH's usual command-line options.
+ * Results can be written in a machine-readable format for tracking over time, for example:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar -rf json -rff results.json
+ * </pre>
+ * Every benchmark uses fixed seeds so that successive runs measure the same work.</p>
+ *
+ * <p>{@link org.uncommons.watchmaker.benchmarks.MacroBenchmark} measures the throughput
+ * of complete evolutions instead, and can compare its results with those of a previous
+ * build to detect regressions.</p>
+ * @author Daniel Dyer
+ */
+package org.uncommons.watchmaker.benchmarks;
@@ -0,0 +1,56 @@
+// ============================================================================
+//   Copyright 2006-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.maths.random;
+
+import java.util.Random;
+
+/**
+ * <p>A repeatable RNG that can be divided into many non-overlapping streams, so that
+ * each thread can own a generator of its own instead of sharing one.  Implementations
+ * do no locking: an instance must only be used by one thread at a time.</p>
+ *
+ * <p>{@link #jump()} and {@link #longJump()} advance the generator by a fixed, very large
+ * number of steps.  A program that needs a known number of streams can create them by
+ * copying a generator (using its {@link #getSeed() seed}) and jumping each copy a
+ * different number of times.  {@link #split()} is more convenient when the number of
+ * streams isn't known in advance.</p>
+ * @author Daniel Dyer
+ */
+public interface JumpableRNG extends RepeatableRNG
+{
+    /**
+     * Creates a new generator, of the same type as this one, for use by another thread.
+     * This generator is modified so that the streams of the two generators are independent.
+     * @return A new generator.  Its {@link #getSeed() seed} is the state it starts from,
+     * so it can be recreated.
+     */
+    Random split();
+
+
+    /**
+     * Advances this generator by a fixed number of steps, as if that many values had been
+     * generated.  The distance depends on the implementation, but is large enough that the
+     * output before and after the jump will not overlap in any practical program.
+     */
+    void jump();
+
+
+    /**
+     * Advances this generator by many times the distance of a {@link #jump()}, so that
+     * each long jump starts a set of streams that can themselves be created by jumping.
+     */
+    void longJump();
+}
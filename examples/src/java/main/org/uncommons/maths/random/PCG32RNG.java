@@ -0,0 +1,186 @@
+// ============================================================================
+//   Copyright 2006-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.maths.random;
+
+import java.util.Random;
+import org.uncommons.maths.binary.BinaryUtils;
+
+/**
+ * <p>Small, fast pseudo random number generator designed for parallel use.  This is the
+ * PCG32 (XSH RR 64/32) algorithm of O'Neill (see <a href="http://www.pcg-random.org/">this
+ * page</a> for a description).  It has 64 bits of state and a period of 2^64, and the seed
+ * also selects one of 2^63 distinct streams.</p>
+ *
+ * <p>Unlike the other RNGs in this package, instances of this class do no locking.  Each
+ * instance must be used by only one thread at a time, so a multi-threaded program should
+ * give each thread its own generator, either by {@link #split() splitting} one generator
+ * or by using a {@link ThreadLocalRNG}.  A {@link #jump()} advances the generator by
+ * 2^48 steps and a {@link #longJump()} by 2^56 steps, and {@link #advance(long)} can skip
+ * any number of steps without generating the values in between.</p>
+ *
+ * <p><em>NOTE: Because instances of this class require 128-bit seeds, it is not
+ * possible to seed this RNG using the {@link #setSeed(long)} method inherited
+ * from {@link Random}.  Calls to this method will have no effect.
+ * Instead the seed must be set by a constructor.</em></p>
+ *
+ * @author Daniel Dyer
+ */
+public class PCG32RNG extends Random implements JumpableRNG
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final int SEED_SIZE_BYTES = 16; // Initial state and stream.
+
+    private static final long MULTIPLIER = 6364136223846793005L;
+
+    private long state;
+    private final long increment;
+
+    private final byte[] seed;
+
+
+    /**
+     * Creates a new RNG and seeds it using the default seeding strategy.
+     */
+    public PCG32RNG()
+    {
+        this(DefaultSeedGenerator.getInstance().generateSeed(SEED_SIZE_BYTES));
+    }
+
+
+    /**
+     * Seed the RNG using the provided seed generation strategy.
+     * @param seedGenerator The seed generation strategy that will provide
+     * the seed value for this RNG.
+     * @throws SeedException If there is a problem generating a seed.
+     */
+    public PCG32RNG(SeedGenerator seedGenerator) throws SeedException
+    {
+        this(seedGenerator.generateSeed(SEED_SIZE_BYTES));
+    }
+
+
+    /**
+     * Creates an RNG and seeds it with the specified seed data.
+     * @param seed The seed data used to initialise the RNG.  The first 8 bytes are the
+     * initial state and the last 8 bytes select the stream.
+     */
+    public PCG32RNG(byte[] seed)
+    {
+        if (seed == null || seed.length != SEED_SIZE_BYTES)
+        {
+            throw new IllegalArgumentException("PCG32 RNG requires 128 bits of seed data.");
+        }
+        this.seed = seed.clone();
+        int[] ints = BinaryUtils.convertBytesToInts(seed);
+        long initialState = ((long) ints[0] << 32) | (ints[1] & 0xFFFFFFFFL);
+        long stream = ((long) ints[2] << 32) | (ints[3] & 0xFFFFFFFFL);
+        // Standard PCG seeding procedure.
+        this.increment = (stream << 1) | 1;
+        this.state = 0;
+        step();
+        this.state += initialState;
+        step();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] getSeed()
+    {
+        return seed.clone();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int next(int bits)
+    {
+        long oldState = state;
+        step();
+        int xorShifted = (int) (((oldState >>> 18) ^ oldState) >>> 27);
+        int rotation = (int) (oldState >>> 59);
+        return Integer.rotateRight(xorShifted, rotation) >>> (32 - bits);
+    }
+
+
+    private void step()
+    {
+        state = state * MULTIPLIER + increment;
+    }
+
+
+    /**
+     * Creates a new generator on a different, randomly-chosen stream, seeded from the
+     * output of this generator.  Values from different streams are statistically
+     * independent.
+     * @return A new generator.
+     */
+    public PCG32RNG split()
+    {
+        byte[] newSeed = new byte[SEED_SIZE_BYTES];
+        nextBytes(newSeed);
+        return new PCG32RNG(newSeed);
+    }
+
+
+    /**
+     * Advances this generator by 2^48 steps.
+     */
+    public void jump()
+    {
+        advance(1L << 48);
+    }
+
+
+    /**
+     * Advances this generator by 2^56 steps.
+     */
+    public void longJump()
+    {
+        advance(1L << 56);
+    }
+
+
+    /**
+     * Advances this generator by the specified number of steps in O(log(steps)) time.
+     * @param steps The number of values to skip, treated as an unsigned value, so that
+     * negative values move the generator backwards (the period is 2^64).
+     */
+    public void advance(long steps)
+    {
+        long multiplier = MULTIPLIER;
+        long addend = increment;
+        long accumulatedMultiplier = 1;
+        long accumulatedAddend = 0;
+        long remaining = steps;
+        while (remaining != 0)
+        {
+            if ((remaining & 1) != 0)
+            {
+                accumulatedMultiplier *= multiplier;
+                accumulatedAddend = accumulatedAddend * multiplier + addend;
+            }
+            addend = (multiplier + 1) * addend;
+            multiplier *= multiplier;
+            remaining >>>= 1;
+        }
+        state = accumulatedMultiplier * state + accumulatedAddend;
+    }
+}
@@ -0,0 +1,123 @@
+// ============================================================================
+//   Copyright 2006-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.maths.random;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * <p>Provides each thread with its own {@link JumpableRNG}, split from a single master
+ * generator, so that the unsynchronised generators can be used without locking and
+ * without contention.</p>
+ *
+ * <p>Each thread's generator is a {@link RepeatableRNG}, so its seed can be recorded.  A
+ * thread that just calls {@link #get()} receives the next generator split from the master,
+ * so which generator it gets depends on the order in which threads first ask for one.  A
+ * program that must be repeatable across runs should instead have each thread call
+ * {@link #setStream(int)} with an index of its own (a worker number, for example).  The
+ * generator for an index depends only on the master seed and the index.</p>
+ * @author Daniel Dyer
+ */
+public class ThreadLocalRNG extends ThreadLocal<Random>
+{
+    private final JumpableRNG master;
+    // The indexed streams are split from this generator, in order of index.
+    private final JumpableRNG indexedStreams;
+    // Streams that have been split for lower indices than the one requested, but not yet used.
+    private final Map<Integer, Random> unusedStreams = new HashMap<Integer, Random>();
+    private int indexedStreamCount = 0;
+
+
+    /**
+     * Creates a provider that splits per-thread generators from a new
+     * {@link Xoshiro256StarStarRNG} seeded using the default seeding strategy.
+     */
+    public ThreadLocalRNG()
+    {
+        this(new Xoshiro256StarStarRNG());
+    }
+
+
+    /**
+     * @param master The generator from which each thread's generator is split.  It
+     * should not be used elsewhere once it has been passed to this provider.
+     */
+    public ThreadLocalRNG(JumpableRNG master)
+    {
+        this.master = master;
+        // A split generator is the same type as the one it was split from.
+        this.indexedStreams = (JumpableRNG) master.split();
+        // Keep the master's own splits well clear of the indexed streams.
+        master.longJump();
+    }
+
+
+    /**
+     * @return The seed of the master generator.
+     */
+    public byte[] getMasterSeed()
+    {
+        return master.getSeed();
+    }
+
+
+    /**
+     * Gives the calling thread the generator for the specified stream, replacing any
+     * generator that it already has.  The generator starts from the beginning of its
+     * stream and is the same on every run with the same master seed, whichever thread
+     * asks for it and whenever it does so.
+     * @param index The stream index.  Each index can be used only once.
+     * @throws IllegalStateException If the stream has already been given to a thread.
+     */
+    public void setStream(int index)
+    {
+        if (index < 0)
+        {
+            throw new IllegalArgumentException("Stream index must be non-negative.");
+        }
+        Random stream;
+        synchronized (indexedStreams)
+        {
+            while (indexedStreamCount <= index)
+            {
+                unusedStreams.put(indexedStreamCount, indexedStreams.split());
+                ++indexedStreamCount;
+            }
+            stream = unusedStreams.remove(index);
+        }
+        if (stream == null)
+        {
+            throw new IllegalStateException("Stream " + index + " has already been used.");
+        }
+        set(stream);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Random initialValue()
+    {
+        // The master is not thread-safe, so splitting must be serialised.  This only
+        // happens once per thread.
+        synchronized (master)
+        {
+            return master.split();
+        }
+    }
+}
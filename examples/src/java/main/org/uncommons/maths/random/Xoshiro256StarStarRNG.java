@@ -0,0 +1,248 @@
+// ============================================================================
+//   Copyright 2006-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.maths.random;
+
+import java.util.Random;
+import org.uncommons.maths.binary.BinaryUtils;
+
+/**
+ * <p>Very fast pseudo random number generator designed for parallel use.  This is the
+ * xoshiro256** algorithm of Blackman and Vigna (see
+ * <a href="http://prng.di.unimi.it/">this page</a> for a description).  It has a period of
+ * 2^256 - 1, passes all of the standard statistical tests and generates 64 bits at a time,
+ * so {@link #nextLong()} and {@link #nextDouble()} are particularly fast.</p>
+ *
+ * <p>Unlike the other RNGs in this package, instances of this class do no locking.  Each
+ * instance must be used by only one thread at a time, so a multi-threaded program should
+ * give each thread its own generator, either by {@link #split() splitting} one generator
+ * or by using a {@link ThreadLocalRNG}.  A {@link #jump()} advances the generator by
+ * 2^128 steps and a {@link #longJump()} by 2^192 steps.</p>
+ *
+ * <p><em>NOTE: Because instances of this class require 256-bit seeds, it is not
+ * possible to seed this RNG using the {@link #setSeed(long)} method inherited
+ * from {@link Random}.  Calls to this method will have no effect.
+ * Instead the seed must be set by a constructor.</em></p>
+ *
+ * @author Daniel Dyer
+ */
+public class Xoshiro256StarStarRNG extends Random implements JumpableRNG
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final int SEED_SIZE_BYTES = 32; // Needs 4 64-bit longs.
+
+    private static final long[] JUMP = {0x180EC6D33CFD0ABAL, 0xD5A61266F0C9392CL,
+                                        0xA9582618E03FC9AAL, 0x39ABDC4529B1661CL};
+    private static final long[] LONG_JUMP = {0x76E15D3EFEFDCBBFL, 0xC5004E441C522FB3L,
+                                             0x77710069854EE241L, 0x39109BB02ACBE635L};
+
+    private long state1;
+    private long state2;
+    private long state3;
+    private long state4;
+
+    private final byte[] seed;
+
+
+    /**
+     * Creates a new RNG and seeds it using the default seeding strategy.
+     */
+    public Xoshiro256StarStarRNG()
+    {
+        this(DefaultSeedGenerator.getInstance().generateSeed(SEED_SIZE_BYTES));
+    }
+
+
+    /**
+     * Seed the RNG using the provided seed generation strategy.
+     * @param seedGenerator The seed generation strategy that will provide
+     * the seed value for this RNG.
+     * @throws SeedException If there is a problem generating a seed.
+     */
+    public Xoshiro256StarStarRNG(SeedGenerator seedGenerator) throws SeedException
+    {
+        this(seedGenerator.generateSeed(SEED_SIZE_BYTES));
+    }
+
+
+    /**
+     * Creates an RNG and seeds it with the specified seed data.
+     * @param seed The seed data used to initialise the RNG.  It must not be all zeros.
+     */
+    public Xoshiro256StarStarRNG(byte[] seed)
+    {
+        if (seed == null || seed.length != SEED_SIZE_BYTES)
+        {
+            throw new IllegalArgumentException("Xoshiro256** RNG requires 256 bits of seed data.");
+        }
+        int[] state = BinaryUtils.convertBytesToInts(seed);
+        this.state1 = toLong(state[0], state[1]);
+        this.state2 = toLong(state[2], state[3]);
+        this.state3 = toLong(state[4], state[5]);
+        this.state4 = toLong(state[6], state[7]);
+        if ((state1 | state2 | state3 | state4) == 0)
+        {
+            throw new IllegalArgumentException("Xoshiro256** RNG seed must not be all zeros.");
+        }
+        this.seed = seed.clone();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] getSeed()
+    {
+        return seed.clone();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long nextLong()
+    {
+        long result = Long.rotateLeft(state2 * 5, 7) * 9;
+        long t = state2 << 17;
+        state3 ^= state1;
+        state4 ^= state2;
+        state2 ^= state3;
+        state1 ^= state4;
+        state3 ^= t;
+        state4 = Long.rotateLeft(state4, 45);
+        return result;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int next(int bits)
+    {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int nextInt()
+    {
+        return (int) (nextLong() >>> 32);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double nextDouble()
+    {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean nextBoolean()
+    {
+        return nextLong() < 0;
+    }
+
+
+    /**
+     * Creates a new generator that continues from this generator's current position, and
+     * then jumps this generator 2^128 steps ahead.  The two generators' streams therefore
+     * cannot overlap unless one of them generates 2^128 values.
+     * @return A new generator.
+     */
+    public Xoshiro256StarStarRNG split()
+    {
+        Xoshiro256StarStarRNG rng = new Xoshiro256StarStarRNG(toBytes(state1, state2, state3, state4));
+        jump();
+        return rng;
+    }
+
+
+    /**
+     * Advances this generator by 2^128 steps.
+     */
+    public void jump()
+    {
+        jump(JUMP);
+    }
+
+
+    /**
+     * Advances this generator by 2^192 steps.
+     */
+    public void longJump()
+    {
+        jump(LONG_JUMP);
+    }
+
+
+    private void jump(long[] polynomial)
+    {
+        long s1 = 0;
+        long s2 = 0;
+        long s3 = 0;
+        long s4 = 0;
+        for (long word : polynomial)
+        {
+            for (int bit = 0; bit < 64; bit++)
+            {
+                if ((word & (1L << bit)) != 0)
+                {
+                    s1 ^= state1;
+                    s2 ^= state2;
+                    s3 ^= state3;
+                    s4 ^= state4;
+                }
+                nextLong();
+            }
+        }
+        state1 = s1;
+        state2 = s2;
+        state3 = s3;
+        state4 = s4;
+    }
+
+
+    private static long toLong(int high, int low)
+    {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+
+    /**
+     * Converts state to seed data using the same (big-endian) convention as the constructor.
+     */
+    private static byte[] toBytes(long... values)
+    {
+        byte[] bytes = new byte[values.length * 8];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = (byte) (values[i / 8] >>> (56 - 8 * (i % 8)));
+        }
+        return bytes;
+    }
+}
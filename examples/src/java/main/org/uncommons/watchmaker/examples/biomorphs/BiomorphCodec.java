@@ -0,0 +1,86 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+/**
+ * Converts biomorph genomes to and from a compact single-line text format so that
+ * they can be archived and re-loaded.  The format is the axiom, the comma-separated
+ * rule list and the turn angle, separated by '|' characters, for example:
+ * {@code fg|f=f[+f]g,g=gg|12}.
+ * @author Michael Forrest
+ */
+public final class BiomorphCodec
+{
+    private static final char FIELD_SEPARATOR = '|';
+    private static final char RULE_SEPARATOR = ',';
+
+    private BiomorphCodec()
+    {
+        // Prevents instantiation of utility class.
+    }
+
+
+    /**
+     * @param biomorph The biomorph to encode.
+     * @return A single-line text representation of the biomorph's genome.
+     */
+    public static String format(Biomorph biomorph)
+    {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(biomorph.getAxiom()).append(FIELD_SEPARATOR);
+        String[] rules = biomorph.getRuleList();
+        for (int i = 0; i < rules.length; i++)
+        {
+            if (i > 0)
+            {
+                buffer.append(RULE_SEPARATOR);
+            }
+            buffer.append(rules[i]);
+        }
+        buffer.append(FIELD_SEPARATOR).append(biomorph.getTurnAngle());
+        return buffer.toString();
+    }
+
+
+    /**
+     * @param line A genome in the format produced by {@link #format(Biomorph)}.
+     * @return The decoded biomorph.
+     * @throws IllegalArgumentException If the line is not a valid genome.
+     */
+    public static Biomorph parse(String line)
+    {
+        String trimmed = line.trim();
+        int first = trimmed.indexOf(FIELD_SEPARATOR);
+        int last = trimmed.lastIndexOf(FIELD_SEPARATOR);
+        if (first < 0 || first == last)
+        {
+            throw new IllegalArgumentException("Malformed biomorph genome: " + line);
+        }
+        String axiom = trimmed.substring(0, first);
+        String rules = trimmed.substring(first + 1, last);
+        try
+        {
+            int turnAngle = Integer.parseInt(trimmed.substring(last + 1));
+            return new Biomorph(axiom,
+                                rules.length() == 0 ? new String[0] : rules.split(String.valueOf(RULE_SEPARATOR)),
+                                turnAngle);
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IllegalArgumentException("Malformed biomorph turn angle: " + line, ex);
+        }
+    }
+}
@@ -37,14 +37,13 @@ public class BiomorphFactory extends AbstractCandidateFactory<Biomorph> {
 Creates a new biomorph using the values genereated by the three generation functions.
  */
     public Biomorph generateRandomCandidate(Random rng) {
-        String axiom = generateAxiom();
-        String[] ruleList = generateRuleList();
-        int turnAngle = generateTurnAngle();
+        String axiom = generateAxiom(rng);
+        String[] ruleList = generateRuleList(rng);
+        int turnAngle = generateTurnAngle(rng);
         return new Biomorph(axiom, ruleList, turnAngle);
     }
 
-    public String generateAxiom() {
-        Random rng = new Random();
+    public String generateAxiom(Random rng) {
         int axiomSize = rng.nextInt(4) + 1; //axioms are 1-5 characters long
         String axiom = ""; //start with a null axiom
         for (int i = 0; i < axiomSize; i++) {
@@ -54,14 +53,12 @@ Creates a new biomorph using the values genereated by the three generation funct
         return axiom;
     }
 
-    public int generateTurnAngle() {
-        Random rng = new Random();
+    public int generateTurnAngle(Random rng) {
         int turnAngle = rng.nextInt(20) + 4; //turn angles can be 4-24 degrees to create realistic branching patterns
         return turnAngle;
     }
 
-    public String[] generateFComponents() { //generates the small substrings ("f+f+f" or "ff--g+h" for example) that are combined with bracket prefabs to create random rules.
-        Random rng = new Random();
+    public String[] generateFComponents(Random rng) { //generates the small substrings ("f+f+f" or "ff--g+h" for example) that are combined with bracket prefabs to create random rules.
         String[] fComponents = new String[100]; //100 unique components gives a high range of generative posibilities
         for (int i = 0; i < 99; i++){ //for each element in the array, generate a component and set that element equal to that component.
             int compSize = rng.nextInt(5) + 1; //each component is 1-6 characters long
@@ -86,9 +83,8 @@ Creates a new biomorph using the values genereated by the three generation funct
         return fComponents;
     }
 
-    public String[] generateBComponents() { //combines randomly generated fcomponents with bracket prefabs such as "[]" or "[[[]]]" to create the final components that can be randomized to generate rules
-        Random rng = new Random();
-        String[] fComponents = generateFComponents();
+    public String[] generateBComponents(Random rng) { //combines randomly generated fcomponents with bracket prefabs such as "[]" or "[[[]]]" to create the final components that can be randomized to generate rules
+        String[] fComponents = generateFComponents(rng);
         String[] bComponents = new String[]{fComponents[rng.nextInt(100)], //a single random fcomponent
                 "[" + fComponents[rng.nextInt(100)] + "]" + fComponents[rng.nextInt(100)], // [X][X] where X is equal to random fcomponent
                 fComponents[rng.nextInt(100)] + "[" + fComponents[rng.nextInt(100)], // X[X]
@@ -104,12 +100,11 @@ Creates a new biomorph using the values genereated by the three generation funct
     return bComponents;
     }
 
-    public String[] generateRuleList(){
-        Random rng = new Random();
+    public String[] generateRuleList(Random rng){
         int ruleListSize;
         ruleListSize = rng.nextInt(3) + 1; //rule lists are 1-4 rules long
         String[] ruleList = new String[ruleListSize];
-        String[] bComponents = generateBComponents();
+        String[] bComponents = generateBComponents(rng);
 
         for (int i = 0; i < ruleListSize; i++){ //generate a rule for each element in ruleList
             int ruleSize = rng.nextInt (3) + 1;
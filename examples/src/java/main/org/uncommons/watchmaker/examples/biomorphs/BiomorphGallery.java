@@ -0,0 +1,407 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import org.uncommons.util.concurrent.ConfigurableThreadFactory;
+
+/**
+ * <p>Headless, multi-threaded pipeline for rendering archived biomorph genomes to PNG
+ * files.  Each genome is derived, rasterised and encoded on a pool of worker threads
+ * and the encoded images are written using NIO file channels.  No Swing components
+ * are created so the gallery can run on machines without a display.</p>
+ *
+ * <p>Images can be written either as individual tiles (one file per genome) or as
+ * contact sheets (a grid of tiles per file).  The number of genomes being processed
+ * at any one time is bounded so that memory use does not grow with the size of the
+ * archive.</p>
+ *
+ * <p>Derivation chooses production rules at random, so each genome's derivation is
+ * seeded from the genome itself.  Rendering the same archive twice produces the same
+ * images.</p>
+ * @author Michael Forrest
+ */
+public class BiomorphGallery
+{
+    private static final String IMAGE_FORMAT = "png";
+
+    private final LSystemInterpreter interpreter;
+    private final BiomorphRasteriser rasteriser;
+    private final int threadCount;
+    private final int maxInFlight;
+
+    // Each worker thread re-uses one image buffer for all of the tiles that it draws.
+    private final ThreadLocal<BufferedImage> tileBuffers = new ThreadLocal<BufferedImage>()
+    {
+        @Override
+        protected BufferedImage initialValue()
+        {
+            return new BufferedImage(rasteriser.getWidth(), rasteriser.getHeight(), BufferedImage.TYPE_INT_RGB);
+        }
+    };
+
+
+    /**
+     * Creates a gallery that uses one worker thread per available processor.
+     * @param interpreter Derives and interprets each biomorph's L-system.
+     * @param rasteriser Draws the resulting geometry into tile images.
+     */
+    public BiomorphGallery(LSystemInterpreter interpreter, BiomorphRasteriser rasteriser)
+    {
+        this(interpreter,
+             rasteriser,
+             Runtime.getRuntime().availableProcessors(),
+             Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+
+    /**
+     * @param interpreter Derives and interprets each biomorph's L-system.
+     * @param rasteriser Draws the resulting geometry into tile images.
+     * @param threadCount The number of worker threads used for rendering and encoding.
+     * @param maxInFlight The maximum number of genomes that may be queued or in the process
+     * of being rendered at any one time.  This bounds the memory used by the pipeline.
+     */
+    public BiomorphGallery(LSystemInterpreter interpreter,
+                           BiomorphRasteriser rasteriser,
+                           int threadCount,
+                           int maxInFlight)
+    {
+        if (threadCount <= 0 || maxInFlight <= 0)
+        {
+            throw new IllegalArgumentException("Thread count and in-flight limit must be positive.");
+        }
+        this.interpreter = interpreter;
+        this.rasteriser = rasteriser;
+        this.threadCount = threadCount;
+        this.maxInFlight = maxInFlight;
+    }
+
+
+    /**
+     * Renders each genome to its own PNG file in the specified directory.  Files are
+     * named after the zero-based index of the genome in the list.
+     * @param genomes The biomorphs to render.
+     * @param outputDirectory The directory to write tiles to.  It is created if it
+     * does not exist.
+     * @throws IOException If any image cannot be encoded or written.
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     * for rendering to complete.
+     */
+    public void renderTiles(List<Biomorph> genomes, final File outputDirectory) throws IOException,
+                                                                                       InterruptedException
+    {
+        prepareDirectory(outputDirectory);
+        run(genomes, new TileSink()
+        {
+            public void accept(int index, BufferedImage tile) throws IOException
+            {
+                write(encode(tile), new File(outputDirectory, String.format("tile-%06d.png", index)));
+            }
+        });
+    }
+
+
+    /**
+     * Renders the genomes as a series of contact sheets, each containing a grid of
+     * tiles.  A sheet is encoded and written as soon as all of its tiles have been drawn.
+     * @param genomes The biomorphs to render.
+     * @param columns The number of tiles in each row of a sheet.
+     * @param rows The number of rows of tiles on each sheet.
+     * @param outputDirectory The directory to write sheets to.  It is created if it
+     * does not exist.
+     * @throws IOException If any sheet cannot be encoded or written.
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     * for rendering to complete.
+     */
+    public void renderContactSheets(List<Biomorph> genomes,
+                                    final int columns,
+                                    final int rows,
+                                    final File outputDirectory) throws IOException, InterruptedException
+    {
+        if (columns <= 0 || rows <= 0)
+        {
+            throw new IllegalArgumentException("Contact sheet dimensions must be positive.");
+        }
+        prepareDirectory(outputDirectory);
+        final int tilesPerSheet = columns * rows;
+        final int genomeCount = genomes.size();
+        final ConcurrentMap<Integer, ContactSheet> sheets = new ConcurrentHashMap<Integer, ContactSheet>();
+        run(genomes, new TileSink()
+        {
+            public void accept(int index, BufferedImage tile) throws IOException
+            {
+                int sheetIndex = index / tilesPerSheet;
+                ContactSheet sheet = sheets.get(sheetIndex);
+                if (sheet == null)
+                {
+                    int tileCount = Math.min(tilesPerSheet, genomeCount - sheetIndex * tilesPerSheet);
+                    ContactSheet newSheet = new ContactSheet(columns, (tileCount + columns - 1) / columns, tileCount);
+                    sheet = sheets.putIfAbsent(sheetIndex, newSheet);
+                    sheet = sheet == null ? newSheet : sheet;
+                }
+                if (sheet.add(index % tilesPerSheet, tile))
+                {
+                    sheets.remove(sheetIndex);
+                    write(encode(sheet.getImage()),
+                          new File(outputDirectory, String.format("sheet-%04d.png", sheetIndex)));
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Feeds the genomes through the worker pool, never allowing more than {@code maxInFlight}
+     * of them to be outstanding.  Blocks until all have been processed.
+     */
+    private void run(List<Biomorph> genomes, final TileSink sink) throws IOException, InterruptedException
+    {
+        ExecutorService workers = Executors.newFixedThreadPool(threadCount,
+                                                               new ConfigurableThreadFactory("BiomorphGallery",
+                                                                                             Thread.NORM_PRIORITY,
+                                                                                             true));
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        try
+        {
+            for (int i = 0; i < genomes.size() && failure.get() == null; i++)
+            {
+                final int index = i;
+                final Biomorph biomorph = genomes.get(i);
+                inFlight.acquire();
+                workers.execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            BufferedImage tile = tileBuffers.get();
+                            rasteriser.rasterise(interpreter.draw(biomorph), tile);
+                            sink.accept(index, tile);
+                        }
+                        catch (Exception ex)
+                        {
+                            failure.compareAndSet(null, ex);
+                        }
+                        finally
+                        {
+                            inFlight.release();
+                        }
+                    }
+                });
+            }
+            // Once all permits are available again, every submitted genome has been processed.
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        }
+        finally
+        {
+            workers.shutdownNow();
+        }
+        if (failure.get() != null)
+        {
+            throw new IOException("Failed to render biomorph gallery.", failure.get());
+        }
+    }
+
+
+    private static void prepareDirectory(File directory) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Could not create output directory " + directory);
+        }
+    }
+
+
+    private static byte[] encode(BufferedImage image) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(image.getWidth() * image.getHeight() / 8);
+        // Encoding to memory is much faster without ImageIO's temporary file cache.  The
+        // cache is bypassed for this stream only, rather than via ImageIO.setUseCache(),
+        // which would change the behaviour of every other ImageIO user in the JVM.
+        ImageOutputStream output = new MemoryCacheImageOutputStream(buffer);
+        try
+        {
+            if (!ImageIO.write(image, IMAGE_FORMAT, output))
+            {
+                throw new IOException("No image writer available for " + IMAGE_FORMAT);
+            }
+        }
+        finally
+        {
+            output.close();
+        }
+        return buffer.toByteArray();
+    }
+
+
+    private static void write(byte[] data, File file) throws IOException
+    {
+        FileOutputStream stream = new FileOutputStream(file);
+        try
+        {
+            FileChannel channel = stream.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+
+    /**
+     * Reads genomes, one per line in the format used by {@link BiomorphCodec}.  Blank
+     * lines and lines starting with '#' are ignored.
+     * @param file The archive of genomes.
+     * @return The decoded biomorphs in the order that they appear in the file.
+     * @throws IOException If the file cannot be read.
+     */
+    public static List<Biomorph> readGenomes(File file) throws IOException
+    {
+        List<Biomorph> genomes = new ArrayList<Biomorph>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try
+        {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                if (line.trim().length() > 0 && !line.startsWith("#"))
+                {
+                    genomes.add(BiomorphCodec.parse(line));
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return genomes;
+    }
+
+
+    /**
+     * Entry point for rendering an archive of genomes from the command line.
+     * @param args The genome file, the output directory, and optionally the tile
+     * size in pixels and the number of columns for contact sheets (if omitted, individual
+     * tiles are written).
+     * @throws Exception If the gallery cannot be rendered.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: BiomorphGallery <genome-file> <output-dir> [tile-size] [columns]");
+            System.exit(1);
+        }
+        System.setProperty("java.awt.headless", "true");
+        int tileSize = args.length > 2 ? Integer.parseInt(args[2]) : BiomorphRasteriser.REFERENCE_SIZE;
+        List<Biomorph> genomes = readGenomes(new File(args[0]));
+        BiomorphGallery gallery = new BiomorphGallery(new LSystemInterpreter(LSystemInterpreter.DEFAULT_GENERATIONS,
+                                                                             1000000),
+                                                      new BiomorphRasteriser(tileSize, tileSize));
+        long startTime = System.currentTimeMillis();
+        if (args.length > 3)
+        {
+            int columns = Integer.parseInt(args[3]);
+            gallery.renderContactSheets(genomes, columns, columns, new File(args[1]));
+        }
+        else
+        {
+            gallery.renderTiles(genomes, new File(args[1]));
+        }
+        System.out.println("Rendered " + genomes.size() + " biomorphs in "
+                           + (System.currentTimeMillis() - startTime) + "ms.");
+    }
+
+
+    /**
+     * Call-back that receives each rendered tile.  Invoked on worker threads.  The
+     * tile image is re-used once this method returns.
+     */
+    private interface TileSink
+    {
+        void accept(int index, BufferedImage tile) throws IOException;
+    }
+
+
+    /**
+     * A grid of tiles that is written out once every position has been filled.
+     */
+    private final class ContactSheet
+    {
+        private final BufferedImage image;
+        private final int columns;
+        private final AtomicInteger remaining;
+
+        ContactSheet(int columns, int rows, int tileCount)
+        {
+            this.image = new BufferedImage(columns * rasteriser.getWidth(),
+                                           rows * rasteriser.getHeight(),
+                                           BufferedImage.TYPE_INT_RGB);
+            this.columns = columns;
+            this.remaining = new AtomicInteger(tileCount);
+        }
+
+
+        /**
+         * Copies a tile into its position on the sheet.
+         * @return True if this was the last tile required to complete the sheet.
+         */
+        boolean add(int position, BufferedImage tile)
+        {
+            int x = (position % columns) * rasteriser.getWidth();
+            int y = (position / columns) * rasteriser.getHeight();
+            synchronized (image)
+            {
+                image.getRaster().setDataElements(x, y, tile.getRaster());
+            }
+            return remaining.decrementAndGet() == 0;
+        }
+
+
+        BufferedImage getImage()
+        {
+            return image;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws {@link TurtleGeometry} into off-screen images.  Unlike {@link SwingBiomorphRenderer}
+ * this does not create any Swing components and so works in headless environments.  The
+ * turtle's origin is placed at the centre of the image and the geometry is scaled so that
+ * an image of {@link #REFERENCE_SIZE} pixels looks the same as the Swing view.  Both draw
+ * each segment in the colour given by {@link TurtleGeometry#getColour(int)}.
+ * @author Michael Forrest
+ */
+public class BiomorphRasteriser
+{
+    /**
+     * The width and height of the Swing biomorph view, used as the reference for scaling.
+     */
+    public static final int REFERENCE_SIZE = 200;
+
+    private static final Color COLOR_K = Color.BLACK;
+    private static final Color COLOR_R = new Color(200, 0, 0);  //Deep Red
+    private static final Color COLOR_G = new Color(143, 188, 139);  //Sand Green
+    private static final Color COLOR_B = new Color(147, 112, 219); //Medium Purple
+    private static final Color COLOR_C = new Color(15, 82, 186); //Sapphire
+    private static final Color COLOR_O = new Color(255, 117, 24);//Pumpkin;
+
+    private final int width;
+    private final int height;
+    private final Color background;
+
+
+    /**
+     * Creates a rasteriser that draws on a white background, like the Swing view.
+     * @param width The width of the generated images in pixels.
+     * @param height The height of the generated images in pixels.
+     */
+    public BiomorphRasteriser(int width, int height)
+    {
+        this(width, height, Color.WHITE);
+    }
+
+
+    /**
+     * @param width The width of the generated images in pixels.
+     * @param height The height of the generated images in pixels.
+     * @param background The colour used to fill each image before drawing.
+     */
+    public BiomorphRasteriser(int width, int height, Color background)
+    {
+        if (width <= 0 || height <= 0)
+        {
+            throw new IllegalArgumentException("Image dimensions must be positive.");
+        }
+        this.width = width;
+        this.height = height;
+        this.background = background;
+    }
+
+
+    /**
+     * @param geometry The turtle geometry to draw.
+     * @return A new image containing the rendered geometry.
+     */
+    public BufferedImage rasterise(TurtleGeometry geometry)
+    {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        rasterise(geometry, image);
+        return image;
+    }
+
+
+    /**
+     * Draws the geometry into an existing image, replacing its contents.  Re-using
+     * images avoids allocating a new pixel buffer for every biomorph.
+     * @param geometry The turtle geometry to draw.
+     * @param image The image to draw into.  Must have the dimensions that this rasteriser
+     * was configured with.
+     */
+    public void rasterise(TurtleGeometry geometry, BufferedImage image)
+    {
+        Graphics2D graphics = image.createGraphics();
+        try
+        {
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setColor(background);
+            graphics.fillRect(0, 0, width, height);
+            graphics.translate(width / 2d, height / 2d);
+            double scale = Math.min(width, height) / (double) REFERENCE_SIZE;
+            graphics.scale(scale, scale);
+            draw(geometry, graphics);
+        }
+        finally
+        {
+            graphics.dispose();
+        }
+    }
+
+
+    /**
+     * Draws each segment of the geometry in its own colour.  The turtle's origin is
+     * drawn at the origin of the graphics context.  This is shared with the Swing
+     * view so that both show biomorphs in the same way.
+     * @param geometry The turtle geometry to draw.
+     * @param graphics The graphics context to draw with.
+     */
+    static void draw(TurtleGeometry geometry, Graphics2D graphics)
+    {
+        Line2D.Float line = new Line2D.Float();
+        for (int i = 0; i < geometry.getSegmentCount(); i++)
+        {
+            graphics.setColor(getColour(geometry.getColour(i)));
+            line.setLine(geometry.getStartX(i), geometry.getStartY(i), geometry.getEndX(i), geometry.getEndY(i));
+            graphics.draw(line);
+        }
+    }
+
+
+    /**
+     * @param colour A colour code from {@link TurtleGeometry#getColour(int)}.
+     * @return The colour used to draw segments with that code.
+     */
+    static Color getColour(char colour)
+    {
+        switch (colour)
+        {
+            case 'R': return COLOR_R;
+            case 'G': return COLOR_G;
+            case 'B': return COLOR_B;
+            case 'C': return COLOR_C;
+            case 'O': return COLOR_O;
+            default: return COLOR_K;
+        }
+    }
+
+
+    /**
+     * @return The width of the generated images in pixels.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+
+    /**
+     * @return The height of the generated images in pixels.
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+}
@@ -0,0 +1,80 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+/**
+ * Rewards biomorphs whose branches spread out away from each other.  The fitness is the
+ * radius of gyration of the occupied cells (the root-mean-square distance of the cells
+ * from their centroid), in the turtle's units.  Because cells rather than segments are
+ * measured, retracing the same branch many times does not change the score.
+ * @author Michael Forrest
+ */
+public class BranchSpreadEvaluator extends GeometricFitnessEvaluator
+{
+    /**
+     * @param interpreter Derives and interprets the candidates.
+     * @param cellSize The size of the cells whose spread is measured.
+     */
+    public BranchSpreadEvaluator(LSystemInterpreter interpreter, double cellSize)
+    {
+        super(interpreter, cellSize);
+    }
+
+
+    /**
+     * Measures spread at the resolution of a single turtle step.
+     */
+    public BranchSpreadEvaluator()
+    {
+        super();
+    }
+
+
+    @Override
+    protected double getFitness(SpatialHashGrid grid)
+    {
+        int occupied = grid.getOccupiedCellCount();
+        if (occupied == 0)
+        {
+            return 0;
+        }
+        double sumX = 0;
+        double sumY = 0;
+        double sumSquares = 0;
+        for (int cell = 0; cell < occupied; cell++)
+        {
+            double x = grid.getCellX(cell);
+            double y = grid.getCellY(cell);
+            sumX += x;
+            sumY += y;
+            sumSquares += x * x + y * y;
+        }
+        double meanX = sumX / occupied;
+        double meanY = sumY / occupied;
+        double variance = sumSquares / occupied - (meanX * meanX + meanY * meanY);
+        return Math.sqrt(Math.max(0, variance)) * grid.getCellSize();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * Wider spread is better.
+     */
+    public boolean isNatural()
+    {
+        return true;
+    }
+}
@@ -0,0 +1,86 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+/**
+ * Rewards biomorphs that cover as much of the display area as possible.  The fitness
+ * is the proportion of the cells of a square canvas, centred on the turtle's origin,
+ * that are crossed by at least one segment.  Drawing over the same area repeatedly
+ * earns nothing, so dense scribbles score lower than open, spreading shapes of
+ * the same length.
+ * @author Michael Forrest
+ */
+public class CanopyCoverageEvaluator extends GeometricFitnessEvaluator
+{
+    private final double canvasSize;
+
+    /**
+     * @param interpreter Derives and interprets the candidates.
+     * @param cellSize The size of the cells used to measure coverage.
+     * @param canvasSize The width and height of the canvas, in the turtle's units.
+     */
+    public CanopyCoverageEvaluator(LSystemInterpreter interpreter,
+                                   double cellSize,
+                                   double canvasSize)
+    {
+        super(interpreter, cellSize);
+        if (canvasSize < cellSize)
+        {
+            throw new IllegalArgumentException("Canvas must be at least one cell wide.");
+        }
+        this.canvasSize = canvasSize;
+    }
+
+
+    /**
+     * Measures coverage of the area displayed by a {@link BiomorphRasteriser}.
+     */
+    public CanopyCoverageEvaluator()
+    {
+        super();
+        this.canvasSize = BiomorphRasteriser.REFERENCE_SIZE;
+    }
+
+
+    @Override
+    protected double getFitness(SpatialHashGrid grid)
+    {
+        int min = grid.toCellCoordinate(-canvasSize / 2);
+        int max = grid.toCellCoordinate(canvasSize / 2);
+        int covered = 0;
+        for (int cell = 0; cell < grid.getOccupiedCellCount(); cell++)
+        {
+            int x = grid.getCellX(cell);
+            int y = grid.getCellY(cell);
+            if (x >= min && x <= max && y >= min && y <= max)
+            {
+                ++covered;
+            }
+        }
+        double side = max - min + 1;
+        return covered / (side * side);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * Greater coverage is better.
+     */
+    public boolean isNatural()
+    {
+        return true;
+    }
+}
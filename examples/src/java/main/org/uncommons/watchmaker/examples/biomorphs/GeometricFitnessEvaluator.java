@@ -0,0 +1,82 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+import java.util.List;
+import org.uncommons.watchmaker.framework.FitnessEvaluator;
+
+/**
+ * <p>Base class for fitness evaluators that score a biomorph automatically by measuring
+ * the shape that it draws, so that biomorphs can be evolved without a human choosing
+ * between them.  Each candidate is derived and interpreted (using a seed taken from the
+ * genome, so that the score is repeatable) and the resulting segments are indexed in a
+ * {@link SpatialHashGrid}.  Sub-classes then compute their measure from the grid.</p>
+ *
+ * <p>Working from the grid rather than from the raw segment list means that measures that
+ * would otherwise compare every segment with every other segment can be computed in close
+ * to linear time, which matters for deep derivations and large populations.</p>
+ *
+ * <p>Evaluators do not retain any state between calls and so are safe for concurrent use.</p>
+ * @author Michael Forrest
+ */
+public abstract class GeometricFitnessEvaluator implements FitnessEvaluator<Biomorph>
+{
+    private final LSystemInterpreter interpreter;
+    private final double cellSize;
+
+    /**
+     * @param interpreter Derives and interprets the candidates.  Its maximum command length
+     * bounds the cost of evaluating any single candidate.
+     * @param cellSize The size of the cells of the spatial index, in the turtle's units.
+     * This is also the resolution at which area-based measures are computed.
+     */
+    protected GeometricFitnessEvaluator(LSystemInterpreter interpreter, double cellSize)
+    {
+        if (cellSize <= 0)
+        {
+            throw new IllegalArgumentException("Cell size must be positive.");
+        }
+        this.interpreter = interpreter;
+        this.cellSize = cellSize;
+    }
+
+
+    /**
+     * Uses a default interpreter and cells that are the same size as a single turtle step.
+     */
+    protected GeometricFitnessEvaluator()
+    {
+        this(new LSystemInterpreter(), LSystemInterpreter.STEP_LENGTH);
+    }
+
+
+    /**
+     * Draws the candidate, indexes the geometry and delegates to {@link #getFitness(SpatialHashGrid)}.
+     * The population is ignored.
+     */
+    public double getFitness(Biomorph candidate, List<? extends Biomorph> population)
+    {
+        return getFitness(new SpatialHashGrid(interpreter.draw(candidate), cellSize));
+    }
+
+
+    /**
+     * Calculates the fitness of a candidate from the spatial index of its geometry.
+     * @param grid The indexed geometry.  This may contain no segments at all.
+     * @return A non-negative fitness score.
+     */
+    protected abstract double getFitness(SpatialHashGrid grid);
+}
@@ -0,0 +1,246 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+import java.util.Random;
+
+/**
+ * Derives the command strings of biomorph L-systems and interprets them as turtle
+ * geometry.  This class has no dependency on Swing or AWT display resources so it
+ * can be used for headless rendering and automatic fitness evaluation, as well as by
+ * {@link SwingBiomorphRenderer}.
+ * @author Michael Forrest
+ */
+public final class LSystemInterpreter
+{
+    /**
+     * The number of times that the production rules are applied by default.
+     */
+    public static final int DEFAULT_GENERATIONS = 5;
+
+    /**
+     * The distance that the turtle moves for each 'f', 'g' or 'h' command.
+     */
+    public static final double STEP_LENGTH = 1.8;
+
+    /**
+     * Initial heading of the turtle (in radians).
+     */
+    private static final double INITIAL_HEADING = -190.3;
+
+    private final int generations;
+    private final int maxLength;
+
+
+    /**
+     * Creates an interpreter that applies the production rules the default number
+     * of times and does not limit the length of derived strings.
+     */
+    public LSystemInterpreter()
+    {
+        this(DEFAULT_GENERATIONS, Integer.MAX_VALUE);
+    }
+
+
+    /**
+     * @param generations How many times the production rules are applied to the axiom.
+     * @param maxLength The maximum length of a derived command string.  Derivation stops
+     * early (with the string truncated to this length) if a generation would exceed it.  This
+     * prevents "exploding" L-systems from exhausting memory.
+     */
+    public LSystemInterpreter(int generations, int maxLength)
+    {
+        if (generations < 0)
+        {
+            throw new IllegalArgumentException("Generations must be non-negative.");
+        }
+        if (maxLength <= 0)
+        {
+            throw new IllegalArgumentException("Maximum length must be positive.");
+        }
+        this.generations = generations;
+        this.maxLength = maxLength;
+    }
+
+
+    /**
+     * Applies the biomorph's production rules to its axiom.  For each symbol a rule is
+     * chosen at random and, if its left-hand side matches the symbol, the symbol is replaced
+     * by the rule's right-hand side.
+     * @param biomorph The biomorph whose L-system is derived.
+     * @param rng The source of randomness used to choose rules.  Supplying an RNG with
+     * a fixed seed makes the derivation repeatable.
+     * @return The derived command string.
+     */
+    public String derive(Biomorph biomorph, Random rng)
+    {
+        String[] rules = biomorph.getRuleList();
+        CharSequence current = biomorph.getAxiom();
+        if (rules.length == 0)
+        {
+            return current.toString();
+        }
+        int ruleToFollow = 0;
+        for (int n = 0; n < generations; n++)
+        {
+            StringBuilder next = new StringBuilder(Math.min(maxLength, current.length() * 4));
+            for (int i = 0; i < current.length(); i++)
+            {
+                char c = current.charAt(i);
+                int numberOfRulesToFollow = rng.nextInt(rules.length + 1);
+                for (int counter = 0; counter < numberOfRulesToFollow; counter++)
+                {
+                    ruleToFollow = rng.nextInt(rules.length);
+                }
+                String rule = rules[ruleToFollow];
+                if (rule.length() >= 2 && c == rule.charAt(0))
+                {
+                    next.append(rule, 2, rule.length());
+                }
+                else
+                {
+                    next.append(c);
+                }
+                if (next.length() >= maxLength)
+                {
+                    next.setLength(maxLength);
+                    return next.toString();
+                }
+            }
+            current = next;
+        }
+        return current.toString();
+    }
+
+
+    /**
+     * Walks a turtle over the specified command string, recording a line segment for
+     * each 'f' or 'h' command ('g' moves the turtle without drawing).  The turtle starts
+     * at the origin.  Each segment is tagged with the most recent colour command ('K', 'R',
+     * 'G', 'B', 'C' or 'O'), which is 'K' (black) until a colour is chosen.
+     * @param commands A derived command string.
+     * @param turnAngle The angle (in degrees) that the turtle turns for each '+' or '-'.
+     * @return The geometry drawn by the turtle.
+     */
+    public TurtleGeometry interpret(CharSequence commands, int turnAngle)
+    {
+        double angle = Math.toRadians(turnAngle);
+        double x = 0;
+        double y = 0;
+        double heading = INITIAL_HEADING;
+        float[] coordinates = new float[64];
+        char[] colours = new char[16];
+        char colour = TurtleGeometry.DEFAULT_COLOUR;
+        int segments = 0;
+        double[] stack = new double[16];
+        int depth = 0;
+        for (int i = 0; i < commands.length(); i++)
+        {
+            char c = commands.charAt(i);
+            switch (c)
+            {
+                case 'f':
+                case 'g':
+                case 'h':
+                {
+                    double nextX = x + STEP_LENGTH * Math.cos(heading);
+                    double nextY = y + STEP_LENGTH * Math.sin(heading);
+                    if (c != 'g')
+                    {
+                        if ((segments + 1) * 4 > coordinates.length)
+                        {
+                            float[] grown = new float[coordinates.length * 2];
+                            System.arraycopy(coordinates, 0, grown, 0, coordinates.length);
+                            coordinates = grown;
+                            char[] grownColours = new char[colours.length * 2];
+                            System.arraycopy(colours, 0, grownColours, 0, colours.length);
+                            colours = grownColours;
+                        }
+                        int offset = segments * 4;
+                        coordinates[offset] = (float) x;
+                        coordinates[offset + 1] = (float) y;
+                        coordinates[offset + 2] = (float) nextX;
+                        coordinates[offset + 3] = (float) nextY;
+                        colours[segments] = colour;
+                        ++segments;
+                    }
+                    x = nextX;
+                    y = nextY;
+                    break;
+                }
+                case '+': heading += angle; break;
+                case '-': heading -= angle; break;
+                case '[':
+                {
+                    // Only the position is saved and restored, not the heading.
+                    if ((depth + 1) * 2 > stack.length)
+                    {
+                        double[] grown = new double[stack.length * 2];
+                        System.arraycopy(stack, 0, grown, 0, stack.length);
+                        stack = grown;
+                    }
+                    stack[depth * 2] = x;
+                    stack[depth * 2 + 1] = y;
+                    ++depth;
+                    break;
+                }
+                case ']':
+                {
+                    if (depth > 0)
+                    {
+                        --depth;
+                        x = stack[depth * 2];
+                        y = stack[depth * 2 + 1];
+                    }
+                    break;
+                }
+                case 'K':
+                case 'R':
+                case 'G':
+                case 'B':
+                case 'C':
+                case 'O': colour = c; break;
+                default: break; // Other symbols have no effect.
+            }
+        }
+        return new TurtleGeometry(coordinates, colours, segments);
+    }
+
+
+    /**
+     * Convenience method that derives a biomorph's command string and interprets it.
+     * @param biomorph The biomorph to derive and interpret.
+     * @param rng The source of randomness used to choose production rules.
+     * @return The geometry drawn by the turtle.
+     */
+    public TurtleGeometry draw(Biomorph biomorph, Random rng)
+    {
+        return interpret(derive(biomorph, rng), biomorph.getTurnAngle());
+    }
+
+
+    /**
+     * Derives and interprets a biomorph using a random seed taken from the genome itself,
+     * so that the same genome always produces the same geometry.  This is what should be
+     * used when the geometry is evaluated or rendered outside of the interactive display.
+     * @param biomorph The biomorph to derive and interpret.
+     * @return The geometry drawn by the turtle.
+     */
+    public TurtleGeometry draw(Biomorph biomorph)
+    {
+        return draw(biomorph, new Random(BiomorphCodec.format(biomorph).hashCode()));
+    }
+}
@@ -71,15 +71,14 @@ public class RandomBiomorphMutation implements EvolutionaryOperator<Biomorph>
     private Biomorph mutateBiomorph(Biomorph biomorph, Random rng) //given a biomorph, mutates the axiom, rule list and turn angle
     {
 
-        String axiom = mutateAxiom(biomorph.getAxiom());
-        String[] ruleList =  mutateRuleList(biomorph.getRuleList());
-        int turnAngle = mutateTurnAngle(biomorph.getTurnAngle());
+        String axiom = mutateAxiom(biomorph.getAxiom(), rng);
+        String[] ruleList =  mutateRuleList(biomorph.getRuleList(), rng);
+        int turnAngle = mutateTurnAngle(biomorph.getTurnAngle(), rng);
 
         return new Biomorph(axiom, ruleList, turnAngle);
     }
 
-    public String mutateAxiom(String axiom){
-        Random rng = new Random();
+    public String mutateAxiom(String axiom, Random rng){
         if (mutationProbability.nextEvent(rng)){ //Using the probability provided by BiomorphApplet, semi-randomly decides whether or not to modify the axiom
             int replacementPosition = rng.nextInt(axiom.length()); //randomly decides which character to replace
             if (replacementPosition == 0) {
@@ -101,10 +100,9 @@ public class RandomBiomorphMutation implements EvolutionaryOperator<Biomorph>
         return axiom;
     }
 
-    public String[] mutateRuleList(String[] ruleList){
-        String[] bComponents = generateBComponents();
+    public String[] mutateRuleList(String[] ruleList, Random rng){
+        String[] bComponents = generateBComponents(rng);
         int numRules = Array.getLength(ruleList);
-        Random rng = new Random();
         boolean noReplacements = false;
         for (int i = 0; i < numRules; i++){ //walks through the rule list, mutating each rule by deleting several randomly selected components and then adding new ones
             double numBracketSets = 0;
@@ -132,7 +130,8 @@ public class RandomBiomorphMutation implements EvolutionaryOperator<Biomorph>
                     int maxSearches = 100; //occasionally strings do not have an even number of brackets and get caught in this loop, therefore after 100 fruitless searches the program will exit the loop and make no replacements
                     numSearches++;
                     if (numSearches < maxSearches) {
-                        if (bracket1Found && ((pointerLocation == (ruleList[i].length() - 1)) || ((pointerLocation == (0))))) { //if it has found only one half of a bracket set and the point is either at the end or the beginning,
+                        if ((bracket1Found && ((pointerLocation == (ruleList[i].length() - 1)) || ((pointerLocation == (0)))))
+                            || pointerLocation < 0 || pointerLocation >= ruleList[i].length()) { //if it has found only one half of a bracket set and the point is either at the end or the beginning (or has walked off either end),
                             pointerLocation = rng.nextInt(ruleList[i].length()); // generate a new random pointer location
                             direction = rng.nextBoolean(); //and direction
                             bracket1Found = false;
@@ -241,8 +240,7 @@ public class RandomBiomorphMutation implements EvolutionaryOperator<Biomorph>
 
     }
 
-    public int mutateTurnAngle(int turnAngle){
-        Random rng = new Random();
+    public int mutateTurnAngle(int turnAngle, Random rng){
         int angleChange = rng.nextInt(5);
         boolean angleDirection = rng.nextBoolean(); // true = +, false = -
         if (mutationProbability.nextEvent(rng)){
@@ -256,8 +254,7 @@ public class RandomBiomorphMutation implements EvolutionaryOperator<Biomorph>
         return turnAngle;
     }
 
-    public String[] generateFComponents() { //generates the small substrings ("f+f+f" or "ff--g+h" for example) that are combined with bracket prefabs to create random rules.
-        Random rng = new Random();
+    public String[] generateFComponents(Random rng) { //generates the small substrings ("f+f+f" or "ff--g+h" for example) that are combined with bracket prefabs to create random rules.
         String[] fComponents = new String[100]; //100 unique components gives a high range of generative posibilities
         for (int i = 0; i < 99; i++){ //for each element in the array, generate a component and set that element equal to that component.
             int compSize = rng.nextInt(5) + 1; //each component is 1-6 characters long
@@ -282,9 +279,8 @@ public class RandomBiomorphMutation implements EvolutionaryOperator<Biomorph>
         return fComponents;
     }
 
-    public String[] generateBComponents() { //combines randomly generated fcomponents with bracket prefabs such as "[]" or "[[[]]]" to create the final components that can be randomized to generate rules
-        Random rng = new Random();
-        String[] fComponents = generateFComponents();
+    public String[] generateBComponents(Random rng) { //combines randomly generated fcomponents with bracket prefabs such as "[]" or "[[[]]]" to create the final components that can be randomized to generate rules
+        String[] fComponents = generateFComponents(rng);
         String[] bComponents = new String[]{fComponents[rng.nextInt(100)], //a single random fcomponent
                 "[" + fComponents[rng.nextInt(100)] + "]" + fComponents[rng.nextInt(100)], // [X][X] where X is equal to random fcomponent
                 fComponents[rng.nextInt(100)] + "[" + fComponents[rng.nextInt(100)], // X[X]
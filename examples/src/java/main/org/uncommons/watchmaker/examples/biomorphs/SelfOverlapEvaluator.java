@@ -0,0 +1,248 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * <p>Penalises biomorphs whose branches cross or retrace each other.  The fitness is the
+ * number of overlapping pairs of segments divided by the number of segments, so lower
+ * scores are better and a biomorph that never crosses itself scores zero.  Segments that
+ * merely meet end-to-end (as consecutive turtle moves and branch points do) are not
+ * counted as overlapping.</p>
+ *
+ * <p>Only segments that share a cell of the spatial index are compared.  A pair that
+ * shares several cells is counted only in the cell that contains the point at which the
+ * segments meet, so each overlap is counted once.  Branches that are drawn many times over
+ * (which is common when the same production fires repeatedly inside brackets) are grouped
+ * together first, so that a heavily retraced cell costs time proportional to the number of
+ * distinct segments that pass through it rather than to the square of its total.</p>
+ * @author Michael Forrest
+ */
+public class SelfOverlapEvaluator extends GeometricFitnessEvaluator
+{
+    private static final double EPSILON = 1e-6;
+    // Segments whose end points agree to within this fraction of a cell are treated as the same segment.
+    private static final double QUANTUM = 1e-3;
+
+    /**
+     * @param interpreter Derives and interprets the candidates.
+     * @param cellSize The size of the cells of the spatial index.
+     */
+    public SelfOverlapEvaluator(LSystemInterpreter interpreter, double cellSize)
+    {
+        super(interpreter, cellSize);
+    }
+
+
+    /**
+     * Uses cells that are the same size as a single turtle step.
+     */
+    public SelfOverlapEvaluator()
+    {
+        super();
+    }
+
+
+    @Override
+    protected double getFitness(SpatialHashGrid grid)
+    {
+        final TurtleGeometry geometry = grid.getGeometry();
+        if (geometry.getSegmentCount() == 0)
+        {
+            return 0;
+        }
+        final int[] quantised = quantise(geometry, grid.getCellSize() * QUANTUM);
+        Comparator<Integer> byPosition = new Comparator<Integer>()
+        {
+            public int compare(Integer a, Integer b)
+            {
+                for (int i = 0; i < 4; i++)
+                {
+                    int difference = Integer.compare(quantised[a * 4 + i], quantised[b * 4 + i]);
+                    if (difference != 0)
+                    {
+                        return difference;
+                    }
+                }
+                return 0;
+            }
+        };
+
+        double[] point = new double[2];
+        long overlaps = 0;
+        Integer[] segments = new Integer[0];
+        int[] groupStarts = new int[0];
+        for (int cell = 0; cell < grid.getOccupiedCellCount(); cell++)
+        {
+            int count = grid.getSegmentCount(cell);
+            if (count < 2)
+            {
+                continue;
+            }
+            if (segments.length < count)
+            {
+                segments = new Integer[count * 2];
+                groupStarts = new int[count * 2 + 1];
+            }
+            for (int i = 0; i < count; i++)
+            {
+                segments[i] = grid.getSegment(cell, i);
+            }
+            // Group together segments that coincide (branches that are drawn more than once)
+            // so that each distinct segment is only tested once against each other one.
+            Arrays.sort(segments, 0, count, byPosition);
+            int groups = 0;
+            for (int i = 0; i < count; i++)
+            {
+                if (i == 0 || byPosition.compare(segments[i - 1], segments[i]) != 0)
+                {
+                    groupStarts[groups++] = i;
+                }
+            }
+            groupStarts[groups] = count;
+
+            for (int i = 0; i < groups; i++)
+            {
+                int first = segments[groupStarts[i]];
+                long firstSize = groupStarts[i + 1] - groupStarts[i];
+                if (firstSize > 1)
+                {
+                    point[0] = (geometry.getStartX(first) + geometry.getEndX(first)) / 2;
+                    point[1] = (geometry.getStartY(first) + geometry.getEndY(first)) / 2;
+                    if (inCell(grid, cell, point))
+                    {
+                        overlaps += firstSize * (firstSize - 1) / 2;
+                    }
+                }
+                for (int j = i + 1; j < groups; j++)
+                {
+                    if (overlap(geometry, first, segments[groupStarts[j]], point) && inCell(grid, cell, point))
+                    {
+                        overlaps += firstSize * (groupStarts[j + 1] - groupStarts[j]);
+                    }
+                }
+            }
+        }
+        return overlaps / (double) geometry.getSegmentCount();
+    }
+
+
+    /**
+     * Rounds the end points of each segment to a fine lattice, with the end points of each
+     * segment in a consistent order, so that coinciding segments can be identified exactly.
+     */
+    private static int[] quantise(TurtleGeometry geometry, double resolution)
+    {
+        int[] quantised = new int[geometry.getSegmentCount() * 4];
+        for (int i = 0; i < geometry.getSegmentCount(); i++)
+        {
+            int startX = (int) Math.round(geometry.getStartX(i) / resolution);
+            int startY = (int) Math.round(geometry.getStartY(i) / resolution);
+            int endX = (int) Math.round(geometry.getEndX(i) / resolution);
+            int endY = (int) Math.round(geometry.getEndY(i) / resolution);
+            boolean swap = startX > endX || (startX == endX && startY > endY);
+            quantised[i * 4] = swap ? endX : startX;
+            quantised[i * 4 + 1] = swap ? endY : startY;
+            quantised[i * 4 + 2] = swap ? startX : endX;
+            quantised[i * 4 + 3] = swap ? startY : endY;
+        }
+        return quantised;
+    }
+
+
+    private static boolean inCell(SpatialHashGrid grid, int cell, double[] point)
+    {
+        return grid.toCellCoordinate(point[0]) == grid.getCellX(cell)
+            && grid.toCellCoordinate(point[1]) == grid.getCellY(cell);
+    }
+
+
+    /**
+     * Determines whether two segments cross or lie on top of each other.
+     * @param point Set to a point common to both segments if they overlap.
+     * @return True if the segments overlap, false if they are disjoint or only
+     * touch at their end points.
+     */
+    private static boolean overlap(TurtleGeometry geometry, int a, int b, double[] point)
+    {
+        double x1 = geometry.getStartX(a);
+        double y1 = geometry.getStartY(a);
+        double dx1 = geometry.getEndX(a) - x1;
+        double dy1 = geometry.getEndY(a) - y1;
+        double x2 = geometry.getStartX(b);
+        double y2 = geometry.getStartY(b);
+        double dx2 = geometry.getEndX(b) - x2;
+        double dy2 = geometry.getEndY(b) - y2;
+        double offsetX = x2 - x1;
+        double offsetY = y2 - y1;
+        double length1 = Math.hypot(dx1, dy1);
+        double length2 = Math.hypot(dx2, dy2);
+
+        double denominator = dx1 * dy2 - dy1 * dx2;
+        if (Math.abs(denominator) > EPSILON * length1 * length2)
+        {
+            // Not parallel, so the lines meet at a single point.
+            double t = (offsetX * dy2 - offsetY * dx2) / denominator;
+            double u = (offsetX * dy1 - offsetY * dx1) / denominator;
+            if (t < -EPSILON || t > 1 + EPSILON || u < -EPSILON || u > 1 + EPSILON)
+            {
+                return false;
+            }
+            boolean endOfA = t < EPSILON || t > 1 - EPSILON;
+            boolean endOfB = u < EPSILON || u > 1 - EPSILON;
+            if (endOfA && endOfB)
+            {
+                return false; // Joined end-to-end.
+            }
+            point[0] = x1 + t * dx1;
+            point[1] = y1 + t * dy1;
+            return true;
+        }
+        else if (Math.abs(offsetX * dy1 - offsetY * dx1) > EPSILON * length1)
+        {
+            return false; // Parallel but not collinear.
+        }
+        else
+        {
+            // Collinear, so check whether the projections onto the first segment overlap.
+            double squaredLength = length1 * length1;
+            double s1 = (offsetX * dx1 + offsetY * dy1) / squaredLength;
+            double s2 = ((offsetX + dx2) * dx1 + (offsetY + dy2) * dy1) / squaredLength;
+            double low = Math.max(0, Math.min(s1, s2));
+            double high = Math.min(1, Math.max(s1, s2));
+            if (high - low <= EPSILON)
+            {
+                return false;
+            }
+            double middle = (low + high) / 2;
+            point[0] = x1 + middle * dx1;
+            point[1] = y1 + middle * dy1;
+            return true;
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * Fewer overlaps are better.
+     */
+    public boolean isNatural()
+    {
+        return false;
+    }
+}
@@ -0,0 +1,346 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+import java.util.Arrays;
+
+/**
+ * <p>A uniform-grid spatial hash of the line segments in a {@link TurtleGeometry}.  The
+ * plane is divided into square cells of a fixed size and each segment is registered with
+ * every cell that it passes through.  Only occupied cells are stored (in an open-addressing
+ * hash table keyed on cell coordinates) so the grid's memory use is proportional to the
+ * length of the geometry rather than to its extent.</p>
+ *
+ * <p>Building the grid is linear in the number of segments.  Queries that only need to
+ * compare segments that are close to each other (such as counting intersections) can then
+ * be answered by examining each cell in turn rather than every pair of segments.</p>
+ *
+ * <p>Occupied cells are identified by a dense index (from zero to
+ * {@code getOccupiedCellCount() - 1}) in no particular order.</p>
+ * @author Michael Forrest
+ */
+public final class SpatialHashGrid
+{
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final TurtleGeometry geometry;
+    private final double cellSize;
+
+    // Open-addressing table mapping packed cell coordinates to dense cell indices.
+    private long[] keys;
+    private int[] slots;
+    private int occupiedCells = 0;
+
+    // Per-cell data, indexed by dense cell index.
+    private int[] cellX;
+    private int[] cellY;
+    private int[] segmentOffsets; // Start of each cell's entries in segmentIndices (plus one extra end marker).
+    private int[] segmentIndices;
+
+
+    /**
+     * @param geometry The turtle geometry to index.
+     * @param cellSize The width and height of each grid cell.  Cells that are roughly the
+     * same size as the segments give the best performance.
+     */
+    public SpatialHashGrid(TurtleGeometry geometry, double cellSize)
+    {
+        if (cellSize <= 0)
+        {
+            throw new IllegalArgumentException("Cell size must be positive.");
+        }
+        this.geometry = geometry;
+        this.cellSize = cellSize;
+        int capacity = Integer.highestOneBit(Math.max(16, geometry.getSegmentCount() * 4) - 1) << 1;
+        this.keys = new long[capacity];
+        this.slots = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        this.cellX = new int[capacity / 2];
+        this.cellY = new int[capacity / 2];
+        int[] counts = new int[capacity / 2];
+
+        // First pass: find the occupied cells and count the segments in each.
+        int entries = 0;
+        int[] cells = new int[8];
+        for (int i = 0; i < geometry.getSegmentCount(); i++)
+        {
+            int n = traverse(i, cells);
+            if (n > cells.length)
+            {
+                cells = new int[n * 2];
+                traverse(i, cells);
+            }
+            for (int j = 0; j < n; j += 2)
+            {
+                int cell = findOrInsert(cells[j], cells[j + 1]);
+                if (cell >= counts.length)
+                {
+                    counts = grow(counts, cellX.length);
+                }
+                ++counts[cell];
+                ++entries;
+            }
+        }
+
+        // Second pass: record the segments in each cell (counting sort by cell).
+        segmentOffsets = new int[occupiedCells + 1];
+        for (int i = 0; i < occupiedCells; i++)
+        {
+            segmentOffsets[i + 1] = segmentOffsets[i] + counts[i];
+        }
+        int[] next = new int[occupiedCells];
+        System.arraycopy(segmentOffsets, 0, next, 0, occupiedCells);
+        segmentIndices = new int[entries];
+        for (int i = 0; i < geometry.getSegmentCount(); i++)
+        {
+            int n = traverse(i, cells);
+            for (int j = 0; j < n; j += 2)
+            {
+                int cell = slots[find(cells[j], cells[j + 1])];
+                segmentIndices[next[cell]++] = i;
+            }
+        }
+    }
+
+
+    /**
+     * Finds the cells that a segment passes through by stepping along it one cell
+     * boundary at a time.
+     * @param segment The index of the segment.
+     * @param cells Buffer for the x and y coordinates of the visited cells.
+     * @return The number of values required (twice the number of cells).  If this is greater
+     * than the length of the buffer, the buffer contents are incomplete.
+     */
+    private int traverse(int segment, int[] cells)
+    {
+        double x1 = geometry.getStartX(segment) / cellSize;
+        double y1 = geometry.getStartY(segment) / cellSize;
+        double x2 = geometry.getEndX(segment) / cellSize;
+        double y2 = geometry.getEndY(segment) / cellSize;
+        int x = (int) Math.floor(x1);
+        int y = (int) Math.floor(y1);
+        int endX = (int) Math.floor(x2);
+        int endY = (int) Math.floor(y2);
+        int stepX = x2 > x1 ? 1 : -1;
+        int stepY = y2 > y1 ? 1 : -1;
+        double dx = Math.abs(x2 - x1);
+        double dy = Math.abs(y2 - y1);
+        // Parametric distance along the segment to the next vertical and horizontal cell boundaries.
+        double tMaxX = dx == 0 ? Double.POSITIVE_INFINITY : (stepX > 0 ? x + 1 - x1 : x1 - x) / dx;
+        double tMaxY = dy == 0 ? Double.POSITIVE_INFINITY : (stepY > 0 ? y + 1 - y1 : y1 - y) / dy;
+        double tDeltaX = dx == 0 ? Double.POSITIVE_INFINITY : 1 / dx;
+        double tDeltaY = dy == 0 ? Double.POSITIVE_INFINITY : 1 / dy;
+        int count = 0;
+        int limit = Math.abs(endX - x) + Math.abs(endY - y) + 1;
+        for (int i = 0; i < limit; i++)
+        {
+            if (count + 2 <= cells.length)
+            {
+                cells[count] = x;
+                cells[count + 1] = y;
+            }
+            count += 2;
+            if (tMaxX < tMaxY)
+            {
+                tMaxX += tDeltaX;
+                x += stepX;
+            }
+            else
+            {
+                tMaxY += tDeltaY;
+                y += stepY;
+            }
+        }
+        return count;
+    }
+
+
+    private static long pack(int x, int y)
+    {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+
+    private static int hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+
+    /**
+     * @return The table position holding the specified cell, or the empty position where
+     * it would be inserted.
+     */
+    private int find(int x, int y)
+    {
+        long key = pack(x, y);
+        int mask = keys.length - 1;
+        int position = hash(key) & mask;
+        while (keys[position] != EMPTY && keys[position] != key)
+        {
+            position = (position + 1) & mask;
+        }
+        return position;
+    }
+
+
+    private int findOrInsert(int x, int y)
+    {
+        int position = find(x, y);
+        if (keys[position] == EMPTY)
+        {
+            if ((occupiedCells + 1) * 2 > keys.length)
+            {
+                rehash();
+                position = find(x, y);
+            }
+            keys[position] = pack(x, y);
+            slots[position] = occupiedCells;
+            if (occupiedCells == cellX.length)
+            {
+                cellX = grow(cellX, cellX.length * 2);
+                cellY = grow(cellY, cellY.length * 2);
+            }
+            cellX[occupiedCells] = x;
+            cellY[occupiedCells] = y;
+            ++occupiedCells;
+        }
+        return slots[position];
+    }
+
+
+    private void rehash()
+    {
+        long[] oldKeys = keys;
+        int[] oldSlots = slots;
+        keys = new long[oldKeys.length * 2];
+        slots = new int[oldSlots.length * 2];
+        Arrays.fill(keys, EMPTY);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] != EMPTY)
+            {
+                int position = hash(oldKeys[i]) & mask;
+                while (keys[position] != EMPTY)
+                {
+                    position = (position + 1) & mask;
+                }
+                keys[position] = oldKeys[i];
+                slots[position] = oldSlots[i];
+            }
+        }
+    }
+
+
+    private static int[] grow(int[] array, int length)
+    {
+        int[] grown = new int[Math.max(length, array.length * 2)];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+
+    /**
+     * @return The geometry that this grid indexes.
+     */
+    public TurtleGeometry getGeometry()
+    {
+        return geometry;
+    }
+
+
+    /**
+     * @return The width and height of each cell.
+     */
+    public double getCellSize()
+    {
+        return cellSize;
+    }
+
+
+    /**
+     * @return The number of cells that contain at least one segment.
+     */
+    public int getOccupiedCellCount()
+    {
+        return occupiedCells;
+    }
+
+
+    /**
+     * @param x An x-coordinate in the geometry's coordinate space.
+     * @return The x-coordinate of the column of cells containing that point.
+     */
+    public int toCellCoordinate(double x)
+    {
+        return (int) Math.floor(x / cellSize);
+    }
+
+
+    /**
+     * @param x The column of the cell.
+     * @param y The row of the cell.
+     * @return True if at least one segment passes through the specified cell.
+     */
+    public boolean isOccupied(int x, int y)
+    {
+        return keys[find(x, y)] != EMPTY;
+    }
+
+
+    /**
+     * @param cell The dense index of an occupied cell.
+     * @return The column of the cell.
+     */
+    public int getCellX(int cell)
+    {
+        return cellX[cell];
+    }
+
+
+    /**
+     * @param cell The dense index of an occupied cell.
+     * @return The row of the cell.
+     */
+    public int getCellY(int cell)
+    {
+        return cellY[cell];
+    }
+
+
+    /**
+     * @param cell The dense index of an occupied cell.
+     * @return The number of segments that pass through the cell.
+     */
+    public int getSegmentCount(int cell)
+    {
+        return segmentOffsets[cell + 1] - segmentOffsets[cell];
+    }
+
+
+    /**
+     * @param cell The dense index of an occupied cell.
+     * @param n Which of the cell's segments to return (from zero to
+     * {@code getSegmentCount(cell) - 1}).
+     * @return The index of the segment in the geometry.
+     */
+    public int getSegment(int cell, int n)
+    {
+        return segmentIndices[segmentOffsets[cell] + n];
+    }
+}
@@ -0,0 +1,81 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+/**
+ * Rewards bilateral symmetry.  The geometry is reflected about the vertical line through
+ * the centre of its bounding box and the fitness is the proportion of occupied cells
+ * whose mirror-image cell is also occupied, from zero (no symmetry) to one (perfectly
+ * symmetrical at the resolution of the grid).  Each test is a single hash lookup so the
+ * cost is linear in the number of occupied cells.
+ * @author Michael Forrest
+ */
+public class SymmetryEvaluator extends GeometricFitnessEvaluator
+{
+    /**
+     * @param interpreter Derives and interprets the candidates.
+     * @param cellSize The resolution at which symmetry is measured.  Larger cells are
+     * more forgiving of small differences between the two halves.
+     */
+    public SymmetryEvaluator(LSystemInterpreter interpreter, double cellSize)
+    {
+        super(interpreter, cellSize);
+    }
+
+
+    /**
+     * Measures symmetry at the resolution of a single turtle step.
+     */
+    public SymmetryEvaluator()
+    {
+        super();
+    }
+
+
+    @Override
+    protected double getFitness(SpatialHashGrid grid)
+    {
+        int occupied = grid.getOccupiedCellCount();
+        if (occupied == 0)
+        {
+            return 0;
+        }
+        TurtleGeometry geometry = grid.getGeometry();
+        double axis = (geometry.getMinX() + geometry.getMaxX()) / 2;
+        double cellSize = grid.getCellSize();
+        int matched = 0;
+        for (int cell = 0; cell < occupied; cell++)
+        {
+            double centreX = (grid.getCellX(cell) + 0.5) * cellSize;
+            int mirrorX = grid.toCellCoordinate(2 * axis - centreX);
+            if (grid.isOccupied(mirrorX, grid.getCellY(cell)))
+            {
+                ++matched;
+            }
+        }
+        return matched / (double) occupied;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * More symmetrical biomorphs are better.
+     */
+    public boolean isNatural()
+    {
+        return true;
+    }
+}
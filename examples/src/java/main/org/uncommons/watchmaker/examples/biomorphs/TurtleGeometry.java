@@ -0,0 +1,169 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+/**
+ * The line segments drawn by a turtle when it interprets the command string of a
+ * derived L-system.  Segments are stored in a single packed array of coordinates
+ * (x1, y1, x2, y2 for each segment) rather than as individual objects so that very
+ * deep derivations, which can produce hundreds of thousands of segments, can be
+ * held and traversed without per-segment allocation.  Each segment also records the
+ * colour command that was in effect when it was drawn.
+ * @author Michael Forrest
+ */
+public final class TurtleGeometry
+{
+    /**
+     * The colour command in effect before the command string selects a colour.
+     */
+    public static final char DEFAULT_COLOUR = 'K';
+
+    private final float[] coordinates;
+    private final char[] colours;
+    private final int segmentCount;
+    private final float minX;
+    private final float minY;
+    private final float maxX;
+    private final float maxY;
+
+    /**
+     * @param coordinates Packed segment coordinates (four values per segment).  Only the first
+     * {@code segmentCount * 4} elements are used.  The array is not copied.
+     * @param colours The colour command for each segment.  The array is not copied.
+     * @param segmentCount The number of segments in the array.
+     */
+    TurtleGeometry(float[] coordinates, char[] colours, int segmentCount)
+    {
+        this.coordinates = coordinates;
+        this.colours = colours;
+        this.segmentCount = segmentCount;
+        float x1 = Float.POSITIVE_INFINITY;
+        float y1 = Float.POSITIVE_INFINITY;
+        float x2 = Float.NEGATIVE_INFINITY;
+        float y2 = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < segmentCount * 4; i += 2)
+        {
+            x1 = Math.min(x1, coordinates[i]);
+            y1 = Math.min(y1, coordinates[i + 1]);
+            x2 = Math.max(x2, coordinates[i]);
+            y2 = Math.max(y2, coordinates[i + 1]);
+        }
+        this.minX = segmentCount == 0 ? 0 : x1;
+        this.minY = segmentCount == 0 ? 0 : y1;
+        this.maxX = segmentCount == 0 ? 0 : x2;
+        this.maxY = segmentCount == 0 ? 0 : y2;
+    }
+
+
+    /**
+     * @return The number of line segments drawn by the turtle.
+     */
+    public int getSegmentCount()
+    {
+        return segmentCount;
+    }
+
+
+    /**
+     * @param segment The zero-based index of a segment.
+     * @return The x-coordinate of the start point of the segment.
+     */
+    public float getStartX(int segment)
+    {
+        return coordinates[segment * 4];
+    }
+
+
+    /**
+     * @param segment The zero-based index of a segment.
+     * @return The y-coordinate of the start point of the segment.
+     */
+    public float getStartY(int segment)
+    {
+        return coordinates[segment * 4 + 1];
+    }
+
+
+    /**
+     * @param segment The zero-based index of a segment.
+     * @return The x-coordinate of the end point of the segment.
+     */
+    public float getEndX(int segment)
+    {
+        return coordinates[segment * 4 + 2];
+    }
+
+
+    /**
+     * @param segment The zero-based index of a segment.
+     * @return The y-coordinate of the end point of the segment.
+     */
+    public float getEndY(int segment)
+    {
+        return coordinates[segment * 4 + 3];
+    }
+
+
+    /**
+     * @param segment The zero-based index of a segment.
+     * @return The colour command ('K', 'R', 'G', 'B', 'C' or 'O') that was in effect
+     * when the segment was drawn.
+     */
+    public char getColour(int segment)
+    {
+        return colours[segment];
+    }
+
+
+    /**
+     * @return The smallest x-coordinate of any segment end point (or zero if there are
+     * no segments).
+     */
+    public float getMinX()
+    {
+        return minX;
+    }
+
+
+    /**
+     * @return The smallest y-coordinate of any segment end point (or zero if there are
+     * no segments).
+     */
+    public float getMinY()
+    {
+        return minY;
+    }
+
+
+    /**
+     * @return The largest x-coordinate of any segment end point (or zero if there are
+     * no segments).
+     */
+    public float getMaxX()
+    {
+        return maxX;
+    }
+
+
+    /**
+     * @return The largest y-coordinate of any segment end point (or zero if there are
+     * no segments).
+     */
+    public float getMaxY()
+    {
+        return maxY;
+    }
+}
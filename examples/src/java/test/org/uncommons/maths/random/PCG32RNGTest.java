@@ -0,0 +1,128 @@
+// ============================================================================
+//   Copyright 2006-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.maths.random;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the PCG32 RNG.  The expected values were generated by the reference
+ * C implementation of O'Neill, seeded with an initial state of 42 on stream 54 (the
+ * seed used by the reference implementation's demonstration program).
+ * @author Daniel Dyer
+ */
+public class PCG32RNGTest
+{
+    private static final int[] EXPECTED_OUTPUT = {0xA15C02B7, 0x7B47F409, 0xBA1D3330,
+                                                  0x83D2F293, 0xBFA4784B, 0xCBED606E};
+    // The values after the first million.
+    private static final int[] EXPECTED_AFTER_MILLION = {0x11918599, 0xE71D02EC, 0x1FDBE22F};
+
+    @Test
+    public void testKnownAnswers()
+    {
+        PCG32RNG rng = new PCG32RNG(createSeed());
+        checkOutput(rng, EXPECTED_OUTPUT);
+    }
+
+
+    @Test
+    public void testAdvance()
+    {
+        PCG32RNG rng = new PCG32RNG(createSeed());
+        rng.advance(1000000);
+        checkOutput(rng, EXPECTED_AFTER_MILLION);
+    }
+
+
+    /**
+     * Advancing by a negative number of steps should move the generator backwards.
+     */
+    @Test
+    public void testAdvanceBackwards()
+    {
+        PCG32RNG rng = new PCG32RNG(createSeed());
+        rng.advance(1000000 + EXPECTED_AFTER_MILLION.length);
+        rng.advance(-EXPECTED_AFTER_MILLION.length);
+        checkOutput(rng, EXPECTED_AFTER_MILLION);
+        rng.advance(-1000000 - EXPECTED_AFTER_MILLION.length);
+        checkOutput(rng, EXPECTED_OUTPUT);
+    }
+
+
+    /**
+     * A jump must be equivalent to generating 2^48 values, so jumping 2^16 times
+     * must wrap all the way round the 2^64 period.  Likewise for 2^8 long jumps.
+     */
+    @Test
+    public void testJump()
+    {
+        PCG32RNG rng = new PCG32RNG(createSeed());
+        for (int i = 0; i < 1 << 16; i++)
+        {
+            rng.jump();
+        }
+        checkOutput(rng, EXPECTED_OUTPUT);
+
+        rng = new PCG32RNG(createSeed());
+        for (int i = 0; i < 1 << 8; i++)
+        {
+            rng.longJump();
+        }
+        checkOutput(rng, EXPECTED_OUTPUT);
+    }
+
+
+    @Test
+    public void testRepeatability()
+    {
+        PCG32RNG rng = new PCG32RNG();
+        PCG32RNG duplicate = new PCG32RNG(rng.getSeed());
+        for (int i = 0; i < 1000; i++)
+        {
+            assert rng.nextInt() == duplicate.nextInt() : "Generated sequences do not match.";
+        }
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSeedSize()
+    {
+        new PCG32RNG(new byte[8]);
+    }
+
+
+    /**
+     * @return The big-endian encoding of the initial state (42) followed by the stream (54).
+     */
+    private static byte[] createSeed()
+    {
+        byte[] seed = new byte[16];
+        seed[7] = 42;
+        seed[15] = 54;
+        return seed;
+    }
+
+
+    private static void checkOutput(PCG32RNG rng, int[] expected)
+    {
+        for (int i = 0; i < expected.length; i++)
+        {
+            int value = rng.nextInt();
+            assert value == expected[i] : "Value " + i + " should be " + Integer.toHexString(expected[i])
+                                          + ", is " + Integer.toHexString(value);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+// ============================================================================
+//   Copyright 2006-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.maths.random;
+
+import java.util.Random;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link ThreadLocalRNG}.
+ * @author Daniel Dyer
+ */
+public class ThreadLocalRNGTest
+{
+    /**
+     * Each thread should have its own generator, and it should be the same generator
+     * every time that thread asks for one.
+     */
+    @Test
+    public void testGeneratorPerThread() throws InterruptedException
+    {
+        final ThreadLocalRNG provider = new ThreadLocalRNG(new Xoshiro256StarStarRNG(createSeed(32)));
+        final Random[] other = new Random[1];
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                other[0] = provider.get();
+            }
+        };
+        thread.start();
+        thread.join();
+        Random rng = provider.get();
+        assert rng == provider.get() : "Thread should keep the same generator.";
+        assert other[0] != null && other[0] != rng : "Threads should have different generators.";
+    }
+
+
+    /**
+     * The generator for a stream index should not depend on the order in which the
+     * streams are requested.
+     */
+    @Test
+    public void testStreamsAreRepeatable()
+    {
+        ThreadLocalRNG first = new ThreadLocalRNG(new Xoshiro256StarStarRNG(createSeed(32)));
+        ThreadLocalRNG second = new ThreadLocalRNG(new Xoshiro256StarStarRNG(createSeed(32)));
+        // Requesting unindexed generators should not affect the indexed streams.
+        second.get().nextInt();
+        long[] firstValues = new long[3];
+        for (int i = 0; i < firstValues.length; i++)
+        {
+            first.setStream(i);
+            firstValues[i] = first.get().nextLong();
+        }
+        for (int i = firstValues.length - 1; i >= 0; i--)
+        {
+            second.setStream(i);
+            long value = second.get().nextLong();
+            assert value == firstValues[i] : "Stream " + i + " differs between providers.";
+        }
+        assert firstValues[0] != firstValues[1] && firstValues[1] != firstValues[2]
+            : "Different streams should produce different values.";
+    }
+
+
+    /**
+     * The seed of each indexed stream must be the state that it starts from, so that it
+     * can be recreated.
+     */
+    @Test
+    public void testStreamSeed()
+    {
+        ThreadLocalRNG provider = new ThreadLocalRNG(new PCG32RNG(createSeed(16)));
+        provider.setStream(0);
+        PCG32RNG rng = (PCG32RNG) provider.get();
+        PCG32RNG duplicate = new PCG32RNG(rng.getSeed());
+        assert rng.nextInt() == duplicate.nextInt() : "Stream could not be recreated from its seed.";
+    }
+
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testStreamReuse()
+    {
+        ThreadLocalRNG provider = new ThreadLocalRNG(new Xoshiro256StarStarRNG(createSeed(32)));
+        provider.setStream(0);
+        provider.setStream(0);
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeStreamIndex()
+    {
+        new ThreadLocalRNG(new Xoshiro256StarStarRNG(createSeed(32))).setStream(-1);
+    }
+
+
+    private static byte[] createSeed(int length)
+    {
+        byte[] seed = new byte[length];
+        for (int i = 0; i < seed.length; i++)
+        {
+            seed[i] = (byte) (i + 1);
+        }
+        return seed;
+    }
+}
@@ -0,0 +1,132 @@
+// ============================================================================
+//   Copyright 2006-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.maths.random;
+
+import java.util.Arrays;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the xoshiro256** RNG.  The expected values were generated by the
+ * reference C implementation of Blackman and Vigna, starting from the state
+ * {1, 2, 3, 4}.
+ * @author Daniel Dyer
+ */
+public class Xoshiro256StarStarRNGTest
+{
+    private static final long[] EXPECTED_OUTPUT = {0x0000000000002D00L, 0x0000000000000000L,
+                                                   0x000000005A007080L, 0x10E0000000009D80L,
+                                                   0x10E0B61CE1009D80L};
+    private static final long[] EXPECTED_AFTER_JUMP = {0xBBD2F312298443D8L,
+                                                       0x62E57DB2D5706577L,
+                                                       0x34D1890374A6D72BL};
+    private static final long[] EXPECTED_AFTER_LONG_JUMP = {0x527752A1D792704DL,
+                                                            0xD8D8BDEC57599E64L,
+                                                            0x601CB926727EB003L};
+
+    @Test
+    public void testKnownAnswers()
+    {
+        Xoshiro256StarStarRNG rng = new Xoshiro256StarStarRNG(createSeed());
+        checkOutput(rng, EXPECTED_OUTPUT);
+    }
+
+
+    @Test
+    public void testJump()
+    {
+        Xoshiro256StarStarRNG rng = new Xoshiro256StarStarRNG(createSeed());
+        rng.jump();
+        checkOutput(rng, EXPECTED_AFTER_JUMP);
+    }
+
+
+    @Test
+    public void testLongJump()
+    {
+        Xoshiro256StarStarRNG rng = new Xoshiro256StarStarRNG(createSeed());
+        rng.longJump();
+        checkOutput(rng, EXPECTED_AFTER_LONG_JUMP);
+    }
+
+
+    /**
+     * A split generator continues from the original's position, and the original
+     * continues from one jump ahead.
+     */
+    @Test
+    public void testSplit()
+    {
+        Xoshiro256StarStarRNG rng = new Xoshiro256StarStarRNG(createSeed());
+        Xoshiro256StarStarRNG split = rng.split();
+        assert Arrays.equals(split.getSeed(), createSeed()) : "Split generator should start from the original state.";
+        checkOutput(split, EXPECTED_OUTPUT);
+        checkOutput(rng, EXPECTED_AFTER_JUMP);
+    }
+
+
+    /**
+     * A generator created from another's seed must produce the same output.
+     */
+    @Test
+    public void testRepeatability()
+    {
+        Xoshiro256StarStarRNG rng = new Xoshiro256StarStarRNG();
+        Xoshiro256StarStarRNG duplicate = new Xoshiro256StarStarRNG(rng.getSeed());
+        for (int i = 0; i < 1000; i++)
+        {
+            assert rng.nextLong() == duplicate.nextLong() : "Generated sequences do not match.";
+        }
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroSeed()
+    {
+        new Xoshiro256StarStarRNG(new byte[32]);
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSeedSize()
+    {
+        new Xoshiro256StarStarRNG(new byte[16]);
+    }
+
+
+    /**
+     * @return The big-endian encoding of the state {1, 2, 3, 4}.
+     */
+    private static byte[] createSeed()
+    {
+        byte[] seed = new byte[32];
+        for (int i = 0; i < 4; i++)
+        {
+            seed[i * 8 + 7] = (byte) (i + 1);
+        }
+        return seed;
+    }
+
+
+    private static void checkOutput(Xoshiro256StarStarRNG rng, long[] expected)
+    {
+        for (int i = 0; i < expected.length; i++)
+        {
+            long value = rng.nextLong();
+            assert value == expected[i] : "Value " + i + " should be " + Long.toHexString(expected[i])
+                                          + ", is " + Long.toHexString(value);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+import java.util.Arrays;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for converting biomorph genomes to and from text.
+ * @author Michael Forrest
+ */
+public class BiomorphCodecTest
+{
+    @Test
+    public void testRoundTrip()
+    {
+        Biomorph biomorph = new Biomorph("fg", new String[]{"f=f[+f]g", "g=gg"}, 12);
+        String line = BiomorphCodec.format(biomorph);
+        assert line.equals("fg|f=f[+f]g,g=gg|12") : "Wrong format: " + line;
+        Biomorph parsed = BiomorphCodec.parse(line);
+        assert parsed.getAxiom().equals(biomorph.getAxiom()) : "Wrong axiom: " + parsed.getAxiom();
+        assert Arrays.equals(parsed.getRuleList(), biomorph.getRuleList())
+            : "Wrong rules: " + Arrays.toString(parsed.getRuleList());
+        assert parsed.getTurnAngle() == biomorph.getTurnAngle() : "Wrong angle: " + parsed.getTurnAngle();
+    }
+
+
+    @Test
+    public void testRoundTripWithoutRules()
+    {
+        Biomorph parsed = BiomorphCodec.parse(BiomorphCodec.format(new Biomorph("f+f", new String[0], 90)));
+        assert parsed.getAxiom().equals("f+f") : "Wrong axiom: " + parsed.getAxiom();
+        assert parsed.getRuleList().length == 0 : "Should have no rules: " + Arrays.toString(parsed.getRuleList());
+        assert parsed.getTurnAngle() == 90 : "Wrong angle: " + parsed.getTurnAngle();
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMissingField()
+    {
+        BiomorphCodec.parse("f|90");
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidAngle()
+    {
+        BiomorphCodec.parse("f|f=ff|ninety");
+    }
+}
@@ -0,0 +1,126 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import javax.imageio.ImageIO;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Renders a small gallery to a temporary directory without using any Swing components.
+ * @author Michael Forrest
+ */
+public class BiomorphGalleryTest
+{
+    private static final int TILE_SIZE = 50;
+
+    private final List<Biomorph> genomes = Arrays.asList(BiomorphCodec.parse("Rf||90"),
+                                                         BiomorphCodec.parse("f|f=f[+f]f|25"),
+                                                         BiomorphCodec.parse("Bf+f+f|f=ff|90"));
+
+    private File directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException
+    {
+        directory = File.createTempFile("gallery", "");
+        directory.delete();
+    }
+
+
+    @AfterMethod
+    public void deleteDirectory()
+    {
+        File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+
+    @Test
+    public void testRenderTiles() throws Exception
+    {
+        createGallery().renderTiles(genomes, directory);
+        for (int i = 0; i < genomes.size(); i++)
+        {
+            BufferedImage tile = ImageIO.read(new File(directory, String.format("tile-%06d.png", i)));
+            assert tile != null : "Tile " + i + " was not written.";
+            assert tile.getWidth() == TILE_SIZE && tile.getHeight() == TILE_SIZE
+                : "Wrong tile size: " + tile.getWidth() + "x" + tile.getHeight();
+        }
+        // Segments are drawn in their own colours, as in the Swing view.
+        BufferedImage red = ImageIO.read(new File(directory, "tile-000000.png"));
+        assert containsRed(red) : "Red segment was not drawn in red.";
+    }
+
+
+    @Test
+    public void testRenderContactSheets() throws Exception
+    {
+        createGallery().renderContactSheets(genomes, 2, 1, directory);
+        BufferedImage first = ImageIO.read(new File(directory, "sheet-0000.png"));
+        BufferedImage second = ImageIO.read(new File(directory, "sheet-0001.png"));
+        assert first.getWidth() == TILE_SIZE * 2 && first.getHeight() == TILE_SIZE
+            : "Wrong sheet size: " + first.getWidth() + "x" + first.getHeight();
+        // The last sheet only has one tile.
+        assert second.getWidth() == TILE_SIZE * 2 && second.getHeight() == TILE_SIZE
+            : "Wrong sheet size: " + second.getWidth() + "x" + second.getHeight();
+        assert directory.listFiles().length == 2 : "Wrong number of sheets: " + directory.listFiles().length;
+    }
+
+
+    private BiomorphGallery createGallery()
+    {
+        return new BiomorphGallery(new LSystemInterpreter(),
+                                   new BiomorphRasteriser(TILE_SIZE, TILE_SIZE),
+                                   2,
+                                   2);
+    }
+
+
+    /**
+     * Looks for pixels that are predominantly red.  Lines are anti-aliased, so they
+     * may be blended with the white background.
+     */
+    private boolean containsRed(BufferedImage image)
+    {
+        for (int y = 0; y < image.getHeight(); y++)
+        {
+            for (int x = 0; x < image.getWidth(); x++)
+            {
+                Color colour = new Color(image.getRGB(x, y));
+                if (colour.getRed() - colour.getGreen() > 32 && colour.getRed() - colour.getBlue() > 32)
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
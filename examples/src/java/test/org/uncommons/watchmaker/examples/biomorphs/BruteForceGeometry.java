@@ -0,0 +1,310 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Straightforward reference implementations of the geometric queries that
+ * {@link SpatialHashGrid} and the {@link GeometricFitnessEvaluator}s answer using
+ * the spatial index.  Every segment is compared with every other segment and every
+ * cell near it, so these are only suitable for checking results in tests.
+ * @author Michael Forrest
+ */
+final class BruteForceGeometry
+{
+    private static final double EPSILON = 1e-6;
+
+    private BruteForceGeometry()
+    {
+        // Prevents instantiation.
+    }
+
+
+    /**
+     * @return The length of the part of the segment inside the cell, or a negative number
+     * if the segment does not touch the cell at all.
+     */
+    static double clippedLength(TurtleGeometry geometry, int segment, int cellX, int cellY, double cellSize)
+    {
+        double x1 = geometry.getStartX(segment);
+        double y1 = geometry.getStartY(segment);
+        double dx = geometry.getEndX(segment) - x1;
+        double dy = geometry.getEndY(segment) - y1;
+        double[] range = {0, 1};
+        if (clip(-dx, x1 - cellX * cellSize, range)
+            && clip(dx, (cellX + 1) * cellSize - x1, range)
+            && clip(-dy, y1 - cellY * cellSize, range)
+            && clip(dy, (cellY + 1) * cellSize - y1, range))
+        {
+            return (range[1] - range[0]) * Math.hypot(dx, dy);
+        }
+        return -1;
+    }
+
+
+    /**
+     * One step of Liang-Barsky clipping.
+     */
+    private static boolean clip(double p, double q, double[] range)
+    {
+        if (p == 0)
+        {
+            return q >= 0;
+        }
+        double t = q / p;
+        if (p < 0)
+        {
+            range[0] = Math.max(range[0], t);
+        }
+        else
+        {
+            range[1] = Math.min(range[1], t);
+        }
+        return range[0] <= range[1];
+    }
+
+
+    /**
+     * @return The coordinates of every cell that any segment touches, packed into longs.
+     */
+    static Set<Long> occupiedCells(TurtleGeometry geometry, double cellSize)
+    {
+        Set<Long> cells = new HashSet<Long>();
+        for (int segment = 0; segment < geometry.getSegmentCount(); segment++)
+        {
+            int minX = (int) Math.floor(Math.min(geometry.getStartX(segment), geometry.getEndX(segment)) / cellSize) - 1;
+            int maxX = (int) Math.floor(Math.max(geometry.getStartX(segment), geometry.getEndX(segment)) / cellSize) + 1;
+            int minY = (int) Math.floor(Math.min(geometry.getStartY(segment), geometry.getEndY(segment)) / cellSize) - 1;
+            int maxY = (int) Math.floor(Math.max(geometry.getStartY(segment), geometry.getEndY(segment)) / cellSize) + 1;
+            for (int x = minX; x <= maxX; x++)
+            {
+                for (int y = minY; y <= maxY; y++)
+                {
+                    if (clippedLength(geometry, segment, x, y, cellSize) >= 0)
+                    {
+                        cells.add(pack(x, y));
+                    }
+                }
+            }
+        }
+        return cells;
+    }
+
+
+    static long pack(int x, int y)
+    {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+
+    static int unpackX(long cell)
+    {
+        return (int) (cell >> 32);
+    }
+
+
+    static int unpackY(long cell)
+    {
+        return (int) cell;
+    }
+
+
+    /**
+     * @return True if the two segments have any point in common, including their end points.
+     */
+    static boolean touch(TurtleGeometry geometry, int a, int b)
+    {
+        return intersection(geometry, a, b) != Intersection.NONE;
+    }
+
+
+    /**
+     * @return True if the two segments cross or lie on top of each other, rather than
+     * being disjoint or only being joined end-to-end.
+     */
+    static boolean overlap(TurtleGeometry geometry, int a, int b)
+    {
+        Intersection intersection = intersection(geometry, a, b);
+        return intersection == Intersection.CROSSING || intersection == Intersection.COLLINEAR;
+    }
+
+
+    /**
+     * Counts every overlapping pair of segments, divided by the number of segments.
+     */
+    static double selfOverlap(TurtleGeometry geometry)
+    {
+        int count = geometry.getSegmentCount();
+        if (count == 0)
+        {
+            return 0;
+        }
+        long overlaps = 0;
+        for (int a = 0; a < count; a++)
+        {
+            for (int b = a + 1; b < count; b++)
+            {
+                if (overlap(geometry, a, b))
+                {
+                    ++overlaps;
+                }
+            }
+        }
+        return overlaps / (double) count;
+    }
+
+
+    /**
+     * The radius of gyration of the occupied cells.
+     */
+    static double branchSpread(TurtleGeometry geometry, double cellSize)
+    {
+        Set<Long> cells = occupiedCells(geometry, cellSize);
+        if (cells.isEmpty())
+        {
+            return 0;
+        }
+        double meanX = 0;
+        double meanY = 0;
+        for (long cell : cells)
+        {
+            meanX += unpackX(cell);
+            meanY += unpackY(cell);
+        }
+        meanX /= cells.size();
+        meanY /= cells.size();
+        double sum = 0;
+        for (long cell : cells)
+        {
+            double dx = unpackX(cell) - meanX;
+            double dy = unpackY(cell) - meanY;
+            sum += dx * dx + dy * dy;
+        }
+        return Math.sqrt(sum / cells.size()) * cellSize;
+    }
+
+
+    /**
+     * The fraction of occupied cells whose reflection in the vertical axis through the
+     * centre of the bounding box is also occupied.
+     */
+    static double symmetry(TurtleGeometry geometry, double cellSize)
+    {
+        Set<Long> cells = occupiedCells(geometry, cellSize);
+        if (cells.isEmpty())
+        {
+            return 0;
+        }
+        double axis = (geometry.getMinX() + geometry.getMaxX()) / 2;
+        int matched = 0;
+        for (long cell : cells)
+        {
+            double mirror = 2 * axis - (unpackX(cell) + 0.5) * cellSize;
+            if (cells.contains(pack((int) Math.floor(mirror / cellSize), unpackY(cell))))
+            {
+                ++matched;
+            }
+        }
+        return matched / (double) cells.size();
+    }
+
+
+    /**
+     * The fraction of the cells of a square canvas, centred on the origin, that are occupied.
+     */
+    static double canopyCoverage(TurtleGeometry geometry, double cellSize, double canvasSize)
+    {
+        int min = (int) Math.floor(-canvasSize / 2 / cellSize);
+        int max = (int) Math.floor(canvasSize / 2 / cellSize);
+        Set<Long> cells = occupiedCells(geometry, cellSize);
+        int covered = 0;
+        for (int x = min; x <= max; x++)
+        {
+            for (int y = min; y <= max; y++)
+            {
+                if (cells.contains(pack(x, y)))
+                {
+                    ++covered;
+                }
+            }
+        }
+        double side = max - min + 1;
+        return covered / (side * side);
+    }
+
+
+    private static Intersection intersection(TurtleGeometry geometry, int a, int b)
+    {
+        double ax = geometry.getStartX(a);
+        double ay = geometry.getStartY(a);
+        double bx = geometry.getEndX(a);
+        double by = geometry.getEndY(a);
+        double cx = geometry.getStartX(b);
+        double cy = geometry.getStartY(b);
+        double dx = geometry.getEndX(b);
+        double dy = geometry.getEndY(b);
+        double lengthA = Math.hypot(bx - ax, by - ay);
+        double lengthB = Math.hypot(dx - cx, dy - cy);
+
+        // Signed areas of the triangles formed by each segment and the ends of the other.
+        double c = cross(ax, ay, bx, by, cx, cy);
+        double d = cross(ax, ay, bx, by, dx, dy);
+        double cross = (bx - ax) * (dy - cy) - (by - ay) * (dx - cx);
+        if (Math.abs(cross) <= EPSILON * lengthA * lengthB)
+        {
+            if (Math.abs(c) > EPSILON * lengthA)
+            {
+                return Intersection.NONE; // Parallel lines.
+            }
+            double squaredLength = lengthA * lengthA;
+            double s1 = ((cx - ax) * (bx - ax) + (cy - ay) * (by - ay)) / squaredLength;
+            double s2 = ((dx - ax) * (bx - ax) + (dy - ay) * (by - ay)) / squaredLength;
+            double overlap = Math.min(1, Math.max(s1, s2)) - Math.max(0, Math.min(s1, s2));
+            if (overlap > EPSILON)
+            {
+                return Intersection.COLLINEAR;
+            }
+            return overlap >= -EPSILON ? Intersection.JOINED : Intersection.NONE;
+        }
+        // Fractions along each segment at which the lines meet.
+        double t = c / (c - d);
+        double u = cross(cx, cy, dx, dy, ax, ay) / (cross(cx, cy, dx, dy, ax, ay) - cross(cx, cy, dx, dy, bx, by));
+        if (t < -EPSILON || t > 1 + EPSILON || u < -EPSILON || u > 1 + EPSILON)
+        {
+            return Intersection.NONE;
+        }
+        boolean endOfA = u < EPSILON || u > 1 - EPSILON;
+        boolean endOfB = t < EPSILON || t > 1 - EPSILON;
+        return endOfA && endOfB ? Intersection.JOINED : Intersection.CROSSING;
+    }
+
+
+    /**
+     * Twice the signed area of the triangle pqr.
+     */
+    private static double cross(double px, double py, double qx, double qy, double rx, double ry)
+    {
+        return (qx - px) * (ry - py) - (qy - py) * (rx - px);
+    }
+
+
+    private static enum Intersection
+    {
+        NONE, JOINED, CROSSING, COLLINEAR
+    }
+}
@@ -0,0 +1,133 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+import org.testng.annotations.Test;
+
+/**
+ * Checks the fitness values of the {@link GeometricFitnessEvaluator} implementations
+ * against the brute-force calculations in {@link BruteForceGeometry}.
+ * @author Michael Forrest
+ */
+public class GeometricFitnessEvaluatorTest
+{
+    private static final double CELL_SIZE = 1.3;
+    private static final double CANVAS_SIZE = 24;
+    private static final double TOLERANCE = 1e-9;
+
+    private final LSystemInterpreter interpreter = new LSystemInterpreter();
+
+    @Test
+    public void testSelfOverlap()
+    {
+        SelfOverlapEvaluator evaluator = new SelfOverlapEvaluator(interpreter, CELL_SIZE);
+        for (long seed = 0; seed < 20; seed++)
+        {
+            TurtleGeometry geometry = SpatialHashGridTest.randomGeometry(seed, 300);
+            double fitness = evaluator.getFitness(new SpatialHashGrid(geometry, CELL_SIZE));
+            double expected = BruteForceGeometry.selfOverlap(geometry);
+            assert Math.abs(fitness - expected) < TOLERANCE : "Wrong overlap: " + fitness + ", expected " + expected;
+        }
+    }
+
+
+    /**
+     * A path that turns back on itself lies on top of the way it came, and a cross
+     * overlaps at its centre, but a polygon only joins its segments end-to-end.
+     */
+    @Test
+    public void testSelfOverlapKnownValues()
+    {
+        SelfOverlapEvaluator evaluator = new SelfOverlapEvaluator(interpreter, CELL_SIZE);
+        // Each of the two segments on the way back covers one on the way out.
+        assert evaluator.getFitness(grid("ff++++ff", 45)) == 0.5 : "Retraced path should overlap itself.";
+        assert evaluator.getFitness(grid("f+f+f+f", 90)) == 0 : "Square should not overlap itself.";
+        assert evaluator.getFitness(grid("g+g", 90)) == 0 : "Empty geometry should not overlap.";
+        // The two arms of a plus sign cross in the middle of each other.
+        assert evaluator.getFitness(new SpatialHashGrid(plus(), CELL_SIZE)) == 0.5 : "Crossing segments should overlap.";
+    }
+
+
+    @Test
+    public void testBranchSpread()
+    {
+        BranchSpreadEvaluator evaluator = new BranchSpreadEvaluator(interpreter, CELL_SIZE);
+        for (long seed = 0; seed < 20; seed++)
+        {
+            TurtleGeometry geometry = SpatialHashGridTest.randomGeometry(seed, 300);
+            double fitness = evaluator.getFitness(new SpatialHashGrid(geometry, CELL_SIZE));
+            double expected = BruteForceGeometry.branchSpread(geometry, CELL_SIZE);
+            assert Math.abs(fitness - expected) < TOLERANCE : "Wrong spread: " + fitness + ", expected " + expected;
+        }
+        assert evaluator.getFitness(grid("g+g", 90)) == 0 : "Empty geometry should have no spread.";
+    }
+
+
+    @Test
+    public void testSymmetry()
+    {
+        SymmetryEvaluator evaluator = new SymmetryEvaluator(interpreter, CELL_SIZE);
+        for (long seed = 0; seed < 20; seed++)
+        {
+            TurtleGeometry geometry = SpatialHashGridTest.randomGeometry(seed, 300);
+            double fitness = evaluator.getFitness(new SpatialHashGrid(geometry, CELL_SIZE));
+            double expected = BruteForceGeometry.symmetry(geometry, CELL_SIZE);
+            assert Math.abs(fitness - expected) < TOLERANCE : "Wrong symmetry: " + fitness + ", expected " + expected;
+            assert fitness >= 0 && fitness <= 1 : "Symmetry out of range: " + fitness;
+        }
+        assert evaluator.getFitness(new SpatialHashGrid(plus(), CELL_SIZE)) == 1 : "Plus sign should be symmetrical.";
+        assert evaluator.getFitness(grid("g+g", 90)) == 0 : "Empty geometry should have no symmetry.";
+    }
+
+
+    @Test
+    public void testCanopyCoverage()
+    {
+        CanopyCoverageEvaluator evaluator = new CanopyCoverageEvaluator(interpreter, CELL_SIZE, CANVAS_SIZE);
+        for (long seed = 0; seed < 20; seed++)
+        {
+            TurtleGeometry geometry = SpatialHashGridTest.randomGeometry(seed, 300);
+            double fitness = evaluator.getFitness(new SpatialHashGrid(geometry, CELL_SIZE));
+            double expected = BruteForceGeometry.canopyCoverage(geometry, CELL_SIZE, CANVAS_SIZE);
+            assert Math.abs(fitness - expected) < TOLERANCE : "Wrong coverage: " + fitness + ", expected " + expected;
+            assert fitness >= 0 && fitness <= 1 : "Coverage out of range: " + fitness;
+        }
+        assert evaluator.getFitness(grid("g+g", 90)) == 0 : "Empty geometry should cover nothing.";
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testCanvasSmallerThanCell()
+    {
+        new CanopyCoverageEvaluator(interpreter, CELL_SIZE, CELL_SIZE / 2);
+    }
+
+
+    /**
+     * A plus sign centred on a point that is not on a cell boundary.
+     */
+    private static TurtleGeometry plus()
+    {
+        float[] coordinates = {0.2f, 3.1f, 6.2f, 3.1f, 3.2f, 0.1f, 3.2f, 6.1f};
+        return new TurtleGeometry(coordinates, new char[]{'K', 'K'}, 2);
+    }
+
+
+    private SpatialHashGrid grid(String commands, int angle)
+    {
+        return new SpatialHashGrid(interpreter.interpret(commands, angle), CELL_SIZE);
+    }
+}
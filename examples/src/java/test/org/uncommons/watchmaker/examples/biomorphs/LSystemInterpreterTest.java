@@ -0,0 +1,193 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+import java.util.Random;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for L-system derivation and turtle interpretation.
+ * @author Michael Forrest
+ */
+public class LSystemInterpreterTest
+{
+    private static final double EPSILON = 0.0001;
+
+    /**
+     * With a single rule, every matching symbol is rewritten in every generation.
+     */
+    @Test
+    public void testDerivation()
+    {
+        Biomorph biomorph = new Biomorph("f", new String[]{"f=f+f"}, 90);
+        String derived = new LSystemInterpreter(3, Integer.MAX_VALUE).derive(biomorph, new Random(1));
+        assert derived.equals("f+f+f+f+f+f+f+f") : "Wrong derivation: " + derived;
+    }
+
+
+    @Test
+    public void testDerivationWithoutRules()
+    {
+        Biomorph biomorph = new Biomorph("f+f", new String[0], 90);
+        String derived = new LSystemInterpreter().derive(biomorph, new Random(1));
+        assert derived.equals("f+f") : "Axiom should be unchanged: " + derived;
+    }
+
+
+    @Test
+    public void testZeroGenerations()
+    {
+        Biomorph biomorph = new Biomorph("fg", new String[]{"f=ff"}, 90);
+        String derived = new LSystemInterpreter(0, Integer.MAX_VALUE).derive(biomorph, new Random(1));
+        assert derived.equals("fg") : "Axiom should be unchanged: " + derived;
+    }
+
+
+    /**
+     * Exploding L-systems should be truncated at the maximum length.
+     */
+    @Test
+    public void testMaximumLength()
+    {
+        Biomorph biomorph = new Biomorph("f", new String[]{"f=ffff"}, 90);
+        String derived = new LSystemInterpreter(10, 100).derive(biomorph, new Random(1));
+        assert derived.length() == 100 : "Wrong length: " + derived.length();
+    }
+
+
+    /**
+     * The same genome should always be drawn the same way.
+     */
+    @Test
+    public void testRepeatableDrawing()
+    {
+        Biomorph biomorph = new Biomorph("f", new String[]{"f=f[+f]f", "f=f-f"}, 25);
+        LSystemInterpreter interpreter = new LSystemInterpreter();
+        TurtleGeometry geometry1 = interpreter.draw(biomorph);
+        TurtleGeometry geometry2 = interpreter.draw(biomorph);
+        assert geometry1.getSegmentCount() == geometry2.getSegmentCount() : "Segment counts differ.";
+        for (int i = 0; i < geometry1.getSegmentCount(); i++)
+        {
+            assert geometry1.getEndX(i) == geometry2.getEndX(i) && geometry1.getEndY(i) == geometry2.getEndY(i)
+                : "Segment " + i + " differs.";
+        }
+    }
+
+
+    /**
+     * 'f' and 'h' draw a segment of fixed length, 'g' moves without drawing.
+     */
+    @Test
+    public void testMoves()
+    {
+        TurtleGeometry geometry = new LSystemInterpreter().interpret("fgh", 90);
+        assert geometry.getSegmentCount() == 2 : "Wrong segment count: " + geometry.getSegmentCount();
+        assert geometry.getStartX(0) == 0 && geometry.getStartY(0) == 0 : "Turtle should start at the origin.";
+        assertLength(geometry, 0, LSystemInterpreter.STEP_LENGTH);
+        assertLength(geometry, 1, LSystemInterpreter.STEP_LENGTH);
+        // The second segment starts two steps from the origin, after the 'g' move.
+        double distance = Math.hypot(geometry.getStartX(1), geometry.getStartY(1));
+        assert Math.abs(distance - 2 * LSystemInterpreter.STEP_LENGTH) < EPSILON
+            : "Second segment should start two steps from the origin, was " + distance;
+    }
+
+
+    /**
+     * '+' and '-' should turn the turtle by the turn angle in opposite directions.
+     */
+    @Test
+    public void testTurns()
+    {
+        TurtleGeometry geometry = new LSystemInterpreter().interpret("f+f--f", 90);
+        assert geometry.getSegmentCount() == 3 : "Wrong segment count: " + geometry.getSegmentCount();
+        // Perpendicular segments have a zero dot product, opposite ones a negative one.
+        assert Math.abs(dotProduct(geometry, 0, 1)) < EPSILON : "First turn should be a right angle.";
+        double dot = dotProduct(geometry, 1, 2);
+        double expected = -LSystemInterpreter.STEP_LENGTH * LSystemInterpreter.STEP_LENGTH;
+        assert Math.abs(dot - expected) < EPSILON : "Second turn should reverse the heading, dot product " + dot;
+    }
+
+
+    /**
+     * Brackets save and restore the turtle's position.
+     */
+    @Test
+    public void testBranches()
+    {
+        TurtleGeometry geometry = new LSystemInterpreter().interpret("[f]+f]", 45);
+        assert geometry.getSegmentCount() == 2 : "Wrong segment count: " + geometry.getSegmentCount();
+        assert geometry.getStartX(1) == 0 && geometry.getStartY(1) == 0
+            : "Second segment should start back at the origin.";
+    }
+
+
+    @Test
+    public void testColours()
+    {
+        TurtleGeometry geometry = new LSystemInterpreter().interpret("fRf+Cf", 90);
+        assert geometry.getColour(0) == TurtleGeometry.DEFAULT_COLOUR : "Wrong default colour.";
+        assert geometry.getColour(1) == 'R' : "Wrong colour: " + geometry.getColour(1);
+        assert geometry.getColour(2) == 'C' : "Wrong colour: " + geometry.getColour(2);
+    }
+
+
+    @Test
+    public void testBounds()
+    {
+        TurtleGeometry geometry = new LSystemInterpreter().interpret("f+f+f+f", 90);
+        for (int i = 0; i < geometry.getSegmentCount(); i++)
+        {
+            assert geometry.getEndX(i) >= geometry.getMinX() && geometry.getEndX(i) <= geometry.getMaxX()
+                : "Segment " + i + " is outside of the horizontal bounds.";
+            assert geometry.getEndY(i) >= geometry.getMinY() && geometry.getEndY(i) <= geometry.getMaxY()
+                : "Segment " + i + " is outside of the vertical bounds.";
+        }
+        // A square with sides of one step returns to the origin.  Whatever its orientation,
+        // it fits within a box whose sides are the length of its diagonal.
+        int last = geometry.getSegmentCount() - 1;
+        assert Math.abs(geometry.getEndX(last)) < EPSILON && Math.abs(geometry.getEndY(last)) < EPSILON
+            : "Square should be closed.";
+        double diagonal = Math.sqrt(2) * LSystemInterpreter.STEP_LENGTH;
+        assert geometry.getMaxX() - geometry.getMinX() <= diagonal + EPSILON : "Too wide.";
+        assert geometry.getMaxY() - geometry.getMinY() <= diagonal + EPSILON : "Too high.";
+    }
+
+
+    @Test
+    public void testEmptyGeometry()
+    {
+        TurtleGeometry geometry = new LSystemInterpreter().interpret("g+g", 90);
+        assert geometry.getSegmentCount() == 0 : "Moves without drawing should produce no segments.";
+        assert geometry.getMinX() == 0 && geometry.getMaxX() == 0 : "Empty geometry should have zero bounds.";
+    }
+
+
+    private static void assertLength(TurtleGeometry geometry, int segment, double expected)
+    {
+        double length = Math.hypot(geometry.getEndX(segment) - geometry.getStartX(segment),
+                                   geometry.getEndY(segment) - geometry.getStartY(segment));
+        assert Math.abs(length - expected) < EPSILON : "Segment " + segment + " has length " + length;
+    }
+
+
+    private static double dotProduct(TurtleGeometry geometry, int segment1, int segment2)
+    {
+        return (geometry.getEndX(segment1) - geometry.getStartX(segment1))
+               * (geometry.getEndX(segment2) - geometry.getStartX(segment2))
+               + (geometry.getEndY(segment1) - geometry.getStartY(segment1))
+               * (geometry.getEndY(segment2) - geometry.getStartY(segment2));
+    }
+}
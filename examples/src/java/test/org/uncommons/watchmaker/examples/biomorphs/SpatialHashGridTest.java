@@ -0,0 +1,155 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.examples.biomorphs;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link SpatialHashGrid}.  The cells that the grid records for each segment
+ * are checked against a brute-force clipping of every segment against every cell in its
+ * bounding box, see {@link BruteForceGeometry}.
+ * @author Michael Forrest
+ */
+public class SpatialHashGridTest
+{
+    private static final double CELL_SIZE = 1.3;
+
+    /**
+     * Every cell that a segment passes through must be recorded for that segment, and no
+     * cell that the segment does not touch.
+     */
+    @Test
+    public void testSegmentCells()
+    {
+        for (long seed = 0; seed < 20; seed++)
+        {
+            TurtleGeometry geometry = randomGeometry(seed, 400);
+            SpatialHashGrid grid = new SpatialHashGrid(geometry, CELL_SIZE);
+            Set<Long> recorded = new HashSet<Long>();
+            for (int cell = 0; cell < grid.getOccupiedCellCount(); cell++)
+            {
+                assert grid.getSegmentCount(cell) > 0 : "Occupied cell has no segments.";
+                assert grid.isOccupied(grid.getCellX(cell), grid.getCellY(cell)) : "Cell lookup failed.";
+                for (int i = 0; i < grid.getSegmentCount(cell); i++)
+                {
+                    recorded.add(key(grid.getSegment(cell, i), grid.getCellX(cell), grid.getCellY(cell)));
+                }
+            }
+
+            for (int segment = 0; segment < geometry.getSegmentCount(); segment++)
+            {
+                int minX = grid.toCellCoordinate(Math.min(geometry.getStartX(segment), geometry.getEndX(segment))) - 1;
+                int maxX = grid.toCellCoordinate(Math.max(geometry.getStartX(segment), geometry.getEndX(segment))) + 1;
+                int minY = grid.toCellCoordinate(Math.min(geometry.getStartY(segment), geometry.getEndY(segment))) - 1;
+                int maxY = grid.toCellCoordinate(Math.max(geometry.getStartY(segment), geometry.getEndY(segment))) + 1;
+                for (int x = minX; x <= maxX; x++)
+                {
+                    for (int y = minY; y <= maxY; y++)
+                    {
+                        double length = BruteForceGeometry.clippedLength(geometry, segment, x, y, CELL_SIZE);
+                        boolean isRecorded = recorded.contains(key(segment, x, y));
+                        if (length > 1e-9)
+                        {
+                            assert isRecorded : "Segment " + segment + " crosses cell (" + x + ", " + y + ") but is not recorded there.";
+                        }
+                        else if (length < 0)
+                        {
+                            assert !isRecorded : "Segment " + segment + " is recorded in cell (" + x + ", " + y + ") but does not touch it.";
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Any two segments that intersect must share at least one cell, otherwise queries
+     * that only compare the segments within each cell would miss them.
+     */
+    @Test
+    public void testIntersectingSegmentsShareCell()
+    {
+        for (long seed = 0; seed < 10; seed++)
+        {
+            TurtleGeometry geometry = randomGeometry(seed, 300);
+            SpatialHashGrid grid = new SpatialHashGrid(geometry, CELL_SIZE);
+            Set<Long> sharing = new HashSet<Long>();
+            for (int cell = 0; cell < grid.getOccupiedCellCount(); cell++)
+            {
+                for (int i = 0; i < grid.getSegmentCount(cell); i++)
+                {
+                    for (int j = 0; j < grid.getSegmentCount(cell); j++)
+                    {
+                        sharing.add(((long) grid.getSegment(cell, i) << 32) | grid.getSegment(cell, j));
+                    }
+                }
+            }
+            for (int a = 0; a < geometry.getSegmentCount(); a++)
+            {
+                for (int b = a + 1; b < geometry.getSegmentCount(); b++)
+                {
+                    if (BruteForceGeometry.touch(geometry, a, b))
+                    {
+                        assert sharing.contains(((long) a << 32) | b) : "Segments " + a + " and " + b + " share no cell.";
+                    }
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testEmptyGeometry()
+    {
+        SpatialHashGrid grid = new SpatialHashGrid(new LSystemInterpreter().interpret("g+g", 90), CELL_SIZE);
+        assert grid.getOccupiedCellCount() == 0 : "Empty geometry should occupy no cells.";
+        assert !grid.isOccupied(0, 0) : "Empty grid should not contain the origin.";
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidCellSize()
+    {
+        new SpatialHashGrid(new LSystemInterpreter().interpret("f", 90), 0);
+    }
+
+
+    /**
+     * Generates a random command string and interprets it.  Drawing starts away from the
+     * origin so that, in general, no segment passes exactly through the corner of a cell.
+     */
+    static TurtleGeometry randomGeometry(long seed, int length)
+    {
+        Random rng = new Random(seed);
+        String symbols = "fff+-[]";
+        StringBuilder commands = new StringBuilder("g+g");
+        for (int i = 0; i < length; i++)
+        {
+            commands.append(symbols.charAt(rng.nextInt(symbols.length())));
+        }
+        return new LSystemInterpreter().interpret(commands, 20 + rng.nextInt(70));
+    }
+
+
+    private static long key(int segment, int x, int y)
+    {
+        return ((long) segment << 40) ^ ((long) (x & 0xFFFFF) << 20) ^ (y & 0xFFFFF);
+    }
+}
@@ -0,0 +1,80 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that many threads can increment at the same time without all contending
+ * for a single memory location.  Each thread increments one of several separate cells,
+ * chosen by its thread ID, and the cells are only added together when the count is read.
+ * This makes increments cheap at the expense of reads, so it suits statistics that are
+ * updated on a hot path and read occasionally.  The count that is read may not reflect
+ * increments that are happening at the same time.
+ * @author Daniel Dyer
+ */
+public final class StripedCounter
+{
+    // Cells are spaced this many longs apart so that no two share a cache line.
+    private static final int CELL_SPACING = 8;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+
+    /**
+     * Creates a counter with enough cells for the number of available processors.
+     */
+    public StripedCounter()
+    {
+        int cellCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        this.cells = new AtomicLongArray(cellCount * CELL_SPACING);
+        this.mask = cellCount - 1;
+    }
+
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment()
+    {
+        add(1);
+    }
+
+
+    /**
+     * @param delta The amount to add to the count.
+     */
+    public void add(long delta)
+    {
+        int cell = (int) Thread.currentThread().getId() & mask;
+        cells.addAndGet(cell * CELL_SPACING, delta);
+    }
+
+
+    /**
+     * @return The sum of all of the increments so far.
+     */
+    public long get()
+    {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += CELL_SPACING)
+        {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+}
@@ -15,15 +15,31 @@
 //=============================================================================
 package org.uncommons.watchmaker.framework;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.uncommons.maths.random.RepeatableRNG;
 
 /**
  * Base class for {@link EvolutionEngine} implementations.
@@ -37,13 +53,36 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
     // A single multi-threaded worker is shared among multiple evolution engine instances.
     private static FitnessEvaluationWorker concurrentWorker = null;
 
+    // Evaluation tasks are sized to take roughly this long, so that the overhead of
+    // submitting and waiting for each task is insignificant by comparison.
+    private static final double TARGET_TASK_NANOS = 500000;
+
+    // Marks RNG state that is a seed and count rather than a serialised object (which
+    // always starts with the serialisation stream's magic number).
+    private static final byte REPEATABLE_RNG_STATE = 1;
+
     private final Set<EvolutionObserver<? super T>> observers = new CopyOnWriteArraySet<EvolutionObserver<? super T>>();
+    private final EvolutionMetrics metrics = new EvolutionMetrics();
 
     private final Random rng;
     private final CandidateFactory<T> candidateFactory;
     private final FitnessEvaluator<? super T> fitnessEvaluator;
+    private final BatchFitnessEvaluator<? super T> batchEvaluator;
 
     private volatile boolean singleThreaded = false;
+    private volatile EvaluationExecutor evaluationExecutor = null;
+    private volatile double nanosPerEvaluation = 0; // Zero until evaluations have been timed.
+    private volatile long evaluationTimeLimit = 0; // Nanoseconds, zero for no limit.
+    private volatile double penaltyFitness = 0;
+    private volatile CheckpointStore<T> checkpointStore = null;
+    private volatile int checkpointInterval = 1;
+    private volatile boolean stopOnCheckpointFailure = false;
+    private volatile IOException checkpointFailure = null;
+    private volatile RandomStreams randomStreams = null;
+
+    // The streams and generation number of the evolution in progress (request thread only).
+    private RandomStreams activeStreams = null;
+    private int currentGeneration = 0;
 
     private List<TerminationCondition> satisfiedTerminationConditions;
 
@@ -56,7 +95,9 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
      * @param fitnessEvaluator A function for assigning fitness scores to candidate
      * solutions.
      * @param rng The source of randomness used by all stochastic processes (including
-     * evolutionary operators and selection strategies).
+     * evolutionary operators and selection strategies).  So that a {@link RepeatableRNG}
+     * can be checkpointed exactly, values should only be drawn from it via the engine
+     * (and the objects that the engine passes it to) after the engine has been created.
      */
     protected AbstractEvolutionEngine(CandidateFactory<T> candidateFactory,
                                       FitnessEvaluator<? super T> fitnessEvaluator,
@@ -64,7 +105,24 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
     {
         this.candidateFactory = candidateFactory;
         this.fitnessEvaluator = fitnessEvaluator;
-        this.rng = rng;
+        this.batchEvaluator = toBatchEvaluator(fitnessEvaluator);
+        // Repeatable generators are checkpointed as a seed and a count of values drawn.
+        this.rng = rng instanceof RepeatableRNG ? new CountingRNG(rng) : rng;
+        if (fitnessEvaluator instanceof CachingFitnessEvaluator)
+        {
+            metrics.setCache((CachingFitnessEvaluator<?>) fitnessEvaluator);
+        }
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <T> BatchFitnessEvaluator<? super T> toBatchEvaluator(FitnessEvaluator<? super T> fitnessEvaluator)
+    {
+        if (fitnessEvaluator instanceof BatchFitnessEvaluator)
+        {
+            return (BatchFitnessEvaluator<? super T>) fitnessEvaluator;
+        }
+        return new BatchFitnessEvaluatorAdapter<T>(fitnessEvaluator);
     }
 
 
@@ -113,6 +171,13 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
 
     /**
      * {@inheritDoc}
+     *
+     * <p>If the request thread is interrupted, any fitness evaluations in progress are
+     * cancelled and the most recent fully-evaluated population is returned.  The thread's
+     * interrupted status is preserved and {@link #getSatisfiedTerminationConditions()}
+     * returns an empty list.  If the interruption occurs before the initial population has
+     * been evaluated, there is no population to return and a
+     * {@link CancellationException} is thrown instead.</p>
      */
     public List<EvaluatedCandidate<T>> evolvePopulation(int populationSize,
                                                         int eliteCount,
@@ -129,44 +194,462 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
         }
 
         satisfiedTerminationConditions = null;
-        int currentGenerationIndex = 0;
         long startTime = System.currentTimeMillis();
+        metrics.startRun();
+        try
+        {
+            activeStreams = randomStreams;
+            List<T> population = candidateFactory.generateInitialPopulation(populationSize,
+                                                                            seedCandidates,
+                                                                            getGenerationRNG(rng, 0));
 
-        List<T> population = candidateFactory.generateInitialPopulation(populationSize,
-                                                                        seedCandidates,
-                                                                        rng);
+            // Calculate the fitness scores for each member of the initial population.
+            List<EvaluatedCandidate<T>> evaluatedPopulation;
+            try
+            {
+                evaluatedPopulation = evaluatePopulation(population);
+            }
+            catch (CancellationException ex)
+            {
+                // Interrupted before there is any evaluated population to return.
+                satisfiedTerminationConditions = Collections.emptyList();
+                throw ex;
+            }
+            return evolveFrom(evaluatedPopulation, eliteCount, 0, startTime, rng, conditions);
+        }
+        finally
+        {
+            metrics.endRun();
+        }
+    }
 
-        // Calculate the fitness scores for each member of the initial population.
-        List<EvaluatedCandidate<T>> evaluatedPopulation = evaluatePopulation(population);
-        EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, fitnessEvaluator.isNatural());
+
+    /**
+     * Continues an evolution from a {@link Checkpoint} without re-evaluating the checkpointed
+     * population.  Observers are notified of the checkpointed generation before evolution
+     * continues with the next generation.  Generation numbers and elapsed times carry on
+     * from those of the checkpoint.
+     * <p>If the checkpoint includes the state of the random number generator, a copy of the
+     * generator restored to that state is used instead of the engine's own generator, so
+     * that a single-threaded evolution resumed from a checkpoint proceeds exactly as it
+     * would have done had it not been stopped.  The state of a {@link RepeatableRNG} is
+     * saved as its seed and the number of values drawn, and it is restored by re-seeding
+     * it and drawing the same number of values.  Other generators are saved using
+     * serialisation and are only restored if their serialised form refers to no classes
+     * other than {@link Random} sub-classes and primitive arrays.  The state of any other
+     * generator is not saved, so an evolution that uses one is not resumed exactly.  If {@link #setRandomStreams(RandomStreams)
+     * random streams} are in use, the generator state is not needed because each
+     * generation's random numbers depend only on the master seed and generation number.</p>
+     * @param checkpoint The state from which to continue.
+     * @param conditions The termination conditions.  These must be the same conditions, in
+     * the same order, that were used when the checkpoint was created.  Any that implement
+     * {@link StatefulTerminationCondition} have their state restored from the checkpoint.
+     * @return The fittest candidates of the final generation, as for
+     * {@link #evolvePopulation(int, int, Collection, TerminationCondition[])}.
+     * @see #setCheckpointStore(CheckpointStore, int)
+     */
+    public List<EvaluatedCandidate<T>> resume(Checkpoint<T> checkpoint,
+                                              TerminationCondition... conditions)
+    {
+        if (conditions.length == 0)
+        {
+            throw new IllegalArgumentException("At least one TerminationCondition must be specified.");
+        }
+        List<byte[]> states = checkpoint.getConditionStates();
+        if (states.size() != conditions.length)
+        {
+            throw new IllegalArgumentException("Checkpoint has state for " + states.size()
+                                               + " termination conditions, " + conditions.length + " specified.");
+        }
+        for (int i = 0; i < conditions.length; i++)
+        {
+            if (states.get(i) != null && conditions[i] instanceof StatefulTerminationCondition)
+            {
+                try
+                {
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(states.get(i)));
+                    ((StatefulTerminationCondition) conditions[i]).readState(in);
+                }
+                catch (IOException ex)
+                {
+                    throw new IllegalArgumentException("Invalid termination condition state.", ex);
+                }
+            }
+        }
+        Random resumedRNG = checkpoint.getRNGState() == null ? rng : restoreRNG(checkpoint.getRNGState());
+
+        satisfiedTerminationConditions = null;
+        long startTime = System.currentTimeMillis() - checkpoint.getElapsedTime();
+        metrics.startRun();
+        try
+        {
+            activeStreams = randomStreams;
+            return evolveFrom(new ArrayList<EvaluatedCandidate<T>>(checkpoint.getPopulation()),
+                              checkpoint.getEliteCount(),
+                              checkpoint.getGenerationNumber(),
+                              startTime,
+                              resumedRNG,
+                              conditions);
+        }
+        finally
+        {
+            metrics.endRun();
+        }
+    }
+
+
+    /**
+     * Continues evolution from a population whose fitness scores are already known, without
+     * re-evaluating it.  This is useful when evolution proceeds in stages, such as the epochs
+     * of an island model, where the population at the end of one stage is the starting point
+     * of the next.  The supplied population is generation zero: observers are notified of it
+     * before evolution continues, and generation numbers and elapsed times start again.
+     * @param evaluatedPopulation The starting population, with fitness scores calculated by
+     * this engine's fitness function (or an equivalent one).  It is not modified.
+     * @param eliteCount The number of candidates preserved via elitism.  This value must be
+     * non-negative and less than the population size.
+     * @param conditions One or more conditions that may cause the evolution to terminate.
+     * @return The fittest candidates of the final generation, as for
+     * {@link #evolvePopulation(int, int, Collection, TerminationCondition[])}.
+     */
+    public List<EvaluatedCandidate<T>> resume(List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                              int eliteCount,
+                                              TerminationCondition... conditions)
+    {
+        if (eliteCount < 0 || eliteCount >= evaluatedPopulation.size())
+        {
+            throw new IllegalArgumentException("Elite count must be non-negative and less than population size.");
+        }
+        if (conditions.length == 0)
+        {
+            throw new IllegalArgumentException("At least one TerminationCondition must be specified.");
+        }
+
+        satisfiedTerminationConditions = null;
+        long startTime = System.currentTimeMillis();
+        metrics.startRun();
+        try
+        {
+            activeStreams = randomStreams;
+            return evolveFrom(new ArrayList<EvaluatedCandidate<T>>(evaluatedPopulation),
+                              eliteCount,
+                              0,
+                              startTime,
+                              rng,
+                              conditions);
+        }
+        finally
+        {
+            metrics.endRun();
+        }
+    }
+
+
+    /**
+     * Evolves an evaluated population until one or more termination conditions are
+     * satisfied.  {@link #evolvePopulation(int, int, Collection, TerminationCondition[])}
+     * and both resume methods delegate to this method once they have an evaluated
+     * population, so sub-classes that need to prepare for (or clean up after) an evolution
+     * can override it.
+     * @param evaluatedPopulation The evaluated population (modifiable, in no particular order).
+     * @param eliteCount The number of candidates preserved by elitism.
+     * @param generationNumber The number of the generation that the population belongs to.
+     * @param startTime The time (in milliseconds since the epoch) at which the evolution started.
+     * @param rng The source of randomness for this evolution.
+     * @param conditions One or more conditions that may cause the evolution to terminate.
+     * @return The fittest candidates of the final generation, sorted in descending order of
+     * fitness.
+     */
+    protected List<EvaluatedCandidate<T>> evolveFrom(List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                                     int eliteCount,
+                                                     int generationNumber,
+                                                     long startTime,
+                                                     Random rng,
+                                                     TerminationCondition[] conditions)
+    {
+        int currentGenerationIndex = generationNumber;
+        CheckpointStore<T> store = checkpointStore;
+        int interval = checkpointInterval;
+        int lastCheckpoint = generationNumber;
+
+        boolean sorted = sortAndTime(evaluatedPopulation, eliteCount);
+        PopulationData<T> data = completeGeneration(evaluatedPopulation, eliteCount, currentGenerationIndex, startTime);
+        List<TerminationCondition> satisfiedConditions = checkTermination(data, conditions);
+        while (satisfiedConditions == null)
+        {
+            ++currentGenerationIndex;
+            try
+            {
+                currentGeneration = currentGenerationIndex;
+                evaluatedPopulation = nextEvolutionStep(evaluatedPopulation,
+                                                        eliteCount,
+                                                        getGenerationRNG(rng, currentGenerationIndex));
+            }
+            catch (CancellationException ex)
+            {
+                if (!Thread.currentThread().isInterrupted())
+                {
+                    throw ex;
+                }
+                // The request thread was interrupted during fitness evaluation.  Stop
+                // and return the last population that was completely evaluated.
+                satisfiedConditions = Collections.emptyList();
+                --currentGenerationIndex;
+                break;
+            }
+            sorted = sortAndTime(evaluatedPopulation, eliteCount);
+            data = completeGeneration(evaluatedPopulation, eliteCount, currentGenerationIndex, startTime);
+            satisfiedConditions = checkTermination(data, conditions);
+            if (store != null && satisfiedConditions == null && currentGenerationIndex % interval == 0)
+            {
+                saveCheckpoint(store, evaluatedPopulation, data, rng, conditions);
+                lastCheckpoint = currentGenerationIndex;
+            }
+        }
+        if (store != null && lastCheckpoint != currentGenerationIndex)
+        {
+            // Record the final state so that the evolution can be continued later.
+            saveCheckpoint(store, evaluatedPopulation, data, rng, conditions);
+        }
+        if (!sorted)
+        {
+            // The evolution steps didn't need a complete ordering but callers expect one.
+            EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, fitnessEvaluator.isNatural());
+        }
+        this.satisfiedTerminationConditions = satisfiedConditions;
+        return evaluatedPopulation;
+    }
+
+
+    private boolean sortAndTime(List<EvaluatedCandidate<T>> evaluatedPopulation, int eliteCount)
+    {
+        long time = System.nanoTime();
+        boolean sorted = sortEvaluatedPopulation(evaluatedPopulation, eliteCount);
+        metrics.recordPhase(EvolutionMetrics.Phase.SORTING, System.nanoTime() - time);
+        return sorted;
+    }
+
+
+    /**
+     * Calculates the statistics for a generation and notifies observers of them.
+     */
+    private PopulationData<T> completeGeneration(List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                                 int eliteCount,
+                                                 int generationNumber,
+                                                 long startTime)
+    {
+        long time = System.nanoTime();
         PopulationData<T> data = EvolutionUtils.getPopulationData(evaluatedPopulation,
                                                                   fitnessEvaluator.isNatural(),
                                                                   eliteCount,
-                                                                  currentGenerationIndex,
+                                                                  generationNumber,
                                                                   startTime);
+        long statisticsTime = System.nanoTime();
+        metrics.recordPhase(EvolutionMetrics.Phase.STATISTICS, statisticsTime - time);
         // Notify observers of the state of the population.
         notifyPopulationChange(data);
+        metrics.recordPhase(EvolutionMetrics.Phase.OBSERVERS, System.nanoTime() - statisticsTime);
+        metrics.recordGeneration();
+        return data;
+    }
+
 
+    private List<TerminationCondition> checkTermination(PopulationData<T> data, TerminationCondition[] conditions)
+    {
+        long time = System.nanoTime();
         List<TerminationCondition> satisfiedConditions = EvolutionUtils.shouldContinue(data, conditions);
-        while (satisfiedConditions == null)
+        metrics.recordPhase(EvolutionMetrics.Phase.STATISTICS, System.nanoTime() - time);
+        return satisfiedConditions;
+    }
+
+
+    private void saveCheckpoint(CheckpointStore<T> store,
+                                List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                PopulationData<T> data,
+                                Random rng,
+                                TerminationCondition[] conditions)
+    {
+        try
         {
-            ++currentGenerationIndex;
-            evaluatedPopulation = nextEvolutionStep(evaluatedPopulation, eliteCount, rng);
-            EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, fitnessEvaluator.isNatural());
-            data = EvolutionUtils.getPopulationData(evaluatedPopulation,
-                                                    fitnessEvaluator.isNatural(),
-                                                    eliteCount,
-                                                    currentGenerationIndex,
-                                                    startTime);
-            // Notify observers of the state of the population.
-            notifyPopulationChange(data);
-            satisfiedConditions = EvolutionUtils.shouldContinue(data, conditions);
+            List<byte[]> states = new ArrayList<byte[]>(conditions.length);
+            for (TerminationCondition condition : conditions)
+            {
+                byte[] state = null;
+                if (condition instanceof StatefulTerminationCondition)
+                {
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    DataOutputStream out = new DataOutputStream(buffer);
+                    ((StatefulTerminationCondition) condition).writeState(out);
+                    out.flush();
+                    state = buffer.toByteArray();
+                }
+                states.add(state);
+            }
+            store.save(new Checkpoint<T>(evaluatedPopulation,
+                                         data.getGenerationNumber(),
+                                         data.getElapsedTime(),
+                                         data.getEliteCount(),
+                                         saveRNG(rng),
+                                         states));
         }
-        this.satisfiedTerminationConditions = satisfiedConditions;
-        return evaluatedPopulation;
+        catch (IOException ex)
+        {
+            checkpointFailure = ex;
+            if (stopOnCheckpointFailure)
+            {
+                throw new IllegalStateException("Failed to save checkpoint.", ex);
+            }
+            // Otherwise carry on evolving, a later checkpoint may succeed.
+        }
+    }
+
+
+    /**
+     * @return The saved state of the RNG, or null if it can't be saved in a form that
+     * can be restored.
+     */
+    private static byte[] saveRNG(Random rng)
+    {
+        try
+        {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            if (rng instanceof CountingRNG)
+            {
+                DataOutputStream out = new DataOutputStream(buffer);
+                out.writeByte(REPEATABLE_RNG_STATE);
+                ((CountingRNG) rng).writeState(out);
+                out.close();
+                return buffer.toByteArray();
+            }
+            ObjectOutputStream out = new ObjectOutputStream(buffer);
+            out.writeObject(rng);
+            out.close();
+            byte[] state = buffer.toByteArray();
+            // Don't save state that would be refused when the checkpoint is resumed.
+            readSerialisedRNG(state);
+            return state;
+        }
+        catch (IOException ex)
+        {
+            // The RNG (or something that it refers to) is not serialisable, or refers
+            // to classes that are not allowed when restoring it.
+            return null;
+        }
+    }
+
+
+    private static Random restoreRNG(byte[] state)
+    {
+        try
+        {
+            if (state.length > 0 && state[0] == REPEATABLE_RNG_STATE)
+            {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(state, 1, state.length - 1));
+                return CountingRNG.readState(in);
+            }
+            return readSerialisedRNG(state);
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalArgumentException("Invalid RNG state.", ex);
+        }
+    }
+
+
+    /**
+     * Deserialises an RNG, refusing to load any class other than sub-classes of
+     * {@link Random} and primitive arrays so that a tampered checkpoint can't be used
+     * to instantiate arbitrary serialisable classes.
+     */
+    private static Random readSerialisedRNG(byte[] state) throws IOException
+    {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(state))
+        {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass descriptor) throws IOException,
+                                                                              ClassNotFoundException
+            {
+                Class<?> type = super.resolveClass(descriptor);
+                if (Random.class.isAssignableFrom(type)
+                    || (type.isArray() && type.getComponentType().isPrimitive()))
+                {
+                    return type;
+                }
+                throw new InvalidClassException(descriptor.getName(), "Not permitted in RNG state.");
+            }
+
+
+            @Override
+            protected Class<?> resolveProxyClass(String[] interfaces) throws IOException
+            {
+                throw new InvalidClassException("Proxy classes are not permitted in RNG state.");
+            }
+        };
+        try
+        {
+            return (Random) in.readObject();
+        }
+        catch (ClassNotFoundException ex)
+        {
+            throw new IOException("Unknown class in RNG state.", ex);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+
+    /**
+     * Puts a newly evaluated population into the order required by the evolution steps and
+     * by the population statistics.  At a minimum, the fittest candidate must be moved to the
+     * start of the list and, if there is elitism, it must be followed by the rest of the elite
+     * in descending order of fitness.  The default implementation sorts the whole population,
+     * as assumed by most {@link SelectionStrategy} implementations.  Sub-classes whose
+     * evolution steps do not depend on the order of the rest of the population may override
+     * this method to avoid the cost of a full sort.
+     * @param evaluatedPopulation The population to order (in-place).
+     * @param eliteCount The number of the fittest individuals that must be preserved.
+     * @return True if the whole population is now sorted, false if only the fittest
+     * candidates are in order.  A population that is not completely sorted is sorted
+     * before it is returned from {@link #evolvePopulation(int, int, Collection, TerminationCondition[])}.
+     */
+    protected boolean sortEvaluatedPopulation(List<EvaluatedCandidate<T>> evaluatedPopulation, int eliteCount)
+    {
+        EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, fitnessEvaluator.isNatural());
+        return true;
     }
 
     
+    /**
+     * @param rng The engine's source of randomness.
+     * @param generationNumber The generation being created.
+     * @return The generator for the generation's stream if {@link RandomStreams} are in use,
+     * otherwise the engine's own generator.
+     */
+    private Random getGenerationRNG(Random rng, int generationNumber)
+    {
+        RandomStreams streams = activeStreams;
+        return streams == null ? rng : streams.getSubstreams(generationNumber).getRandom(0);
+    }
+
+
+    /**
+     * Gets the source of randomness for one of several batches of work that make up the
+     * current evolution step.  If {@link RandomStreams} are in use, each batch has its own
+     * stream, so the results don't depend on the order in which batches are processed or
+     * on which threads process them.  Otherwise all batches share the step's generator.
+     * @param rng The generator passed to {@link #nextEvolutionStep(List, int, Random)}.
+     * @param batchIndex The zero-based index of the batch within the evolution step.
+     * @return The generator to use for the batch.
+     */
+    protected Random getBatchRNG(Random rng, int batchIndex)
+    {
+        RandomStreams streams = activeStreams;
+        return streams == null ? rng : streams.getSubstreams(currentGeneration).getRandom(batchIndex + 1);
+    }
+
+
     /**
      * This method performs a single step/iteration of the evolutionary process.
      * @param evaluatedPopulation The population at the beginning of the process.
@@ -192,50 +675,480 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
      */
     protected List<EvaluatedCandidate<T>> evaluatePopulation(List<T> population)
     {
-        List<EvaluatedCandidate<T>> evaluatedPopulation = new ArrayList<EvaluatedCandidate<T>>(population.size());
+        return startEvaluation(population).getResults();
+    }
+
+
+    /**
+     * Starts assigning fitness scores to a group of candidates without waiting for the
+     * evaluations to finish.  This allows sub-classes to carry on with other work (such as
+     * breeding further candidates) while the worker threads are busy.  If the engine is
+     * {@link #setSingleThreaded(boolean) single-threaded}, the evaluations are performed
+     * before this method returns.
+     * @param candidates The candidates to evaluate.  These are passed to the fitness
+     * evaluator as the population.
+     * @return A handle from which the evaluated candidates can be retrieved once
+     * the evaluations are complete.
+     * @throws CancellationException If the request thread is interrupted.
+     */
+    protected PendingEvaluation startEvaluation(List<T> candidates)
+    {
+        return new PendingEvaluation(candidates, null);
+    }
+
+
+    /**
+     * Starts assigning fitness scores to a group of candidates, some of which may already
+     * have known scores.  A candidate that is a key in the specified map (compared by identity
+     * if the map is an {@link java.util.IdentityHashMap}) is not re-evaluated; the mapped
+     * {@link EvaluatedCandidate} is returned in its place.  This is only valid when the fitness
+     * of a candidate does not depend on the rest of the population and evaluating the same
+     * candidate twice would give the same score.
+     * @param candidates The candidates to evaluate.  Those that do not have known scores are
+     * passed to the fitness evaluator as the population.
+     * @param knownFitness Previously evaluated candidates, keyed by candidate.
+     * @return A handle from which the evaluated candidates can be retrieved once
+     * the evaluations are complete.
+     * @throws CancellationException If the request thread is interrupted.
+     */
+    protected PendingEvaluation startEvaluation(List<T> candidates,
+                                                Map<T, EvaluatedCandidate<T>> knownFitness)
+    {
+        return new PendingEvaluation(candidates, knownFitness);
+    }
+
+
+    /**
+     * Assigns fitness scores to a group of candidates on the calling thread, regardless of
+     * whether the engine is single-threaded.  This is for engines whose own worker threads
+     * already run on the {@link EvaluationExecutor}, where submitting further tasks to the
+     * executor could leave them waiting for threads that they are themselves occupying.
+     * As in single-threaded mode, evaluation time limits are only enforced by fitness
+     * evaluators that check their {@link CancellationToken}.
+     * @param candidates The candidates to evaluate.  These are passed to the fitness
+     * evaluator as the population.
+     * @return The evaluated candidates, in the same order.
+     * @throws CancellationException If the calling thread is interrupted.
+     */
+    protected List<EvaluatedCandidate<T>> evaluateOnCurrentThread(List<T> candidates)
+    {
+        long startTime = System.nanoTime();
+        double[] scores = new double[candidates.size()];
+        long elapsedNanos = new BatchEvaluationTask<T>(batchEvaluator,
+                                                       candidates,
+                                                       0,
+                                                       candidates.size(),
+                                                       scores,
+                                                       evaluationTimeLimit,
+                                                       penaltyFitness,
+                                                       metrics).call();
+        metrics.recordEvaluations(candidates.size(), elapsedNanos);
+        if (Thread.currentThread().isInterrupted())
+        {
+            // Cooperative evaluators may have given up early, so the scores can't be trusted.
+            throw new CancellationException("Fitness evaluation interrupted.");
+        }
+        List<EvaluatedCandidate<T>> evaluated = new ArrayList<EvaluatedCandidate<T>>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++)
+        {
+            evaluated.add(new EvaluatedCandidate<T>(candidates.get(i), scores[i]));
+        }
+        metrics.recordPhase(EvolutionMetrics.Phase.EVALUATION, System.nanoTime() - startTime);
+        return evaluated;
+    }
+
+
+    /**
+     * Fitness evaluations that have been started by {@link #startEvaluation(List)}.
+     * Instances are intended to be used only by the request thread.
+     */
+    protected final class PendingEvaluation
+    {
+        private final List<T> candidates;
+        private final List<EvaluatedCandidate<T>> known;
+        private final List<T> population;
+        private final double[] scores;
+        private final BitSet timedOut;
+        private final long timeLimit = evaluationTimeLimit;
+        private final double penalty = penaltyFitness;
+        private final EvaluationExecutor executor;
+        private final List<BatchEvaluationTask<T>> tasks;
+        private final List<Future<Long>> results;
+
 
-        if (singleThreaded) // Do fitness evaluations on the request thread.
+        private PendingEvaluation(List<T> candidates, Map<T, EvaluatedCandidate<T>> knownFitness)
         {
-            for (T candidate : population)
+            long startTime = System.nanoTime();
+            this.candidates = candidates;
+            if (knownFitness == null || knownFitness.isEmpty())
+            {
+                this.known = null;
+                this.population = candidates;
+            }
+            else
+            {
+                // Only the candidates without known scores are submitted for evaluation.
+                this.known = new ArrayList<EvaluatedCandidate<T>>(candidates.size());
+                this.population = new ArrayList<T>(candidates.size());
+                for (T candidate : candidates)
+                {
+                    EvaluatedCandidate<T> evaluated = knownFitness.get(candidate);
+                    known.add(evaluated);
+                    if (evaluated == null)
+                    {
+                        population.add(candidate);
+                    }
+                }
+                metrics.recordReusedFitness(candidates.size() - population.size());
+            }
+            this.scores = new double[population.size()];
+            this.timedOut = new BitSet(population.size());
+            if (singleThreaded) // Do fitness evaluations on the request thread.
+            {
+                executor = null;
+                tasks = null;
+                results = null;
+                metrics.setParallelism(1);
+                long elapsedNanos = new BatchEvaluationTask<T>(batchEvaluator,
+                                                               population,
+                                                               0,
+                                                               population.size(),
+                                                               scores,
+                                                               timeLimit,
+                                                               penalty,
+                                                               metrics).call();
+                metrics.recordEvaluations(population.size(), elapsedNanos);
+                if (Thread.currentThread().isInterrupted())
+                {
+                    // Cooperative evaluators may have given up early, so the scores can't be trusted.
+                    throw new CancellationException("Fitness evaluation interrupted.");
+                }
+            }
+            else
             {
-                evaluatedPopulation.add(new EvaluatedCandidate<T>(candidate,
-                                                                  fitnessEvaluator.getFitness(candidate, population)));
+                // Divide the population into slices, sized according to how long evaluations
+                // have been taking, and submit a task for each slice.
+                executor = getEvaluationExecutor();
+                metrics.setParallelism(executor.getParallelism());
+                List<T> unmodifiablePopulation = Collections.unmodifiableList(population);
+                int chunkSize = getChunkSize(population.size(), executor.getParallelism());
+                tasks = new ArrayList<BatchEvaluationTask<T>>(population.size() / chunkSize + 1);
+                results = new ArrayList<Future<Long>>(population.size() / chunkSize + 1);
+                try
+                {
+                    for (int i = 0; i < population.size(); i += chunkSize)
+                    {
+                        BatchEvaluationTask<T> task = new BatchEvaluationTask<T>(batchEvaluator,
+                                                                                 unmodifiablePopulation,
+                                                                                 i,
+                                                                                 Math.min(i + chunkSize, population.size()),
+                                                                                 scores,
+                                                                                 timeLimit,
+                                                                                 penalty,
+                                                                                 metrics);
+                        tasks.add(task);
+                        task.enqueue();
+                        results.add(executor.submit(task));
+                    }
+                }
+                catch (RejectedExecutionException ex)
+                {
+                    throw handleRejection(ex);
+                }
             }
+            metrics.recordPhase(EvolutionMetrics.Phase.EVALUATION, System.nanoTime() - startTime);
         }
-        else
+
+
+        /**
+         * Waits for all of the evaluations to complete.  This method should only be
+         * called once.
+         * @return The evaluated candidates, in the order that they were submitted.
+         * @throws CancellationException If the request thread is interrupted while waiting,
+         * in which case all of the evaluations are cancelled.
+         */
+        public List<EvaluatedCandidate<T>> getResults()
         {
-            // Divide the required number of fitness evaluations equally among the
-            // available processors and coordinate the threads so that we do not
-            // proceed until all threads have finished processing.
-            try
+            long startTime = System.nanoTime();
+            if (tasks != null)
             {
-                List<T> unmodifiablePopulation = Collections.unmodifiableList(population);
-                List<Future<EvaluatedCandidate<T>>> results = new ArrayList<Future<EvaluatedCandidate<T>>>(population.size());
-                // Submit tasks for execution and wait until all threads have finished fitness evaluations.
-                for (T candidate : population)
+                try
                 {
-                    results.add(getSharedWorker().submit(new FitnessEvalutationTask<T>(fitnessEvaluator,
-                                                                                       candidate,
-                                                                                       unmodifiablePopulation)));
+                    long elapsedNanos = 0;
+                    // Timed-out tasks may be replaced by new tasks appended to the lists.
+                    for (int i = 0; i < tasks.size(); i++)
+                    {
+                        if (timeLimit <= 0)
+                        {
+                            elapsedNanos += results.get(i).get();
+                        }
+                        else
+                        {
+                            elapsedNanos += awaitTimedTask(tasks.get(i), results.get(i));
+                        }
+                    }
+                    recordEvaluationTime(elapsedNanos, population.size());
+                    metrics.recordEvaluations(population.size(), elapsedNanos);
                 }
-                for (Future<EvaluatedCandidate<T>> result : results)
+                catch (ExecutionException ex)
                 {
-                    evaluatedPopulation.add(result.get());
+                    cancel();
+                    throw new IllegalStateException("Fitness evaluation task execution failed.", ex);
+                }
+                catch (InterruptedException ex)
+                {
+                    cancel();
+                    // Restore the interrupted status, allows methods further up the call-stack
+                    // to abort processing if appropriate.
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Fitness evaluation interrupted.");
+                }
+                catch (RejectedExecutionException ex)
+                {
+                    throw handleRejection(ex);
                 }
             }
-            catch (ExecutionException ex)
+
+            List<EvaluatedCandidate<T>> evaluatedPopulation = new ArrayList<EvaluatedCandidate<T>>(candidates.size());
+            int next = 0; // Index of the next score for a candidate that was not already evaluated.
+            for (int i = 0; i < candidates.size(); i++)
             {
-                throw new IllegalStateException("Fitness evaluation task execution failed.", ex);
+                EvaluatedCandidate<T> evaluated = known == null ? null : known.get(i);
+                if (evaluated == null)
+                {
+                    evaluated = new EvaluatedCandidate<T>(population.get(next),
+                                                          timedOut.get(next) ? penalty : scores[next]);
+                    ++next;
+                }
+                evaluatedPopulation.add(evaluated);
             }
-            catch (InterruptedException ex)
+            metrics.recordPhase(EvolutionMetrics.Phase.EVALUATION, System.nanoTime() - startTime);
+            return evaluatedPopulation;
+        }
+
+
+        /**
+         * Cancels any evaluations that have not completed.  The results of this
+         * evaluation must not be retrieved after it has been cancelled.
+         */
+        public void cancel()
+        {
+            if (tasks != null)
             {
-                // Restore the interrupted status, allows methods further up the call-stack
-                // to abort processing if appropriate.
-                Thread.currentThread().interrupt();
+                for (int i = 0; i < results.size(); i++)
+                {
+                    tasks.get(i).cancel();
+                    results.get(i).cancel(true);
+                }
+                for (BatchEvaluationTask<T> task : tasks)
+                {
+                    task.dequeue(); // Unless it has already started.
+                }
             }
         }
 
-        return evaluatedPopulation;
+
+        private RuntimeException handleRejection(RejectedExecutionException ex)
+        {
+            cancel();
+            // An executor that blocks submissions when it is busy gives up if the
+            // request thread is interrupted while waiting.  It restores the interrupted
+            // status itself, so this is handled in the same way as an interrupt.
+            if (Thread.currentThread().isInterrupted())
+            {
+                return new CancellationException("Fitness evaluation interrupted.");
+            }
+            return ex;
+        }
+
+
+        /**
+         * Waits for a task to complete, abandoning it if the candidate it is evaluating runs
+         * out of time.  The candidate that ran out of time is marked as timed out and any
+         * candidates after it in the task's slice are resubmitted as a new task.
+         * @return The time spent by the task, in nanoseconds.
+         */
+        private long awaitTimedTask(BatchEvaluationTask<T> task,
+                                    Future<Long> result) throws InterruptedException, ExecutionException
+        {
+            while (true)
+            {
+                long deadline = task.getDeadline();
+                long wait = deadline == BatchEvaluationTask.NOT_RUNNING ? timeLimit : deadline - System.nanoTime();
+                if (wait > 0)
+                {
+                    try
+                    {
+                        return result.get(wait, TimeUnit.NANOSECONDS);
+                    }
+                    catch (TimeoutException ex)
+                    {
+                        continue; // Check the task's progress again.
+                    }
+                }
+                int overdueIndex = task.abandonIfOverdue();
+                if (overdueIndex >= 0)
+                {
+                    result.cancel(true);
+                    timedOut.set(overdueIndex);
+                    if (overdueIndex + 1 < task.getToIndex())
+                    {
+                        BatchEvaluationTask<T> remainder = task.remainder(overdueIndex + 1);
+                        tasks.add(remainder);
+                        remainder.enqueue();
+                        results.add(executor.submit(remainder));
+                    }
+                    return timeLimit;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Sets a limit on the time that may be spent evaluating the fitness of any single
+     * candidate.  A candidate whose evaluation takes longer is assigned the specified
+     * penalty score.  The evaluation is cancelled via its {@link CancellationToken} and,
+     * if it is running on a worker thread, that thread is interrupted.  When evaluations
+     * are performed on worker threads, the engine stops waiting for an evaluation once it
+     * has run out of time, so the latency of each generation is bounded even if a fitness
+     * function never returns.  In {@link #setSingleThreaded(boolean) single-threaded} mode,
+     * time limits can only be enforced by evaluators that check the token.  An evaluation
+     * that ignores both cancellation and interruption keeps its worker thread busy until
+     * it returns, reducing the number of threads available to later evaluations.
+     * @param timeout The maximum time allowed for each fitness evaluation.  Zero or less
+     * removes the limit.
+     * @param unit The unit of the timeout.
+     * @param penaltyFitness The fitness score assigned to candidates that exceed the time
+     * limit.  This would normally be the worst possible score (e.g. zero for natural
+     * fitness).  Must not be negative.
+     */
+    public void setEvaluationTimeout(long timeout, TimeUnit unit, double penaltyFitness)
+    {
+        if (penaltyFitness < 0)
+        {
+            throw new IllegalArgumentException("Penalty fitness must not be negative.");
+        }
+        this.penaltyFitness = penaltyFitness;
+        this.evaluationTimeLimit = Math.max(0, unit.toNanos(timeout));
+    }
+
+
+    /**
+     * @return The timers and counters that record where this engine spends its time.
+     * @see EvolutionMetrics#registerMBean(String)
+     */
+    public EvolutionMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+
+    /**
+     * <p>Makes evolution deterministic, however many threads are used, by deriving the
+     * random numbers for each generation from the specified streams instead of using the
+     * engine's own generator.  The initial population and each subsequent generation are
+     * created using their own stream (and, where an engine breeds a generation in batches,
+     * each batch has its own stream), so two evolutions with the same master seed and the
+     * same configuration produce identical results.  The generator for each stream is used
+     * by only one thread, so there is no contention for a shared generator.</p>
+     *
+     * <p>Fitness evaluations do not use random numbers, so they are unaffected.  The
+     * {@link AsynchronousSteadyStateEvolutionEngine} gives each of its workers a separate
+     * generator, but its results still depend on the order in which evaluations finish.</p>
+     * @param streams The streams from which to derive random numbers, or null to use the
+     * generator that the engine was created with.  This takes effect from the next call
+     * to {@link #evolvePopulation(int, int, Collection, TerminationCondition[])} or
+     * {@link #resume(Checkpoint, TerminationCondition[])}.
+     */
+    public void setRandomStreams(RandomStreams streams)
+    {
+        this.randomStreams = streams;
+    }
+
+
+    /**
+     * Makes the engine save a {@link Checkpoint} at regular intervals so that a long-running
+     * evolution can be {@link #resume(Checkpoint, TerminationCondition[]) resumed} if it is
+     * stopped.  A checkpoint is also saved for the final generation, including when the
+     * evolution is stopped by interrupting the request thread.  If a checkpoint cannot be
+     * saved (for example because the disk is full), the evolution carries on and the
+     * failure is available from {@link #getCheckpointFailure()}.
+     * @param store Where to save checkpoints, or null to stop saving them.
+     * @param generationInterval The number of generations between checkpoints.
+     */
+    public void setCheckpointStore(CheckpointStore<T> store, int generationInterval)
+    {
+        setCheckpointStore(store, generationInterval, false);
+    }
+
+
+    /**
+     * Makes the engine save a {@link Checkpoint} at regular intervals, optionally stopping
+     * the evolution if a checkpoint cannot be saved.
+     * @param store Where to save checkpoints, or null to stop saving them.
+     * @param generationInterval The number of generations between checkpoints.
+     * @param stopOnFailure If true, a checkpoint that cannot be saved stops the evolution
+     * with an {@link IllegalStateException}.  If false, the evolution carries on and the
+     * failure is available from {@link #getCheckpointFailure()}.
+     * @see #setCheckpointStore(CheckpointStore, int)
+     */
+    public void setCheckpointStore(CheckpointStore<T> store, int generationInterval, boolean stopOnFailure)
+    {
+        if (generationInterval < 1)
+        {
+            throw new IllegalArgumentException("Generation interval must be at least one.");
+        }
+        this.checkpointInterval = generationInterval;
+        this.stopOnCheckpointFailure = stopOnFailure;
+        this.checkpointStore = store;
+    }
+
+
+    /**
+     * @return The exception thrown the most recent time that a checkpoint could not be
+     * saved, or null if every checkpoint has been saved successfully.
+     */
+    public IOException getCheckpointFailure()
+    {
+        return checkpointFailure;
+    }
+
+
+    /**
+     * Chooses how many candidates to evaluate in each task.  Slices are made large enough
+     * that the cost of each task is small compared to the evaluations it performs, but
+     * never so large that some threads are left without work.  Until the cost of an
+     * evaluation has been measured, a few slices are created per thread.
+     * @param populationSize The number of candidates to evaluate.
+     * @param parallelism The number of threads available to perform evaluations.
+     * @return The number of candidates per task.
+     */
+    private int getChunkSize(int populationSize, int parallelism)
+    {
+        int maxChunkSize = Math.max(1, (populationSize + parallelism - 1) / parallelism);
+        double cost = nanosPerEvaluation;
+        if (cost <= 0)
+        {
+            return Math.max(1, populationSize / (parallelism * 4));
+        }
+        return (int) Math.max(1, Math.min(maxChunkSize, Math.ceil(TARGET_TASK_NANOS / cost)));
+    }
+
+
+    /**
+     * Updates the moving average of the time taken for a single fitness evaluation.
+     * @param elapsedNanos The total time spent in fitness evaluations, summed across threads.
+     * @param evaluations The number of evaluations performed.
+     */
+    private void recordEvaluationTime(long elapsedNanos, int evaluations)
+    {
+        if (evaluations > 0)
+        {
+            double measured = Math.max(1, elapsedNanos / (double) evaluations);
+            double previous = nanosPerEvaluation;
+            nanosPerEvaluation = previous <= 0 ? measured : (previous + measured) / 2;
+        }
     }
 
 
@@ -327,6 +1240,45 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
     }
 
 
+    /**
+     * @return True if fitness evaluations are performed on the request thread.
+     * @see #setSingleThreaded(boolean)
+     */
+    protected boolean isSingleThreaded()
+    {
+        return singleThreaded;
+    }
+
+
+    /**
+     * Specifies the executor used to perform fitness evaluations when this engine is not
+     * {@link #setSingleThreaded(boolean) single-threaded}.  By default, all engines share a
+     * single pool with one thread per available processor.  Providing an executor allows
+     * the threads used by this engine to be sized, isolated from those of other engines and
+     * shut down when finished with.  The engine does not take ownership of the executor;
+     * it is the caller's responsibility to {@link EvaluationExecutor#close() close} it once
+     * evolution has completed.
+     * @param evaluationExecutor The executor to use for fitness evaluations, or null to
+     * revert to the shared default.
+     * @see org.uncommons.watchmaker.framework.evaluation
+     */
+    public void setEvaluationExecutor(EvaluationExecutor evaluationExecutor)
+    {
+        this.evaluationExecutor = evaluationExecutor;
+    }
+
+
+    /**
+     * @return The executor used for multi-threaded fitness evaluations.  This is the shared
+     * default worker unless another executor has been specified.
+     */
+    protected EvaluationExecutor getEvaluationExecutor()
+    {
+        EvaluationExecutor executor = evaluationExecutor;
+        return executor == null ? getSharedWorker() : executor;
+    }
+
+
     /**
      * Lazily create the multi-threaded worker for fitness evaluations.
      */
@@ -0,0 +1,333 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import org.uncommons.util.concurrent.ConfigurableThreadFactory;
+
+/**
+ * <p>An {@link EvolutionObserver} decorator that notifies another observer on a separate
+ * thread so that a slow observer (such as one that updates a GUI, writes to a log or
+ * publishes over a network) does not stall the evolution thread.</p>
+ * <p>Updates are held in a bounded buffer until the dispatch thread delivers them.  If the
+ * buffer is full when a new update arrives, the oldest waiting update is discarded, so the
+ * evolution thread never waits for the observer.  A buffer size of one means that the
+ * observer only ever sees the latest update (intermediate updates are coalesced).</p>
+ * <p>Updates can be further restricted by only accepting every Nth generation and by
+ * leaving a minimum interval between deliveries.  Updates that arrive while the dispatcher
+ * is waiting for the interval to elapse are buffered (and coalesced if the buffer is full),
+ * so the most recent update is always delivered eventually.</p>
+ * <p>The dispatch thread is a daemon thread that is started by the first update.  Call
+ * {@link #shutdown()} to stop it once it is no longer needed.  Exceptions thrown by the
+ * delegate are reported to the dispatch thread's uncaught exception handler and delivery
+ * continues.  If the dispatch thread dies (because the delegate throws an {@link Error},
+ * for example) the observer stops accepting updates and {@link #flush()} fails rather
+ * than waiting for deliveries that will never happen.</p>
+ * @param <T> The type of entity that exists in the evolving population.
+ * @author Daniel Dyer
+ */
+public class AsynchronousEvolutionObserver<T> implements EvolutionObserver<T>
+{
+    /**
+     * The buffer size used when delivering every accepted update.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64;
+
+    private static final ConfigurableThreadFactory THREAD_FACTORY
+        = new ConfigurableThreadFactory("AsynchronousEvolutionObserver", Thread.NORM_PRIORITY, true);
+
+    private final EvolutionObserver<? super T> delegate;
+    private final int bufferSize;
+    private final int generationInterval;
+    private final long minimumIntervalNanos;
+
+    private final Object lock = new Object();
+    private final Deque<PopulationData<? extends T>> buffer;
+    private Thread dispatchThread = null;
+    private boolean delivering = false;
+    private boolean shutdown = false;
+    private Throwable failure = null;
+    private long droppedCount = 0;
+
+
+    /**
+     * Creates an observer that delivers every update, as long as the delegate keeps up.
+     * @param delegate The observer that is notified on the dispatch thread.
+     * @param bufferSize The maximum number of updates waiting for delivery.
+     */
+    public AsynchronousEvolutionObserver(EvolutionObserver<? super T> delegate,
+                                         int bufferSize)
+    {
+        this(delegate, bufferSize, 1, 0, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * @param delegate The observer that is notified on the dispatch thread.
+     * @param bufferSize The maximum number of updates waiting for delivery.  Must be at
+     * least one.
+     * @param generationInterval Only generations whose numbers are multiples of this value
+     * are passed on to the delegate.  A value of one means every generation.
+     * @param minimumInterval The minimum time between the start of consecutive deliveries.
+     * Zero means no limit.
+     * @param unit The time unit of {@code minimumInterval}.
+     */
+    public AsynchronousEvolutionObserver(EvolutionObserver<? super T> delegate,
+                                         int bufferSize,
+                                         int generationInterval,
+                                         long minimumInterval,
+                                         TimeUnit unit)
+    {
+        if (bufferSize < 1)
+        {
+            throw new IllegalArgumentException("Buffer size must be at least one.");
+        }
+        if (generationInterval < 1)
+        {
+            throw new IllegalArgumentException("Generation interval must be at least one.");
+        }
+        if (minimumInterval < 0)
+        {
+            throw new IllegalArgumentException("Minimum interval must be non-negative.");
+        }
+        this.delegate = delegate;
+        this.bufferSize = bufferSize;
+        this.generationInterval = generationInterval;
+        this.minimumIntervalNanos = unit.toNanos(minimumInterval);
+        this.buffer = new ArrayDeque<PopulationData<? extends T>>(bufferSize);
+    }
+
+
+    /**
+     * Creates an observer that only ever delivers the most recent update.
+     * @param delegate The observer that is notified on the dispatch thread.
+     * @param <T> The type of entity that exists in the evolving population.
+     * @return An observer that coalesces updates that the delegate can't keep up with.
+     */
+    public static <T> AsynchronousEvolutionObserver<T> latestOnly(EvolutionObserver<? super T> delegate)
+    {
+        return new AsynchronousEvolutionObserver<T>(delegate, 1);
+    }
+
+
+    /**
+     * Creates an observer that delivers the update for every Nth generation.
+     * @param delegate The observer that is notified on the dispatch thread.
+     * @param generationInterval The number of generations between updates.
+     * @param <T> The type of entity that exists in the evolving population.
+     * @return An observer that skips intermediate generations.
+     */
+    public static <T> AsynchronousEvolutionObserver<T> everyNthGeneration(EvolutionObserver<? super T> delegate,
+                                                                         int generationInterval)
+    {
+        return new AsynchronousEvolutionObserver<T>(delegate,
+                                                    DEFAULT_BUFFER_SIZE,
+                                                    generationInterval,
+                                                    0,
+                                                    TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Creates an observer that delivers the most recent update at most once in the
+     * specified interval.
+     * @param delegate The observer that is notified on the dispatch thread.
+     * @param minimumInterval The minimum time between deliveries.
+     * @param unit The time unit of {@code minimumInterval}.
+     * @param <T> The type of entity that exists in the evolving population.
+     * @return An observer that limits the rate of updates.
+     */
+    public static <T> AsynchronousEvolutionObserver<T> throttled(EvolutionObserver<? super T> delegate,
+                                                                long minimumInterval,
+                                                                TimeUnit unit)
+    {
+        return new AsynchronousEvolutionObserver<T>(delegate, 1, 1, minimumInterval, unit);
+    }
+
+
+    /**
+     * Queues the update for delivery to the delegate and returns immediately.  Updates
+     * received after {@link #shutdown()} are ignored.
+     * @param data Statistics about the state of the current generation.
+     */
+    public void populationUpdate(PopulationData<? extends T> data)
+    {
+        if (data.getGenerationNumber() % generationInterval != 0)
+        {
+            return;
+        }
+        synchronized (lock)
+        {
+            if (shutdown || failure != null)
+            {
+                return;
+            }
+            if (buffer.size() == bufferSize)
+            {
+                buffer.removeFirst();
+                ++droppedCount;
+            }
+            buffer.addLast(data);
+            if (dispatchThread == null)
+            {
+                dispatchThread = THREAD_FACTORY.newThread(new Dispatcher());
+                dispatchThread.start();
+            }
+            lock.notifyAll();
+        }
+    }
+
+
+    /**
+     * @return The number of accepted updates that were discarded because the buffer
+     * was full.  Generations skipped because of the generation interval are not counted.
+     */
+    public long getDroppedCount()
+    {
+        synchronized (lock)
+        {
+            return droppedCount;
+        }
+    }
+
+
+    /**
+     * Blocks until every buffered update has been delivered to the delegate.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     * @throws IllegalStateException If the dispatch thread has died, in which case the
+     * remaining updates will never be delivered.  The cause is whatever killed the thread.
+     */
+    public void flush() throws InterruptedException
+    {
+        synchronized (lock)
+        {
+            while ((!buffer.isEmpty() || delivering) && failure == null)
+            {
+                lock.wait();
+            }
+            if (failure != null)
+            {
+                throw new IllegalStateException("Observer dispatch thread has died.", failure);
+            }
+        }
+    }
+
+
+    /**
+     * Stops accepting updates.  Updates that are already buffered are still delivered
+     * (without waiting for the minimum interval) before the dispatch thread terminates.
+     */
+    public void shutdown()
+    {
+        synchronized (lock)
+        {
+            shutdown = true;
+            lock.notifyAll();
+        }
+    }
+
+
+    /**
+     * Delivers buffered updates to the delegate until this observer is shutdown.
+     */
+    private final class Dispatcher implements Runnable
+    {
+        public void run()
+        {
+            long nextDelivery = System.nanoTime();
+            Throwable cause = null;
+            try
+            {
+                while (true)
+                {
+                    PopulationData<? extends T> data;
+                    synchronized (lock)
+                    {
+                        while (buffer.isEmpty() && !shutdown)
+                        {
+                            lock.wait();
+                        }
+                        // Later updates may replace this one while waiting for the interval.
+                        long delay = nextDelivery - System.nanoTime();
+                        while (delay > 0 && !shutdown)
+                        {
+                            TimeUnit.NANOSECONDS.timedWait(lock, delay);
+                            delay = nextDelivery - System.nanoTime();
+                        }
+                        if (buffer.isEmpty())
+                        {
+                            break; // Shutdown and nothing left to deliver.
+                        }
+                        data = buffer.removeFirst();
+                        delivering = true;
+                    }
+                    nextDelivery = System.nanoTime() + minimumIntervalNanos;
+                    try
+                    {
+                        delegate.populationUpdate(data);
+                    }
+                    catch (RuntimeException ex)
+                    {
+                        // Report the failure but keep delivering later updates.
+                        Thread thread = Thread.currentThread();
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, ex);
+                    }
+                    finally
+                    {
+                        synchronized (lock)
+                        {
+                            delivering = false;
+                            lock.notifyAll();
+                        }
+                    }
+                }
+            }
+            catch (InterruptedException ex)
+            {
+                cause = ex;
+                Thread.currentThread().interrupt();
+            }
+            catch (RuntimeException ex)
+            {
+                cause = ex;
+                throw ex;
+            }
+            catch (Error ex)
+            {
+                cause = ex;
+                throw ex;
+            }
+            finally
+            {
+                synchronized (lock)
+                {
+                    // If the thread is dying before delivering everything, nothing else will
+                    // deliver the buffered updates, so stop accepting them and wake up flush().
+                    if (cause != null)
+                    {
+                        failure = cause;
+                        buffer.clear();
+                    }
+                    delivering = false;
+                    dispatchThread = null;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+}
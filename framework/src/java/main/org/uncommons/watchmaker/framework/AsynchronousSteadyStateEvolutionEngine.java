@@ -0,0 +1,594 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.uncommons.maths.random.MersenneTwisterRNG;
+
+/**
+ * <p>A steady-state evolutionary algorithm without a generation barrier.  Instead of the
+ * request thread selecting, breeding, evaluating and replacing one individual at a time,
+ * each worker thread repeatedly selects parents from the shared population, breeds
+ * offspring, evaluates them and inserts them into the population, independently of the
+ * other workers.  No worker waits for any other, so all of the threads stay busy even when
+ * evaluation times vary widely between candidates.</p>
+ *
+ * <p>Offspring replace randomly-chosen members of the population using an atomic
+ * compare-and-set, so insertion never blocks.  Parents are selected from the most recently
+ * published snapshot of the population, sorted by fitness (via a {@link PopulationView} of
+ * the snapshot if the selection strategy is a {@link ViewSelectionStrategy}).  The request thread publishes a
+ * new snapshot after every {@code snapshotInterval} evaluations and this is what observers and
+ * termination conditions see.  Each snapshot counts as one "generation", so, for example, a
+ * {@link org.uncommons.watchmaker.framework.termination.GenerationCount} condition counts
+ * snapshots rather than individual evaluations.  Elite candidates are the fittest members of
+ * the latest snapshot, and are protected from replacement until the next snapshot is
+ * published.</p>
+ *
+ * <p>The workers run on the engine's {@link EvaluationExecutor} (one per unit of its
+ * parallelism) for the duration of each call to {@code evolvePopulation}, so a dedicated
+ * executor should be used if other engines share the default one.  Because the selection
+ * strategy and evolutionary operators are invoked concurrently by several workers, they must be
+ * thread-safe (the implementations provided by the framework are).  Each worker evaluates
+ * its own offspring, which are passed to the fitness evaluator as the population, so
+ * evaluation time limits are only enforced by evaluators that check their
+ * {@link CancellationToken} (see {@link #evaluateOnCurrentThread(List)}).  If the engine is
+ * {@link #setSingleThreaded(boolean) single-threaded}, the request thread performs the
+ * work of a single worker between snapshots.</p>
+ *
+ * <p>Applying the evolution scheme may occasionally produce no offspring, but if it
+ * repeatedly produces none the evolution fails with an {@link IllegalStateException}
+ * rather than waiting forever for evaluations that will never happen.</p>
+ * @param <T> The type of entity that is to be evolved.
+ * @see SteadyStateEvolutionEngine
+ * @author Daniel Dyer
+ */
+public class AsynchronousSteadyStateEvolutionEngine<T> extends AbstractEvolutionEngine<T>
+{
+    // Consecutive applications of the evolution scheme that may produce no offspring
+    // before the evolution is abandoned.
+    private static final int MAX_FRUITLESS_ATTEMPTS = 1000;
+
+    private final EvolutionaryOperator<T> evolutionScheme;
+    private final FitnessEvaluator<? super T> fitnessEvaluator;
+    private final SelectionStrategy<? super T> selectionStrategy;
+    private final int selectionSize;
+    private final boolean forceSingleCandidateUpdate;
+    private final int snapshotInterval;
+
+    // State of the current evolution, shared between the request thread and the workers.
+    private volatile AtomicReferenceArray<EvaluatedCandidate<T>> population;
+    private volatile Snapshot<T> snapshot;
+    private volatile boolean running = false;
+    private final Semaphore completedEvaluations = new Semaphore(0);
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    private List<Worker> workers = null;
+    private List<Future<?>> workerFutures = null;
+    private CountDownLatch workersFinished = null;
+
+
+    /**
+     * Creates an asynchronous steady-state evolution engine.
+     * @param candidateFactory Factory used to create the initial population that is
+     * iteratively evolved.
+     * @param evolutionScheme The evolutionary operator that breeds offspring from the
+     * selected parents.  This is invoked concurrently by multiple threads.
+     * @param fitnessEvaluator The fitness function.
+     * @param selectionStrategy The strategy for selecting parents.  This is invoked
+     * concurrently by multiple threads.
+     * @param selectionSize How many parent candidates are required by the evolution scheme.
+     * @param forceSingleCandidateUpdate If true, only one (randomly chosen) offspring from each
+     * application of the evolution scheme is kept.  See {@link SteadyStateEvolutionEngine}.
+     * @param snapshotInterval The number of evaluations between published snapshots of
+     * the population.
+     * @param rng The source of randomness used on the request thread and to seed the
+     * independent random number generators used by the worker threads.
+     */
+    public AsynchronousSteadyStateEvolutionEngine(CandidateFactory<T> candidateFactory,
+                                                  EvolutionaryOperator<T> evolutionScheme,
+                                                  FitnessEvaluator<? super T> fitnessEvaluator,
+                                                  SelectionStrategy<? super T> selectionStrategy,
+                                                  int selectionSize,
+                                                  boolean forceSingleCandidateUpdate,
+                                                  int snapshotInterval,
+                                                  Random rng)
+    {
+        super(candidateFactory, fitnessEvaluator, rng);
+        if (snapshotInterval <= 0)
+        {
+            throw new IllegalArgumentException("Snapshot interval must be positive.");
+        }
+        this.evolutionScheme = evolutionScheme;
+        this.fitnessEvaluator = fitnessEvaluator;
+        this.selectionStrategy = selectionStrategy;
+        this.selectionSize = selectionSize;
+        this.forceSingleCandidateUpdate = forceSingleCandidateUpdate;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The returned population is the final published snapshot, which is the one that
+     * satisfied the termination condition(s).  Worker threads are stopped before this
+     * method returns.</p>
+     */
+    @Override
+    public List<EvaluatedCandidate<T>> evolvePopulation(int populationSize,
+                                                        int eliteCount,
+                                                        Collection<T> seedCandidates,
+                                                        TerminationCondition... conditions)
+    {
+        checkPopulationSize(populationSize, eliteCount);
+        return super.evolvePopulation(populationSize, eliteCount, seedCandidates, conditions);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Worker threads are started for the evolution and stopped before this method
+     * returns.</p>
+     */
+    @Override
+    protected List<EvaluatedCandidate<T>> evolveFrom(List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                                     int eliteCount,
+                                                     int generationNumber,
+                                                     long startTime,
+                                                     Random rng,
+                                                     TerminationCondition[] conditions)
+    {
+        checkPopulationSize(evaluatedPopulation.size(), eliteCount);
+        population = null;
+        completedEvaluations.drainPermits();
+        failure.set(null);
+        try
+        {
+            return super.evolveFrom(evaluatedPopulation, eliteCount, generationNumber, startTime, rng, conditions);
+        }
+        finally
+        {
+            stopWorkers();
+            population = null;
+            snapshot = null;
+        }
+    }
+
+
+    private void checkPopulationSize(int populationSize, int eliteCount)
+    {
+        if (eliteCount + selectionSize > populationSize)
+        {
+            throw new IllegalArgumentException("Population is too small for elite count and selection size.");
+        }
+    }
+
+
+    /**
+     * Waits until the workers have completed another {@code snapshotInterval} evaluations and
+     * then publishes a new snapshot of the population.  On the first invocation, the shared
+     * population is initialised from the evaluated initial population and the workers are
+     * started.
+     * @return A new snapshot of the population, sorted in descending order of fitness.
+     */
+    @Override
+    protected List<EvaluatedCandidate<T>> nextEvolutionStep(List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                                            int eliteCount,
+                                                            Random rng)
+    {
+        if (population == null)
+        {
+            population = new AtomicReferenceArray<EvaluatedCandidate<T>>(evaluatedPopulation.size());
+            for (int i = 0; i < evaluatedPopulation.size(); i++)
+            {
+                population.set(i, evaluatedPopulation.get(i));
+            }
+            publishSnapshot(eliteCount);
+            if (!isSingleThreaded())
+            {
+                startWorkers(rng);
+            }
+        }
+
+        if (isSingleThreaded())
+        {
+            getMetrics().setParallelism(1);
+            int fruitlessAttempts = 0;
+            for (int i = 0; i < snapshotInterval;)
+            {
+                if (Thread.currentThread().isInterrupted())
+                {
+                    throw new CancellationException("Evolution interrupted.");
+                }
+                int count = breedAndInsert(rng);
+                fruitlessAttempts = checkOffspringCount(count, fruitlessAttempts);
+                i += count;
+            }
+        }
+        else
+        {
+            try
+            {
+                completedEvaluations.acquire(snapshotInterval);
+                // If the workers got further ahead, the surplus is not carried forward,
+                // otherwise several snapshots could be published without any evaluations
+                // in between.
+                completedEvaluations.drainPermits();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Evolution interrupted.");
+            }
+            Throwable cause = failure.get();
+            if (cause != null)
+            {
+                throw new IllegalStateException("Asynchronous evolution failed.", cause);
+            }
+        }
+        return publishSnapshot(eliteCount);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>Published snapshots are already sorted and are shared with the worker threads,
+     * so they are left as they are.</p>
+     */
+    @Override
+    protected boolean sortEvaluatedPopulation(List<EvaluatedCandidate<T>> evaluatedPopulation, int eliteCount)
+    {
+        Snapshot<T> current = snapshot;
+        if (current != null && current.isBackedBy(evaluatedPopulation))
+        {
+            return true;
+        }
+        return super.sortEvaluatedPopulation(evaluatedPopulation, eliteCount);
+    }
+
+
+    /**
+     * Copies and sorts the shared population and makes it available to the workers.
+     */
+    private List<EvaluatedCandidate<T>> publishSnapshot(int eliteCount)
+    {
+        AtomicReferenceArray<EvaluatedCandidate<T>> current = population;
+        List<EvaluatedCandidate<T>> sorted = new ArrayList<EvaluatedCandidate<T>>(current.length());
+        for (int i = 0; i < current.length(); i++)
+        {
+            sorted.add(current.get(i));
+        }
+        Snapshot<T> previous = snapshot;
+        if (previous != null)
+        {
+            restoreElite(previous, sorted, current);
+        }
+        EvolutionUtils.sortEvaluatedPopulation(sorted, fitnessEvaluator.isNatural());
+        snapshot = new Snapshot<T>(sorted, eliteCount, selectionStrategy instanceof ViewSelectionStrategy);
+        return sorted;
+    }
+
+
+    /**
+     * A worker that checked whether a candidate was elite just before a snapshot was
+     * published can replace one of the new elite.  Any of the previous snapshot's elite that
+     * have been lost this way are put back in place of the least fit candidates.
+     * @param previous The snapshot whose elite must survive.
+     * @param copy A copy of the shared population, in the same order.
+     * @param current The shared population.
+     */
+    private void restoreElite(Snapshot<T> previous,
+                              List<EvaluatedCandidate<T>> copy,
+                              AtomicReferenceArray<EvaluatedCandidate<T>> current)
+    {
+        Set<EvaluatedCandidate<T>> missing = Collections.newSetFromMap(new IdentityHashMap<EvaluatedCandidate<T>, Boolean>());
+        missing.addAll(previous.getElite());
+        for (EvaluatedCandidate<T> candidate : copy)
+        {
+            missing.remove(candidate);
+        }
+        boolean natural = fitnessEvaluator.isNatural();
+        for (EvaluatedCandidate<T> elite : missing)
+        {
+            int worst = -1;
+            for (int i = 0; i < copy.size(); i++)
+            {
+                if (!previous.isElite(copy.get(i))
+                    && (worst < 0 || isLessFit(copy.get(i), copy.get(worst), natural)))
+                {
+                    worst = i;
+                }
+            }
+            copy.set(worst, elite);
+            current.set(worst, elite);
+        }
+    }
+
+
+    private static boolean isLessFit(EvaluatedCandidate<?> candidate,
+                                     EvaluatedCandidate<?> other,
+                                     boolean naturalFitness)
+    {
+        return naturalFitness
+               ? candidate.getFitness() < other.getFitness()
+               : candidate.getFitness() > other.getFitness();
+    }
+
+
+    private void startWorkers(Random rng)
+    {
+        EvaluationExecutor executor = getEvaluationExecutor();
+        int workerCount = executor.getParallelism();
+        getMetrics().setParallelism(workerCount);
+        running = true;
+        workers = new ArrayList<Worker>(workerCount);
+        workerFutures = new ArrayList<Future<?>>(workerCount);
+        workersFinished = new CountDownLatch(workerCount);
+        for (int i = 0; i < workerCount; i++)
+        {
+            // Each worker has its own RNG to avoid contention.
+            byte[] seed = new byte[16]; // Mersenne Twister seed size.
+            rng.nextBytes(seed);
+            Worker worker = new Worker(new MersenneTwisterRNG(seed));
+            workers.add(worker);
+            workerFutures.add(executor.submit(worker));
+        }
+    }
+
+
+    private void stopWorkers()
+    {
+        running = false;
+        if (workers != null)
+        {
+            for (int i = 0; i < workers.size(); i++)
+            {
+                workerFutures.get(i).cancel(true);
+                if (workers.get(i).claim())
+                {
+                    workersFinished.countDown(); // The worker never started.
+                }
+            }
+            try
+            {
+                // Wait for workers to notice so that they don't hold on to executor threads.
+                workersFinished.await();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+            workers = null;
+            workerFutures = null;
+            workersFinished = null;
+        }
+    }
+
+
+    /**
+     * Repeatedly breeds, evaluates and inserts offspring until the evolution stops.
+     */
+    private final class Worker implements Callable<Object>
+    {
+        private final Random rng;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+        Worker(Random rng)
+        {
+            this.rng = rng;
+        }
+
+        public Object call()
+        {
+            if (!claim())
+            {
+                return null; // Stopped before it started.
+            }
+            try
+            {
+                int fruitlessAttempts = 0;
+                while (running && !Thread.currentThread().isInterrupted())
+                {
+                    int count = breedAndInsert(rng);
+                    fruitlessAttempts = checkOffspringCount(count, fruitlessAttempts);
+                    completedEvaluations.release(count);
+                }
+            }
+            catch (Throwable ex)
+            {
+                if (running)
+                {
+                    failure.compareAndSet(null, ex);
+                    // Make sure that the request thread wakes up to report the failure.
+                    completedEvaluations.release(snapshotInterval);
+                }
+            }
+            finally
+            {
+                workersFinished.countDown();
+            }
+            return null;
+        }
+
+        /**
+         * Called by the worker when it starts and by the request thread when stopping the
+         * workers.  Whichever gets there first is responsible for counting down
+         * {@code workersFinished}, so that the request thread doesn't wait for a worker
+         * that was cancelled before it started.
+         * @return True if this call claimed the worker.
+         */
+        boolean claim()
+        {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+
+
+    /**
+     * @param count The number of offspring produced by the latest attempt.
+     * @param fruitlessAttempts The number of consecutive attempts before this one that
+     * produced no offspring.
+     * @return The updated number of consecutive attempts that produced no offspring.
+     * @throws IllegalStateException If too many consecutive attempts have produced no
+     * offspring.
+     */
+    private static int checkOffspringCount(int count, int fruitlessAttempts)
+    {
+        if (count > 0)
+        {
+            return 0;
+        }
+        if (fruitlessAttempts + 1 >= MAX_FRUITLESS_ATTEMPTS)
+        {
+            throw new IllegalStateException("Evolution scheme produced no offspring in "
+                                            + MAX_FRUITLESS_ATTEMPTS + " consecutive attempts.");
+        }
+        return fruitlessAttempts + 1;
+    }
+
+
+    /**
+     * Performs one iteration of the algorithm: selects parents from the latest snapshot,
+     * breeds and evaluates offspring, and inserts them into the shared population.
+     * @return The number of offspring evaluated.
+     */
+    private int breedAndInsert(Random rng)
+    {
+        Snapshot<T> current = snapshot;
+        EvolutionMetrics metrics = getMetrics();
+        long selectionStart = System.nanoTime();
+        PopulationView<T> view = current.getView();
+        List<T> parents = view == null
+                          ? selectionStrategy.select(current.getPopulation(),
+                                                     fitnessEvaluator.isNatural(),
+                                                     selectionSize,
+                                                     rng)
+                          : EvolutionUtils.select(selectionStrategy,
+                                                  view,
+                                                  fitnessEvaluator.isNatural(),
+                                                  selectionSize,
+                                                  rng);
+        long breedingStart = System.nanoTime();
+        metrics.recordPhase(EvolutionMetrics.Phase.SELECTION, breedingStart - selectionStart);
+        List<T> offspring = evolutionScheme.apply(parents, rng);
+        if (forceSingleCandidateUpdate && offspring.size() > 1)
+        {
+            offspring = Collections.singletonList(offspring.get(rng.nextInt(offspring.size())));
+        }
+        metrics.recordPhase(EvolutionMetrics.Phase.BREEDING, System.nanoTime() - breedingStart);
+        if (!offspring.isEmpty())
+        {
+            for (EvaluatedCandidate<T> evaluated : evaluateOnCurrentThread(offspring))
+            {
+                insert(evaluated, rng);
+            }
+        }
+        return offspring.size();
+    }
+
+
+    /**
+     * Replaces a randomly-chosen member of the shared population, other than one of the
+     * current elite.  Uses compare-and-set so that concurrent insertions never block each
+     * other; if another worker replaces the chosen member first, a different one is chosen.
+     */
+    private void insert(EvaluatedCandidate<T> candidate, Random rng)
+    {
+        AtomicReferenceArray<EvaluatedCandidate<T>> current = population;
+        while (true)
+        {
+            int index = rng.nextInt(current.length());
+            EvaluatedCandidate<T> existing = current.get(index);
+            if (!snapshot.isElite(existing) && current.compareAndSet(index, existing, candidate))
+            {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * An immutable, sorted copy of the population.
+     */
+    private static final class Snapshot<T>
+    {
+        private final List<EvaluatedCandidate<T>> source;
+        private final List<EvaluatedCandidate<T>> population;
+        private final PopulationView<T> view;
+        private final Set<EvaluatedCandidate<T>> elite;
+
+        /**
+         * @param population The sorted population.
+         * @param eliteCount The number of candidates at the start of the population that
+         * must not be replaced.
+         * @param createView Whether to create a view of the population for selection
+         * strategies that support views.  The view is shared by every selection until
+         * the next snapshot, rather than each selection copying the population.
+         */
+        Snapshot(List<EvaluatedCandidate<T>> population, int eliteCount, boolean createView)
+        {
+            this.source = population;
+            this.population = Collections.unmodifiableList(population);
+            this.view = createView ? new PopulationView<T>(population) : null;
+            // Elite are identified by reference, since the same candidate may have been
+            // bred more than once.
+            this.elite = Collections.newSetFromMap(new IdentityHashMap<EvaluatedCandidate<T>, Boolean>(eliteCount * 2));
+            this.elite.addAll(population.subList(0, eliteCount));
+        }
+
+        List<EvaluatedCandidate<T>> getPopulation()
+        {
+            return population;
+        }
+
+        /**
+         * @return A view of the population, or null if no view was created.
+         */
+        PopulationView<T> getView()
+        {
+            return view;
+        }
+
+        boolean isBackedBy(List<EvaluatedCandidate<T>> list)
+        {
+            return list == source;
+        }
+
+        boolean isElite(EvaluatedCandidate<T> candidate)
+        {
+            return elite.contains(candidate);
+        }
+
+        Set<EvaluatedCandidate<T>> getElite()
+        {
+            return elite;
+        }
+    }
+}
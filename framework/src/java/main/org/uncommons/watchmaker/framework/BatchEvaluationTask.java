@@ -0,0 +1,244 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>Callable task for performing fitness evaluations of a slice of the population.</p>
+ *
+ * <p>If there is no time limit, the whole slice is passed to the evaluator in a single call.
+ * Otherwise candidates are evaluated one at a time, each with its own deadline.  A candidate
+ * that finishes after its deadline is given the penalty score.  The engine may also
+ * {@link #abandonIfOverdue() abandon} a task whose current candidate has overrun and is not
+ * responding to cancellation, after which the task makes no further changes to the scores.</p>
+ * @param <T> The type of entity for which fitness is calculated.
+ * @author Daniel Dyer
+ */
+class BatchEvaluationTask<T> implements Callable<Long>
+{
+    /**
+     * Returned by {@link #getDeadline()} when no candidate is being evaluated.
+     */
+    static final long NOT_RUNNING = Long.MIN_VALUE;
+
+    private final BatchFitnessEvaluator<? super T> fitnessEvaluator;
+    private final List<T> population;
+    private final int fromIndex;
+    private final int toIndex;
+    private final double[] scores;
+    private final long timeLimit;
+    private final double penaltyFitness;
+    private final EvolutionMetrics metrics;
+    private final CancellationToken token = new CancellationToken();
+    private final AtomicBoolean queued = new AtomicBoolean(false);
+
+    // Guarded by this.
+    private int currentIndex = -1;
+    private long deadline = NOT_RUNNING;
+    private boolean abandoned = false;
+
+    /**
+     * Creates a task for performing fitness evaluations.
+     * @param fitnessEvaluator The fitness function used to determine candidate fitness.
+     * @param population The entire current population.
+     * @param fromIndex The index of the first candidate to evaluate.
+     * @param toIndex One greater than the index of the last candidate to evaluate.
+     * @param scores The array in which fitness scores are stored, indexed by
+     * position in the population.
+     * @param timeLimit The maximum time allowed for each evaluation, in nanoseconds,
+     * or zero for no limit.
+     * @param penaltyFitness The score assigned to a candidate whose evaluation exceeds
+     * the time limit.
+     * @param metrics The metrics in which the evaluation queue depth is recorded.
+     */
+    BatchEvaluationTask(BatchFitnessEvaluator<? super T> fitnessEvaluator,
+                        List<T> population,
+                        int fromIndex,
+                        int toIndex,
+                        double[] scores,
+                        long timeLimit,
+                        double penaltyFitness,
+                        EvolutionMetrics metrics)
+    {
+        this.fitnessEvaluator = fitnessEvaluator;
+        this.population = population;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+        this.scores = scores;
+        this.timeLimit = timeLimit;
+        this.penaltyFitness = penaltyFitness;
+        this.metrics = metrics;
+    }
+
+
+    /**
+     * @return The time taken to evaluate the slice, in nanoseconds.
+     */
+    public Long call()
+    {
+        dequeue();
+        long start = System.nanoTime();
+        CancellationToken previous = token.bind();
+        try
+        {
+            if (timeLimit <= 0)
+            {
+                fitnessEvaluator.getFitnessScores(population, fromIndex, toIndex, scores);
+            }
+            else
+            {
+                evaluateWithTimeLimit();
+            }
+        }
+        finally
+        {
+            CancellationToken.restore(previous);
+        }
+        return System.nanoTime() - start;
+    }
+
+
+    private void evaluateWithTimeLimit()
+    {
+        for (int i = fromIndex; i < toIndex; i++)
+        {
+            long candidateDeadline = System.nanoTime() + timeLimit;
+            synchronized (this)
+            {
+                if (abandoned)
+                {
+                    return;
+                }
+                currentIndex = i;
+                deadline = candidateDeadline;
+            }
+            token.setDeadline(candidateDeadline);
+            boolean cancelled = false;
+            try
+            {
+                // If this task is abandoned, the engine ignores this element of the array.
+                fitnessEvaluator.getFitnessScores(population, i, i + 1, scores);
+            }
+            catch (CancellationException ex)
+            {
+                if (!token.isCancelled())
+                {
+                    throw ex;
+                }
+                cancelled = true;
+            }
+            synchronized (this)
+            {
+                if (abandoned)
+                {
+                    return;
+                }
+                if (cancelled || token.isOverdue())
+                {
+                    scores[i] = penaltyFitness;
+                }
+                currentIndex = -1;
+                deadline = NOT_RUNNING;
+            }
+        }
+    }
+
+
+    /**
+     * @return The value of {@link System#nanoTime()} at which the candidate currently being
+     * evaluated will run out of time, or {@link #NOT_RUNNING} if no candidate is being evaluated.
+     */
+    synchronized long getDeadline()
+    {
+        return deadline;
+    }
+
+
+    /**
+     * Stops this task from evaluating any further candidates if the candidate that it is
+     * currently evaluating has run out of time.  Scores for candidates before that one
+     * have been recorded.  The score for that candidate may still be overwritten when its
+     * evaluation eventually returns, so must be ignored.
+     * @return The index of the candidate that ran out of time, or -1 if the task has not
+     * been abandoned.
+     */
+    synchronized int abandonIfOverdue()
+    {
+        if (currentIndex >= 0 && token.isOverdue())
+        {
+            abandoned = true;
+            token.cancel();
+            return currentIndex;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Stops this task, whatever it is doing, because its results are no longer required.
+     */
+    synchronized void cancel()
+    {
+        abandoned = true;
+        token.cancel();
+    }
+
+
+    int getToIndex()
+    {
+        return toIndex;
+    }
+
+
+    /**
+     * @param index The index of the first candidate for the new task.
+     * @return A task that evaluates the rest of this task's slice, starting at the
+     * specified index.
+     */
+    BatchEvaluationTask<T> remainder(int index)
+    {
+        return new BatchEvaluationTask<T>(fitnessEvaluator, population, index, toIndex, scores, timeLimit, penaltyFitness, metrics);
+    }
+
+
+    /**
+     * Counts this task as waiting for a thread.  Called before it is submitted to an executor.
+     */
+    void enqueue()
+    {
+        if (queued.compareAndSet(false, true))
+        {
+            metrics.recordQueueChange(1);
+        }
+    }
+
+
+    /**
+     * Stops counting this task as waiting, either because it has started or because it has
+     * been cancelled.
+     */
+    void dequeue()
+    {
+        if (queued.compareAndSet(true, false))
+        {
+            metrics.recordQueueChange(-1);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.util.List;
+
+/**
+ * <p>A {@link FitnessEvaluator} that can calculate the fitness scores for a contiguous
+ * range of candidates in a single call.  When an evolution engine performs fitness
+ * evaluations on multiple threads, it divides the population into slices and submits
+ * one task per slice rather than one per candidate.  For fitness functions that are very
+ * cheap to compute, this avoids the cost of creating, queueing and waiting for a task
+ * exceeding the cost of the evaluation itself.  Implementing this interface directly
+ * (rather than relying on the engine's {@link BatchFitnessEvaluatorAdapter adapter})
+ * additionally allows an evaluator to share set-up costs across the candidates in a slice.</p>
+ *
+ * <p>Slices of the same population may be evaluated concurrently, so the usual
+ * restrictions on access to shared mutable state apply.</p>
+ * @param <T> The type of evolvable entity that can be evaluated.
+ * @author Daniel Dyer
+ */
+public interface BatchFitnessEvaluator<T> extends FitnessEvaluator<T>
+{
+    /**
+     * Calculates the fitness scores for the candidates with indices from {@code fromIndex}
+     * (inclusive) to {@code toIndex} (exclusive) in the population.  The score for the
+     * candidate at index {@code i} must be stored in {@code scores[i]} and must obey the
+     * same rules as the value returned by {@link #getFitness(Object, List)}.  Elements of the
+     * array outside of the slice must not be modified.
+     * @param population The entire population.
+     * @param fromIndex The index of the first candidate to evaluate.
+     * @param toIndex One greater than the index of the last candidate to evaluate.
+     * @param scores An array, at least as long as the population, in which to store
+     * the fitness scores.
+     */
+    void getFitnessScores(List<? extends T> population,
+                          int fromIndex,
+                          int toIndex,
+                          double[] scores);
+}
@@ -0,0 +1,71 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.util.List;
+
+/**
+ * Adapts an ordinary {@link FitnessEvaluator} to the {@link BatchFitnessEvaluator}
+ * interface by evaluating each candidate in a slice in turn.  Evolution engines use
+ * this automatically for evaluators that do not support batch evaluation themselves.
+ * @param <T> The type of evolvable entity that can be evaluated.
+ * @author Daniel Dyer
+ */
+public class BatchFitnessEvaluatorAdapter<T> implements BatchFitnessEvaluator<T>
+{
+    private final FitnessEvaluator<? super T> delegate;
+
+    /**
+     * @param delegate The fitness evaluator that calculates individual scores.
+     */
+    public BatchFitnessEvaluatorAdapter(FitnessEvaluator<? super T> delegate)
+    {
+        this.delegate = delegate;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void getFitnessScores(List<? extends T> population,
+                                 int fromIndex,
+                                 int toIndex,
+                                 double[] scores)
+    {
+        for (int i = fromIndex; i < toIndex; i++)
+        {
+            scores[i] = delegate.getFitness(population.get(i), population);
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getFitness(T candidate, List<? extends T> population)
+    {
+        return delegate.getFitness(candidate, population);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isNatural()
+    {
+        return delegate.isNatural();
+    }
+}
@@ -18,6 +18,7 @@ package org.uncommons.watchmaker.framework;
 import com.google.common.collect.MapMaker;
 import java.util.List;
 import java.util.concurrent.ConcurrentMap;
+import org.uncommons.util.concurrent.StripedCounter;
 
 /**
  * <p>A wrapper that provides caching for {@link FitnessEvaluator} implementations.  The
@@ -57,6 +58,11 @@ public class CachingFitnessEvaluator<T> implements FitnessEvaluator<T>
     // Terracotta will respect the fact it is transient and not try to share it.
     private final transient ConcurrentMap<T, Double> cache = new MapMaker().weakKeys().makeMap();
 
+    // Every look-up updates one of these, so they are striped to avoid contention
+    // between evaluation threads.
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+
 
     /**
      * Creates a caching fitness evaluator that wraps the specified evaluator.
@@ -80,13 +86,36 @@ public class CachingFitnessEvaluator<T> implements FitnessEvaluator<T>
         Double fitness = cache.get(candidate);
         if (fitness == null)
         {
+            misses.increment();
             fitness = delegate.getFitness(candidate, population);
             cache.put(candidate, fitness);
         }
+        else
+        {
+            hits.increment();
+        }
         return fitness;
     }
 
 
+    /**
+     * @return The number of look-ups that found a cached fitness score.
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+
+    /**
+     * @return The number of look-ups that had to delegate to the wrapped evaluator.
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,149 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * <p>Allows a long-running fitness evaluation to find out whether its result is still
+ * wanted.  An evaluation is cancelled if it exceeds the time limit configured with
+ * {@link AbstractEvolutionEngine#setEvaluationTimeout(long, java.util.concurrent.TimeUnit, double)},
+ * or if the evolution is interrupted.</p>
+ *
+ * <p>Fitness evaluators that may run for a long time (for example, simulations that
+ * might not terminate) should periodically check the token for the current evaluation
+ * and return (or call {@link #checkCancelled()}) as soon as it is cancelled:</p>
+ * <pre>
+ * CancellationToken token = CancellationToken.current();
+ * while (simulation.isRunning())
+ * {
+ *     token.checkCancelled();
+ *     simulation.step();
+ * }
+ * </pre>
+ *
+ * <p>The result of a cancelled evaluation is discarded, so it does not matter what value
+ * an evaluator returns once it has been cancelled.</p>
+ * @author Daniel Dyer
+ */
+public final class CancellationToken
+{
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<CancellationToken>();
+
+    private volatile boolean cancelled = false;
+    private volatile long deadline = NO_DEADLINE;
+
+
+    CancellationToken()
+    {
+        // Tokens are only created by the framework.
+    }
+
+
+    /**
+     * Returns the token for the fitness evaluation that is being performed by the
+     * calling thread.  When called outside of a fitness evaluation, the returned
+     * token is only cancelled if the calling thread is interrupted.
+     * @return The current cancellation token.  Never null.
+     */
+    public static CancellationToken current()
+    {
+        CancellationToken token = CURRENT.get();
+        return token == null ? new CancellationToken() : token;
+    }
+
+
+    /**
+     * @return True if the current evaluation should stop as soon as possible, either because
+     * it has been cancelled, because it has run out of time or because the thread that
+     * is performing it has been interrupted.
+     */
+    public boolean isCancelled()
+    {
+        long limit = deadline;
+        return cancelled
+               || (limit != NO_DEADLINE && System.nanoTime() - limit >= 0)
+               || Thread.currentThread().isInterrupted();
+    }
+
+
+    /**
+     * Convenience method for evaluators that prefer to abandon an evaluation by
+     * throwing an exception.
+     * @throws CancellationException If this token has been cancelled.
+     */
+    public void checkCancelled()
+    {
+        if (isCancelled())
+        {
+            throw new CancellationException("Fitness evaluation cancelled.");
+        }
+    }
+
+
+    /**
+     * @return True if this token has a deadline and it has passed.
+     */
+    boolean isOverdue()
+    {
+        long limit = deadline;
+        return limit != NO_DEADLINE && System.nanoTime() - limit >= 0;
+    }
+
+
+    /**
+     * @param deadline The value of {@link System#nanoTime()} after which the evaluation
+     * should stop.
+     */
+    void setDeadline(long deadline)
+    {
+        this.deadline = deadline;
+    }
+
+
+    void cancel()
+    {
+        cancelled = true;
+    }
+
+
+    /**
+     * Makes this the token returned by {@link #current()} on the calling thread.
+     * @return The token that was previously current, which should be restored by passing
+     * it to {@link #restore(CancellationToken)} once the evaluation is finished.
+     */
+    CancellationToken bind()
+    {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+
+    static void restore(CancellationToken previous)
+    {
+        if (previous == null)
+        {
+            CURRENT.remove();
+        }
+        else
+        {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The state of an evolution at the end of a generation, from which the evolution can be
+ * {@link AbstractEvolutionEngine#resume(Checkpoint, TerminationCondition[]) resumed}
+ * without re-evaluating the population.  Checkpoints are created by evolution engines
+ * and passed to a {@link CheckpointStore}.
+ * @param <T> The type of entity that exists in the evolving population.
+ * @author Daniel Dyer
+ * @see AbstractEvolutionEngine#setCheckpointStore(CheckpointStore, int)
+ */
+public final class Checkpoint<T>
+{
+    private final List<EvaluatedCandidate<T>> population;
+    private final int generationNumber;
+    private final long elapsedTime;
+    private final int eliteCount;
+    private final byte[] rngState;
+    private final List<byte[]> conditionStates;
+
+
+    /**
+     * @param population The evaluated population.  The list is copied, so later changes
+     * to it do not affect the checkpoint.
+     * @param generationNumber The number of the generation that the population belongs to.
+     * @param elapsedTime The number of milliseconds that the evolution had been running.
+     * @param eliteCount The number of candidates preserved by elitism.
+     * @param rngState The serialised state of the random number generator, or null if
+     * it could not be saved.
+     * @param conditionStates The saved state of each termination condition, in the order
+     * that the conditions were specified.  Conditions that do not implement
+     * {@link StatefulTerminationCondition} have null entries.
+     */
+    public Checkpoint(List<EvaluatedCandidate<T>> population,
+                      int generationNumber,
+                      long elapsedTime,
+                      int eliteCount,
+                      byte[] rngState,
+                      List<byte[]> conditionStates)
+    {
+        if (population.isEmpty())
+        {
+            throw new IllegalArgumentException("Population must not be empty.");
+        }
+        if (eliteCount < 0 || eliteCount >= population.size())
+        {
+            throw new IllegalArgumentException("Elite count must be non-negative and less than population size.");
+        }
+        this.population = Collections.unmodifiableList(new ArrayList<EvaluatedCandidate<T>>(population));
+        this.generationNumber = generationNumber;
+        this.elapsedTime = elapsedTime;
+        this.eliteCount = eliteCount;
+        this.rngState = rngState;
+        this.conditionStates = Collections.unmodifiableList(new ArrayList<byte[]>(conditionStates));
+    }
+
+
+    /**
+     * @return The evaluated population (an unmodifiable list).
+     */
+    public List<EvaluatedCandidate<T>> getPopulation()
+    {
+        return population;
+    }
+
+
+    /**
+     * @return The number of the generation that the population belongs to.
+     */
+    public int getGenerationNumber()
+    {
+        return generationNumber;
+    }
+
+
+    /**
+     * @return The number of milliseconds that the evolution had been running when the
+     * checkpoint was created.
+     */
+    public long getElapsedTime()
+    {
+        return elapsedTime;
+    }
+
+
+    /**
+     * @return The number of candidates preserved by elitism.
+     */
+    public int getEliteCount()
+    {
+        return eliteCount;
+    }
+
+
+    /**
+     * @return The serialised state of the random number generator, or null if the
+     * generator could not be serialised.
+     */
+    public byte[] getRNGState()
+    {
+        return rngState;
+    }
+
+
+    /**
+     * @return The saved state of each termination condition, in the order that the
+     * conditions were specified.  Entries are null for stateless conditions.
+     */
+    public List<byte[]> getConditionStates()
+    {
+        return conditionStates;
+    }
+}
@@ -0,0 +1,39 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.io.IOException;
+
+/**
+ * Somewhere to save the {@link Checkpoint}s that an evolution engine creates periodically,
+ * so that a long-running evolution can be resumed after it is stopped.
+ * @param <T> The type of entity that exists in the evolving population.
+ * @author Daniel Dyer
+ * @see AbstractEvolutionEngine#setCheckpointStore(CheckpointStore, int)
+ * @see org.uncommons.watchmaker.framework.persistence.CheckpointFile
+ */
+public interface CheckpointStore<T>
+{
+    /**
+     * Saves a checkpoint.  This method is invoked on the request thread, so implementations
+     * that perform slow I/O should do so in the background.  Implementations must not retain
+     * references to candidates that may be modified after this method returns.
+     * @param checkpoint The state of the evolution.
+     * @throws IOException If the checkpoint (or an earlier one written in the background)
+     * could not be saved.
+     */
+    void save(Checkpoint<T> checkpoint) throws IOException;
+}
@@ -0,0 +1,173 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.uncommons.maths.random.RepeatableRNG;
+
+/**
+ * Wraps a {@link RepeatableRNG} and counts the values drawn from it, so that its state
+ * can be checkpointed as its seed and a count rather than by serialising the generator.
+ * Every value is derived from a call to the wrapped generator's {@link Random#nextInt()},
+ * so a generator re-created from the same seed reaches the same state by drawing the
+ * same number of ints.  Values drawn from the wrapped generator directly, rather than
+ * through this wrapper, are not counted.
+ * @author Daniel Dyer
+ */
+final class CountingRNG extends Random
+{
+    private static final long serialVersionUID = 1L;
+
+    private final Random delegate;
+    private final AtomicLong count;
+
+    // Random keeps its own spare Gaussian value, but it is private, so this class keeps
+    // the spare itself in order to be able to save it.
+    private double nextNextGaussian;
+    private boolean haveNextNextGaussian = false;
+
+
+    /**
+     * @param delegate The generator to wrap.  Must implement {@link RepeatableRNG}.
+     */
+    CountingRNG(Random delegate)
+    {
+        this(delegate, 0);
+    }
+
+
+    private CountingRNG(Random delegate, long count)
+    {
+        if (!(delegate instanceof RepeatableRNG))
+        {
+            throw new IllegalArgumentException("Generator must be repeatable.");
+        }
+        this.delegate = delegate;
+        this.count = new AtomicLong(count);
+    }
+
+
+    @Override
+    protected int next(int bits)
+    {
+        count.incrementAndGet();
+        return delegate.nextInt() >>> (32 - bits);
+    }
+
+
+    /**
+     * Same algorithm as {@link Random#nextGaussian()}.
+     */
+    @Override
+    public synchronized double nextGaussian()
+    {
+        if (haveNextNextGaussian)
+        {
+            haveNextNextGaussian = false;
+            return nextNextGaussian;
+        }
+        double v1;
+        double v2;
+        double s;
+        do
+        {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+        nextNextGaussian = v2 * multiplier;
+        haveNextNextGaussian = true;
+        return v1 * multiplier;
+    }
+
+
+    /**
+     * Writes the generator's class, seed and the number of values drawn so far.
+     * @param out The stream to write to.
+     * @throws IOException If the state cannot be written.
+     */
+    synchronized void writeState(DataOutputStream out) throws IOException
+    {
+        byte[] seed = ((RepeatableRNG) delegate).getSeed();
+        out.writeUTF(delegate.getClass().getName());
+        out.writeInt(seed.length);
+        out.write(seed);
+        out.writeLong(count.get());
+        out.writeBoolean(haveNextNextGaussian);
+        out.writeDouble(nextNextGaussian);
+    }
+
+
+    /**
+     * Re-creates a generator from the state written by {@link #writeState(DataOutputStream)}.
+     * The generator is re-seeded and then the same number of values are drawn, so this takes
+     * time proportional to the number of values that had been drawn.  Only classes that
+     * implement {@link RepeatableRNG} and have a public constructor that takes a seed are
+     * instantiated.
+     * @param in The stream to read from.
+     * @return A wrapped generator in the same state as the one that was saved.
+     * @throws IOException If the state cannot be read or is not valid.
+     */
+    static CountingRNG readState(DataInputStream in) throws IOException
+    {
+        String className = in.readUTF();
+        int seedLength = in.readInt();
+        if (seedLength < 0)
+        {
+            throw new IOException("Invalid seed length: " + seedLength);
+        }
+        byte[] seed = new byte[seedLength];
+        in.readFully(seed);
+        long count = in.readLong();
+        if (count < 0)
+        {
+            throw new IOException("Invalid count: " + count);
+        }
+        Random delegate;
+        try
+        {
+            Class<?> rngClass = Class.forName(className, false, CountingRNG.class.getClassLoader());
+            if (!Random.class.isAssignableFrom(rngClass) || !RepeatableRNG.class.isAssignableFrom(rngClass))
+            {
+                throw new IOException("Not a repeatable random number generator: " + className);
+            }
+            Constructor<?> constructor = rngClass.getConstructor(byte[].class);
+            delegate = (Random) constructor.newInstance(seed);
+        }
+        catch (IOException ex)
+        {
+            throw ex;
+        }
+        catch (Exception ex)
+        {
+            throw new IOException("Cannot re-create random number generator: " + className, ex);
+        }
+        for (long i = 0; i < count; i++)
+        {
+            delegate.nextInt();
+        }
+        CountingRNG rng = new CountingRNG(delegate, count);
+        rng.haveNextNextGaussian = in.readBoolean();
+        rng.nextNextGaussian = in.readDouble();
+        return rng;
+    }
+}
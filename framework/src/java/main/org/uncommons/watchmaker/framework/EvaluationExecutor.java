@@ -0,0 +1,63 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Runs the fitness evaluation tasks submitted by an evolution engine.  By default
+ * all engines share a single pool of worker threads, one per available processor.
+ * Supplying an executor to an engine (see
+ * {@link AbstractEvolutionEngine#setEvaluationExecutor(EvaluationExecutor)}) allows the
+ * number and type of threads to be chosen for each workload and allows those threads
+ * to be released when they are no longer required.</p>
+ *
+ * <p>Engines never close an executor that they have been given.  The code that creates
+ * an executor is responsible for closing it once no engine is using it, and a single
+ * executor may be shared by several engines.</p>
+ * @author Daniel Dyer
+ * @see org.uncommons.watchmaker.framework.evaluation
+ */
+public interface EvaluationExecutor extends AutoCloseable
+{
+    /**
+     * Submits a task for asynchronous execution.  Implementations may block the calling
+     * thread if they have reached their capacity for pending tasks.
+     * @param task The task to execute.
+     * @param <V> The type of the task's result.
+     * @return A future that provides access to the result of the task.
+     * @throws java.util.concurrent.RejectedExecutionException If the task cannot be
+     * accepted, either because the executor has been closed or because the calling
+     * thread was interrupted while waiting for capacity.
+     */
+    <V> Future<V> submit(Callable<V> task);
+
+
+    /**
+     * @return The number of tasks that this executor can usefully run at the same time.
+     * Callers may use this to decide how to divide up work.
+     */
+    int getParallelism();
+
+
+    /**
+     * Stops accepting new tasks and releases the executor's threads once any tasks that
+     * have already been submitted are complete.  Closing an executor that is already
+     * closed has no effect.
+     */
+    void close();
+}
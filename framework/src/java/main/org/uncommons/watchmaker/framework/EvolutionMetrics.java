@@ -0,0 +1,500 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * <p>Timers and counters that show where an evolution spends its time.  Every
+ * {@link AbstractEvolutionEngine} and {@link org.uncommons.watchmaker.framework.islands.IslandEvolution}
+ * maintains an instance, which can be read directly or
+ * {@link #registerMBean(String) published} via JMX.</p>
+ * <p>Recording costs a few atomic additions and calls to {@link System#nanoTime()} per
+ * generation (and per evaluation task), so metrics are always enabled.</p>
+ * @author Daniel Dyer
+ */
+public final class EvolutionMetrics implements EvolutionMetricsMBean
+{
+    /**
+     * The parts of an evolution that are timed separately.
+     */
+    public enum Phase
+    {
+        /** Selecting candidates for breeding. */
+        SELECTION,
+        /** Applying evolutionary operators. */
+        BREEDING,
+        /** Starting fitness evaluations and waiting for them to finish. */
+        EVALUATION,
+        /** Ordering populations. */
+        SORTING,
+        /** Calculating statistics and checking termination conditions. */
+        STATISTICS,
+        /** Notifying observers. */
+        OBSERVERS,
+        /** Waiting for islands to complete an epoch. */
+        EPOCH,
+        /** Migrating candidates between islands. */
+        MIGRATION
+    }
+
+    private static final String DOMAIN = "org.uncommons.watchmaker";
+
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+    private final AtomicLong generations = new AtomicLong();
+    private final AtomicLong epochs = new AtomicLong();
+    private final AtomicLong evaluations = new AtomicLong();
+    private final AtomicLong reusedFitness = new AtomicLong();
+    private final AtomicLong evaluationNanos = new AtomicLong();
+    private final AtomicLong activeNanos = new AtomicLong();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final List<EvolutionMetrics> components = new CopyOnWriteArrayList<EvolutionMetrics>();
+
+    private volatile int parallelism = 1;
+    private volatile long runStartNanos = 0; // Zero when evolution is not in progress.
+    private volatile CachingFitnessEvaluator<?> cache = null;
+    private volatile ObjectName objectName = null;
+
+
+    /**
+     * Adds time to the total for a phase.
+     * @param phase The phase of the evolution.
+     * @param nanos The time spent, in nanoseconds.
+     */
+    public void recordPhase(Phase phase, long nanos)
+    {
+        phaseNanos.addAndGet(phase.ordinal(), nanos);
+    }
+
+
+    /**
+     * Records the completion of a generation.
+     */
+    public void recordGeneration()
+    {
+        generations.incrementAndGet();
+    }
+
+
+    /**
+     * Records the completion of an island evolution epoch.
+     */
+    public void recordEpoch()
+    {
+        epochs.incrementAndGet();
+    }
+
+
+    /**
+     * Records that fitness evaluations have been performed.
+     * @param count The number of evaluations.
+     * @param nanos The time spent by the evaluation threads, in nanoseconds.
+     */
+    public void recordEvaluations(int count, long nanos)
+    {
+        evaluations.addAndGet(count);
+        evaluationNanos.addAndGet(nanos);
+    }
+
+
+    /**
+     * Records that candidates' fitness scores were re-used without being evaluated.
+     * @param count The number of candidates.
+     */
+    public void recordReusedFitness(int count)
+    {
+        reusedFitness.addAndGet(count);
+    }
+
+
+    /**
+     * Records that evaluation tasks have been submitted (positive) or have started or been
+     * cancelled (negative).
+     * @param change The change in the number of waiting tasks.
+     */
+    public void recordQueueChange(int change)
+    {
+        queueDepth.addAndGet(change);
+    }
+
+
+    /**
+     * @param parallelism The number of threads available for fitness evaluations.
+     */
+    public void setParallelism(int parallelism)
+    {
+        this.parallelism = parallelism;
+    }
+
+
+    /**
+     * Marks the start of an evolution.  Rates are calculated using only the time during
+     * which evolution is in progress.
+     */
+    public void startRun()
+    {
+        runStartNanos = System.nanoTime();
+    }
+
+
+    /**
+     * Marks the end of an evolution.
+     */
+    public void endRun()
+    {
+        long start = runStartNanos;
+        if (start != 0)
+        {
+            activeNanos.addAndGet(System.nanoTime() - start);
+            runStartNanos = 0;
+        }
+    }
+
+
+    /**
+     * @param cache The caching evaluator whose hit rate is reported, or null.
+     */
+    void setCache(CachingFitnessEvaluator<?> cache)
+    {
+        this.cache = cache;
+    }
+
+
+    /**
+     * Includes another set of metrics in the counts, times and cache statistics reported
+     * by this one.  This is used to include the metrics of islands in those of an island
+     * evolution.
+     * @param component The metrics to include.
+     */
+    public void include(EvolutionMetrics component)
+    {
+        components.add(component);
+    }
+
+
+    /**
+     * @param phase The phase of the evolution.
+     * @return The total time spent in the phase, in nanoseconds, including the time
+     * recorded by included components.
+     */
+    public long getPhaseNanos(Phase phase)
+    {
+        long nanos = phaseNanos.get(phase.ordinal());
+        for (EvolutionMetrics component : components)
+        {
+            nanos += component.getPhaseNanos(phase);
+        }
+        return nanos;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getGenerationCount()
+    {
+        long count = generations.get();
+        for (EvolutionMetrics component : components)
+        {
+            count += component.getGenerationCount();
+        }
+        return count;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getEpochCount()
+    {
+        long count = epochs.get();
+        for (EvolutionMetrics component : components)
+        {
+            count += component.getEpochCount();
+        }
+        return count;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getEvaluationCount()
+    {
+        long count = evaluations.get();
+        for (EvolutionMetrics component : components)
+        {
+            count += component.getEvaluationCount();
+        }
+        return count;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getReusedFitnessCount()
+    {
+        long count = reusedFitness.get();
+        for (EvolutionMetrics component : components)
+        {
+            count += component.getReusedFitnessCount();
+        }
+        return count;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getEvaluationsPerSecond()
+    {
+        long nanos = getActiveNanos();
+        return nanos == 0 ? 0 : getEvaluationCount() * 1e9 / nanos;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getEvaluationQueueDepth()
+    {
+        int depth = queueDepth.get();
+        for (EvolutionMetrics component : components)
+        {
+            depth += component.getEvaluationQueueDepth();
+        }
+        return depth;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getWorkerUtilisation()
+    {
+        long nanos = getActiveNanos();
+        long busyNanos = getEvaluationNanos();
+        int threads = parallelism;
+        if (!components.isEmpty())
+        {
+            threads = 0;
+            for (EvolutionMetrics component : components)
+            {
+                threads += component.parallelism;
+            }
+        }
+        return nanos == 0 ? 0 : Math.min(1, busyNanos / ((double) nanos * threads));
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getCacheHitRate()
+    {
+        long hits = 0;
+        long lookUps = 0;
+        Set<CachingFitnessEvaluator<?>> caches = Collections.newSetFromMap(new IdentityHashMap<CachingFitnessEvaluator<?>, Boolean>());
+        addCaches(caches);
+        // Islands often share a single cache, so each cache is only counted once.
+        for (CachingFitnessEvaluator<?> evaluator : caches)
+        {
+            hits += evaluator.getHitCount();
+            lookUps += evaluator.getHitCount() + evaluator.getMissCount();
+        }
+        return lookUps == 0 ? Double.NaN : hits / (double) lookUps;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getSelectionTime()
+    {
+        return getPhaseMillis(Phase.SELECTION);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getBreedingTime()
+    {
+        return getPhaseMillis(Phase.BREEDING);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getEvaluationTime()
+    {
+        return getPhaseMillis(Phase.EVALUATION);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getSortingTime()
+    {
+        return getPhaseMillis(Phase.SORTING);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getStatisticsTime()
+    {
+        return getPhaseMillis(Phase.STATISTICS);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getObserverTime()
+    {
+        return getPhaseMillis(Phase.OBSERVERS);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getEpochTime()
+    {
+        return getPhaseMillis(Phase.EPOCH);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getMigrationTime()
+    {
+        return getPhaseMillis(Phase.MIGRATION);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>Included components are not reset.  The evaluation queue depth is not reset
+     * because it reflects tasks that are currently waiting.</p>
+     */
+    public void reset()
+    {
+        for (int i = 0; i < phaseNanos.length(); i++)
+        {
+            phaseNanos.set(i, 0);
+        }
+        generations.set(0);
+        epochs.set(0);
+        evaluations.set(0);
+        reusedFitness.set(0);
+        evaluationNanos.set(0);
+        activeNanos.set(0);
+        if (runStartNanos != 0)
+        {
+            runStartNanos = System.nanoTime();
+        }
+    }
+
+
+    /**
+     * Publishes these metrics as an MBean on the platform MBean server.
+     * @param name A name that distinguishes these metrics from those of other engines.
+     * @return The name under which the MBean is registered.
+     * @throws JMException If the MBean cannot be registered (for example, because
+     * the name is already in use).
+     */
+    public synchronized ObjectName registerMBean(String name) throws JMException
+    {
+        ObjectName newName = new ObjectName(DOMAIN + ":type=EvolutionMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+        if (objectName != null)
+        {
+            unregisterMBean();
+        }
+        objectName = newName;
+        return newName;
+    }
+
+
+    /**
+     * Removes the MBean registered by {@link #registerMBean(String)}, if any.
+     * @throws JMException If the MBean cannot be unregistered.
+     */
+    public synchronized void unregisterMBean() throws JMException
+    {
+        if (objectName != null)
+        {
+            ObjectName name = objectName;
+            objectName = null;
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+
+
+    private long getPhaseMillis(Phase phase)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(phase));
+    }
+
+
+    private long getActiveNanos()
+    {
+        long start = runStartNanos;
+        return activeNanos.get() + (start == 0 ? 0 : System.nanoTime() - start);
+    }
+
+
+    private long getEvaluationNanos()
+    {
+        long nanos = evaluationNanos.get();
+        for (EvolutionMetrics component : components)
+        {
+            nanos += component.getEvaluationNanos();
+        }
+        return nanos;
+    }
+
+
+    private void addCaches(Set<CachingFitnessEvaluator<?>> caches)
+    {
+        if (cache != null)
+        {
+            caches.add(cache);
+        }
+        for (EvolutionMetrics component : components)
+        {
+            component.addCaches(caches);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+/**
+ * Management interface through which {@link EvolutionMetrics} are published via JMX.
+ * Times are in milliseconds and are totals since the metrics were created or last reset.
+ * Where work is done on several threads at once, the times are summed across threads.
+ * @author Daniel Dyer
+ */
+public interface EvolutionMetricsMBean
+{
+    /**
+     * @return The number of generations completed.  For island evolution, this is the
+     * total for all of the islands.
+     */
+    long getGenerationCount();
+
+    /**
+     * @return The number of island evolution epochs completed, or zero if this is not
+     * an island evolution.
+     */
+    long getEpochCount();
+
+    /**
+     * @return The number of fitness evaluations performed.
+     */
+    long getEvaluationCount();
+
+    /**
+     * @return The number of candidates whose fitness was re-used instead of being evaluated.
+     */
+    long getReusedFitnessCount();
+
+    /**
+     * @return The number of fitness evaluations per second of evolution.
+     */
+    double getEvaluationsPerSecond();
+
+    /**
+     * @return The number of evaluation tasks waiting for a worker thread.
+     */
+    int getEvaluationQueueDepth();
+
+    /**
+     * @return The fraction of the available evaluation threads' time spent evaluating
+     * fitness while evolution was in progress.
+     */
+    double getWorkerUtilisation();
+
+    /**
+     * @return The fraction of cache look-ups that found a fitness score, or NaN if no
+     * {@link CachingFitnessEvaluator} is used.
+     */
+    double getCacheHitRate();
+
+    /**
+     * @return Time spent selecting candidates for breeding.
+     */
+    long getSelectionTime();
+
+    /**
+     * @return Time spent applying evolutionary operators.
+     */
+    long getBreedingTime();
+
+    /**
+     * @return Time spent starting fitness evaluations and waiting for them to finish.
+     */
+    long getEvaluationTime();
+
+    /**
+     * @return Time spent ordering populations.
+     */
+    long getSortingTime();
+
+    /**
+     * @return Time spent calculating statistics and checking termination conditions.
+     */
+    long getStatisticsTime();
+
+    /**
+     * @return Time spent notifying observers.
+     */
+    long getObserverTime();
+
+    /**
+     * @return Time spent waiting for islands to complete epochs.
+     */
+    long getEpochTime();
+
+    /**
+     * @return Time spent migrating candidates between islands.
+     */
+    long getMigrationTime();
+
+    /**
+     * Sets all counters and times to zero.
+     */
+    void reset();
+}
@@ -40,6 +40,9 @@ package org.uncommons.watchmaker.framework;
  * executed synchronously.  The downside is that evolution threads are stalled/idle until
  * Swing has finished performing the updates.  This won't make much difference on a single
  * core machine but will impact throughput on multi-core machines.</p>
+ * <p>To keep a slow observer from stalling evolution, wrap it in an
+ * {@link AsynchronousEvolutionObserver}, which notifies it on a separate thread and can
+ * limit how often it is notified.</p>
  * @param <T> The type of entity that exists in the evolving population
  * that is being observed.  This type can be bound to a super-type of the
  * actual population type so as to allow a non-specific observer that can
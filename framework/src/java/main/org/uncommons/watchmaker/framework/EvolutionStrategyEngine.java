@@ -93,6 +93,7 @@ public class EvolutionStrategyEngine<T> extends AbstractEvolutionEngine<T>
         assert eliteCount == 0 : "Explicit elitism is not supported for an ES, eliteCount should be 0.";
         
         // Select candidates that will be operated on to create the offspring.
+        long selectionStart = System.nanoTime();
         int offspringCount = offspringMultiplier * evaluatedPopulation.size();
         List<T> parents = new ArrayList<T>(offspringCount);
         for (int i = 0; i < offspringCount; i++)
@@ -101,15 +102,19 @@ public class EvolutionStrategyEngine<T> extends AbstractEvolutionEngine<T>
         }
 
         // Then evolve the parents.
+        long breedingStart = System.nanoTime();
+        getMetrics().recordPhase(EvolutionMetrics.Phase.SELECTION, breedingStart - selectionStart);
         List<T> offspring = evolutionScheme.apply(parents, rng);
+        getMetrics().recordPhase(EvolutionMetrics.Phase.BREEDING, System.nanoTime() - breedingStart);
 
         List<EvaluatedCandidate<T>> evaluatedOffspring = evaluatePopulation(offspring);
         if (plusSelection) // Plus-selection means parents are considered for survival as well as offspring.
         {
             evaluatedOffspring.addAll(evaluatedPopulation);
         }
-        EvolutionUtils.sortEvaluatedPopulation(evaluatedOffspring, fitnessEvaluator.isNatural());
-        // Retain the fittest of the candidates that are eligible for survival.
+        // Retain the fittest of the candidates that are eligible for survival.  There is no
+        // need to sort the rest of the offspring.
+        EvolutionUtils.sortFittest(evaluatedOffspring, fitnessEvaluator.isNatural(), evaluatedPopulation.size());
         return evaluatedOffspring.subList(0, evaluatedPopulation.size());
     }
 }
@@ -15,10 +15,13 @@
 //=============================================================================
 package org.uncommons.watchmaker.framework;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
-import org.uncommons.maths.statistics.DataSet;
+import java.util.ListIterator;
+import java.util.Random;
 
 /**
  * Utility methods used by different evolution implementations.  This class exists to
@@ -91,6 +94,213 @@ public final class EvolutionUtils
 
 
 
+    /**
+     * Partially sorts an evaluated population so that the specified number of fittest
+     * candidates are at the start of the list, in descending order of fitness.  The order
+     * of the remaining candidates is unspecified.  This is cheaper than a full sort when
+     * only a small number of the fittest candidates are required (for example for elitism
+     * or truncation).  The fittest candidates are found by quickselect, falling back on
+     * a full sort of the unresolved range if partitioning makes too little progress.
+     * A population that already has its fittest candidates in order at the start is left
+     * unchanged, so partially sorting the same population twice gives the same order.
+     * @param evaluatedPopulation The population to be partially sorted (in-place).
+     * @param naturalFitness True if higher fitness scores mean fitter individuals, false otherwise.
+     * @param count How many of the fittest candidates must be in order at the start of the list.
+     * @param <T> The type of entity that is being evolved.
+     */
+    public static <T> void sortFittest(List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                       boolean naturalFitness,
+                                       int count)
+    {
+        int size = evaluatedPopulation.size();
+        if (count * 2 >= size)
+        {
+            // Selecting most of the population is no cheaper than sorting all of it.
+            sortEvaluatedPopulation(evaluatedPopulation, naturalFitness);
+            return;
+        }
+        if (count <= 0)
+        {
+            return;
+        }
+        Comparator<EvaluatedCandidate<T>> order = getFitnessOrder(naturalFitness);
+        @SuppressWarnings("unchecked")
+        EvaluatedCandidate<T>[] candidates = (EvaluatedCandidate<T>[]) evaluatedPopulation.toArray(new EvaluatedCandidate<?>[size]);
+        if (hasFittestInOrder(candidates, count, order))
+        {
+            return;
+        }
+        int from = 0;
+        int to = size - 1;
+        int target = count - 1;
+        int attempts = 2 * (32 - Integer.numberOfLeadingZeros(size));
+        while (from < to)
+        {
+            if (--attempts < 0)
+            {
+                Arrays.sort(candidates, from, to + 1, order);
+                break;
+            }
+            int pivotIndex = partition(candidates, from, to, order);
+            if (pivotIndex == target)
+            {
+                break;
+            }
+            else if (pivotIndex < target)
+            {
+                from = pivotIndex + 1;
+            }
+            else
+            {
+                to = pivotIndex - 1;
+            }
+        }
+        Arrays.sort(candidates, 0, count, order);
+
+        ListIterator<EvaluatedCandidate<T>> iterator = evaluatedPopulation.listIterator();
+        for (EvaluatedCandidate<T> candidate : candidates)
+        {
+            iterator.next();
+            iterator.set(candidate);
+        }
+    }
+
+
+    /**
+     * @return True if the first {@code count} candidates are in order and none of the
+     * others is fitter than the last of them.
+     */
+    private static <T> boolean hasFittestInOrder(EvaluatedCandidate<T>[] candidates,
+                                                 int count,
+                                                 Comparator<EvaluatedCandidate<T>> order)
+    {
+        for (int i = 1; i < candidates.length; i++)
+        {
+            if (order.compare(candidates[Math.min(i - 1, count - 1)], candidates[i]) > 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * @param naturalFitness True if higher fitness scores mean fitter individuals, false otherwise.
+     * @param <T> The type of entity that is being evolved.
+     * @return A comparator that orders evaluated candidates from fittest to least fit.
+     */
+    static <T> Comparator<EvaluatedCandidate<T>> getFitnessOrder(boolean naturalFitness)
+    {
+        if (naturalFitness) // Descending values for natural fitness.
+        {
+            return Collections.reverseOrder();
+        }
+        else // Ascending values for non-natural fitness.
+        {
+            return new Comparator<EvaluatedCandidate<T>>()
+            {
+                public int compare(EvaluatedCandidate<T> candidate1, EvaluatedCandidate<T> candidate2)
+                {
+                    return candidate1.compareTo(candidate2);
+                }
+            };
+        }
+    }
+
+
+    /**
+     * Partitions a range around the median of its first, middle and last elements.
+     * @return The final index of the pivot.  Elements before it are strictly fitter
+     * than the pivot, elements after it are no fitter.
+     */
+    private static <T> int partition(T[] values, int from, int to, Comparator<? super T> order)
+    {
+        int middle = (from + to) >>> 1;
+        // Order the three samples so that the median is in the middle position.
+        if (order.compare(values[middle], values[from]) < 0)
+        {
+            swap(values, from, middle);
+        }
+        if (order.compare(values[to], values[from]) < 0)
+        {
+            swap(values, from, to);
+        }
+        if (order.compare(values[to], values[middle]) < 0)
+        {
+            swap(values, middle, to);
+        }
+        // Move the pivot to the end of the range while partitioning.
+        swap(values, middle, to);
+        T pivot = values[to];
+        int store = from;
+        for (int i = from; i < to; i++)
+        {
+            if (order.compare(values[i], pivot) < 0)
+            {
+                swap(values, i, store);
+                ++store;
+            }
+        }
+        swap(values, store, to);
+        return store;
+    }
+
+
+    private static void swap(Object[] values, int i, int j)
+    {
+        Object temp = values[i];
+        values[i] = values[j];
+        values[j] = temp;
+    }
+
+
+    /**
+     * Determines whether a selection strategy assumes that the population is sorted.  Strategies
+     * that do not implement {@link SortRequirement} are assumed to require a sorted population.
+     * @param selectionStrategy The strategy to check.
+     * @return True if the population must be completely sorted before selection.
+     */
+    public static boolean requiresSortedPopulation(SelectionStrategy<?> selectionStrategy)
+    {
+        return !(selectionStrategy instanceof SortRequirement)
+               || ((SortRequirement) selectionStrategy).requiresSortedPopulation();
+    }
+
+
+    /**
+     * Selects candidates from a population view.  Strategies that implement
+     * {@link ViewSelectionStrategy} select from the view directly.  For other strategies,
+     * the view is converted into a list of {@link EvaluatedCandidate} objects.
+     * @param selectionStrategy The strategy used to select candidates.
+     * @param population The population from which to select.
+     * @param naturalFitnessScores Whether higher fitness values represent fitter
+     * individuals or not.
+     * @param selectionSize The number of individual selections to make.
+     * @param rng Source of randomness for stochastic selection strategies.
+     * @param <S> The type of entity that is being evolved.
+     * @return A list containing the selected candidates.
+     */
+    public static <S> List<S> select(SelectionStrategy<? super S> selectionStrategy,
+                                     PopulationView<S> population,
+                                     boolean naturalFitnessScores,
+                                     int selectionSize,
+                                     Random rng)
+    {
+        if (selectionStrategy instanceof ViewSelectionStrategy)
+        {
+            return ((ViewSelectionStrategy<? super S>) selectionStrategy).select(population,
+                                                                                 naturalFitnessScores,
+                                                                                 selectionSize,
+                                                                                 rng);
+        }
+        return selectionStrategy.select(population.toEvaluatedCandidates(),
+                                        naturalFitnessScores,
+                                        selectionSize,
+                                        rng);
+    }
+
+
     /**
      * Gets data about the current population, including the fittest candidate
      * and statistics about the population as a whole.
@@ -111,17 +321,19 @@ public final class EvolutionUtils
                                                           int iterationNumber,
                                                           long startTime)
     {
-        DataSet stats = new DataSet(evaluatedPopulation.size());
+        // Statistics are only calculated if something asks for them, but the scores
+        // have to be copied now because the population may change.
+        double[] fitnessScores = new double[evaluatedPopulation.size()];
+        int index = 0;
         for (EvaluatedCandidate<T> candidate : evaluatedPopulation)
         {
-            stats.addValue(candidate.getFitness());
+            fitnessScores[index] = candidate.getFitness();
+            ++index;
         }
         return new PopulationData<T>(evaluatedPopulation.get(0).getCandidate(),
                                      evaluatedPopulation.get(0).getFitness(),
-                                     stats.getArithmeticMean(),
-                                     stats.getStandardDeviation(),
+                                     fitnessScores,
                                      naturalFitness,
-                                     stats.getSize(),
                                      eliteCount,
                                      iterationNumber,
                                      System.currentTimeMillis() - startTime);
@@ -15,6 +15,7 @@
 //=============================================================================
 package org.uncommons.watchmaker.framework;
 
+import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -29,10 +30,13 @@ import org.uncommons.util.id.StringPrefixIDSource;
  * {@link EvolutionEngine}.  This responsibility is abstracted away from
  * the evolution engine to permit the possibility of creating multiple instances
  * across several machines, all fed by a single shared work queue, using Terracotta
- * (http://www.terracotta.org) or similar.
+ * (http://www.terracotta.org) or similar.  Unless an engine is given a different
+ * {@link EvaluationExecutor}, it uses a single instance of this class that is shared by
+ * all engines.  To spread evaluations across worker processes instead, use a
+ * {@link org.uncommons.watchmaker.framework.evaluation.RemoteFitnessEvaluator}.
  * @author Daniel Dyer
  */
-public class FitnessEvaluationWorker
+public class FitnessEvaluationWorker implements EvaluationExecutor
 {
     // Provide each worker instance with a unique name with which to prefix its threads.
     private static final IDSource<String> WORKER_ID_SOURCE = new StringPrefixIDSource("FitnessEvaluationWorker",
@@ -77,12 +81,34 @@ public class FitnessEvaluationWorker
     }
 
 
-    public <T> Future<EvaluatedCandidate<T>> submit(FitnessEvalutationTask<T> task)
+    /**
+     * {@inheritDoc}
+     */
+    public <V> Future<V> submit(Callable<V> task)
     {
         return executor.submit(task);
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public int getParallelism()
+    {
+        return executor.getCorePoolSize();
+    }
+
+
+    /**
+     * Shuts down this worker's thread pool.  Evolution engines never call this method on
+     * the worker that they share by default.
+     */
+    public void close()
+    {
+        executor.shutdown();
+    }
+
+
     /**
      * Entry-point for running this class standalone, as an additional node for fitness evaluations.
      * If this method is invoked without using Terracotta (or similar) to share the work queue, the
@@ -16,8 +16,10 @@
 package org.uncommons.watchmaker.framework;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import org.uncommons.watchmaker.framework.interactive.InteractiveSelection;
 
@@ -29,7 +31,8 @@ import org.uncommons.watchmaker.framework.interactive.InteractiveSelection;
  * <p>If multi-threading is enabled, evolution (mutation, cross-over, etc.) occurs
  * on the request thread but fitness evaluations are delegated to a pool of worker
  * threads. All of the host's available processing units are used (i.e. on a quad-core
- * machine there will be four fitness evaluation worker threads).</p>
+ * machine there will be four fitness evaluation worker threads).  Breeding and evaluation
+ * can be overlapped by enabling {@link #setPipelineBatchSize(int) pipelined} mode.</p>
  *
  * <p>If multi-threading is disabled, all work is performed synchronously on the
  * request thread.  This strategy is suitable for restricted/managed environments where
@@ -48,6 +51,9 @@ public class GenerationalEvolutionEngine<T> extends AbstractEvolutionEngine<T>
     private final FitnessEvaluator<? super T> fitnessEvaluator;
     private final SelectionStrategy<? super T> selectionStrategy;
 
+    private volatile int pipelineBatchSize = 0;
+    private volatile boolean fitnessReuse = false;
+
     /**
      * Creates a new evolution engine by specifying the various components required by
      * a generational evolutionary algorithm.
@@ -100,6 +106,62 @@ public class GenerationalEvolutionEngine<T> extends AbstractEvolutionEngine<T>
     }
 
 
+    /**
+     * <p>Enables or disables pipelined evolution.  By default, each generation is bred in its
+     * entirety before any of its members are evaluated, so the fitness evaluation threads are
+     * idle while the evolutionary operators run, and vice versa.  In pipelined mode, the
+     * selected candidates are passed to the evolutionary operators in batches of the specified
+     * size and the offspring of each batch are submitted for evaluation immediately, while the
+     * next batch is bred.  The engine only waits for all evaluations at the end of the
+     * generation.  This improves processor utilisation when breeding is expensive.</p>
+     *
+     * <p>Pipelining changes what the operators and the fitness evaluator see.  Each
+     * application of the evolutionary scheme receives only one batch, so operators that
+     * combine candidates (such as cross-over) only pair candidates within the same batch.
+     * The fitness evaluator is passed the batch's offspring, rather than the whole
+     * generation, as its population argument.  Pipelined mode should therefore only be used
+     * with <em>isolated</em> fitness evaluators, whose scores do not depend on the rest of
+     * the population.</p>
+     * @param batchSize The number of selected candidates to breed in each batch, or zero
+     * to disable pipelining.  Batches should be large enough to keep the evaluation threads
+     * busy and, for cross-over, should contain an even number of candidates.
+     */
+    public void setPipelineBatchSize(int batchSize)
+    {
+        if (batchSize < 0)
+        {
+            throw new IllegalArgumentException("Batch size must not be negative.");
+        }
+        this.pipelineBatchSize = batchSize;
+    }
+
+
+    /**
+     * <p>Enables or disables the re-use of fitness scores for candidates that survive
+     * unchanged from one generation to the next.  By default, every member of each new
+     * generation is evaluated, including the elite and any offspring that the evolutionary
+     * operators returned without modification (for example, a mutation that was not applied
+     * because of its probability).  When fitness re-use is enabled, any candidate that is
+     * the same object as a member of the previous generation is assigned that member's
+     * score instead of being evaluated again.  Unlike a
+     * {@link CachingFitnessEvaluator}, this relies only on
+     * object identity, so it has no hashing overhead and holds no references to candidates
+     * beyond the previous generation.</p>
+     *
+     * <p>This is only valid for <em>isolated</em> fitness evaluators that always give the
+     * same candidate the same score, and for evolutionary operators that never modify
+     * candidates in place (operators should return new objects rather than changing
+     * their arguments).  Candidates that need evaluating are passed to the fitness
+     * evaluator without those whose scores were re-used.</p>
+     * @param reuse True to re-use the scores of unchanged candidates, false to evaluate
+     * every candidate in every generation.
+     */
+    public void setFitnessReuse(boolean reuse)
+    {
+        this.fitnessReuse = reuse;
+    }
+
+
     /**
      * {@inheritDoc} 
      */
@@ -108,6 +170,7 @@ public class GenerationalEvolutionEngine<T> extends AbstractEvolutionEngine<T>
                                                             int eliteCount,
                                                             Random rng)
     {
+        long selectionStart = System.nanoTime();
         List<T> population = new ArrayList<T>(evaluatedPopulation.size());
 
         // First perform any elitist selection.
@@ -118,15 +181,114 @@ public class GenerationalEvolutionEngine<T> extends AbstractEvolutionEngine<T>
             elite.add(iterator.next().getCandidate());
         }
         // Then select candidates that will be operated on to create the evolved
-        // portion of the next generation.
-        population.addAll(selectionStrategy.select(evaluatedPopulation,
-                                                   fitnessEvaluator.isNatural(),
-                                                   evaluatedPopulation.size() - eliteCount,
-                                                   rng));
+        // portion of the next generation.  Strategies that can select from a view
+        // are given one, so that they don't have to re-score via wrapper objects.
+        int selectionSize = evaluatedPopulation.size() - eliteCount;
+        if (selectionStrategy instanceof ViewSelectionStrategy)
+        {
+            population.addAll(EvolutionUtils.select(selectionStrategy,
+                                                    new PopulationView<T>(evaluatedPopulation),
+                                                    fitnessEvaluator.isNatural(),
+                                                    selectionSize,
+                                                    rng));
+        }
+        else
+        {
+            population.addAll(selectionStrategy.select(evaluatedPopulation,
+                                                       fitnessEvaluator.isNatural(),
+                                                       selectionSize,
+                                                       rng));
+        }
+        getMetrics().recordPhase(EvolutionMetrics.Phase.SELECTION, System.nanoTime() - selectionStart);
+        Map<T, EvaluatedCandidate<T>> knownFitness = null;
+        if (fitnessReuse)
+        {
+            knownFitness = new IdentityHashMap<T, EvaluatedCandidate<T>>(evaluatedPopulation.size());
+            for (EvaluatedCandidate<T> candidate : evaluatedPopulation)
+            {
+                knownFitness.put(candidate.getCandidate(), candidate);
+            }
+        }
+        int batchSize = pipelineBatchSize;
+        if (batchSize > 0)
+        {
+            return evolveAndEvaluateInBatches(population, elite, knownFitness, batchSize, rng);
+        }
         // Then evolve the population.
+        long breedingStart = System.nanoTime();
         population = evolutionScheme.apply(population, rng);
+        getMetrics().recordPhase(EvolutionMetrics.Phase.BREEDING, System.nanoTime() - breedingStart);
         // When the evolution is finished, add the elite to the population.
         population.addAll(elite);
-        return evaluatePopulation(population);
+        return startEvaluation(population, knownFitness).getResults();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>If the selection strategy does not depend on the order of the population (see
+     * {@link SortRequirement}), only the elite are put in order.</p>
+     */
+    @Override
+    protected boolean sortEvaluatedPopulation(List<EvaluatedCandidate<T>> evaluatedPopulation, int eliteCount)
+    {
+        if (EvolutionUtils.requiresSortedPopulation(selectionStrategy))
+        {
+            return super.sortEvaluatedPopulation(evaluatedPopulation, eliteCount);
+        }
+        EvolutionUtils.sortFittest(evaluatedPopulation, fitnessEvaluator.isNatural(), Math.max(1, eliteCount));
+        return false;
+    }
+
+
+    /**
+     * Breeds the selected candidates one batch at a time, starting the evaluation of each
+     * batch of offspring before breeding the next.
+     * @param selected The candidates chosen by the selection strategy.
+     * @param elite The candidates preserved by elitism, which are evaluated last.
+     * @param knownFitness Candidates from the previous generation whose scores may be
+     * re-used, or null if all candidates must be evaluated.
+     * @param batchSize The number of selected candidates in each batch.
+     * @param rng A source of randomness.
+     * @return The evaluated offspring followed by the evaluated elite.
+     */
+    private List<EvaluatedCandidate<T>> evolveAndEvaluateInBatches(List<T> selected,
+                                                                   List<T> elite,
+                                                                   Map<T, EvaluatedCandidate<T>> knownFitness,
+                                                                   int batchSize,
+                                                                   Random rng)
+    {
+        List<PendingEvaluation> pending = new ArrayList<PendingEvaluation>(selected.size() / batchSize + 2);
+        try
+        {
+            for (int i = 0; i < selected.size(); i += batchSize)
+            {
+                List<T> batch = new ArrayList<T>(selected.subList(i, Math.min(i + batchSize, selected.size())));
+                long breedingStart = System.nanoTime();
+                List<T> offspring = evolutionScheme.apply(batch, getBatchRNG(rng, i / batchSize));
+                getMetrics().recordPhase(EvolutionMetrics.Phase.BREEDING, System.nanoTime() - breedingStart);
+                pending.add(startEvaluation(offspring, knownFitness));
+            }
+            if (!elite.isEmpty())
+            {
+                pending.add(startEvaluation(elite, knownFitness));
+            }
+            // Wait for the last evaluations to finish.
+            List<EvaluatedCandidate<T>> evaluatedPopulation = new ArrayList<EvaluatedCandidate<T>>(selected.size() + elite.size());
+            for (PendingEvaluation evaluation : pending)
+            {
+                evaluatedPopulation.addAll(evaluation.getResults());
+            }
+            return evaluatedPopulation;
+        }
+        catch (RuntimeException ex)
+        {
+            // Don't leave evaluations running for a generation that will never complete.
+            for (PendingEvaluation evaluation : pending)
+            {
+                evaluation.cancel();
+            }
+            throw ex;
+        }
     }
 }
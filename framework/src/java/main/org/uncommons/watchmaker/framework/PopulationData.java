@@ -15,10 +15,13 @@
 //=============================================================================
 package org.uncommons.watchmaker.framework;
 
+import java.util.Arrays;
+
 /**
  * Immutable data object containing statistics about the state of
  * an evolved population and a reference to the fittest candidate
- * solution in the population.
+ * solution in the population.  Statistics are calculated lazily, so
+ * creating an instance is cheap if nothing looks at them.
  * @param <T> The type of evolved entity present in the population
  * that this data describes.
  * @see EvolutionObserver
@@ -28,14 +31,18 @@ public final class PopulationData<T>
 {
     private final T bestCandidate;
     private final double bestCandidateFitness;
-    private final double meanFitness;
-    private final double fitnessStandardDeviation;
+    private final double[] fitnessScores;
     private final boolean naturalFitness;
     private final int populationSize;
     private final int eliteCount;
     private final int generationNumber;
     private final long elapsedTime;
 
+    // Statistics are calculated from the fitness scores when they are first needed.
+    // If two threads race to calculate them, they get the same results.
+    private volatile Summary summary;
+    private volatile double[] sortedScores;
+
     /**
      * @param bestCandidate The fittest candidate present in the population.
      * @param bestCandidateFitness The fitness score for the fittest candidate
@@ -51,6 +58,9 @@ public final class PopulationData<T>
      * @param generationNumber The (zero-based) number of the last generation
      * that was processed.
      * @param elapsedTime The number of milliseconds since the start of the
+     * evolutionary algorithm's execution.  Data created with this constructor
+     * has no individual fitness scores, so the statistics that require them,
+     * such as {@link #getMedianFitness()}, are not available.
      */
     public PopulationData(T bestCandidate,
                           double bestCandidateFitness,
@@ -64,13 +74,54 @@ public final class PopulationData<T>
     {
         this.bestCandidate = bestCandidate;
         this.bestCandidateFitness = bestCandidateFitness;
-        this.meanFitness = meanFitness;
-        this.fitnessStandardDeviation = fitnessStandardDeviation;
+        this.fitnessScores = null;
         this.naturalFitness = naturalFitness;
         this.populationSize = populationSize;
         this.eliteCount = eliteCount;
         this.generationNumber = generationNumber;
         this.elapsedTime = elapsedTime;
+        this.summary = new Summary(meanFitness, fitnessStandardDeviation, Double.NaN, Double.NaN);
+    }
+
+
+    /**
+     * Creates population data from the fitness scores of every member of the population.
+     * None of the statistics are calculated until they are first requested, so there is
+     * little overhead if nothing uses them.  Data created this way also supports the
+     * additional statistics (such as the median and quantiles of the fitness scores).
+     * @param bestCandidate The fittest candidate present in the population.
+     * @param bestCandidateFitness The fitness score for the fittest candidate
+     * in the population.
+     * @param fitnessScores The fitness score of each member of the population, in any order.
+     * The array is used directly and must not be modified afterwards.
+     * @param naturalFitness True if higher fitness scores are better, false
+     * otherwise.
+     * @param eliteCount The number of candidates preserved via elitism.
+     * @param generationNumber The (zero-based) number of the last generation
+     * that was processed.
+     * @param elapsedTime The number of milliseconds since the start of the
+     * evolutionary algorithm's execution.
+     */
+    public PopulationData(T bestCandidate,
+                          double bestCandidateFitness,
+                          double[] fitnessScores,
+                          boolean naturalFitness,
+                          int eliteCount,
+                          int generationNumber,
+                          long elapsedTime)
+    {
+        if (fitnessScores.length == 0)
+        {
+            throw new IllegalArgumentException("Population must not be empty.");
+        }
+        this.bestCandidate = bestCandidate;
+        this.bestCandidateFitness = bestCandidateFitness;
+        this.fitnessScores = fitnessScores;
+        this.naturalFitness = naturalFitness;
+        this.populationSize = fitnessScores.length;
+        this.eliteCount = eliteCount;
+        this.generationNumber = generationNumber;
+        this.elapsedTime = elapsedTime;
     }
 
 
@@ -100,7 +151,7 @@ public final class PopulationData<T>
      */
     public double getMeanFitness()
     {
-        return meanFitness;
+        return getSummary().mean;
     }
 
 
@@ -111,7 +162,109 @@ public final class PopulationData<T>
      */
     public double getFitnessStandardDeviation()
     {
-        return fitnessStandardDeviation;
+        return getSummary().standardDeviation;
+    }
+
+
+    /**
+     * @return The fitness score of the least fit member of the population, or
+     * {@link Double#NaN} if this data was not created from the fitness scores of
+     * the whole population.
+     */
+    public double getWorstCandidateFitness()
+    {
+        Summary statistics = getSummary();
+        return naturalFitness ? statistics.minimum : statistics.maximum;
+    }
+
+
+    /**
+     * @return The median fitness score of the population, or {@link Double#NaN}
+     * if this data was not created from the fitness scores of the whole population.
+     */
+    public double getMedianFitness()
+    {
+        return getFitnessQuantile(0.5);
+    }
+
+
+    /**
+     * Returns the fitness score below which the specified proportion of scores fall,
+     * interpolating linearly between adjacent scores.  Quantiles are of the raw scores,
+     * so for non-natural fitness the low quantiles are the fittest.  The first call to
+     * this method (or {@link #getMedianFitness()} or {@link #getDistinctFitnessCount()})
+     * sorts a copy of the fitness scores.
+     * @param quantile The proportion of scores, between 0 and 1 (inclusive).  For example,
+     * 0.25 gives the lower quartile.
+     * @return The fitness quantile, or {@link Double#NaN} if this data was not
+     * created from the fitness scores of the whole population.
+     */
+    public double getFitnessQuantile(double quantile)
+    {
+        if (quantile < 0 || quantile > 1)
+        {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+        }
+        if (fitnessScores == null)
+        {
+            return Double.NaN;
+        }
+        double[] sorted = getSortedScores();
+        double position = quantile * (sorted.length - 1);
+        int lower = (int) Math.floor(position);
+        int upper = (int) Math.ceil(position);
+        return sorted[lower] + (position - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+
+    /**
+     * Returns the number of different fitness scores in the population.  This is a cheap
+     * indication of diversity: a population that has converged on a few solutions will
+     * have few distinct scores.
+     * @return The number of distinct fitness scores, between 1 and the population size,
+     * or zero if this data was not created from the fitness scores of the whole population.
+     */
+    public int getDistinctFitnessCount()
+    {
+        if (fitnessScores == null)
+        {
+            return 0;
+        }
+        double[] sorted = getSortedScores();
+        int count = 1;
+        for (int i = 1; i < sorted.length; i++)
+        {
+            if (Double.compare(sorted[i], sorted[i - 1]) != 0)
+            {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+
+    private Summary getSummary()
+    {
+        Summary statistics = summary;
+        if (statistics == null)
+        {
+            statistics = Summary.of(fitnessScores);
+            summary = statistics;
+        }
+        return statistics;
+    }
+
+
+    private double[] getSortedScores()
+    {
+        double[] sorted = sortedScores;
+        if (sorted == null)
+        {
+            sorted = fitnessScores.clone();
+            Arrays.sort(sorted);
+            sortedScores = sorted;
+        }
+        return sorted;
     }
 
 
@@ -162,4 +315,49 @@ public final class PopulationData<T>
     {
         return elapsedTime;
     }
+
+
+    /**
+     * Statistics that are calculated together in a single pass over the fitness scores.
+     */
+    private static final class Summary
+    {
+        private final double mean;
+        private final double standardDeviation;
+        private final double minimum;
+        private final double maximum;
+
+        Summary(double mean, double standardDeviation, double minimum, double maximum)
+        {
+            this.mean = mean;
+            this.standardDeviation = standardDeviation;
+            this.minimum = minimum;
+            this.maximum = maximum;
+        }
+
+        /**
+         * Uses Welford's method, which is numerically stable, to calculate the mean and
+         * population standard deviation at the same time as the minimum and maximum.
+         */
+        static Summary of(double[] scores)
+        {
+            double mean = 0;
+            double sumOfSquaredDeviations = 0;
+            double minimum = Double.POSITIVE_INFINITY;
+            double maximum = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < scores.length; i++)
+            {
+                double score = scores[i];
+                double delta = score - mean;
+                mean += delta / (i + 1);
+                sumOfSquaredDeviations += delta * (score - mean);
+                minimum = Math.min(minimum, score);
+                maximum = Math.max(maximum, score);
+            }
+            return new Summary(mean,
+                               Math.sqrt(sumOfSquaredDeviations / scores.length),
+                               minimum,
+                               maximum);
+        }
+    }
 }
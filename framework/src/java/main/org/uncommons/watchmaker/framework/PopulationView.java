@@ -0,0 +1,197 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>A read-only, array-based view of an evaluated population.  The candidates and their
+ * fitness scores are held in parallel arrays, rather than as a list of
+ * {@link EvaluatedCandidate} objects, so that selection strategies can re-score a
+ * population (for example by rank or by sigma-scaling) by allocating a single
+ * {@code double[]} instead of one wrapper object per candidate.</p>
+ *
+ * <p>A view has the same ordering as the population that it was created from.  Where a
+ * {@link SelectionStrategy} would expect a population sorted in descending order of
+ * fitness, it can expect the same of a view.</p>
+ * @param <T> The type of evolved entity in the population.
+ * @see ViewSelectionStrategy
+ * @author Daniel Dyer
+ */
+public final class PopulationView<T>
+{
+    private final Object[] candidates;
+    private final double[] fitnessScores;
+
+
+    /**
+     * Creates a view by copying the candidates and fitness scores of an evaluated population.
+     * @param population The evaluated population.
+     */
+    public PopulationView(List<EvaluatedCandidate<T>> population)
+    {
+        this.candidates = new Object[population.size()];
+        this.fitnessScores = new double[population.size()];
+        int index = 0;
+        for (EvaluatedCandidate<T> candidate : population)
+        {
+            candidates[index] = candidate.getCandidate();
+            fitnessScores[index] = candidate.getFitness();
+            ++index;
+        }
+    }
+
+
+    private PopulationView(Object[] candidates, double[] fitnessScores)
+    {
+        this.candidates = candidates;
+        this.fitnessScores = fitnessScores;
+    }
+
+
+    /**
+     * @return The number of candidates in the population.
+     */
+    public int size()
+    {
+        return candidates.length;
+    }
+
+
+    /**
+     * @param index The zero-based position of a candidate in the population.
+     * @return The candidate at the specified position.
+     */
+    @SuppressWarnings("unchecked")
+    public T getCandidate(int index)
+    {
+        return (T) candidates[index];
+    }
+
+
+    /**
+     * @param index The zero-based position of a candidate in the population.
+     * @return The fitness score of the candidate at the specified position.
+     */
+    public double getFitness(int index)
+    {
+        return fitnessScores[index];
+    }
+
+
+    /**
+     * Creates a view of the same candidates, in the same order, with different fitness
+     * scores.  The candidates are shared with this view rather than copied.
+     * @param scores The new fitness scores, one for each candidate.  The array is used
+     * directly and must not be modified afterwards.
+     * @return A view that associates the new scores with this view's candidates.
+     */
+    public PopulationView<T> withFitness(double[] scores)
+    {
+        if (scores.length != candidates.length)
+        {
+            throw new IllegalArgumentException("Must have exactly one fitness score per candidate.");
+        }
+        return new PopulationView<T>(candidates, scores);
+    }
+
+
+    /**
+     * Creates a view of the same candidates sorted in descending order of fitness (descending
+     * order of fitness score for natural scores, ascending order of scores for non-natural
+     * scores).  Only an array of indices is sorted, comparing primitive fitness scores, and
+     * the candidates and scores are then copied into place.  The sort is stable.
+     * @param naturalFitness True if higher fitness scores mean fitter individuals, false otherwise.
+     * @return A sorted view of the population.
+     */
+    public PopulationView<T> sort(boolean naturalFitness)
+    {
+        int[] order = new int[candidates.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = i;
+        }
+        mergeSort(order, new int[order.length], 0, order.length, naturalFitness);
+        Object[] sortedCandidates = new Object[candidates.length];
+        double[] sortedScores = new double[fitnessScores.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            sortedCandidates[i] = candidates[order[i]];
+            sortedScores[i] = fitnessScores[order[i]];
+        }
+        return new PopulationView<T>(sortedCandidates, sortedScores);
+    }
+
+
+    /**
+     * Sorts a range of indices so that the fittest candidates come first.
+     */
+    private void mergeSort(int[] indices, int[] buffer, int from, int to, boolean naturalFitness)
+    {
+        if (to - from < 2)
+        {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(indices, buffer, from, middle, naturalFitness);
+        mergeSort(indices, buffer, middle, to, naturalFitness);
+        if (!isFitter(indices[middle], indices[middle - 1], naturalFitness))
+        {
+            return; // Already in order.
+        }
+        System.arraycopy(indices, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++)
+        {
+            // Take from the left unless the right is strictly fitter, to keep the sort stable.
+            if (right >= to || (left < middle && !isFitter(buffer[right], buffer[left], naturalFitness)))
+            {
+                indices[i] = buffer[left++];
+            }
+            else
+            {
+                indices[i] = buffer[right++];
+            }
+        }
+    }
+
+
+    private boolean isFitter(int index1, int index2, boolean naturalFitness)
+    {
+        return naturalFitness
+               ? fitnessScores[index1] > fitnessScores[index2]
+               : fitnessScores[index1] < fitnessScores[index2];
+    }
+
+
+    /**
+     * Creates a list of evaluated candidates from this view, for use with code that
+     * does not support views.
+     * @return A new list containing the candidates and their fitness scores in the
+     * same order as this view.
+     */
+    public List<EvaluatedCandidate<T>> toEvaluatedCandidates()
+    {
+        List<EvaluatedCandidate<T>> population = new ArrayList<EvaluatedCandidate<T>>(candidates.length);
+        for (int i = 0; i < candidates.length; i++)
+        {
+            population.add(new EvaluatedCandidate<T>(getCandidate(i), fitnessScores[i]));
+        }
+        return population;
+    }
+}
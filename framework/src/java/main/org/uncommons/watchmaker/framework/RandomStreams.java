@@ -0,0 +1,173 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * <p>A tree of independent streams of random numbers derived from a single master seed.
+ * Each stream is identified by its position in the tree (for example, the generation number
+ * and then the batch number within that generation), so the numbers that a stream produces
+ * depend only on the master seed and the stream's position, not on the order in which
+ * streams are created or on which threads use them.</p>
+ *
+ * <p>When an evolution engine is given random streams (see
+ * {@link AbstractEvolutionEngine#setRandomStreams(RandomStreams)}), it uses a separate
+ * stream for each generation and for each batch of offspring bred in that generation, so
+ * that an evolution with the same master seed produces exactly the same results however
+ * many threads are used.  The generators returned by {@link #getRandom(long)} are not
+ * synchronised: each is intended to be used by only one thread, so no thread ever
+ * contends with another for a shared generator.</p>
+ *
+ * <p>Seeds are derived with the SplitMix64 mixing function and each stream is itself a
+ * SplitMix64 generator.  The streams are statistically independent for practical purposes,
+ * but the generator is not suitable for cryptographic use.</p>
+ * @author Daniel Dyer
+ */
+public final class RandomStreams implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    // The fractional part of the golden ratio, as used by SplitMix64.
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+
+
+    /**
+     * @param seed The master seed from which all streams are derived.
+     */
+    public RandomStreams(long seed)
+    {
+        this.seed = seed;
+    }
+
+
+    /**
+     * Creates streams from a master seed taken from another random number generator.
+     * @param seedSource The source of the master seed.
+     */
+    public RandomStreams(Random seedSource)
+    {
+        this(seedSource.nextLong());
+    }
+
+
+    /**
+     * @return The master seed.  Streams created with the same seed produce the same
+     * random numbers.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+
+    /**
+     * @param index The position of the sub-tree.
+     * @return The streams of the sub-tree at the specified position.  Different indices
+     * give independent sub-trees, and the same index always gives the same one.
+     */
+    public RandomStreams getSubstreams(long index)
+    {
+        return new RandomStreams(mix(seed + mix(index * GOLDEN_GAMMA + GOLDEN_GAMMA)));
+    }
+
+
+    /**
+     * @param index The position of the stream.
+     * @return A new, unsynchronised generator for the stream at the specified position.
+     * Each call returns a generator that starts from the beginning of the stream.
+     */
+    public Random getRandom(long index)
+    {
+        return new SplitMixRandom(getSubstreams(index).seed);
+    }
+
+
+    /**
+     * The 64-bit finaliser of SplitMix64 (Stafford's "Mix13" variant of MurmurHash3's).
+     */
+    static long mix(long value)
+    {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+
+    /**
+     * A SplitMix64 generator.  Unlike {@link Random}, it does no synchronisation.
+     */
+    private static final class SplitMixRandom extends Random
+    {
+        private static final long serialVersionUID = 1L;
+
+        private long state;
+
+        SplitMixRandom(long seed)
+        {
+            super(0); // The superclass state is not used.
+            this.state = seed;
+        }
+
+
+        @Override
+        public void setSeed(long seed)
+        {
+            // Called by the superclass constructor, before this class has any state.
+            this.state = seed;
+        }
+
+
+        @Override
+        public long nextLong()
+        {
+            state += GOLDEN_GAMMA;
+            return mix(state);
+        }
+
+
+        @Override
+        protected int next(int bits)
+        {
+            return (int) (nextLong() >>> (64 - bits));
+        }
+
+
+        @Override
+        public int nextInt()
+        {
+            return (int) (nextLong() >>> 32);
+        }
+
+
+        @Override
+        public double nextDouble()
+        {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+
+
+        @Override
+        public boolean nextBoolean()
+        {
+            return nextLong() < 0;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+/**
+ * Optional interface for {@link SelectionStrategy} implementations that can report whether
+ * they rely on the population being sorted.  By default, selection strategies may assume
+ * that the population is in descending order of fitness, so evolution engines sort it
+ * every generation.  Strategies that select without regard to position (such as
+ * fitness-proportionate or tournament selection) can implement this interface so that
+ * engines only need to find the fittest candidates, which is much cheaper than a full
+ * sort for large populations.
+ * @author Daniel Dyer
+ */
+public interface SortRequirement
+{
+    /**
+     * @return True if the strategy assumes that the population passed to it is
+     * sorted in descending order of fitness, false if it does not depend on the
+     * order of the population.
+     */
+    boolean requiresSortedPopulation();
+}
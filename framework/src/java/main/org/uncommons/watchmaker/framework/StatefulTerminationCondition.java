@@ -0,0 +1,46 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A {@link TerminationCondition} that accumulates state across generations (for example,
+ * the best fitness seen so far).  The state is saved in each {@link Checkpoint} and
+ * restored when the evolution is resumed so that the condition behaves as if the evolution
+ * had never stopped.
+ * @author Daniel Dyer
+ */
+public interface StatefulTerminationCondition extends TerminationCondition
+{
+    /**
+     * Writes the current state of this condition.
+     * @param out The destination of the state.
+     * @throws IOException If the state cannot be written.
+     */
+    void writeState(DataOutput out) throws IOException;
+
+
+    /**
+     * Replaces the state of this condition with state previously written by
+     * {@link #writeState(DataOutput)}.
+     * @param in The source of the state.
+     * @throws IOException If the state cannot be read.
+     */
+    void readState(DataInput in) throws IOException;
+}
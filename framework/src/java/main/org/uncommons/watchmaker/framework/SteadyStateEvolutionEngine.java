@@ -15,8 +15,13 @@
 //=============================================================================
 package org.uncommons.watchmaker.framework;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 /**
  * An implementation of steady-state evolution, which is a type of evolutionary algorithm
@@ -95,19 +100,103 @@ public class SteadyStateEvolutionEngine<T> extends AbstractEvolutionEngine<T>
                                                             int eliteCount,
                                                             Random rng)
     {
-        EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, fitnessEvaluator.isNatural());
-        List<T> selectedCandidates = selectionStrategy.select(evaluatedPopulation,
-                                                              fitnessEvaluator.isNatural(),
-                                                              selectionSize,
-                                                              rng);
-        List<EvaluatedCandidate<T>> offspring = evaluatePopulation(evolutionScheme.apply(selectedCandidates, rng));
+        // This is normally just a check, since each step leaves the population sorted.
+        sortEvaluatedPopulation(evaluatedPopulation, eliteCount);
+        long selectionStart = System.nanoTime();
+        List<T> selectedCandidates = selectionStrategy instanceof ViewSelectionStrategy
+                                     ? EvolutionUtils.select(selectionStrategy,
+                                                             new PopulationView<T>(evaluatedPopulation),
+                                                             fitnessEvaluator.isNatural(),
+                                                             selectionSize,
+                                                             rng)
+                                     : selectionStrategy.select(evaluatedPopulation,
+                                                                fitnessEvaluator.isNatural(),
+                                                                selectionSize,
+                                                                rng);
+        long breedingStart = System.nanoTime();
+        getMetrics().recordPhase(EvolutionMetrics.Phase.SELECTION, breedingStart - selectionStart);
+        List<T> bred = evolutionScheme.apply(selectedCandidates, rng);
+        getMetrics().recordPhase(EvolutionMetrics.Phase.BREEDING, System.nanoTime() - breedingStart);
+        List<EvaluatedCandidate<T>> offspring = evaluatePopulation(bred);
 
         doReplacement(evaluatedPopulation, offspring, eliteCount, rng);
+        reinsertInOrder(evaluatedPopulation, offspring);
 
         return evaluatedPopulation;
     }
 
 
+    /**
+     * {@inheritDoc}
+     * <p>Each evolution step keeps the population sorted, so this only sorts populations
+     * that are not already in order, such as the initial population.</p>
+     */
+    @Override
+    protected boolean sortEvaluatedPopulation(List<EvaluatedCandidate<T>> evaluatedPopulation, int eliteCount)
+    {
+        Comparator<EvaluatedCandidate<T>> order = EvolutionUtils.getFitnessOrder(fitnessEvaluator.isNatural());
+        for (int i = 1; i < evaluatedPopulation.size(); i++)
+        {
+            if (order.compare(evaluatedPopulation.get(i - 1), evaluatedPopulation.get(i)) > 0)
+            {
+                return super.sortEvaluatedPopulation(evaluatedPopulation, eliteCount);
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Restores the order of a sorted population after some of its members have been
+     * replaced.  Rather than sorting the whole population again, the new candidates are
+     * sorted amongst themselves and merged back in.  The size of the list is not changed.
+     * @param population The population, which was sorted before the replacement.
+     * @param newCandidates The candidates that may have been inserted into the population.
+     */
+    private void reinsertInOrder(List<EvaluatedCandidate<T>> population,
+                                 List<EvaluatedCandidate<T>> newCandidates)
+    {
+        Set<EvaluatedCandidate<T>> inserted = Collections.newSetFromMap(new IdentityHashMap<EvaluatedCandidate<T>, Boolean>());
+        inserted.addAll(newCandidates);
+        // Move the rest of the population to the front, preserving its order.
+        List<EvaluatedCandidate<T>> displaced = new ArrayList<EvaluatedCandidate<T>>(newCandidates.size());
+        int kept = 0;
+        for (int i = 0; i < population.size(); i++)
+        {
+            EvaluatedCandidate<T> candidate = population.get(i);
+            if (inserted.contains(candidate))
+            {
+                displaced.add(candidate);
+            }
+            else
+            {
+                population.set(kept, candidate);
+                ++kept;
+            }
+        }
+
+        // Merge from the back so that nothing is overwritten before it has been moved.
+        Comparator<EvaluatedCandidate<T>> order = EvolutionUtils.getFitnessOrder(fitnessEvaluator.isNatural());
+        Collections.sort(displaced, order);
+        int write = population.size() - 1;
+        int read = kept - 1;
+        for (int i = displaced.size() - 1; i >= 0; write--)
+        {
+            // Equally fit new candidates go after existing ones.
+            if (read >= 0 && order.compare(population.get(read), displaced.get(i)) > 0)
+            {
+                population.set(write, population.get(read));
+                --read;
+            }
+            else
+            {
+                population.set(write, displaced.get(i));
+                --i;
+            }
+        }
+    }
+
+
     /**
      * Add the offspring to the population, removing the same number of existing individuals to make
      * space for them.
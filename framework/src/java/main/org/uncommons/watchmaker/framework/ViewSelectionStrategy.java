@@ -0,0 +1,50 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A {@link SelectionStrategy} that can also select from a {@link PopulationView}.
+ * Selecting from a view avoids allocating an {@link EvaluatedCandidate} for each
+ * member of the population when fitness scores have to be transformed before
+ * selection.  Use {@link EvolutionUtils#select(SelectionStrategy, PopulationView, boolean, int, Random)}
+ * to select from a view with any strategy.
+ * @param <T> The type of evolved entity that we are selecting.
+ * @author Daniel Dyer
+ */
+public interface ViewSelectionStrategy<T> extends SelectionStrategy<T>
+{
+    /**
+     * Select the specified number of candidates from the population.  This is the
+     * same as {@link #select(List, boolean, int, Random)} except for the form of the
+     * population, which may be assumed to be sorted in descending order of fitness
+     * unless the strategy declares otherwise via {@link SortRequirement}.
+     * @param <S> The type of evolved entity that we are selecting, a sub-type of T.
+     * @param population The population from which to select.
+     * @param naturalFitnessScores Whether higher fitness values represent fitter
+     * individuals or not.
+     * @param selectionSize The number of individual selections to make.
+     * @param rng Source of randomness for stochastic selection strategies.
+     * @return A list containing the selected candidates.  Some individual candidates may
+     * potentially have been selected multiple times.
+     */
+    <S extends T> List<S> select(PopulationView<S> population,
+                                 boolean naturalFitnessScores,
+                                 int selectionSize,
+                                 Random rng);
+}
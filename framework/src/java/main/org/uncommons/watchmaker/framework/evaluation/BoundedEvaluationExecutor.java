@@ -0,0 +1,206 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.evaluation;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.uncommons.watchmaker.framework.EvaluationExecutor;
+
+/**
+ * Limits the number of tasks that can be outstanding (queued or running) in another
+ * {@link EvaluationExecutor}.  Once the limit is reached, {@link #submit(Callable)}
+ * blocks until one of the outstanding tasks completes or is cancelled.  This applies
+ * backpressure to whatever is generating the work and bounds the memory used by tasks
+ * that are waiting to run.
+ * @author Daniel Dyer
+ */
+public class BoundedEvaluationExecutor implements EvaluationExecutor
+{
+    private final EvaluationExecutor delegate;
+    private final Semaphore permits;
+
+    /**
+     * @param delegate The executor that runs the tasks.
+     * @param maxOutstanding The maximum number of tasks that may be submitted to the
+     * delegate and not yet finished.
+     */
+    public BoundedEvaluationExecutor(EvaluationExecutor delegate, int maxOutstanding)
+    {
+        if (maxOutstanding <= 0)
+        {
+            throw new IllegalArgumentException("Maximum outstanding tasks must be positive.");
+        }
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxOutstanding);
+    }
+
+
+    /**
+     * Submits a task to the delegate executor, first waiting if the maximum number of
+     * tasks are already outstanding.
+     * @throws RejectedExecutionException If the calling thread is interrupted while waiting
+     * (in which case its interrupted status is restored) or if the delegate rejects the task.
+     */
+    public <V> Future<V> submit(Callable<V> task)
+    {
+        try
+        {
+            permits.acquire();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting to submit task.", ex);
+        }
+        PermitReleasingTask<V> wrapper = new PermitReleasingTask<V>(task);
+        try
+        {
+            return new PermitReleasingFuture<V>(delegate.submit(wrapper), wrapper);
+        }
+        catch (RuntimeException ex)
+        {
+            wrapper.abandon();
+            throw ex;
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getParallelism()
+    {
+        return delegate.getParallelism();
+    }
+
+
+    /**
+     * @return The number of further tasks that can be submitted without blocking.
+     */
+    public int getAvailableCapacity()
+    {
+        return permits.availablePermits();
+    }
+
+
+    /**
+     * Closes the delegate executor.
+     */
+    public void close()
+    {
+        delegate.close();
+    }
+
+
+    /**
+     * Returns its permit when it finishes, whether it succeeds or fails.  A task that
+     * is abandoned before it starts returns its permit straight away and never runs.
+     * Either way the permit is only returned once no more work will be done for the task,
+     * so a task that is still running always counts towards the limit.
+     */
+    private final class PermitReleasingTask<V> implements Callable<V>
+    {
+        private final Callable<V> task;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+        PermitReleasingTask(Callable<V> task)
+        {
+            this.task = task;
+        }
+
+        public V call() throws Exception
+        {
+            if (!claimed.compareAndSet(false, true))
+            {
+                throw new CancellationException("Task was cancelled before it started.");
+            }
+            try
+            {
+                return task.call();
+            }
+            finally
+            {
+                permits.release();
+            }
+        }
+
+        /**
+         * Returns the permit if the task has not started, and stops it from starting.
+         */
+        void abandon()
+        {
+            if (claimed.compareAndSet(false, true))
+            {
+                permits.release();
+            }
+        }
+    }
+
+
+    /**
+     * Returns the task's permit if the task is cancelled before it starts, since it
+     * will then never run to release its permit itself.  A cancelled task that is already
+     * running keeps its permit until it actually finishes.
+     */
+    private static final class PermitReleasingFuture<V> implements Future<V>
+    {
+        private final Future<V> future;
+        private final PermitReleasingTask<V> task;
+
+        PermitReleasingFuture(Future<V> future, PermitReleasingTask<V> task)
+        {
+            this.future = future;
+            this.task = task;
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            boolean cancelled = future.cancel(mayInterruptIfRunning);
+            if (cancelled)
+            {
+                task.abandon();
+            }
+            return cancelled;
+        }
+
+        public boolean isCancelled()
+        {
+            return future.isCancelled();
+        }
+
+        public boolean isDone()
+        {
+            return future.isDone();
+        }
+
+        public V get() throws InterruptedException, ExecutionException
+        {
+            return future.get();
+        }
+
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+        {
+            return future.get(timeout, unit);
+        }
+    }
+}
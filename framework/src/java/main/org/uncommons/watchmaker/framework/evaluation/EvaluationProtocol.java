@@ -0,0 +1,44 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.evaluation;
+
+/**
+ * The message types exchanged between a {@link RemoteFitnessEvaluator} and its
+ * {@link RemoteEvaluationWorker}s.  Each message is a
+ * {@link org.uncommons.watchmaker.framework.persistence.Frame}.  Batches are identified
+ * by a number chosen by the evaluator, so a worker may return scores in any order.
+ * @author Daniel Dyer
+ */
+final class EvaluationProtocol
+{
+    static final int VERSION = 1;
+
+    /** Worker to evaluator: protocol version. */
+    static final byte HELLO = 1;
+    /** Evaluator to worker: batch number, candidate count, candidates. */
+    static final byte BATCH = 2;
+    /** Worker to evaluator: batch number, score count, scores. */
+    static final byte SCORES = 3;
+    /** Worker to evaluator: batch number, description of the fitness function's failure. */
+    static final byte FAILURE = 4;
+    /** Evaluator to worker: no more batches. */
+    static final byte STOP = 5;
+
+    private EvaluationProtocol()
+    {
+        // Prevents instantiation.
+    }
+}
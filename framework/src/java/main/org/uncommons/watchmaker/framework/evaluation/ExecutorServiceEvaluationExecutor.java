@@ -0,0 +1,94 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.evaluation;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.uncommons.watchmaker.framework.EvaluationExecutor;
+
+/**
+ * An {@link EvaluationExecutor} that submits tasks to a standard
+ * {@link ExecutorService}.  This can be used directly to run fitness evaluations
+ * on an existing executor service, or sub-classed to create and manage one.
+ * @author Daniel Dyer
+ */
+public class ExecutorServiceEvaluationExecutor implements EvaluationExecutor
+{
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final boolean shutdownOnClose;
+
+    /**
+     * @param executor The executor service that runs submitted tasks.
+     * @param parallelism The number of tasks that the executor service can run
+     * at the same time.
+     * @param shutdownOnClose Whether the executor service should be shut down when
+     * this object is closed.  This should be false if the executor service is owned
+     * by some other part of the program.
+     */
+    public ExecutorServiceEvaluationExecutor(ExecutorService executor,
+                                             int parallelism,
+                                             boolean shutdownOnClose)
+    {
+        if (parallelism <= 0)
+        {
+            throw new IllegalArgumentException("Parallelism must be positive.");
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.shutdownOnClose = shutdownOnClose;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public <V> Future<V> submit(Callable<V> task)
+    {
+        return executor.submit(task);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+
+    /**
+     * Shuts down the underlying executor service, if this object owns it.
+     */
+    public void close()
+    {
+        if (shutdownOnClose)
+        {
+            executor.shutdown();
+        }
+    }
+
+
+    /**
+     * @return True if this executor has been closed and all of its tasks have completed.
+     */
+    public boolean isTerminated()
+    {
+        return executor.isTerminated();
+    }
+}
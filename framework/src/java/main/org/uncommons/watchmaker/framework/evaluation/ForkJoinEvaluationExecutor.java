@@ -0,0 +1,57 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.evaluation;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs fitness evaluations on a work-stealing {@link ForkJoinPool}.  Work-stealing
+ * suits workloads where evaluation times vary widely between candidates, or where
+ * evaluation tasks themselves fork further sub-tasks.
+ * @author Daniel Dyer
+ */
+public class ForkJoinEvaluationExecutor extends ExecutorServiceEvaluationExecutor
+{
+    /**
+     * Creates an executor with its own pool, with parallelism equal to the
+     * number of available processors.
+     */
+    public ForkJoinEvaluationExecutor()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     * Creates an executor with its own pool, which is shut down when the executor is closed.
+     * @param parallelism The target number of active threads.
+     */
+    public ForkJoinEvaluationExecutor(int parallelism)
+    {
+        this(new ForkJoinPool(parallelism), true);
+    }
+
+
+    /**
+     * Creates an executor that uses an existing pool.
+     * @param pool The pool that runs submitted tasks.
+     * @param shutdownOnClose Whether the pool should be shut down when this executor is closed.
+     */
+    public ForkJoinEvaluationExecutor(ForkJoinPool pool, boolean shutdownOnClose)
+    {
+        super(pool, pool.getParallelism(), shutdownOnClose);
+    }
+}
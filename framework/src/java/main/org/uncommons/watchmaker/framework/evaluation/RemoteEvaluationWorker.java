@@ -0,0 +1,258 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.evaluation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.uncommons.util.concurrent.ConfigurableThreadFactory;
+import org.uncommons.watchmaker.framework.BatchFitnessEvaluator;
+import org.uncommons.watchmaker.framework.FitnessEvaluator;
+import org.uncommons.watchmaker.framework.persistence.CandidateCodec;
+import org.uncommons.watchmaker.framework.persistence.Frame;
+import org.uncommons.watchmaker.framework.persistence.SerializationCodec;
+
+/**
+ * <p>Evaluates candidates on behalf of a {@link RemoteFitnessEvaluator} in another process.
+ * The worker connects to the evaluator and then calculates fitness scores for the batches
+ * of candidates that it is sent, on as many threads as requested, until the evaluator is
+ * closed.  Batches are evaluated concurrently and their scores are returned as soon as
+ * each batch is complete.</p>
+ *
+ * <p>Workers can be run from an existing program by calling {@link #run(String, int)}, or
+ * standalone by running this class with the evaluator's host and port and the name of the
+ * fitness evaluator class (see {@link #main(String[])}).</p>
+ * @param <T> The type of entity that is evaluated.
+ * @author Daniel Dyer
+ */
+public class RemoteEvaluationWorker<T>
+{
+    private final FitnessEvaluator<? super T> fitnessEvaluator;
+    private final CandidateCodec<T> codec;
+    private final int threadCount;
+
+
+    /**
+     * Creates a worker that uses one thread per available processor.
+     * @param fitnessEvaluator The fitness function.
+     * @param codec Decodes the candidates received from the evaluator.
+     */
+    public RemoteEvaluationWorker(FitnessEvaluator<? super T> fitnessEvaluator, CandidateCodec<T> codec)
+    {
+        this(fitnessEvaluator, codec, Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     * @param fitnessEvaluator The fitness function.
+     * @param codec Decodes the candidates received from the evaluator.
+     * @param threadCount The number of batches to evaluate at once.
+     */
+    public RemoteEvaluationWorker(FitnessEvaluator<? super T> fitnessEvaluator,
+                                  CandidateCodec<T> codec,
+                                  int threadCount)
+    {
+        if (threadCount <= 0)
+        {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+        this.fitnessEvaluator = fitnessEvaluator;
+        this.codec = codec;
+        this.threadCount = threadCount;
+    }
+
+
+    /**
+     * Connects to the evaluator and evaluates the batches that it sends until the
+     * evaluator is {@link RemoteFitnessEvaluator#close() closed}.
+     * @param host The name or address of the evaluator's host.
+     * @param port The port on which the evaluator accepts workers.
+     * @throws IOException If the connection fails or is lost.
+     */
+    public void run(String host, int port) throws IOException
+    {
+        Socket socket = new Socket(host, port);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount,
+                                                                new ConfigurableThreadFactory("RemoteEvaluationWorker",
+                                                                                              Thread.NORM_PRIORITY,
+                                                                                              true));
+        try
+        {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            Frame.Builder hello = new Frame.Builder();
+            hello.writeInt(EvaluationProtocol.VERSION);
+            hello.toFrame(EvaluationProtocol.HELLO).write(out);
+            out.flush();
+            while (true)
+            {
+                Frame frame = Frame.read(in);
+                if (frame.getType() == EvaluationProtocol.STOP)
+                {
+                    return;
+                }
+                else if (frame.getType() != EvaluationProtocol.BATCH)
+                {
+                    throw new IOException("Unexpected message type: " + frame.getType());
+                }
+                DataInputStream payload = frame.getPayload();
+                long batchID = payload.readLong();
+                int count = payload.readInt();
+                List<T> batch = new ArrayList<T>(count);
+                for (int i = 0; i < count; i++)
+                {
+                    batch.add(codec.read(payload));
+                }
+                executor.execute(new BatchTask(batchID, batch, socket, out));
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+            socket.close();
+        }
+    }
+
+
+    /**
+     * Calculates the scores for a batch, in the same way as an evolution engine would.
+     */
+    @SuppressWarnings("unchecked")
+    private double[] evaluate(List<T> batch)
+    {
+        double[] scores = new double[batch.size()];
+        if (fitnessEvaluator instanceof BatchFitnessEvaluator)
+        {
+            ((BatchFitnessEvaluator<? super T>) fitnessEvaluator).getFitnessScores(batch, 0, batch.size(), scores);
+        }
+        else
+        {
+            for (int i = 0; i < scores.length; i++)
+            {
+                scores[i] = fitnessEvaluator.getFitness(batch.get(i), batch);
+            }
+        }
+        return scores;
+    }
+
+
+    /**
+     * Entry-point for running a worker standalone, as an additional node for fitness
+     * evaluations.  Candidates are decoded with a {@link SerializationCodec}, so the
+     * evaluator must use a {@link SerializationCodec} too.
+     * @param args The evaluator's host and port, the fully-qualified name of a
+     * {@link FitnessEvaluator} class with a public no-argument constructor, and optionally
+     * the number of threads to use.
+     * @throws Exception If the fitness evaluator cannot be created or the connection
+     * to the evaluator fails.
+     */
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 3 || args.length > 4)
+        {
+            System.err.println("Usage: RemoteEvaluationWorker <host> <port> <fitness evaluator class> [threads]");
+            System.exit(1);
+        }
+        FitnessEvaluator<Serializable> fitnessEvaluator
+            = (FitnessEvaluator<Serializable>) Class.forName(args[2]).getDeclaredConstructor().newInstance();
+        CandidateCodec<Serializable> codec = new SerializationCodec<Serializable>(Serializable.class);
+        RemoteEvaluationWorker<Serializable> worker = args.length == 4
+            ? new RemoteEvaluationWorker<Serializable>(fitnessEvaluator, codec, Integer.parseInt(args[3]))
+            : new RemoteEvaluationWorker<Serializable>(fitnessEvaluator, codec);
+        worker.run(args[0], Integer.parseInt(args[1]));
+    }
+
+
+    /**
+     * Evaluates one batch and sends its scores, or a description of the failure, back
+     * to the evaluator.
+     */
+    private final class BatchTask implements Runnable
+    {
+        private final long batchID;
+        private final List<T> batch;
+        private final Socket socket;
+        private final DataOutputStream out;
+
+        BatchTask(long batchID, List<T> batch, Socket socket, DataOutputStream out)
+        {
+            this.batchID = batchID;
+            this.batch = batch;
+            this.socket = socket;
+            this.out = out;
+        }
+
+
+        public void run()
+        {
+            Frame.Builder payload = new Frame.Builder();
+            try
+            {
+                payload.writeLong(batchID);
+                try
+                {
+                    double[] scores = evaluate(batch);
+                    payload.writeInt(scores.length);
+                    for (double score : scores)
+                    {
+                        payload.writeDouble(score);
+                    }
+                }
+                catch (RuntimeException ex)
+                {
+                    payload = new Frame.Builder();
+                    payload.writeLong(batchID);
+                    payload.writeUTF(String.valueOf(ex));
+                    send(payload.toFrame(EvaluationProtocol.FAILURE));
+                    return;
+                }
+                send(payload.toFrame(EvaluationProtocol.SCORES));
+            }
+            catch (IOException ex)
+            {
+                // Unblock the reading thread so that the worker fails rather than hangs.
+                try
+                {
+                    socket.close();
+                }
+                catch (IOException ignored)
+                {
+                    // Already failed.
+                }
+            }
+        }
+
+
+        private void send(Frame frame) throws IOException
+        {
+            synchronized (out)
+            {
+                frame.write(out);
+                out.flush();
+            }
+        }
+    }
+}
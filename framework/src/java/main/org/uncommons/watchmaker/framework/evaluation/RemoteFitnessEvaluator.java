@@ -0,0 +1,720 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.evaluation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.uncommons.util.concurrent.ConfigurableThreadFactory;
+import org.uncommons.watchmaker.framework.BatchFitnessEvaluator;
+import org.uncommons.watchmaker.framework.FitnessEvaluator;
+import org.uncommons.watchmaker.framework.persistence.CandidateCodec;
+import org.uncommons.watchmaker.framework.persistence.Frame;
+
+/**
+ * <p>A fitness evaluator that farms evaluations out to {@link RemoteEvaluationWorker}s
+ * running in other processes, possibly on other machines.  Give it to an evolution engine
+ * in place of the real fitness function, which is configured in the worker processes.
+ * Workers connect to this evaluator and may join or leave at any time.</p>
+ *
+ * <p>Each slice of the population that the engine asks for is divided into batches of
+ * candidates, which are encoded with a {@link CandidateCodec} and sent to whichever workers
+ * have capacity.  Several batches are sent to each worker without waiting for the results of
+ * the previous ones, so that workers are not left idle while batches are in transit.  If a
+ * worker's connection is lost, the batches that it had not returned are sent to other
+ * workers.  By default, evaluation waits until a worker is available, but it can instead
+ * give up, or fall back to evaluating locally, if there are no workers for too long (see
+ * {@link #setWorkerTimeout(long, FitnessEvaluator)}).</p>
+ *
+ * <p>Since the engine's {@link org.uncommons.watchmaker.framework.EvaluationExecutor} threads
+ * only wait for the workers, an engine that uses this evaluator can be
+ * {@link org.uncommons.watchmaker.framework.AbstractEvolutionEngine#setSingleThreaded(boolean)
+ * single-threaded}; the whole population is then sent as one slice.  Workers only receive
+ * the candidates in a batch, so the fitness of a candidate must not depend on the rest of
+ * the population.</p>
+ *
+ * <p>The evaluator trusts its workers.  There is no authentication or encryption, and
+ * anything that connects and introduces itself as a worker is sent candidates and has its
+ * scores accepted.  By default the evaluator only accepts connections from the local
+ * machine.  To use workers on other machines, bind it to an address that is only reachable
+ * from a trusted network (or tunnel the connections).  Workers likewise trust the evaluator
+ * that they connect to.</p>
+ * @param <T> The type of entity that is evaluated.
+ * @author Daniel Dyer
+ * @see RemoteEvaluationWorker
+ */
+public class RemoteFitnessEvaluator<T> implements BatchFitnessEvaluator<T>, Closeable
+{
+    private static final int HELLO_TIMEOUT = 10000;
+
+    private final CandidateCodec<T> codec;
+    private final boolean naturalFitness;
+    private final int batchSize;
+    private final int pipelineDepth;
+    private final ServerSocket serverSocket;
+    private final ConfigurableThreadFactory threadFactory = new ConfigurableThreadFactory("RemoteFitnessEvaluator",
+                                                                                          Thread.NORM_PRIORITY,
+                                                                                          true);
+    private final BlockingDeque<Batch> pendingBatches = new LinkedBlockingDeque<Batch>();
+    private final Set<WorkerConnection> workers = new CopyOnWriteArraySet<WorkerConnection>();
+    private final AtomicLong nextBatchID = new AtomicLong();
+    private volatile boolean closed = false;
+    private volatile long workerTimeout = 0;
+    private volatile FitnessEvaluator<? super T> fallbackEvaluator = null;
+
+
+    /**
+     * Creates an evaluator that sends batches of 16 candidates, with up to 4 batches in
+     * flight to each worker.  It accepts workers on the loopback interface only.
+     * @param port The port on which to accept connections from workers, or zero to use
+     * any free port (see {@link #getPort()}).
+     * @param codec Encodes candidates for transmission to the workers.
+     * @param naturalFitness Whether the fitness function used by the workers gives higher
+     * scores to fitter candidates (see {@link #isNatural()}).
+     * @throws IOException If the port cannot be opened.
+     */
+    public RemoteFitnessEvaluator(int port,
+                                  CandidateCodec<T> codec,
+                                  boolean naturalFitness) throws IOException
+    {
+        this(port, codec, naturalFitness, 16, 4);
+    }
+
+
+    /**
+     * Creates an evaluator that accepts workers on the loopback interface only.
+     * @param port The port on which to accept connections from workers, or zero to use
+     * any free port (see {@link #getPort()}).
+     * @param codec Encodes candidates for transmission to the workers.
+     * @param naturalFitness Whether the fitness function used by the workers gives higher
+     * scores to fitter candidates (see {@link #isNatural()}).
+     * @param batchSize The maximum number of candidates sent to a worker in one message.
+     * Larger batches reduce the overhead of each message; smaller batches spread the work
+     * more evenly between workers.
+     * @param pipelineDepth The maximum number of batches that each worker may have
+     * outstanding at once.
+     * @throws IOException If the port cannot be opened.
+     */
+    public RemoteFitnessEvaluator(int port,
+                                  CandidateCodec<T> codec,
+                                  boolean naturalFitness,
+                                  int batchSize,
+                                  int pipelineDepth) throws IOException
+    {
+        this(InetAddress.getLoopbackAddress(), port, codec, naturalFitness, batchSize, pipelineDepth);
+    }
+
+
+    /**
+     * Workers are trusted, so the bind address should only be reachable from a trusted network.
+     * @param bindAddress The local address on which to accept connections from workers,
+     * or null to accept connections on all local addresses.
+     * @param port The port on which to accept connections from workers, or zero to use
+     * any free port (see {@link #getPort()}).
+     * @param codec Encodes candidates for transmission to the workers.
+     * @param naturalFitness Whether the fitness function used by the workers gives higher
+     * scores to fitter candidates (see {@link #isNatural()}).
+     * @param batchSize The maximum number of candidates sent to a worker in one message.
+     * Larger batches reduce the overhead of each message; smaller batches spread the work
+     * more evenly between workers.
+     * @param pipelineDepth The maximum number of batches that each worker may have
+     * outstanding at once.
+     * @throws IOException If the port cannot be opened.
+     */
+    public RemoteFitnessEvaluator(InetAddress bindAddress,
+                                  int port,
+                                  CandidateCodec<T> codec,
+                                  boolean naturalFitness,
+                                  int batchSize,
+                                  int pipelineDepth) throws IOException
+    {
+        if (batchSize <= 0)
+        {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        if (pipelineDepth <= 0)
+        {
+            throw new IllegalArgumentException("Pipeline depth must be positive.");
+        }
+        this.codec = codec;
+        this.naturalFitness = naturalFitness;
+        this.batchSize = batchSize;
+        this.pipelineDepth = pipelineDepth;
+        this.serverSocket = new ServerSocket(port, 0, bindAddress);
+        threadFactory.newThread(new Runnable()
+        {
+            public void run()
+            {
+                acceptWorkers();
+            }
+        }).start();
+    }
+
+
+    /**
+     * @return The port on which this evaluator accepts workers.
+     */
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+
+    /**
+     * @return The number of workers that are currently connected.
+     */
+    public int getWorkerCount()
+    {
+        return workers.size();
+    }
+
+
+    /**
+     * Sets what happens when candidates are waiting to be evaluated but no workers are
+     * connected.  By default, evaluation waits indefinitely for a worker to connect.
+     * @param timeout How long, in milliseconds, to wait for a worker before the waiting
+     * candidates are evaluated by the fallback evaluator, or zero to wait indefinitely.
+     * @param fallbackEvaluator Evaluates the waiting candidates on the calling thread if
+     * no worker connects in time.  If this is null, the evaluation fails instead.  It must
+     * give the same scores as the fitness function used by the workers.
+     */
+    public void setWorkerTimeout(long timeout, FitnessEvaluator<? super T> fallbackEvaluator)
+    {
+        if (timeout < 0)
+        {
+            throw new IllegalArgumentException("Timeout must be non-negative.");
+        }
+        this.fallbackEvaluator = fallbackEvaluator;
+        this.workerTimeout = timeout;
+    }
+
+
+    /**
+     * Accept connections until the evaluator is closed.  Each connection is handled by
+     * its own thread, so that a slow or silent client does not hold up other workers.
+     */
+    private void acceptWorkers()
+    {
+        while (!closed)
+        {
+            final Socket socket;
+            try
+            {
+                socket = serverSocket.accept();
+            }
+            catch (IOException ex)
+            {
+                // The server socket has been closed.
+                break;
+            }
+            threadFactory.newThread(new Runnable()
+            {
+                public void run()
+                {
+                    serveWorker(socket);
+                }
+            }).start();
+        }
+    }
+
+
+    /**
+     * The worker must introduce itself with a version that matches the evaluator's before
+     * it is sent any work.  This thread then receives the worker's scores until the
+     * connection is closed.
+     */
+    private void serveWorker(Socket socket)
+    {
+        WorkerConnection worker;
+        try
+        {
+            worker = new WorkerConnection(socket);
+            socket.setSoTimeout(HELLO_TIMEOUT);
+            Frame hello = Frame.read(worker.in);
+            socket.setSoTimeout(0);
+            if (hello.getType() != EvaluationProtocol.HELLO
+                || hello.getPayload().readInt() != EvaluationProtocol.VERSION)
+            {
+                throw new IOException("Incompatible worker.");
+            }
+        }
+        catch (IOException ex)
+        {
+            closeQuietly(socket);
+            return;
+        }
+        // The worker is only published once it is started, so that close() never sees
+        // a worker without a sender thread.
+        worker.startSender();
+        workers.add(worker);
+        if (closed)
+        {
+            // Don't leave the worker waiting if close() has already stopped the others.
+            worker.stop();
+        }
+        worker.receiveScores();
+    }
+
+
+    /**
+     * Evaluates a single candidate remotely.  This is much less efficient than evaluating
+     * candidates in batches, which is what evolution engines do.
+     * {@inheritDoc}
+     */
+    public double getFitness(T candidate, List<? extends T> population)
+    {
+        double[] scores = new double[1];
+        getFitnessScores(Collections.singletonList(candidate), 0, 1, scores);
+        return scores[0];
+    }
+
+
+    /**
+     * Sends the candidates to the workers in batches and waits for all of their scores.
+     * If the calling thread is interrupted, the batches that have not yet been sent are
+     * abandoned and this method returns with the interrupted flag set, leaving the scores
+     * incomplete.
+     * {@inheritDoc}
+     * @throws IllegalStateException If this evaluator is closed, if the fitness
+     * function fails on a worker, or if no worker connects before the
+     * {@link #setWorkerTimeout(long, FitnessEvaluator) timeout} and there is no
+     * fallback evaluator.
+     */
+    public void getFitnessScores(List<? extends T> population,
+                                 int fromIndex,
+                                 int toIndex,
+                                 double[] scores)
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("Remote fitness evaluator has been closed.");
+        }
+        if (fromIndex >= toIndex)
+        {
+            return;
+        }
+        Request request = new Request(scores, (toIndex - fromIndex + batchSize - 1) / batchSize);
+        List<Batch> batches = new ArrayList<Batch>(request.getBatchCount());
+        for (int i = fromIndex; i < toIndex; i += batchSize)
+        {
+            batches.add(new Batch(request, population.subList(i, Math.min(i + batchSize, toIndex)), i));
+        }
+        pendingBatches.addAll(batches);
+        try
+        {
+            long timeout = workerTimeout;
+            while (!request.await(timeout))
+            {
+                if (workers.isEmpty())
+                {
+                    handleUnsentBatches(batches, population);
+                }
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            pendingBatches.removeAll(batches);
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (request.getFailure() != null)
+        {
+            throw new IllegalStateException("Remote fitness evaluation failed: " + request.getFailure());
+        }
+    }
+
+
+    /**
+     * Deals with the batches that are still waiting for a worker when there are no
+     * workers.  Batches that a worker has taken are left for that worker (or, if it
+     * disconnects, for the next timeout).
+     */
+    private void handleUnsentBatches(List<Batch> batches, List<? extends T> population)
+    {
+        FitnessEvaluator<? super T> fallback = fallbackEvaluator;
+        for (Batch batch : batches)
+        {
+            // Removing the batch guarantees that no worker will also evaluate it.
+            if (pendingBatches.remove(batch))
+            {
+                if (fallback == null)
+                {
+                    batch.fail("No workers connected.");
+                }
+                else
+                {
+                    try
+                    {
+                        batch.evaluate(fallback, population);
+                    }
+                    catch (RuntimeException ex)
+                    {
+                        pendingBatches.removeAll(batches);
+                        throw ex;
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isNatural()
+    {
+        return naturalFitness;
+    }
+
+
+    /**
+     * Tells all connected workers to stop and stops accepting new workers.  Any
+     * evaluations that are still in progress fail.
+     * @throws IOException If the server socket cannot be closed.
+     */
+    public void close() throws IOException
+    {
+        closed = true;
+        try
+        {
+            serverSocket.close();
+        }
+        finally
+        {
+            for (WorkerConnection worker : workers)
+            {
+                worker.stop();
+            }
+            Batch batch;
+            while ((batch = pendingBatches.poll()) != null)
+            {
+                batch.fail("Remote fitness evaluator has been closed.");
+            }
+        }
+    }
+
+
+    private static void closeQuietly(Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException ex)
+        {
+            // Nothing more can be done with it.
+        }
+    }
+
+
+    /**
+     * The batches of one call to {@link #getFitnessScores(List, int, int, double[])}.
+     */
+    private static final class Request
+    {
+        private final double[] scores;
+        private final int batchCount;
+        private final CountDownLatch remaining;
+        private volatile String failure = null;
+
+        Request(double[] scores, int batchCount)
+        {
+            this.scores = scores;
+            this.batchCount = batchCount;
+            this.remaining = new CountDownLatch(batchCount);
+        }
+
+
+        int getBatchCount()
+        {
+            return batchCount;
+        }
+
+
+        /**
+         * @param timeout The maximum time to wait, in milliseconds, or zero to wait
+         * until all of the batches are complete.
+         * @return True if all of the batches are complete.
+         */
+        boolean await(long timeout) throws InterruptedException
+        {
+            if (timeout == 0)
+            {
+                remaining.await();
+                return true;
+            }
+            return remaining.await(timeout, TimeUnit.MILLISECONDS);
+        }
+
+
+        String getFailure()
+        {
+            return failure;
+        }
+    }
+
+
+    /**
+     * Candidates that are sent to a worker in one message.
+     */
+    private final class Batch
+    {
+        private final Request request;
+        private final List<? extends T> candidates;
+        private final int offset;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        Batch(Request request, List<? extends T> candidates, int offset)
+        {
+            this.request = request;
+            this.candidates = candidates;
+            this.offset = offset;
+        }
+
+
+        Frame encode(long batchID) throws IOException
+        {
+            Frame.Builder payload = new Frame.Builder();
+            payload.writeLong(batchID);
+            payload.writeInt(candidates.size());
+            for (T candidate : candidates)
+            {
+                codec.write(candidate, payload);
+            }
+            return payload.toFrame(EvaluationProtocol.BATCH);
+        }
+
+
+        void complete(DataInputStream scores) throws IOException
+        {
+            int count = scores.readInt();
+            if (count != candidates.size())
+            {
+                throw new IOException("Expected " + candidates.size() + " scores, received " + count);
+            }
+            for (int i = 0; i < count; i++)
+            {
+                request.scores[offset + i] = scores.readDouble();
+            }
+            if (done.compareAndSet(false, true))
+            {
+                request.remaining.countDown();
+            }
+        }
+
+
+        /**
+         * Scores the candidates on the calling thread instead of sending them to a worker.
+         */
+        void evaluate(FitnessEvaluator<? super T> evaluator, List<? extends T> population)
+        {
+            for (int i = 0; i < candidates.size(); i++)
+            {
+                request.scores[offset + i] = evaluator.getFitness(candidates.get(i), population);
+            }
+            if (done.compareAndSet(false, true))
+            {
+                request.remaining.countDown();
+            }
+        }
+
+
+        void fail(String failure)
+        {
+            if (done.compareAndSet(false, true))
+            {
+                request.failure = failure;
+                request.remaining.countDown();
+            }
+        }
+    }
+
+
+    /**
+     * A connected worker.  One thread sends it batches whenever it has spare capacity and
+     * another receives its scores.
+     */
+    private final class WorkerConnection
+    {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final Semaphore capacity = new Semaphore(pipelineDepth);
+        private final Map<Long, Batch> inFlight = new ConcurrentHashMap<Long, Batch>();
+        private final AtomicBoolean disconnected = new AtomicBoolean(false);
+        private Thread sender;
+
+        WorkerConnection(Socket socket) throws IOException
+        {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+
+        void startSender()
+        {
+            sender = threadFactory.newThread(new Runnable()
+            {
+                public void run()
+                {
+                    sendBatches();
+                }
+            });
+            sender.start();
+        }
+
+
+        private void sendBatches()
+        {
+            try
+            {
+                while (!disconnected.get())
+                {
+                    capacity.acquire();
+                    Batch batch = pendingBatches.take();
+                    long batchID = nextBatchID.getAndIncrement();
+                    // Registered before it is sent so that it is re-dispatched if the send fails.
+                    inFlight.put(batchID, batch);
+                    if (disconnected.get())
+                    {
+                        break;
+                    }
+                    Frame frame = batch.encode(batchID);
+                    synchronized (out)
+                    {
+                        frame.write(out);
+                        out.flush();
+                    }
+                }
+            }
+            catch (InterruptedException ex)
+            {
+                // The connection has been closed.
+            }
+            catch (IOException ex)
+            {
+                // Handled below.
+            }
+            disconnect();
+        }
+
+
+        void receiveScores()
+        {
+            try
+            {
+                while (true)
+                {
+                    Frame frame = Frame.read(in);
+                    DataInputStream payload = frame.getPayload();
+                    Batch batch = inFlight.remove(payload.readLong());
+                    if (batch == null)
+                    {
+                        throw new IOException("Unknown batch.");
+                    }
+                    if (frame.getType() == EvaluationProtocol.SCORES)
+                    {
+                        batch.complete(payload);
+                    }
+                    else if (frame.getType() == EvaluationProtocol.FAILURE)
+                    {
+                        batch.fail(payload.readUTF());
+                    }
+                    else
+                    {
+                        throw new IOException("Unexpected message type: " + frame.getType());
+                    }
+                    capacity.release();
+                }
+            }
+            catch (IOException ex)
+            {
+                disconnect();
+            }
+        }
+
+
+        /**
+         * Drop the connection and re-dispatch any batches that the worker has not returned.
+         * This may be called more than once, by either thread, so that a batch that the
+         * sender registers after the first call is not lost.
+         */
+        void disconnect()
+        {
+            if (disconnected.compareAndSet(false, true))
+            {
+                workers.remove(this);
+                closeQuietly(socket);
+                sender.interrupt();
+            }
+            for (Long batchID : inFlight.keySet())
+            {
+                Batch batch = inFlight.remove(batchID);
+                if (batch != null)
+                {
+                    if (closed)
+                    {
+                        batch.fail("Remote fitness evaluator has been closed.");
+                    }
+                    else
+                    {
+                        pendingBatches.addFirst(batch);
+                    }
+                }
+            }
+        }
+
+
+        void stop()
+        {
+            try
+            {
+                synchronized (out)
+                {
+                    new Frame(EvaluationProtocol.STOP, new byte[0]).write(out);
+                    out.flush();
+                }
+            }
+            catch (IOException ex)
+            {
+                // The worker has gone already.
+            }
+            disconnect();
+        }
+    }
+}
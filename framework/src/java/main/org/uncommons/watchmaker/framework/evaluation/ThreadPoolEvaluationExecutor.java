@@ -0,0 +1,132 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.evaluation;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.uncommons.util.concurrent.ConfigurableThreadFactory;
+
+/**
+ * <p>Runs fitness evaluations on a fixed number of threads that are owned by this
+ * executor and released when it is closed.</p>
+ *
+ * <p>The queue of tasks waiting for a thread can optionally be bounded.  When the
+ * queue is full, submitting a task blocks until there is space, so that a producer
+ * that generates work faster than it can be evaluated is slowed down rather than
+ * accumulating an unbounded backlog.</p>
+ * @author Daniel Dyer
+ */
+public class ThreadPoolEvaluationExecutor extends ExecutorServiceEvaluationExecutor
+{
+    /**
+     * Creates an executor with one thread per available processor and an unbounded queue.
+     */
+    public ThreadPoolEvaluationExecutor()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     * Creates an executor with the specified number of threads and an unbounded queue.
+     * @param threadCount The number of worker threads.
+     */
+    public ThreadPoolEvaluationExecutor(int threadCount)
+    {
+        this(threadCount, 0);
+    }
+
+
+    /**
+     * @param threadCount The number of worker threads.
+     * @param queueCapacity The maximum number of tasks that can be waiting for a thread.
+     * Zero means that the queue is unbounded.
+     */
+    public ThreadPoolEvaluationExecutor(int threadCount, int queueCapacity)
+    {
+        super(createThreadPool(threadCount, queueCapacity), threadCount, true);
+    }
+
+
+    private static ThreadPoolExecutor createThreadPool(int threadCount, int queueCapacity)
+    {
+        if (threadCount <= 0)
+        {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+        if (queueCapacity < 0)
+        {
+            throw new IllegalArgumentException("Queue capacity must not be negative.");
+        }
+        BlockingQueue<Runnable> queue = queueCapacity == 0
+                                        ? new LinkedBlockingQueue<Runnable>()
+                                        : new ArrayBlockingQueue<Runnable>(queueCapacity);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount,
+                                                             threadCount,
+                                                             60,
+                                                             TimeUnit.SECONDS,
+                                                             queue,
+                                                             new ConfigurableThreadFactory("EvaluationThread",
+                                                                                           Thread.NORM_PRIORITY,
+                                                                                           true),
+                                                             new BlockingSubmissionPolicy());
+        executor.prestartAllCoreThreads();
+        return executor;
+    }
+
+
+    /**
+     * Makes the submitting thread wait for space in a full queue rather than rejecting
+     * the task.
+     */
+    private static final class BlockingSubmissionPolicy implements RejectedExecutionHandler
+    {
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor)
+        {
+            if (executor.isShutdown())
+            {
+                throw new RejectedExecutionException("Executor has been closed.");
+            }
+            try
+            {
+                while (!executor.getQueue().offer(task, 100, TimeUnit.MILLISECONDS))
+                {
+                    // Check periodically in case the executor is closed while we are waiting.
+                    if (executor.isShutdown())
+                    {
+                        throw new RejectedExecutionException("Executor has been closed.");
+                    }
+                }
+                // If the executor was closed while the task was being queued, its threads may
+                // already have finished, so take the task back rather than strand it.
+                if (executor.isShutdown() && executor.remove(task))
+                {
+                    throw new RejectedExecutionException("Executor has been closed.");
+                }
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting to submit task.", ex);
+            }
+        }
+    }
+}
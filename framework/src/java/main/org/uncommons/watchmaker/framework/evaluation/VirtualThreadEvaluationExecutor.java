@@ -0,0 +1,119 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.evaluation;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.uncommons.util.concurrent.ConfigurableThreadFactory;
+
+/**
+ * <p>Runs each fitness evaluation on its own thread.  On Java runtimes that support
+ * virtual threads, those are used, so that fitness functions that spend most of their
+ * time waiting (for example on remote services or external processes) can have very many
+ * evaluations in progress without tying up a platform thread for each one.  On older
+ * runtimes the executor falls back to creating (and re-using) ordinary daemon threads
+ * as required.  Use {@link #isVirtual()} to find out which was chosen.</p>
+ *
+ * <p>This executor does not limit the number of tasks that run at the same time.
+ * To apply backpressure, wrap it in a {@link BoundedEvaluationExecutor}.</p>
+ * @author Daniel Dyer
+ */
+public class VirtualThreadEvaluationExecutor extends ExecutorServiceEvaluationExecutor
+{
+    private static final Method VIRTUAL_EXECUTOR_FACTORY = findVirtualExecutorFactory();
+
+    private final boolean virtual;
+
+    /**
+     * Creates an executor that reports one unit of parallelism per available processor.
+     */
+    public VirtualThreadEvaluationExecutor()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     * @param parallelism The number of tasks that callers should try to keep in progress.
+     * This does not limit the number of threads.
+     */
+    public VirtualThreadEvaluationExecutor(int parallelism)
+    {
+        this(createExecutor(), parallelism);
+    }
+
+
+    private VirtualThreadEvaluationExecutor(ExecutorService executor, int parallelism)
+    {
+        super(executor, parallelism, true);
+        // The platform thread fallback is the only ThreadPoolExecutor that
+        // createExecutor() returns.
+        this.virtual = !(executor instanceof ThreadPoolExecutor);
+    }
+
+
+    /**
+     * @return True if this executor runs evaluations on virtual threads, false if it
+     * fell back to platform threads.  The fallback is used on runtimes that pre-date
+     * virtual threads and on those where they are a preview feature that is not enabled.
+     */
+    public boolean isVirtual()
+    {
+        return virtual;
+    }
+
+
+    private static Method findVirtualExecutorFactory()
+    {
+        try
+        {
+            // Looked up reflectively so that the framework still builds and runs on
+            // runtimes that pre-date virtual threads.
+            return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        }
+        catch (NoSuchMethodException ex)
+        {
+            return null;
+        }
+    }
+
+
+    private static ExecutorService createExecutor()
+    {
+        if (VIRTUAL_EXECUTOR_FACTORY != null)
+        {
+            try
+            {
+                return (ExecutorService) VIRTUAL_EXECUTOR_FACTORY.invoke(null);
+            }
+            catch (Exception ex)
+            {
+                // Fall through and use platform threads.
+            }
+        }
+        return new ThreadPoolExecutor(0,
+                                      Integer.MAX_VALUE,
+                                      60,
+                                      TimeUnit.SECONDS,
+                                      new SynchronousQueue<Runnable>(),
+                                      new ConfigurableThreadFactory("EvaluationThread",
+                                                                    Thread.NORM_PRIORITY,
+                                                                    true));
+    }
+}
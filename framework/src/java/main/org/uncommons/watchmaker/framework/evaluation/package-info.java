@@ -0,0 +1,22 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+/**
+ * Implementations of {@link org.uncommons.watchmaker.framework.EvaluationExecutor}
+ * for controlling how and where fitness evaluations are run, and a fitness evaluator
+ * that runs evaluations in other processes.
+ * @author Daniel Dyer
+ */
+package org.uncommons.watchmaker.framework.evaluation;
@@ -0,0 +1,615 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.islands;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.uncommons.maths.random.MersenneTwisterRNG;
+import org.uncommons.watchmaker.framework.AbstractEvolutionEngine;
+import org.uncommons.watchmaker.framework.CandidateFactory;
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.EvolutionEngine;
+import org.uncommons.watchmaker.framework.EvolutionMetrics;
+import org.uncommons.watchmaker.framework.EvolutionObserver;
+import org.uncommons.watchmaker.framework.EvolutionUtils;
+import org.uncommons.watchmaker.framework.EvolutionaryOperator;
+import org.uncommons.watchmaker.framework.FitnessEvaluator;
+import org.uncommons.watchmaker.framework.PopulationData;
+import org.uncommons.watchmaker.framework.SelectionStrategy;
+import org.uncommons.watchmaker.framework.TerminationCondition;
+import org.uncommons.watchmaker.framework.evaluation.ForkJoinEvaluationExecutor;
+import org.uncommons.watchmaker.framework.termination.GenerationCount;
+
+/**
+ * <p>An asynchronous implementation of island evolution.  Unlike {@link IslandEvolution},
+ * there is no barrier at the end of each epoch: each island evolves continuously, one epoch
+ * after another, so fast islands are never held up waiting for the slowest one.  The epochs
+ * run on a {@link ForkJoinPool}, which may have fewer threads than there are islands.</p>
+ *
+ * <p>At the end of each of its epochs, an island sends copies of randomly chosen members of
+ * its population to the next island (the islands are arranged in a ring, as with
+ * {@link RingMigration}) by adding them to that island's inbound queue.  The queues are
+ * lock-free, so sending migrants never blocks.  The island then absorbs any immigrants
+ * waiting in its own queue, replacing the members that it has just sent.  If a faster
+ * neighbour has sent more immigrants than the migrant count since the island last looked,
+ * only the fittest of them are absorbed.</p>
+ *
+ * <p>Whenever an island completes an epoch, the request thread combines the most recent
+ * population of every island into a global view, notifies observers and checks the
+ * termination conditions.  The islands are not stopped while this happens.  The
+ * generation number of the global view is the number of epochs that the islands have
+ * completed on average, counting from zero.</p>
+ *
+ * <p>Because the exchange of migrants depends on the relative speed of the islands,
+ * asynchronous island evolution is not repeatable, even with a seeded random number
+ * generator.</p>
+ * @param <T> The type of entity that is to be evolved.
+ * @author Daniel Dyer
+ */
+public class AsynchronousIslandEvolution<T>
+{
+    private final List<EvolutionEngine<T>> islands;
+    private final boolean naturalFitness;
+    private final Random rng;
+    private final ForkJoinPool pool;
+    private final EvolutionMetrics metrics = new EvolutionMetrics();
+
+    private final Set<IslandEvolutionObserver<? super T>> observers
+        = new CopyOnWriteArraySet<IslandEvolutionObserver<? super T>>();
+
+    private volatile PopulationData<T> populationData = null;
+    private List<TerminationCondition> satisfiedTerminationConditions;
+
+
+    /**
+     * Create an island system with the specified number of identically-configured islands.
+     * The islands evaluate fitness on the work-stealing pool shared with {@link IslandEvolution}.
+     * @param islandCount The number of separate islands that will be part of the system.
+     * @param candidateFactory Generates the initial population for each island.
+     * @param evolutionScheme The evolutionary operator, or combination of evolutionary operators,
+     * used on each island.
+     * @param fitnessEvaluator The fitness function used on each island.
+     * @param selectionStrategy The selection strategy used on each island.
+     * @param rng A source of randomness, used by all islands.
+     * @see #AsynchronousIslandEvolution(List, boolean, Random, ForkJoinPool)
+     */
+    public AsynchronousIslandEvolution(int islandCount,
+                                       CandidateFactory<T> candidateFactory,
+                                       EvolutionaryOperator<T> evolutionScheme,
+                                       FitnessEvaluator<? super T> fitnessEvaluator,
+                                       SelectionStrategy<? super T> selectionStrategy,
+                                       Random rng)
+    {
+        this(IslandEvolution.createIslands(islandCount,
+                                           candidateFactory,
+                                           evolutionScheme,
+                                           fitnessEvaluator,
+                                           selectionStrategy,
+                                           rng,
+                                           IslandEvolution.getSharedPool()),
+             fitnessEvaluator.isNatural(),
+             rng,
+             IslandEvolution.getSharedPool());
+    }
+
+
+    /**
+     * Create an island evolution system from a list of pre-configured islands, whose epochs
+     * run on the work-stealing pool shared with {@link IslandEvolution}.
+     * @param islands A list of pre-configured islands.
+     * @param naturalFitness If true, indicates that higher fitness values mean fitter
+     * individuals.  If false, indicates that fitter individuals will have lower scores.
+     * @param rng A source of randomness, used to seed a separate generator for choosing
+     * each island's migrants.
+     */
+    public AsynchronousIslandEvolution(List<EvolutionEngine<T>> islands,
+                                       boolean naturalFitness,
+                                       Random rng)
+    {
+        this(islands, naturalFitness, rng, IslandEvolution.getSharedPool());
+    }
+
+
+    /**
+     * Create an island evolution system from a list of pre-configured islands, whose epochs
+     * run on the specified pool.  To share the pool with the islands' fitness evaluations,
+     * give each island a {@link ForkJoinEvaluationExecutor} that uses the same pool.
+     * @param islands A list of pre-configured islands.
+     * @param naturalFitness If true, indicates that higher fitness values mean fitter
+     * individuals.  If false, indicates that fitter individuals will have lower scores.
+     * @param rng A source of randomness, used to seed a separate generator for choosing
+     * each island's migrants.
+     * @param pool The pool that runs the islands' epochs.  It is not shut down by the
+     * island system.
+     */
+    public AsynchronousIslandEvolution(List<EvolutionEngine<T>> islands,
+                                       boolean naturalFitness,
+                                       Random rng,
+                                       ForkJoinPool pool)
+    {
+        this.islands = islands;
+        this.naturalFitness = naturalFitness;
+        this.rng = rng;
+        this.pool = pool;
+
+        for (int i = 0; i < islands.size(); i++)
+        {
+            final int islandIndex = i;
+            EvolutionEngine<T> island = islands.get(islandIndex);
+            if (island instanceof AbstractEvolutionEngine)
+            {
+                metrics.include(((AbstractEvolutionEngine<T>) island).getMetrics());
+            }
+            island.addEvolutionObserver(new EvolutionObserver<T>()
+            {
+                public void populationUpdate(PopulationData<? extends T> populationData)
+                {
+                    for (IslandEvolutionObserver<? super T> islandObserver : observers)
+                    {
+                        islandObserver.islandPopulationUpdate(islandIndex, populationData);
+                    }
+                }
+            });
+        }
+    }
+
+
+    /**
+     * <p>Start the evolutionary process on each island and return the fittest candidate so far at the point
+     * any of the termination conditions is satisfied.</p>
+     *
+     * <p><em>If you interrupt the request thread before this method returns, the
+     * method will return prematurely (with the best individual found so far).
+     * After returning in this way, the current thread's interrupted flag
+     * will be set.</em></p>
+     *
+     * <p>However evolution ends, the islands stop at the end of their current generations
+     * and this method waits for them to do so before returning.</p>
+     *
+     * @param populationSize The population size <em>for each island</em>.
+     * @param eliteCount The number of candidates preserved via elitism <em>on each island</em>.
+     * This value must be non-negative and less than the population size.
+     * @param epochLength The number of generations that make up an epoch.  Each island
+     * exchanges migrants at the end of each of its own epochs.
+     * @param migrantCount The number of individuals that each island sends to the next
+     * island at the end of each of its epochs.
+     * @param conditions One or more conditions that may cause the evolution to terminate.
+     * They are checked against the global view of the islands' populations.
+     * @return The fittest solution found by the evolutionary process on any of the islands,
+     * or null if the request thread was interrupted before every island had completed an epoch.
+     */
+    public T evolve(int populationSize,
+                    int eliteCount,
+                    int epochLength,
+                    int migrantCount,
+                    TerminationCondition... conditions)
+    {
+        List<Queue<EvaluatedCandidate<T>>> inboundQueues = new ArrayList<Queue<EvaluatedCandidate<T>>>(islands.size());
+        for (int i = 0; i < islands.size(); i++)
+        {
+            inboundQueues.add(new ConcurrentLinkedQueue<EvaluatedCandidate<T>>());
+        }
+        AtomicReferenceArray<List<EvaluatedCandidate<T>>> latestPopulations
+            = new AtomicReferenceArray<List<EvaluatedCandidate<T>>>(islands.size());
+        AtomicInteger completedEpochs = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Semaphore updates = new Semaphore(0);
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        Queue<IslandWorker> readyIslands = new ConcurrentLinkedQueue<IslandWorker>();
+
+        long startTime = System.currentTimeMillis();
+        populationData = null;
+        metrics.startRun();
+        for (int i = 0; i < islands.size(); i++)
+        {
+            byte[] seed = new byte[16]; // Mersenne Twister seed size.
+            rng.nextBytes(seed);
+            readyIslands.add(new IslandWorker(i,
+                                              populationSize,
+                                              eliteCount,
+                                              epochLength,
+                                              migrantCount,
+                                              new MersenneTwisterRNG(seed),
+                                              inboundQueues,
+                                              latestPopulations,
+                                              completedEpochs,
+                                              updates,
+                                              stopped));
+        }
+        int runnerCount = Math.min(islands.size(), pool.getParallelism());
+        CountDownLatch stoppedRunners = new CountDownLatch(runnerCount);
+        for (int i = 0; i < runnerCount; i++)
+        {
+            pool.execute(new IslandRunner(readyIslands, stopped, failure, updates, stoppedRunners));
+        }
+
+        List<EvaluatedCandidate<T>> evaluatedCombinedPopulation = null;
+        List<TerminationCondition> satisfiedConditions = null;
+        try
+        {
+            while (satisfiedConditions == null)
+            {
+                updates.acquire();
+                updates.drainPermits(); // Several islands may have finished epochs; one update covers them all.
+                if (failure.get() != null)
+                {
+                    throw new IllegalStateException(failure.get());
+                }
+
+                List<EvaluatedCandidate<T>> combined = combine(latestPopulations);
+                if (combined != null)
+                {
+                    long sortingStart = System.nanoTime();
+                    EvolutionUtils.sortEvaluatedPopulation(combined, naturalFitness);
+                    long statisticsStart = System.nanoTime();
+                    metrics.recordPhase(EvolutionMetrics.Phase.SORTING, statisticsStart - sortingStart);
+                    int generationNumber = Math.max(0, completedEpochs.get() / islands.size() - 1);
+                    PopulationData<T> data = EvolutionUtils.getPopulationData(combined,
+                                                                              naturalFitness,
+                                                                              eliteCount,
+                                                                              generationNumber,
+                                                                              startTime);
+                    long observersStart = System.nanoTime();
+                    metrics.recordPhase(EvolutionMetrics.Phase.STATISTICS, observersStart - statisticsStart);
+                    evaluatedCombinedPopulation = combined;
+                    populationData = data;
+                    notifyPopulationChange(data);
+                    metrics.recordPhase(EvolutionMetrics.Phase.OBSERVERS, System.nanoTime() - observersStart);
+                    metrics.recordEpoch();
+                    satisfiedConditions = EvolutionUtils.shouldContinue(data, conditions);
+                }
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            satisfiedConditions = Collections.emptyList();
+        }
+        finally
+        {
+            stopped.set(true);
+            awaitRunners(stoppedRunners);
+            metrics.endRun();
+        }
+
+        this.satisfiedTerminationConditions = satisfiedConditions;
+        return evaluatedCombinedPopulation == null ? null : evaluatedCombinedPopulation.get(0).getCandidate();
+    }
+
+
+    /**
+     * Waits for all of the islands to stop, even if the request thread is interrupted, so
+     * that no island is still evolving after evolution has ended.  Islands stop at the end
+     * of their current generations, so this doesn't take long.
+     */
+    private void awaitRunners(CountDownLatch stoppedRunners)
+    {
+        boolean interrupted = false;
+        while (true)
+        {
+            try
+            {
+                stoppedRunners.await();
+                break;
+            }
+            catch (InterruptedException ex)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Combines the most recent population of each island.
+     * @return The combined population, or null if any island has yet to complete an epoch.
+     */
+    private List<EvaluatedCandidate<T>> combine(AtomicReferenceArray<List<EvaluatedCandidate<T>>> latestPopulations)
+    {
+        List<EvaluatedCandidate<T>> combined = new ArrayList<EvaluatedCandidate<T>>();
+        for (int i = 0; i < latestPopulations.length(); i++)
+        {
+            List<EvaluatedCandidate<T>> population = latestPopulations.get(i);
+            if (population == null)
+            {
+                return null;
+            }
+            combined.addAll(population);
+        }
+        return combined;
+    }
+
+
+    /**
+     * @return The most recent global view of the islands' populations, or null if evolution
+     * has not started or not every island has completed an epoch.  This may be called from
+     * any thread while evolution is in progress.
+     */
+    public PopulationData<T> getPopulationData()
+    {
+        return populationData;
+    }
+
+
+    /**
+     * <p>Returns a list of all {@link TerminationCondition}s that are satisfied by the current
+     * state of the island evolution.  Usually this list will contain only one item, but it
+     * is possible that mutliple termination conditions will become satisfied at the same
+     * time.  In this case the condition objects in the list will be in the same order that
+     * they were specified when passed to the engine.</p>
+     *
+     * <p>If the evolution terminated because the request thread was interrupted before any
+     * termination conditions were satisfied then this method will return an empty list.</p>
+     *
+     * @throws IllegalStateException If this method is invoked on an island system before
+     * evolution is started or while it is still in progress.
+     *
+     * @return A list of statisfied conditions.  The list is guaranteed to be non-null.
+     */
+    public List<TerminationCondition> getSatisfiedTerminationConditions()
+    {
+        if (satisfiedTerminationConditions == null)
+        {
+            throw new IllegalStateException("EvolutionEngine has not terminated.");
+        }
+        else
+        {
+            return Collections.unmodifiableList(satisfiedTerminationConditions);
+        }
+    }
+
+
+    /**
+     * @return The timers and counters that record where this evolution spends its time.
+     * The evaluation counts, worker utilisation and cache hit rate include those of any
+     * islands that are {@link AbstractEvolutionEngine}s.  The epoch and migration times
+     * are summed over all islands, so they may exceed the elapsed time.
+     */
+    public EvolutionMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+
+    /**
+     * <p>Adds an observer to the evolution.  Observers will receives two types of updates:
+     * updates from each individual island at the end of each generation (on the pool thread
+     * that is running that island), and updates for the global population (on the request
+     * thread).</p>
+     *
+     * @param observer The callback that will be notified of updates.
+     *
+     * @see #removeEvolutionObserver(IslandEvolutionObserver)
+     */
+    public void addEvolutionObserver(final IslandEvolutionObserver<? super T> observer)
+    {
+        observers.add(observer);
+    }
+
+
+    /**
+     * Remove the specified observer.
+     * @param observer The observer to remove (if it is registered).
+     *
+     * @see #addEvolutionObserver(IslandEvolutionObserver)
+     */
+    public void removeEvolutionObserver(final IslandEvolutionObserver<? super T> observer)
+    {
+        observers.remove(observer);
+    }
+
+
+    /**
+     * Send the population data to all registered observers.
+     * @param data Information about the current state of the population.
+     */
+    private void notifyPopulationChange(PopulationData<T> data)
+    {
+        for (IslandEvolutionObserver<? super T> observer : observers)
+        {
+            observer.populationUpdate(data);
+        }
+    }
+
+
+    /**
+     * Runs one island's epoch after another, taking the islands in turn, until evolution is
+     * stopped.  There are no more runners than the pool has threads, and each island waits
+     * at the back of the queue after its epoch, so every island gets its turn even if there
+     * are more islands than threads.
+     */
+    private final class IslandRunner implements Runnable
+    {
+        private final Queue<IslandWorker> readyIslands;
+        private final AtomicBoolean stopped;
+        private final AtomicReference<Throwable> failure;
+        private final Semaphore updates;
+        private final CountDownLatch stoppedRunners;
+
+        IslandRunner(Queue<IslandWorker> readyIslands,
+                     AtomicBoolean stopped,
+                     AtomicReference<Throwable> failure,
+                     Semaphore updates,
+                     CountDownLatch stoppedRunners)
+        {
+            this.readyIslands = readyIslands;
+            this.stopped = stopped;
+            this.failure = failure;
+            this.updates = updates;
+            this.stoppedRunners = stoppedRunners;
+        }
+
+
+        public void run()
+        {
+            try
+            {
+                // There are at least as many islands as runners, so one is always ready.
+                for (IslandWorker island = readyIslands.poll();
+                     island != null && !stopped.get();
+                     island = readyIslands.poll())
+                {
+                    island.runEpoch();
+                    readyIslands.add(island);
+                }
+            }
+            catch (Throwable ex)
+            {
+                failure.compareAndSet(null, ex);
+                stopped.set(true);
+                updates.release();
+            }
+            finally
+            {
+                stoppedRunners.countDown();
+            }
+        }
+    }
+
+
+    /**
+     * A single island, which evolves one epoch at a time and exchanges migrants between
+     * epochs.
+     */
+    private final class IslandWorker
+    {
+        private final int islandIndex;
+        private final int populationSize;
+        private final int eliteCount;
+        private final int migrantCount;
+        private final Random rng;
+        private final Queue<EvaluatedCandidate<T>> inbound;
+        private final Queue<EvaluatedCandidate<T>> outbound;
+        private final AtomicReferenceArray<List<EvaluatedCandidate<T>>> latestPopulations;
+        private final AtomicInteger completedEpochs;
+        private final Semaphore updates;
+        private final AtomicBoolean stopped;
+        private final TerminationCondition stopCondition;
+        private final TerminationCondition epochEnd;
+        private List<EvaluatedCandidate<T>> population = Collections.emptyList();
+
+        IslandWorker(int islandIndex,
+                     int populationSize,
+                     int eliteCount,
+                     int epochLength,
+                     int migrantCount,
+                     Random rng,
+                     List<Queue<EvaluatedCandidate<T>>> inboundQueues,
+                     AtomicReferenceArray<List<EvaluatedCandidate<T>>> latestPopulations,
+                     AtomicInteger completedEpochs,
+                     Semaphore updates,
+                     final AtomicBoolean stopped)
+        {
+            this.islandIndex = islandIndex;
+            this.populationSize = populationSize;
+            this.eliteCount = eliteCount;
+            this.migrantCount = migrantCount;
+            this.rng = rng;
+            this.inbound = inboundQueues.get(islandIndex);
+            this.outbound = inboundQueues.get((islandIndex + 1) % inboundQueues.size());
+            this.latestPopulations = latestPopulations;
+            this.completedEpochs = completedEpochs;
+            this.updates = updates;
+            this.stopped = stopped;
+            // Cuts the current epoch short when evolution has finished.
+            this.stopCondition = new TerminationCondition()
+            {
+                public boolean shouldTerminate(PopulationData<?> populationData)
+                {
+                    return stopped.get();
+                }
+            };
+            this.epochEnd = new GenerationCount(epochLength);
+        }
+
+
+        /**
+         * Evolves the island for one epoch, publishes the resulting population and then
+         * exchanges migrants.
+         */
+        void runEpoch()
+        {
+            long epochStart = System.nanoTime();
+            List<EvaluatedCandidate<T>> evaluatedPopulation = Epoch.evolve(islands.get(islandIndex),
+                                                                           populationSize,
+                                                                           eliteCount,
+                                                                           population,
+                                                                           epochEnd,
+                                                                           stopCondition);
+            if (stopped.get())
+            {
+                return; // The epoch may have been cut short because evolution has finished.
+            }
+            long migrationStart = System.nanoTime();
+            metrics.recordPhase(EvolutionMetrics.Phase.EPOCH, migrationStart - epochStart);
+
+            latestPopulations.set(islandIndex, Collections.unmodifiableList(evaluatedPopulation));
+            completedEpochs.incrementAndGet();
+            updates.release();
+
+            population = migrate(evaluatedPopulation);
+            metrics.recordPhase(EvolutionMetrics.Phase.MIGRATION, System.nanoTime() - migrationStart);
+        }
+
+
+        /**
+         * Sends copies of randomly-chosen members of the population to the next island and
+         * replaces them with any immigrants that have arrived from the previous island.
+         * @return The population for the next epoch.
+         */
+        private List<EvaluatedCandidate<T>> migrate(List<EvaluatedCandidate<T>> evaluatedPopulation)
+        {
+            List<EvaluatedCandidate<T>> immigrants = new ArrayList<EvaluatedCandidate<T>>();
+            for (EvaluatedCandidate<T> immigrant = inbound.poll(); immigrant != null; immigrant = inbound.poll())
+            {
+                immigrants.add(immigrant);
+            }
+            if (immigrants.size() > migrantCount)
+            {
+                EvolutionUtils.sortEvaluatedPopulation(immigrants, naturalFitness);
+                immigrants = immigrants.subList(0, migrantCount);
+            }
+
+            // Randomise the population so that there is no bias concerning which individuals are migrated.
+            List<EvaluatedCandidate<T>> shuffled = new ArrayList<EvaluatedCandidate<T>>(evaluatedPopulation);
+            Collections.shuffle(shuffled, rng);
+            int firstMigrant = shuffled.size() - migrantCount;
+            outbound.addAll(shuffled.subList(firstMigrant, shuffled.size()));
+            for (int i = 0; i < immigrants.size(); i++)
+            {
+                shuffled.set(firstMigrant + i, immigrants.get(i));
+            }
+            return shuffled;
+        }
+    }
+}
@@ -0,0 +1,704 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.islands;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.uncommons.util.concurrent.ConfigurableThreadFactory;
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.EvolutionMetrics;
+import org.uncommons.watchmaker.framework.EvolutionUtils;
+import org.uncommons.watchmaker.framework.PopulationData;
+import org.uncommons.watchmaker.framework.TerminationCondition;
+import org.uncommons.watchmaker.framework.persistence.CandidateCodec;
+import org.uncommons.watchmaker.framework.persistence.Frame;
+
+/**
+ * <p>An island evolution in which each island runs in a separate process, possibly on
+ * another machine.  This class is the coordinator: it accepts connections from
+ * {@link RemoteIsland} workers, assigns an island to each, and performs migration between
+ * epochs using any of the usual {@link Migration} strategies.  It behaves like
+ * {@link IslandEvolution} except that the islands' engines are configured in the worker
+ * processes.</p>
+ *
+ * <p>Messages are exchanged in a compact binary form.  Candidates are encoded by a
+ * {@link CandidateCodec}, and large messages are compressed.  Workers keep their evaluated
+ * populations between epochs, so the coordinator sends them only the immigrants.  The
+ * statistics for every generation of an epoch are batched into a single message.</p>
+ *
+ * <p>If a worker fails or its connection is lost, its island's epoch is restarted on the
+ * next available worker from the island's population at the end of the previous epoch.
+ * Start more workers than there are islands to have spares ready, or start a replacement
+ * after a failure; evolution waits until a worker is available for every island.</p>
+ *
+ * <p>The coordinator trusts its workers.  There is no authentication or encryption, and
+ * anything that connects and introduces itself as a worker is sent populations and has
+ * the candidates that it returns decoded by the codec.  By default the coordinator only
+ * accepts connections from the local machine.  To use workers on other machines, bind
+ * it to an address that is only reachable from a trusted network (or tunnel the
+ * connections), and use a codec that only decodes the expected candidate types, such as
+ * {@link org.uncommons.watchmaker.framework.persistence.SerializationCodec}.</p>
+ * @param <T> The type of entity that is to be evolved.
+ * @author Daniel Dyer
+ */
+public class DistributedIslandEvolution<T> implements Closeable
+{
+    private static final int HELLO_TIMEOUT = 10000;
+
+    private final int islandCount;
+    private final Migration<? super T> migration;
+    private final CandidateCodec<T> codec;
+    private final boolean naturalFitness;
+    private final Random rng;
+    private final EvolutionMetrics metrics = new EvolutionMetrics();
+    private final ServerSocket serverSocket;
+    private final BlockingQueue<WorkerConnection> idleWorkers = new LinkedBlockingQueue<WorkerConnection>();
+    private final List<IslandLink> links;
+    private final ExecutorService executor;
+    private volatile boolean closed = false;
+
+    private final Set<IslandEvolutionObserver<? super T>> observers
+        = new CopyOnWriteArraySet<IslandEvolutionObserver<? super T>>();
+
+    private List<TerminationCondition> satisfiedTerminationConditions;
+
+
+    /**
+     * Create a coordinator that listens for workers on the specified port of the loopback
+     * interface, so that only workers on the same machine can connect.
+     * @param islandCount The number of separate islands that will be part of the system.
+     * Evolution does not start until this many workers have connected.
+     * @param port The port on which to accept connections from workers, or zero to use
+     * any free port (see {@link #getPort()}).
+     * @param migration A migration strategy for moving individuals between islands at the
+     * end of an epoch.
+     * @param codec Encodes candidates for transmission to and from the workers.
+     * @param naturalFitness If true, indicates that higher fitness values mean fitter
+     * individuals.  If false, indicates that fitter individuals will have lower scores.
+     * @param rng A source of randomness, used for migration.
+     * @throws IOException If the port cannot be opened.
+     */
+    public DistributedIslandEvolution(int islandCount,
+                                      int port,
+                                      Migration<? super T> migration,
+                                      CandidateCodec<T> codec,
+                                      boolean naturalFitness,
+                                      Random rng) throws IOException
+    {
+        this(islandCount, InetAddress.getLoopbackAddress(), port, migration, codec, naturalFitness, rng);
+    }
+
+
+    /**
+     * Create a coordinator that listens for workers on the specified address and port.
+     * Workers are trusted, so the address should only be reachable from a trusted network.
+     * @param islandCount The number of separate islands that will be part of the system.
+     * Evolution does not start until this many workers have connected.
+     * @param bindAddress The local address on which to accept connections from workers,
+     * or null to accept connections on all local addresses.
+     * @param port The port on which to accept connections from workers, or zero to use
+     * any free port (see {@link #getPort()}).
+     * @param migration A migration strategy for moving individuals between islands at the
+     * end of an epoch.
+     * @param codec Encodes candidates for transmission to and from the workers.
+     * @param naturalFitness If true, indicates that higher fitness values mean fitter
+     * individuals.  If false, indicates that fitter individuals will have lower scores.
+     * @param rng A source of randomness, used for migration.
+     * @throws IOException If the port cannot be opened.
+     */
+    public DistributedIslandEvolution(int islandCount,
+                                      InetAddress bindAddress,
+                                      int port,
+                                      Migration<? super T> migration,
+                                      CandidateCodec<T> codec,
+                                      boolean naturalFitness,
+                                      Random rng) throws IOException
+    {
+        if (islandCount <= 0)
+        {
+            throw new IllegalArgumentException("Island count must be positive.");
+        }
+        this.islandCount = islandCount;
+        this.migration = migration;
+        this.codec = codec;
+        this.naturalFitness = naturalFitness;
+        this.rng = rng;
+        this.links = new ArrayList<IslandLink>(islandCount);
+        for (int i = 0; i < islandCount; i++)
+        {
+            links.add(new IslandLink(i));
+        }
+        this.serverSocket = new ServerSocket(port, 0, bindAddress);
+        ConfigurableThreadFactory threadFactory = new ConfigurableThreadFactory("DistributedIsland",
+                                                                                Thread.NORM_PRIORITY,
+                                                                                true);
+        this.executor = Executors.newFixedThreadPool(islandCount, threadFactory);
+        threadFactory.newThread(new Runnable()
+        {
+            public void run()
+            {
+                acceptWorkers();
+            }
+        }).start();
+    }
+
+
+    /**
+     * @return The port on which this coordinator accepts workers.
+     */
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+
+    /**
+     * Accept connections until the coordinator is closed.  Each worker must introduce
+     * itself with a version that matches the coordinator's before it is used.
+     */
+    private void acceptWorkers()
+    {
+        while (!closed)
+        {
+            Socket socket;
+            try
+            {
+                socket = serverSocket.accept();
+            }
+            catch (IOException ex)
+            {
+                // The server socket has been closed.
+                break;
+            }
+            try
+            {
+                WorkerConnection connection = new WorkerConnection(socket);
+                socket.setSoTimeout(HELLO_TIMEOUT);
+                Frame hello = Frame.read(connection.in);
+                socket.setSoTimeout(0);
+                if (hello.getType() != IslandProtocol.HELLO
+                    || hello.getPayload().readInt() != IslandProtocol.VERSION)
+                {
+                    throw new IOException("Incompatible worker.");
+                }
+                idleWorkers.add(connection);
+                if (closed)
+                {
+                    // Don't leave the worker waiting if close() has already stopped the others.
+                    stop(connection);
+                }
+            }
+            catch (IOException ex)
+            {
+                closeQuietly(socket);
+            }
+        }
+    }
+
+
+    /**
+     * <p>Start the evolutionary process on each island and return the fittest candidate so far at the point
+     * any of the termination conditions is satisfied.  This blocks until a worker is available for
+     * each island.</p>
+     *
+     * <p><em>If you interrupt the request thread before this method returns, the
+     * method will return prematurely (with the best individual found so far).
+     * After returning in this way, the current thread's interrupted flag
+     * will be set.</em></p>
+     *
+     * @param populationSize The population size <em>for each island</em>.
+     * @param eliteCount The number of candidates preserved via elitism <em>on each island</em>.
+     * @param epochLength The number of generations that make up an epoch.
+     * @param migrantCount The number of individuals that will be migrated from each island at the end of each
+     * epoch.
+     * @param conditions One or more conditions that may cause the evolution to terminate.
+     * @return The fittest solution found by the evolutionary process on any of the islands,
+     * or null if the request thread was interrupted before the first epoch had completed.
+     * @see IslandEvolution#evolve(int, int, int, int, TerminationCondition...)
+     */
+    public T evolve(int populationSize,
+                    int eliteCount,
+                    int epochLength,
+                    int migrantCount,
+                    TerminationCondition... conditions)
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("Island evolution has been closed.");
+        }
+        for (IslandLink link : links)
+        {
+            link.reset(populationSize, eliteCount, epochLength);
+        }
+        List<EvaluatedCandidate<T>> evaluatedCombinedPopulation = new ArrayList<EvaluatedCandidate<T>>();
+
+        PopulationData<T> data = null;
+        List<TerminationCondition> satisfiedConditions = null;
+        int currentEpochIndex = 0;
+        long startTime = System.currentTimeMillis();
+        metrics.startRun();
+        while (satisfiedConditions == null)
+        {
+            List<Future<List<EvaluatedCandidate<T>>>> futures
+                = new ArrayList<Future<List<EvaluatedCandidate<T>>>>(islandCount);
+            try
+            {
+                long epochStart = System.nanoTime();
+                for (IslandLink link : links)
+                {
+                    futures.add(executor.submit(link));
+                }
+
+                // The previous epoch's population is kept until this one is complete, so that
+                // it can be returned if the request thread is interrupted.
+                List<EvaluatedCandidate<T>> epochCombinedPopulation = new ArrayList<EvaluatedCandidate<T>>();
+                List<List<EvaluatedCandidate<T>>> evaluatedPopulations
+                    = new ArrayList<List<EvaluatedCandidate<T>>>(islandCount);
+                for (Future<List<EvaluatedCandidate<T>>> future : futures)
+                {
+                    List<EvaluatedCandidate<T>> evaluatedIslandPopulation = future.get();
+                    epochCombinedPopulation.addAll(evaluatedIslandPopulation);
+                    evaluatedPopulations.add(new ArrayList<EvaluatedCandidate<T>>(evaluatedIslandPopulation));
+                }
+                long migrationStart = System.nanoTime();
+                metrics.recordPhase(EvolutionMetrics.Phase.EPOCH, migrationStart - epochStart);
+
+                migration.migrate(evaluatedPopulations, migrantCount, rng);
+                for (int i = 0; i < islandCount; i++)
+                {
+                    links.get(i).migrate(evaluatedPopulations.get(i));
+                }
+
+                long sortingStart = System.nanoTime();
+                metrics.recordPhase(EvolutionMetrics.Phase.MIGRATION, sortingStart - migrationStart);
+                EvolutionUtils.sortEvaluatedPopulation(epochCombinedPopulation, naturalFitness);
+                evaluatedCombinedPopulation = epochCombinedPopulation;
+                long statisticsStart = System.nanoTime();
+                metrics.recordPhase(EvolutionMetrics.Phase.SORTING, statisticsStart - sortingStart);
+                data = EvolutionUtils.getPopulationData(evaluatedCombinedPopulation,
+                                                        naturalFitness,
+                                                        eliteCount,
+                                                        currentEpochIndex,
+                                                        startTime);
+                long observersStart = System.nanoTime();
+                metrics.recordPhase(EvolutionMetrics.Phase.STATISTICS, observersStart - statisticsStart);
+                notifyPopulationChange(data);
+                metrics.recordPhase(EvolutionMetrics.Phase.OBSERVERS, System.nanoTime() - observersStart);
+                metrics.recordEpoch();
+                ++currentEpochIndex;
+            }
+            catch (InterruptedException ex)
+            {
+                // Blocking socket reads can't be interrupted, so drop the busy connections.
+                for (IslandLink link : links)
+                {
+                    link.disconnect();
+                }
+                for (Future<List<EvaluatedCandidate<T>>> future : futures)
+                {
+                    future.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+            satisfiedConditions = EvolutionUtils.shouldContinue(data, conditions);
+        }
+        metrics.endRun();
+
+        this.satisfiedTerminationConditions = satisfiedConditions;
+        return evaluatedCombinedPopulation.isEmpty() ? null : evaluatedCombinedPopulation.get(0).getCandidate();
+    }
+
+
+    /**
+     * <p>Returns a list of all {@link TerminationCondition}s that are satisfied by the current
+     * state of the island evolution.</p>
+     *
+     * @throws IllegalStateException If this method is invoked on an island system before
+     * evolution is started or while it is still in progress.
+     *
+     * @return A list of statisfied conditions.  The list is guaranteed to be non-null.  The
+     * list may be empty if the request thread was interrupted.
+     * @see IslandEvolution#getSatisfiedTerminationConditions()
+     */
+    public List<TerminationCondition> getSatisfiedTerminationConditions()
+    {
+        if (satisfiedTerminationConditions == null)
+        {
+            throw new IllegalStateException("EvolutionEngine has not terminated.");
+        }
+        else
+        {
+            return Collections.unmodifiableList(satisfiedTerminationConditions);
+        }
+    }
+
+
+    /**
+     * @return The timers and counters that record where the coordinator spends its time.
+     * The epoch time includes the time spent waiting for workers and transferring
+     * populations.  The generation count is the total number of generations reported by
+     * the islands.  The workers' other metrics are available from their engines.
+     */
+    public EvolutionMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+
+    /**
+     * <p>Adds an observer to the evolution.  Observers will receives two types of updates:
+     * updates from each individual island at the end of each generation, and updates for
+     * the combined global population at the end of each epoch.  Island updates are
+     * received from the workers in a batch at the end of each epoch.</p>
+     *
+     * @param observer The callback that will be notified at the end of each generation and epoch.
+     *
+     * @see #removeEvolutionObserver(IslandEvolutionObserver)
+     */
+    public void addEvolutionObserver(final IslandEvolutionObserver<? super T> observer)
+    {
+        observers.add(observer);
+    }
+
+
+    /**
+     * Remove the specified observer.
+     * @param observer The observer to remove (if it is registered).
+     *
+     * @see #addEvolutionObserver(IslandEvolutionObserver)
+     */
+    public void removeEvolutionObserver(final IslandEvolutionObserver<? super T> observer)
+    {
+        observers.remove(observer);
+    }
+
+
+    /**
+     * Tells all connected workers to stop and stops accepting new workers.
+     * @throws IOException If the server socket cannot be closed.
+     */
+    public void close() throws IOException
+    {
+        closed = true;
+        try
+        {
+            serverSocket.close();
+        }
+        finally
+        {
+            for (IslandLink link : links)
+            {
+                WorkerConnection connection = link.connection;
+                if (connection != null)
+                {
+                    stop(connection);
+                }
+            }
+            WorkerConnection connection;
+            while ((connection = idleWorkers.poll()) != null)
+            {
+                stop(connection);
+            }
+            executor.shutdownNow();
+        }
+    }
+
+
+    private void stop(WorkerConnection connection)
+    {
+        try
+        {
+            new Frame(IslandProtocol.STOP, new byte[0]).write(connection.out);
+            connection.out.flush();
+        }
+        catch (IOException ex)
+        {
+            // The worker has gone already.
+        }
+        connection.close();
+    }
+
+
+    private static void closeQuietly(Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException ex)
+        {
+            // Nothing more can be done with it.
+        }
+    }
+
+
+    /**
+     * Send the population data to all registered observers.
+     * @param data Information about the current state of the population.
+     */
+    private void notifyPopulationChange(PopulationData<T> data)
+    {
+        for (IslandEvolutionObserver<? super T> observer : observers)
+        {
+            observer.populationUpdate(data);
+        }
+    }
+
+
+    /**
+     * The coordinator's side of one island.  It records the island's population as the
+     * worker has it, so that the epoch can be restarted on another worker, and the
+     * immigrants that the worker has yet to receive.
+     */
+    private final class IslandLink implements Callable<List<EvaluatedCandidate<T>>>
+    {
+        private final int index;
+        private volatile WorkerConnection connection = null;
+        private boolean started = false;
+        private int populationSize;
+        private int eliteCount;
+        private int epochLength;
+        private List<EvaluatedCandidate<T>> population = Collections.emptyList();
+        private final List<Integer> vacancies = new ArrayList<Integer>();
+        private final List<EvaluatedCandidate<T>> immigrants = new ArrayList<EvaluatedCandidate<T>>();
+
+        IslandLink(int index)
+        {
+            this.index = index;
+        }
+
+
+        void reset(int populationSize, int eliteCount, int epochLength)
+        {
+            this.populationSize = populationSize;
+            this.eliteCount = eliteCount;
+            this.epochLength = epochLength;
+            this.population = Collections.emptyList();
+            this.started = false;
+            vacancies.clear();
+            immigrants.clear();
+        }
+
+
+        /**
+         * Run one epoch on a worker, moving to another worker if the connection fails.
+         */
+        public List<EvaluatedCandidate<T>> call() throws InterruptedException
+        {
+            while (true)
+            {
+                WorkerConnection worker = connection;
+                if (worker == null)
+                {
+                    worker = idleWorkers.take();
+                    connection = worker;
+                    started = false;
+                }
+                try
+                {
+                    sendEpoch(worker);
+                    List<EvaluatedCandidate<T>> result = receiveResult(worker);
+                    population = result;
+                    started = true;
+                    vacancies.clear();
+                    immigrants.clear();
+                    return result;
+                }
+                catch (IOException ex)
+                {
+                    if (closed || Thread.currentThread().isInterrupted())
+                    {
+                        throw new InterruptedException("Island evolution stopped.");
+                    }
+                    // Restart the epoch on another worker from the last known population.
+                    worker.close();
+                    connection = null;
+                }
+            }
+        }
+
+
+        private void sendEpoch(WorkerConnection worker) throws IOException
+        {
+            Frame.Builder payload = new Frame.Builder();
+            if (started)
+            {
+                payload.writeInt(vacancies.size());
+                for (int i = 0; i < vacancies.size(); i++)
+                {
+                    payload.writeInt(vacancies.get(i));
+                    payload.writeDouble(immigrants.get(i).getFitness());
+                    codec.write(immigrants.get(i).getCandidate(), payload);
+                }
+                payload.toFrame(IslandProtocol.MIGRANTS).write(worker.out);
+            }
+            else
+            {
+                payload.writeInt(index);
+                payload.writeInt(populationSize);
+                payload.writeInt(eliteCount);
+                payload.writeInt(epochLength);
+                IslandProtocol.writePopulation(population, codec, payload);
+                payload.toFrame(IslandProtocol.START).write(worker.out);
+            }
+            worker.out.flush();
+        }
+
+
+        /**
+         * Reads the epoch's statistics and resulting population.  Statistics are held back
+         * until the population has been received, so that if the worker fails in between,
+         * observers are not notified twice of the generations of the restarted epoch.
+         */
+        private List<EvaluatedCandidate<T>> receiveResult(WorkerConnection worker) throws IOException
+        {
+            List<PopulationData<T>> statistics = new ArrayList<PopulationData<T>>(epochLength);
+            while (true)
+            {
+                Frame frame = Frame.read(worker.in);
+                DataInputStream payload = frame.getPayload();
+                if (frame.getType() == IslandProtocol.STATISTICS)
+                {
+                    int count = payload.readInt();
+                    for (int i = 0; i < count; i++)
+                    {
+                        statistics.add(IslandProtocol.readStatistics(codec, naturalFitness, payload));
+                    }
+                }
+                else if (frame.getType() == IslandProtocol.RESULT)
+                {
+                    List<EvaluatedCandidate<T>> result = IslandProtocol.readPopulation(codec, payload);
+                    for (PopulationData<T> data : statistics)
+                    {
+                        // Remote islands have no local metrics to include, so their
+                        // generations are counted as their statistics are reported.
+                        metrics.recordGeneration();
+                        for (IslandEvolutionObserver<? super T> observer : observers)
+                        {
+                            observer.islandPopulationUpdate(index, data);
+                        }
+                    }
+                    return result;
+                }
+                else
+                {
+                    throw new IOException("Unexpected message type: " + frame.getType());
+                }
+            }
+        }
+
+
+        /**
+         * Work out which members of the worker's population have been replaced by migration.
+         * Migration strategies may reorder populations, so members are matched by identity
+         * and the worker's order is kept.
+         */
+        void migrate(List<EvaluatedCandidate<T>> migratedPopulation)
+        {
+            Map<EvaluatedCandidate<T>, Integer> remaining = new IdentityHashMap<EvaluatedCandidate<T>, Integer>();
+            for (EvaluatedCandidate<T> candidate : migratedPopulation)
+            {
+                Integer count = remaining.get(candidate);
+                remaining.put(candidate, count == null ? 1 : count + 1);
+            }
+            List<EvaluatedCandidate<T>> updatedPopulation = new ArrayList<EvaluatedCandidate<T>>(population);
+            for (int i = 0; i < population.size(); i++)
+            {
+                Integer count = remaining.get(population.get(i));
+                if (count == null || count == 0)
+                {
+                    vacancies.add(i);
+                }
+                else
+                {
+                    remaining.put(population.get(i), count - 1);
+                }
+            }
+            for (EvaluatedCandidate<T> candidate : migratedPopulation)
+            {
+                Integer count = remaining.get(candidate);
+                if (count > 0)
+                {
+                    remaining.put(candidate, count - 1);
+                    updatedPopulation.set(vacancies.get(immigrants.size()), candidate);
+                    immigrants.add(candidate);
+                }
+            }
+            population = updatedPopulation;
+        }
+
+
+        void disconnect()
+        {
+            WorkerConnection worker = connection;
+            if (worker != null)
+            {
+                worker.close();
+            }
+        }
+    }
+
+
+    /**
+     * A worker that has introduced itself.
+     */
+    private static final class WorkerConnection
+    {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        WorkerConnection(Socket socket) throws IOException
+        {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+
+        void close()
+        {
+            closeQuietly(socket);
+        }
+    }
+}
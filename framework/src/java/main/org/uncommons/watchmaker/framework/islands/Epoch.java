@@ -17,6 +17,7 @@ package org.uncommons.watchmaker.framework.islands;
 
 import java.util.List;
 import java.util.concurrent.Callable;
+import org.uncommons.watchmaker.framework.AbstractEvolutionEngine;
 import org.uncommons.watchmaker.framework.EvaluatedCandidate;
 import org.uncommons.watchmaker.framework.EvolutionEngine;
 import org.uncommons.watchmaker.framework.TerminationCondition;
@@ -29,25 +30,89 @@ class Epoch<T> implements Callable<List<EvaluatedCandidate<T>>>
     private final EvolutionEngine<T> island;
     private final int populationSize;
     private final int eliteCount;
-    private final List<T> seedCandidates;
+    private final List<EvaluatedCandidate<T>> evaluatedPopulation;
     private final TerminationCondition[] terminationConditions;
+    private Thread runner = null;
+    private boolean cancelled = false;
 
     Epoch(EvolutionEngine<T> island,
           int populationSize,
           int eliteCount,
-          List<T> seedCandidates,
+          List<EvaluatedCandidate<T>> evaluatedPopulation,
           TerminationCondition... terminationConditions)
     {
         this.island = island;
         this.populationSize = populationSize;
         this.eliteCount = eliteCount;
-        this.seedCandidates = seedCandidates;
+        this.evaluatedPopulation = evaluatedPopulation;
         this.terminationConditions = terminationConditions;
     }
 
 
     public List<EvaluatedCandidate<T>> call() throws Exception
     {
-        return island.evolvePopulation(populationSize, eliteCount, seedCandidates, terminationConditions);
+        synchronized (this)
+        {
+            if (cancelled)
+            {
+                throw new InterruptedException("Epoch cancelled.");
+            }
+            runner = Thread.currentThread();
+        }
+        try
+        {
+            return evolve(island, populationSize, eliteCount, evaluatedPopulation, terminationConditions);
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                runner = null;
+            }
+            // The pool thread will run other tasks, so don't leave it interrupted.
+            Thread.interrupted();
+        }
+    }
+
+
+    /**
+     * Stops the epoch.  Tasks on a {@link java.util.concurrent.ForkJoinPool} are not
+     * interrupted when they are cancelled, so the thread running the island is
+     * interrupted directly, which makes the island return at the end of its current
+     * generation.
+     */
+    synchronized void cancel()
+    {
+        cancelled = true;
+        if (runner != null)
+        {
+            runner.interrupt();
+        }
+    }
+
+
+    /**
+     * Evolves an island for one epoch.  If the island already has a population (from the
+     * previous epoch, after migration), that population is evolved further without being
+     * re-evaluated, provided that the island is an {@link AbstractEvolutionEngine}.  Other
+     * engines have to re-evaluate it.
+     * @param evaluatedPopulation The island's population, or an empty list for the first epoch.
+     */
+    static <T> List<EvaluatedCandidate<T>> evolve(EvolutionEngine<T> island,
+                                                  int populationSize,
+                                                  int eliteCount,
+                                                  List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                                  TerminationCondition... terminationConditions)
+    {
+        if (!evaluatedPopulation.isEmpty() && island instanceof AbstractEvolutionEngine)
+        {
+            return ((AbstractEvolutionEngine<T>) island).resume(evaluatedPopulation,
+                                                                eliteCount,
+                                                                terminationConditions);
+        }
+        return island.evolvePopulation(populationSize,
+                                       eliteCount,
+                                       IslandEvolution.toCandidateList(evaluatedPopulation),
+                                       terminationConditions);
     }
 }
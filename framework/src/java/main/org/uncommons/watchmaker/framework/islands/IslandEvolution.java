@@ -20,28 +20,36 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import org.uncommons.watchmaker.framework.AbstractEvolutionEngine;
 import org.uncommons.watchmaker.framework.CandidateFactory;
 import org.uncommons.watchmaker.framework.EvaluatedCandidate;
 import org.uncommons.watchmaker.framework.EvolutionEngine;
+import org.uncommons.watchmaker.framework.EvolutionMetrics;
 import org.uncommons.watchmaker.framework.EvolutionObserver;
 import org.uncommons.watchmaker.framework.EvolutionUtils;
 import org.uncommons.watchmaker.framework.EvolutionaryOperator;
 import org.uncommons.watchmaker.framework.FitnessEvaluator;
 import org.uncommons.watchmaker.framework.GenerationalEvolutionEngine;
 import org.uncommons.watchmaker.framework.PopulationData;
+import org.uncommons.watchmaker.framework.RandomStreams;
 import org.uncommons.watchmaker.framework.SelectionStrategy;
 import org.uncommons.watchmaker.framework.TerminationCondition;
+import org.uncommons.watchmaker.framework.evaluation.ForkJoinEvaluationExecutor;
 import org.uncommons.watchmaker.framework.termination.GenerationCount;
 
 /**
- * An implementation of island evolution in which multiple independent populations are evolved in
- * parallel with periodic migration of individuals between islands.
+ * <p>An implementation of island evolution in which multiple independent populations are evolved in
+ * parallel with periodic migration of individuals between islands.</p>
+ *
+ * <p>Each island's epoch is run as a task on a work-stealing {@link ForkJoinPool}.  Islands
+ * created by this class also submit their fitness evaluations to the same pool, so a few
+ * islands can make use of many processors, and many islands can share a few processors,
+ * without over-subscribing them.  By default, all island systems share a single pool with
+ * one thread per available processor, which is created once and reused.</p>
  * @param <T> The type of entity that is to be evolved.
  * @author Daniel Dyer
  */
@@ -51,12 +59,18 @@ public class IslandEvolution<T>
     private final Migration<? super T> migration;
     private final boolean naturalFitness;
     private final Random rng;
+    private final EvolutionMetrics metrics = new EvolutionMetrics();
+    private final ForkJoinPool pool;
+    private volatile RandomStreams randomStreams = null;
 
     private final Set<IslandEvolutionObserver<? super T>> observers
         = new CopyOnWriteArraySet<IslandEvolutionObserver<? super T>>();
 
     private List<TerminationCondition> satisfiedTerminationConditions;
 
+    // Lazily-created pool shared by all island systems that are not given their own.
+    private static ForkJoinPool sharedPool = null;
+
 
     /**
      * Create an island system with the specified number of identically-configured islands.
@@ -81,16 +95,53 @@ public class IslandEvolution<T>
                            FitnessEvaluator<? super T> fitnessEvaluator,
                            SelectionStrategy<? super T> selectionStrategy,
                            Random rng)
+    {
+        this(islandCount,
+             migration,
+             candidateFactory,
+             evolutionScheme,
+             fitnessEvaluator,
+             selectionStrategy,
+             rng,
+             getSharedPool());
+    }
+
+
+    /**
+     * Create an island system with the specified number of identically-configured islands,
+     * which run their epochs and fitness evaluations on the specified pool.
+     * @param islandCount The number of separate islands that will be part of the system.
+     * @param migration A migration strategy for moving individuals between islands at the
+     * end of an epoch.
+     * @param candidateFactory Generates the initial population for each island.
+     * @param evolutionScheme The evolutionary operator, or combination of evolutionary operators,
+     * used on each island.
+     * @param fitnessEvaluator The fitness function used on each island.
+     * @param selectionStrategy The selection strategy used on each island.
+     * @param rng A source of randomness, used by all islands.
+     * @param pool The pool that runs the islands and their fitness evaluations.  It is not
+     * shut down by the island system.
+     */
+    public IslandEvolution(int islandCount,
+                           Migration<? super T> migration,
+                           CandidateFactory<T> candidateFactory,
+                           EvolutionaryOperator<T> evolutionScheme,
+                           FitnessEvaluator<? super T> fitnessEvaluator,
+                           SelectionStrategy<? super T> selectionStrategy,
+                           Random rng,
+                           ForkJoinPool pool)
     {
         this(createIslands(islandCount,
                            candidateFactory,
                            evolutionScheme,
                            fitnessEvaluator,
                            selectionStrategy,
-                           rng),
+                           rng,
+                           pool),
              migration,
              fitnessEvaluator.isNatural(),
-             rng);
+             rng,
+             pool);
     }
 
 
@@ -112,16 +163,44 @@ public class IslandEvolution<T>
                            Migration<? super T> migration,
                            boolean naturalFitness,
                            Random rng)
+    {
+        this(islands, migration, naturalFitness, rng, getSharedPool());
+    }
+
+
+    /**
+     * Create an island evolution system from a list of pre-configured islands, whose epochs
+     * run on the specified pool.  To share the pool with the islands' fitness evaluations,
+     * give each island a {@link ForkJoinEvaluationExecutor} that uses the same pool.
+     * @param islands A list of pre-configured islands.
+     * @param migration A migration strategy for moving individuals between islands at the
+     * end of an epoch.
+     * @param naturalFitness If true, indicates that higher fitness values mean fitter
+     * individuals.  If false, indicates that fitter individuals will have lower scores.
+     * @param rng A source of randomness, used by all islands.
+     * @param pool The pool that runs the islands' epochs.  It is not shut down by the
+     * island system.
+     */
+    public IslandEvolution(List<EvolutionEngine<T>> islands,
+                           Migration<? super T> migration,
+                           boolean naturalFitness,
+                           Random rng,
+                           ForkJoinPool pool)
     {
         this.islands = islands;
         this.migration = migration;
         this.naturalFitness = naturalFitness;
         this.rng = rng;
+        this.pool = pool;
 
         for (int i = 0; i < islands.size(); i++)
         {
             final int islandIndex = i;
             EvolutionEngine<T> island = islands.get(islandIndex);
+            if (island instanceof AbstractEvolutionEngine)
+            {
+                metrics.include(((AbstractEvolutionEngine<T>) island).getMetrics());
+            }
             island.addEvolutionObserver(new EvolutionObserver<T>()
             {
                 public void populationUpdate(PopulationData<? extends T> populationData)
@@ -137,16 +216,20 @@ public class IslandEvolution<T>
 
 
     /**
-     * Helper method used by the constructor to create the individual islands if they haven't
+     * Helper method used by the constructors to create the individual islands if they haven't
      * been provided already (via the other constructor).
      */
-    private static <T> List<EvolutionEngine<T>> createIslands(int islandCount,
-                                                              CandidateFactory<T> candidateFactory,
-                                                              EvolutionaryOperator<T> evolutionScheme,
-                                                              FitnessEvaluator<? super T> fitnessEvaluator,
-                                                              SelectionStrategy<? super T> selectionStrategy,
-                                                              Random rng)
+    static <T> List<EvolutionEngine<T>> createIslands(int islandCount,
+                                                      CandidateFactory<T> candidateFactory,
+                                                      EvolutionaryOperator<T> evolutionScheme,
+                                                      FitnessEvaluator<? super T> fitnessEvaluator,
+                                                      SelectionStrategy<? super T> selectionStrategy,
+                                                      Random rng,
+                                                      ForkJoinPool pool)
     {
+        // All islands evaluate on the same pool, so that idle processors can be used by
+        // whichever islands have work.
+        ForkJoinEvaluationExecutor executor = new ForkJoinEvaluationExecutor(pool, false);
         List<EvolutionEngine<T>> islands = new ArrayList<EvolutionEngine<T>>(islandCount);
         for (int i = 0; i < islandCount; i++)
         {
@@ -155,13 +238,26 @@ public class IslandEvolution<T>
                                                                                        fitnessEvaluator,
                                                                                        selectionStrategy,
                                                                                        rng);
-            island.setSingleThreaded(true); // Don't need fine-grained concurrency when each island is on a separate thread.
+            island.setEvaluationExecutor(executor);
             islands.add(island);
         }
         return islands;
     }
 
 
+    /**
+     * Lazily create the pool shared by island systems that are not given their own.
+     */
+    static synchronized ForkJoinPool getSharedPool()
+    {
+        if (sharedPool == null)
+        {
+            sharedPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return sharedPool;
+    }
+
+
     /**
      * <p>Start the evolutionary process on each island and return the fittest candidate so far at the point
      * any of the termination conditions is satisfied.</p>
@@ -186,7 +282,8 @@ public class IslandEvolution<T>
      * @param migrantCount The number of individuals that will be migrated from each island at the end of each
      * epoch.
      * @param conditions One or more conditions that may cause the evolution to terminate.
-     * @return The fittest solution found by the evolutionary process on any of the islands.
+     * @return The fittest solution found by the evolutionary process on any of the islands,
+     * or null if the request thread was interrupted before the first epoch had completed.
      */
     public T evolve(int populationSize,
                     int eliteCount,
@@ -194,53 +291,83 @@ public class IslandEvolution<T>
                     int migrantCount,
                     TerminationCondition... conditions)
     {
-        ExecutorService threadPool = Executors.newFixedThreadPool(islands.size());
-        List<List<T>> islandPopulations = new ArrayList<List<T>>(islands.size());
+        List<List<EvaluatedCandidate<T>>> islandPopulations = new ArrayList<List<EvaluatedCandidate<T>>>(islands.size());
         List<EvaluatedCandidate<T>> evaluatedCombinedPopulation = new ArrayList<EvaluatedCandidate<T>>();
 
         PopulationData<T> data = null;
         List<TerminationCondition> satisfiedConditions = null;
         int currentEpochIndex = 0;
         long startTime = System.currentTimeMillis();
+        RandomStreams streams = randomStreams;
+        metrics.startRun();
         while (satisfiedConditions == null)
         {
-            List<Callable<List<EvaluatedCandidate<T>>>> islandEpochs = createEpochTasks(populationSize,
-                                                                                        eliteCount,
-                                                                                        epochLength,
-                                                                                        islandPopulations);
+            Random migrationRNG = rng;
+            if (streams != null)
+            {
+                RandomStreams epochStreams = streams.getSubstreams(currentEpochIndex);
+                migrationRNG = epochStreams.getRandom(0);
+                for (int i = 0; i < islands.size(); i++)
+                {
+                    ((AbstractEvolutionEngine<?>) islands.get(i)).setRandomStreams(epochStreams.getSubstreams(i + 1));
+                }
+            }
+            List<Epoch<T>> islandEpochs = createEpochTasks(populationSize, eliteCount, epochLength, islandPopulations);
             try
             {
-                List<Future<List<EvaluatedCandidate<T>>>> futures = threadPool.invokeAll(islandEpochs);
+                long epochStart = System.nanoTime();
+                List<Future<List<EvaluatedCandidate<T>>>> futures
+                    = new ArrayList<Future<List<EvaluatedCandidate<T>>>>(islandEpochs.size());
+                for (Epoch<T> epoch : islandEpochs)
+                {
+                    futures.add(pool.submit(epoch));
+                }
 
-                evaluatedCombinedPopulation.clear();
+                // The previous epoch's population is kept until this one is complete, so that
+                // it can be returned if the request thread is interrupted.
+                List<EvaluatedCandidate<T>> epochCombinedPopulation = new ArrayList<EvaluatedCandidate<T>>();
                 List<List<EvaluatedCandidate<T>>> evaluatedPopulations
                     = new ArrayList<List<EvaluatedCandidate<T>>>(islands.size());
                 for (Future<List<EvaluatedCandidate<T>>> future : futures)
                 {
                     List<EvaluatedCandidate<T>> evaluatedIslandPopulation = future.get();
-                    evaluatedCombinedPopulation.addAll(evaluatedIslandPopulation);
+                    epochCombinedPopulation.addAll(evaluatedIslandPopulation);
                     evaluatedPopulations.add(evaluatedIslandPopulation);
                 }
+                long migrationStart = System.nanoTime();
+                metrics.recordPhase(EvolutionMetrics.Phase.EPOCH, migrationStart - epochStart);
 
-                migration.migrate(evaluatedPopulations, migrantCount, rng);
+                migration.migrate(evaluatedPopulations, migrantCount, migrationRNG);
 
-                EvolutionUtils.sortEvaluatedPopulation(evaluatedCombinedPopulation, naturalFitness);
+                long sortingStart = System.nanoTime();
+                metrics.recordPhase(EvolutionMetrics.Phase.MIGRATION, sortingStart - migrationStart);
+                EvolutionUtils.sortEvaluatedPopulation(epochCombinedPopulation, naturalFitness);
+                evaluatedCombinedPopulation = epochCombinedPopulation;
+                long statisticsStart = System.nanoTime();
+                metrics.recordPhase(EvolutionMetrics.Phase.SORTING, statisticsStart - sortingStart);
                 data = EvolutionUtils.getPopulationData(evaluatedCombinedPopulation,
                                                         naturalFitness,
                                                         eliteCount,
                                                         currentEpochIndex,
                                                         startTime);
+                long observersStart = System.nanoTime();
+                metrics.recordPhase(EvolutionMetrics.Phase.STATISTICS, observersStart - statisticsStart);
                 notifyPopulationChange(data);
+                metrics.recordPhase(EvolutionMetrics.Phase.OBSERVERS, System.nanoTime() - observersStart);
+                metrics.recordEpoch();
 
-                islandPopulations.clear();
-                for (List<EvaluatedCandidate<T>> evaluatedPopulation : evaluatedPopulations)
-                {
-                    islandPopulations.add(toCandidateList(evaluatedPopulation));
-                }
+                // The islands start the next epoch from their evaluated populations, so only
+                // immigrants are new to them and nothing needs to be re-evaluated.
+                islandPopulations = evaluatedPopulations;
                 ++currentEpochIndex;
             }
             catch (InterruptedException ex)
             {
+                // Stop the islands so that they don't carry on using the pool.
+                for (Epoch<T> epoch : islandEpochs)
+                {
+                    epoch.cancel();
+                }
                 Thread.currentThread().interrupt();
             }
             catch (ExecutionException ex)
@@ -249,29 +376,31 @@ public class IslandEvolution<T>
             }
             satisfiedConditions = EvolutionUtils.shouldContinue(data, conditions);
         }
-        threadPool.shutdownNow();
+        metrics.endRun();
 
         this.satisfiedTerminationConditions = satisfiedConditions;
-        return evaluatedCombinedPopulation.get(0).getCandidate();
+        return evaluatedCombinedPopulation.isEmpty() ? null : evaluatedCombinedPopulation.get(0).getCandidate();
     }
 
 
     /**
      * Create the concurrently-executed tasks that perform evolution on each island.
      */
-    private List<Callable<List<EvaluatedCandidate<T>>>> createEpochTasks(int populationSize,
-                                                                         int eliteCount,
-                                                                         int epochLength,
-                                                                         List<List<T>> islandPopulations)
+    private List<Epoch<T>> createEpochTasks(int populationSize,
+                                            int eliteCount,
+                                            int epochLength,
+                                            List<List<EvaluatedCandidate<T>>> islandPopulations)
     {
-        List<Callable<List<EvaluatedCandidate<T>>>> islandEpochs
-            = new ArrayList<Callable<List<EvaluatedCandidate<T>>>>(islands.size());
+        List<Epoch<T>> islandEpochs = new ArrayList<Epoch<T>>(islands.size());
         for (int i = 0; i < islands.size(); i++)
         {
+            List<EvaluatedCandidate<T>> islandPopulation = islandPopulations.isEmpty()
+                                                           ? Collections.<EvaluatedCandidate<T>>emptyList()
+                                                           : islandPopulations.get(i);
             islandEpochs.add(new Epoch<T>(islands.get(i),
                                           populationSize,
                                           eliteCount,
-                                          islandPopulations.isEmpty() ? Collections.<T>emptyList() : islandPopulations.get(i),
+                                          islandPopulation,
                                           new GenerationCount(epochLength)));
         }
         return islandEpochs;
@@ -285,7 +414,7 @@ public class IslandEvolution<T>
      * @param <T> The type of entity that is being evolved.
      * @return The candidates, stripped of their fitness scores.
      */
-    private static <T> List<T> toCandidateList(List<EvaluatedCandidate<T>> evaluatedCandidates)
+    static <T> List<T> toCandidateList(List<EvaluatedCandidate<T>> evaluatedCandidates)
     {
         List<T> candidates = new ArrayList<T>(evaluatedCandidates.size());
         for (EvaluatedCandidate<T> evaluatedCandidate : evaluatedCandidates)
@@ -330,6 +459,57 @@ public class IslandEvolution<T>
     }
 
 
+    /**
+     * @return The timers and counters that record where this evolution spends its time.
+     * The evaluation counts, worker utilisation and cache hit rate include those of any
+     * islands that are {@link AbstractEvolutionEngine}s.  The phase times are those of the
+     * island evolution itself (epochs, migration, statistics and observers); the islands'
+     * own phase times are available from their engines.
+     */
+    public EvolutionMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+
+    /**
+     * Makes island evolution deterministic by giving each island its own stream of random
+     * numbers for each epoch, and using a separate stream for each migration.  The results
+     * of two island evolutions with the same master seed and configuration are identical,
+     * regardless of the order in which the islands' threads are scheduled.  This replaces
+     * any random streams set on the individual islands.
+     * @param streams The streams from which to derive random numbers, or null to use the
+     * generators that the islands and this island evolution were created with.
+     * @throws IllegalStateException If any of the islands is not an
+     * {@link AbstractEvolutionEngine}, since other engines cannot be given streams.
+     * @see AbstractEvolutionEngine#setRandomStreams(RandomStreams)
+     */
+    public void setRandomStreams(RandomStreams streams)
+    {
+        if (streams != null)
+        {
+            for (EvolutionEngine<T> island : islands)
+            {
+                if (!(island instanceof AbstractEvolutionEngine))
+                {
+                    throw new IllegalStateException("Random streams can only be used with AbstractEvolutionEngine islands.");
+                }
+            }
+        }
+        else
+        {
+            for (EvolutionEngine<T> island : islands)
+            {
+                if (island instanceof AbstractEvolutionEngine)
+                {
+                    ((AbstractEvolutionEngine<?>) island).setRandomStreams(null);
+                }
+            }
+        }
+        this.randomStreams = streams;
+    }
+
+
     /**
      * <p>Adds an observer to the evolution.  Observers will receives two types of updates:
      * updates from each individual island at the end of each generation, and updates for
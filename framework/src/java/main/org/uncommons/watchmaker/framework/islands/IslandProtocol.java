@@ -0,0 +1,126 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.islands;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.PopulationData;
+import org.uncommons.watchmaker.framework.persistence.CandidateCodec;
+import org.uncommons.watchmaker.framework.persistence.Frame;
+
+/**
+ * <p>The binary protocol spoken between a {@link DistributedIslandEvolution} coordinator
+ * and its {@link RemoteIsland} workers.  Each message is a {@link Frame} of one of the types
+ * defined here.  Candidates are encoded with a {@link CandidateCodec}, and whole
+ * populations, sets of migrants and the statistics for every generation of an epoch are
+ * each sent as a single frame.</p>
+ * @author Daniel Dyer
+ */
+final class IslandProtocol
+{
+    static final int VERSION = 1;
+
+    /** Worker to coordinator: protocol version. */
+    static final byte HELLO = 1;
+    /** Coordinator to worker: island index, population size, elite count, epoch length, population. */
+    static final byte START = 2;
+    /** Coordinator to worker: replacements for members of the worker's population. */
+    static final byte MIGRANTS = 3;
+    /** Worker to coordinator: statistics for each generation of an epoch. */
+    static final byte STATISTICS = 4;
+    /** Worker to coordinator: the evaluated population at the end of an epoch. */
+    static final byte RESULT = 5;
+    /** Coordinator to worker: no more epochs. */
+    static final byte STOP = 6;
+
+    private IslandProtocol()
+    {
+        // Prevents instantiation.
+    }
+
+
+    static <T> void writePopulation(List<EvaluatedCandidate<T>> population,
+                                    CandidateCodec<T> codec,
+                                    DataOutput out) throws IOException
+    {
+        out.writeInt(population.size());
+        for (EvaluatedCandidate<T> candidate : population)
+        {
+            out.writeDouble(candidate.getFitness());
+            codec.write(candidate.getCandidate(), out);
+        }
+    }
+
+
+    static <T> List<EvaluatedCandidate<T>> readPopulation(CandidateCodec<T> codec, DataInput in) throws IOException
+    {
+        int size = in.readInt();
+        if (size < 0)
+        {
+            throw new IOException("Invalid population size: " + size);
+        }
+        List<EvaluatedCandidate<T>> population = new ArrayList<EvaluatedCandidate<T>>(size);
+        for (int i = 0; i < size; i++)
+        {
+            double fitness = in.readDouble();
+            population.add(new EvaluatedCandidate<T>(codec.read(in), fitness));
+        }
+        return population;
+    }
+
+
+    static <T> void writeStatistics(PopulationData<? extends T> data,
+                                    CandidateCodec<T> codec,
+                                    DataOutput out) throws IOException
+    {
+        out.writeInt(data.getGenerationNumber());
+        out.writeLong(data.getElapsedTime());
+        out.writeDouble(data.getBestCandidateFitness());
+        out.writeDouble(data.getMeanFitness());
+        out.writeDouble(data.getFitnessStandardDeviation());
+        out.writeInt(data.getPopulationSize());
+        out.writeInt(data.getEliteCount());
+        codec.write(data.getBestCandidate(), out);
+    }
+
+
+    static <T> PopulationData<T> readStatistics(CandidateCodec<T> codec,
+                                                boolean naturalFitness,
+                                                DataInput in) throws IOException
+    {
+        int generation = in.readInt();
+        long elapsedTime = in.readLong();
+        double bestFitness = in.readDouble();
+        double meanFitness = in.readDouble();
+        double standardDeviation = in.readDouble();
+        int populationSize = in.readInt();
+        int eliteCount = in.readInt();
+        T bestCandidate = codec.read(in);
+        return new PopulationData<T>(bestCandidate,
+                                     bestFitness,
+                                     meanFitness,
+                                     standardDeviation,
+                                     naturalFitness,
+                                     populationSize,
+                                     eliteCount,
+                                     generation,
+                                     elapsedTime);
+    }
+}
@@ -0,0 +1,173 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.islands;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.EvolutionEngine;
+import org.uncommons.watchmaker.framework.EvolutionObserver;
+import org.uncommons.watchmaker.framework.PopulationData;
+import org.uncommons.watchmaker.framework.persistence.CandidateCodec;
+import org.uncommons.watchmaker.framework.persistence.Frame;
+import org.uncommons.watchmaker.framework.termination.GenerationCount;
+
+/**
+ * <p>Runs one island of a {@link DistributedIslandEvolution} in this process.  The worker
+ * connects to the coordinator, which assigns it an island, and then evolves that island
+ * one epoch at a time as instructed.  Between epochs the worker keeps its evaluated
+ * population, so only migrants are sent to it and nothing is re-evaluated.</p>
+ *
+ * <p>A typical worker program creates an {@link EvolutionEngine} configured as it would be
+ * for a single-process island and then calls {@link #run(String, int)}.  If a worker
+ * process fails, a replacement can be started at any time: the coordinator gives it the
+ * failed island's population as it was at the end of the last completed epoch.</p>
+ * @param <T> The type of entity that is to be evolved.
+ * @author Daniel Dyer
+ */
+public class RemoteIsland<T>
+{
+    private final EvolutionEngine<T> island;
+    private final CandidateCodec<T> codec;
+    private final List<PopulationData<? extends T>> statistics = new ArrayList<PopulationData<? extends T>>();
+
+
+    /**
+     * @param island The engine that evolves this island's population.
+     * @param codec Encodes candidates for transmission to and from the coordinator.
+     */
+    public RemoteIsland(EvolutionEngine<T> island, CandidateCodec<T> codec)
+    {
+        this.island = island;
+        this.codec = codec;
+        island.addEvolutionObserver(new EvolutionObserver<T>()
+        {
+            public void populationUpdate(PopulationData<? extends T> data)
+            {
+                // Statistics are sent to the coordinator in one batch at the end of each epoch.
+                synchronized (statistics)
+                {
+                    statistics.add(data);
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Connects to the coordinator and evolves the island that it assigns until the
+     * coordinator is {@link DistributedIslandEvolution#close() closed}.
+     * @param host The name or address of the coordinator's host.
+     * @param port The port on which the coordinator accepts workers.
+     * @throws IOException If the connection fails or is lost.
+     */
+    public void run(String host, int port) throws IOException
+    {
+        Socket socket = new Socket(host, port);
+        try
+        {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            Frame.Builder hello = new Frame.Builder();
+            hello.writeInt(IslandProtocol.VERSION);
+            hello.toFrame(IslandProtocol.HELLO).write(out);
+            out.flush();
+            serve(in, out);
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+
+    private void serve(DataInputStream in, DataOutputStream out) throws IOException
+    {
+        List<EvaluatedCandidate<T>> population = Collections.emptyList();
+        int populationSize = 0;
+        int eliteCount = 0;
+        int epochLength = 0;
+        while (true)
+        {
+            Frame frame = Frame.read(in);
+            DataInputStream payload = frame.getPayload();
+            switch (frame.getType())
+            {
+                case IslandProtocol.START:
+                {
+                    payload.readInt(); // The island index is only needed by the coordinator.
+                    populationSize = payload.readInt();
+                    eliteCount = payload.readInt();
+                    epochLength = payload.readInt();
+                    population = IslandProtocol.readPopulation(codec, payload);
+                    break;
+                }
+                case IslandProtocol.MIGRANTS:
+                {
+                    population = new ArrayList<EvaluatedCandidate<T>>(population);
+                    int count = payload.readInt();
+                    for (int i = 0; i < count; i++)
+                    {
+                        int index = payload.readInt();
+                        double fitness = payload.readDouble();
+                        population.set(index, new EvaluatedCandidate<T>(codec.read(payload), fitness));
+                    }
+                    break;
+                }
+                case IslandProtocol.STOP:
+                {
+                    return;
+                }
+                default:
+                {
+                    throw new IOException("Unexpected message type: " + frame.getType());
+                }
+            }
+
+            population = Epoch.evolve(island, populationSize, eliteCount, population, new GenerationCount(epochLength));
+            sendResults(population, out);
+        }
+    }
+
+
+    private void sendResults(List<EvaluatedCandidate<T>> population, DataOutputStream out) throws IOException
+    {
+        Frame.Builder payload = new Frame.Builder();
+        synchronized (statistics)
+        {
+            payload.writeInt(statistics.size());
+            for (PopulationData<? extends T> data : statistics)
+            {
+                IslandProtocol.writeStatistics(data, codec, payload);
+            }
+            statistics.clear();
+        }
+        payload.toFrame(IslandProtocol.STATISTICS).write(out);
+
+        payload = new Frame.Builder();
+        IslandProtocol.writePopulation(population, codec, payload);
+        payload.toFrame(IslandProtocol.RESULT).write(out);
+        out.flush();
+    }
+}
@@ -0,0 +1,68 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.operators;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.uncommons.watchmaker.framework.EvolutionaryOperator;
+
+/**
+ * <p>An {@link EvolutionPipeline} that divides the selected candidates into chunks and
+ * passes each chunk through the whole pipeline in parallel, using a {@link ForkJoinPool}.
+ * Running every stage on a chunk before moving on means that there is only one fork and
+ * one join per evolution step, however many operators the pipeline contains.  This is
+ * equivalent to wrapping an {@link EvolutionPipeline} in a {@link ParallelOperator}, so
+ * the results are deterministic in the same way.</p>
+ *
+ * @param <T> The type of evolved candidate that this pipeline operates on.
+ * @author Daniel Dyer
+ */
+public class ParallelEvolutionPipeline<T> extends EvolutionPipeline<T>
+{
+    private final ParallelOperator<T> chunks;
+
+
+    /**
+     * Creates a pipeline consisting of the specified operators in
+     * the order that they are supplied.
+     * @param pipeline An ordered list of operators that make up the
+     * pipeline.  They must be thread-safe.
+     * @param pool The pool that processes the chunks.
+     * @param chunkSize The maximum number of candidates in each chunk.
+     */
+    public ParallelEvolutionPipeline(List<EvolutionaryOperator<T>> pipeline,
+                                     ForkJoinPool pool,
+                                     int chunkSize)
+    {
+        super(pipeline);
+        this.chunks = new ParallelOperator<T>(new EvolutionPipeline<T>(pipeline), pool, chunkSize);
+    }
+
+
+    /**
+     * Applies each operation in the pipeline in turn to each chunk of the selection.
+     * @param selectedCandidates The candidates to subjected to evolution.
+     * @param rng A source of randomness from which a separate stream is derived for
+     * each chunk.
+     * @return A list of evolved candidates, in the order of the chunks.
+     */
+    @Override
+    public List<T> apply(List<T> selectedCandidates, Random rng)
+    {
+        return chunks.apply(selectedCandidates, rng);
+    }
+}
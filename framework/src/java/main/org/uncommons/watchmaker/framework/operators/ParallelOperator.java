@@ -0,0 +1,163 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.operators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import org.uncommons.watchmaker.framework.EvolutionaryOperator;
+import org.uncommons.watchmaker.framework.RandomStreams;
+
+/**
+ * <p>Compound evolutionary operator that applies another operator to chunks of the
+ * selected candidates in parallel, using a {@link ForkJoinPool}.  This is useful when
+ * breeding is expensive, for example when candidates have very long genomes, and would
+ * otherwise hold up parallel fitness evaluation.</p>
+ *
+ * <p>Each chunk is processed with its own stream of random numbers, derived from the
+ * generator passed to {@link #apply(List, Random)}, and the offspring from each chunk are
+ * returned in the same order as the chunks.  The results therefore depend only on that
+ * generator and the chunk size, not on how many threads the pool has or the order in
+ * which chunks are processed.  The wrapped operator is invoked concurrently from multiple
+ * threads, so it must be thread-safe (all of the operators in this package are).</p>
+ *
+ * <p>Operators that combine candidates, such as cross-over, only combine candidates in
+ * the same chunk.  Cross-over operators pair consecutive candidates, so the chunk size
+ * should be even for them.</p>
+ *
+ * @param <T> The type of evolved entity dealt with by this operator.
+ * @author Daniel Dyer
+ * @see ParallelEvolutionPipeline
+ * @see ParallelSplitEvolution
+ */
+public class ParallelOperator<T> implements EvolutionaryOperator<T>
+{
+    private final EvolutionaryOperator<T> delegate;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+
+    /**
+     * @param delegate The operator to apply to each chunk of candidates.
+     * @param pool The pool that processes the chunks.
+     * @param chunkSize The maximum number of candidates in each chunk.  Selections no
+     * bigger than this are processed on the calling thread.
+     */
+    public ParallelOperator(EvolutionaryOperator<T> delegate, ForkJoinPool pool, int chunkSize)
+    {
+        if (chunkSize <= 0)
+        {
+            throw new IllegalArgumentException("Chunk size must be positive.");
+        }
+        this.delegate = delegate;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+
+    /**
+     * Applies the wrapped operator to each chunk of the selected candidates in parallel.
+     * @param selectedCandidates The candidates to subject to evolution.
+     * @param rng A source of randomness.  It is used on the calling thread only, to
+     * derive a separate stream of random numbers for each chunk.
+     * @return The offspring of each chunk, in the order of the chunks.
+     */
+    public List<T> apply(List<T> selectedCandidates, Random rng)
+    {
+        if (selectedCandidates.size() <= chunkSize)
+        {
+            return delegate.apply(selectedCandidates, rng);
+        }
+
+        RandomStreams streams = new RandomStreams(rng);
+        List<ChunkTask> tasks = new ArrayList<ChunkTask>();
+        for (int i = 0; i < selectedCandidates.size(); i += chunkSize)
+        {
+            List<T> chunk = selectedCandidates.subList(i, Math.min(i + chunkSize, selectedCandidates.size()));
+            tasks.add(new ChunkTask(new ArrayList<T>(chunk), streams.getRandom(tasks.size())));
+        }
+
+        ApplyTask task = new ApplyTask(tasks, selectedCandidates.size());
+        Thread thread = Thread.currentThread();
+        if (thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool)
+        {
+            // Already running in the pool (for example, nested parallel operators), so
+            // fork directly rather than submitting and blocking a worker.
+            return task.invoke();
+        }
+        return pool.invoke(task);
+    }
+
+
+    /**
+     * Forks a task for every chunk and combines their results in order.
+     */
+    private final class ApplyTask extends RecursiveTask<List<T>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<ChunkTask> tasks;
+        private final int expectedSize;
+
+        ApplyTask(List<ChunkTask> tasks, int expectedSize)
+        {
+            this.tasks = tasks;
+            this.expectedSize = expectedSize;
+        }
+
+
+        @Override
+        protected List<T> compute()
+        {
+            ForkJoinTask.invokeAll(tasks);
+            List<T> offspring = new ArrayList<T>(expectedSize);
+            for (ChunkTask task : tasks)
+            {
+                offspring.addAll(task.join());
+            }
+            return offspring;
+        }
+    }
+
+
+    /**
+     * Applies the wrapped operator to a single chunk.
+     */
+    private final class ChunkTask extends RecursiveTask<List<T>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> chunk;
+        private final Random rng;
+
+        ChunkTask(List<T> chunk, Random rng)
+        {
+            this.chunk = chunk;
+            this.rng = rng;
+        }
+
+
+        @Override
+        protected List<T> compute()
+        {
+            return delegate.apply(chunk, rng);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.operators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import org.uncommons.maths.number.NumberGenerator;
+import org.uncommons.watchmaker.framework.EvolutionaryOperator;
+import org.uncommons.watchmaker.framework.RandomStreams;
+
+/**
+ * <p>A {@link SplitEvolution} in which each of the two streams of evolution divides its
+ * share of the population into chunks that are processed in parallel, using a
+ * {@link ForkJoinPool}.  The population is split exactly as it is by
+ * {@link SplitEvolution}, the two streams are processed at the same time, and each
+ * stream's chunks are processed as they are by a {@link ParallelOperator}.  Each stream
+ * has its own random numbers, derived from the generator passed to
+ * {@link #apply(java.util.List, java.util.Random)}, so the results are deterministic.</p>
+ *
+ * @param <T> The type of evolved entity dealt with by this operator.
+ * @author Daniel Dyer
+ */
+public class ParallelSplitEvolution<T> extends SplitEvolution<T>
+{
+    private final ForkJoinPool pool;
+
+    /**
+     * @param operator1 The operator that will apply to the first part of the
+     * population (as determined by the {@code weight} parameter).  It must be thread-safe.
+     * @param operator2 The operator that will apply to the second part of the
+     * population (as determined by the {@code weight} parameter).  It must be thread-safe.
+     * @param weight The proportion (as a real number between zero and 1 exclusive)
+     * of the population that will be evolved by {@code operator1}.  The
+     * remainder will be evolved by {@code operator2}.
+     * @param pool The pool that processes the chunks.
+     * @param chunkSize The maximum number of candidates in each chunk.
+     */
+    public ParallelSplitEvolution(EvolutionaryOperator<T> operator1,
+                                  EvolutionaryOperator<T> operator2,
+                                  double weight,
+                                  ForkJoinPool pool,
+                                  int chunkSize)
+    {
+        super(new ParallelOperator<T>(operator1, pool, chunkSize),
+              new ParallelOperator<T>(operator2, pool, chunkSize),
+              weight);
+        this.pool = pool;
+    }
+
+
+    /**
+     * @param operator1 The operator that will apply to the first part of the
+     * population (as determined by the {@code weightVariable} parameter).  It must be
+     * thread-safe.
+     * @param operator2 The operator that will apply to the second part of the
+     * population (as determined by the {@code weightVariable} parameter).  It must be
+     * thread-safe.
+     * @param weightVariable A random variable that provides the ratio for
+     * dividing the population between the two evolutionary streams.  Must
+     * only generate values in the range {@literal 0 < ratio < 1}.
+     * @param pool The pool that processes the chunks.
+     * @param chunkSize The maximum number of candidates in each chunk.
+     */
+    public ParallelSplitEvolution(EvolutionaryOperator<T> operator1,
+                                  EvolutionaryOperator<T> operator2,
+                                  NumberGenerator<Double> weightVariable,
+                                  ForkJoinPool pool,
+                                  int chunkSize)
+    {
+        super(new ParallelOperator<T>(operator1, pool, chunkSize),
+              new ParallelOperator<T>(operator2, pool, chunkSize),
+              weightVariable);
+        this.pool = pool;
+    }
+
+
+    /**
+     * Applies the two operators concurrently, each with its own stream of random numbers.
+     * @param rng A source of randomness.  It is used on the calling thread only, to
+     * derive a stream of random numbers for each operator.
+     */
+    @Override
+    protected List<T> applyOperators(EvolutionaryOperator<T> operator1,
+                                     List<T> candidates1,
+                                     EvolutionaryOperator<T> operator2,
+                                     List<T> candidates2,
+                                     Random rng)
+    {
+        RandomStreams streams = new RandomStreams(rng);
+        SplitTask task = new SplitTask(operator1, candidates1, streams.getRandom(0),
+                                       operator2, candidates2, streams.getRandom(1));
+        Thread thread = Thread.currentThread();
+        if (thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool)
+        {
+            return task.invoke();
+        }
+        return pool.invoke(task);
+    }
+
+
+    /**
+     * Forks the second operator and applies the first on the current thread.
+     */
+    private final class SplitTask extends RecursiveTask<List<T>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final EvolutionaryOperator<T> operator1;
+        private final List<T> candidates1;
+        private final Random rng1;
+        private final EvolutionaryOperator<T> operator2;
+        private final List<T> candidates2;
+        private final Random rng2;
+
+        SplitTask(EvolutionaryOperator<T> operator1,
+                  List<T> candidates1,
+                  Random rng1,
+                  EvolutionaryOperator<T> operator2,
+                  List<T> candidates2,
+                  Random rng2)
+        {
+            this.operator1 = operator1;
+            this.candidates1 = candidates1;
+            this.rng1 = rng1;
+            this.operator2 = operator2;
+            this.candidates2 = candidates2;
+            this.rng2 = rng2;
+        }
+
+
+        @Override
+        protected List<T> compute()
+        {
+            RecursiveTask<List<T>> second = new RecursiveTask<List<T>>()
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected List<T> compute()
+                {
+                    return operator2.apply(candidates2, rng2);
+                }
+            };
+            second.fork();
+            List<T> result = new ArrayList<T>(candidates1.size() + candidates2.size());
+            result.addAll(operator1.apply(candidates1, rng1));
+            result.addAll(second.join());
+            return result;
+        }
+    }
+}
@@ -111,9 +111,29 @@ public class SplitEvolution<T> implements EvolutionaryOperator<T>
 
         List<T> list1 = selectionClone.subList(0, size);
         List<T> list2 = selectionClone.subList(size, selectedCandidates.size());
-        List<T> result = new ArrayList<T>(selectedCandidates.size());
-        result.addAll(operator1.apply(list1, rng));
-        result.addAll(operator2.apply(list2, rng));
+        return applyOperators(operator1, list1, operator2, list2, rng);
+    }
+
+
+    /**
+     * Applies each of the two operators to its share of the population.  This
+     * implementation applies them one after the other, on the calling thread.
+     * @param operator1 The first operator.
+     * @param candidates1 The candidates for the first operator.
+     * @param operator2 The second operator.
+     * @param candidates2 The candidates for the second operator.
+     * @param rng A source of randomness.
+     * @return The output of the first operator followed by the output of the second.
+     */
+    protected List<T> applyOperators(EvolutionaryOperator<T> operator1,
+                                     List<T> candidates1,
+                                     EvolutionaryOperator<T> operator2,
+                                     List<T> candidates2,
+                                     Random rng)
+    {
+        List<T> result = new ArrayList<T>(candidates1.size() + candidates2.size());
+        result.addAll(operator1.apply(candidates1, rng));
+        result.addAll(operator2.apply(candidates2, rng));
         return result;
     }
 }
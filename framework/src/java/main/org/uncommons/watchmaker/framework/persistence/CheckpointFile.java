@@ -0,0 +1,316 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import org.uncommons.util.concurrent.ConfigurableThreadFactory;
+import org.uncommons.watchmaker.framework.Checkpoint;
+import org.uncommons.watchmaker.framework.CheckpointStore;
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+
+/**
+ * <p>A {@link CheckpointStore} that keeps the most recent checkpoint in a single binary
+ * file.  Checkpoints are encoded on the request thread (so that the candidates may safely
+ * be modified afterwards) and written to disk on a background thread.  If the background
+ * thread falls behind, intermediate checkpoints are skipped rather than queued.</p>
+ * <p>Each checkpoint is written to a temporary file that is then renamed over the previous
+ * checkpoint, so a crash part-way through a write leaves the previous checkpoint intact.
+ * The file ends with a checksum that is verified when it is {@link #load() loaded}.</p>
+ * @param <T> The type of entity that exists in the evolving population.
+ * @author Daniel Dyer
+ */
+public class CheckpointFile<T> implements CheckpointStore<T>
+{
+    private static final int MAGIC_NUMBER = 0x574D4350; // "WMCP"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final ConfigurableThreadFactory THREAD_FACTORY
+        = new ConfigurableThreadFactory("CheckpointFile", Thread.NORM_PRIORITY, true);
+
+    private final File file;
+    private final CandidateCodec<T> codec;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(THREAD_FACTORY);
+    private final AtomicReference<byte[]> pending = new AtomicReference<byte[]>();
+    private final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+
+
+    /**
+     * @param file The file to which checkpoints are written.
+     * @param codec Converts candidates to and from bytes.
+     */
+    public CheckpointFile(File file, CandidateCodec<T> codec)
+    {
+        this.file = file;
+        this.codec = codec;
+    }
+
+
+    /**
+     * Encodes the checkpoint and schedules it to be written in the background.
+     * @param checkpoint The state of the evolution.
+     * @throws IOException If the checkpoint cannot be encoded or if an earlier checkpoint
+     * could not be written.  A failed write is only reported once.
+     */
+    public void save(Checkpoint<T> checkpoint) throws IOException
+    {
+        checkFailure();
+        if (pending.getAndSet(encode(checkpoint)) == null)
+        {
+            writer.execute(new Runnable()
+            {
+                public void run()
+                {
+                    byte[] bytes = pending.getAndSet(null);
+                    if (bytes != null)
+                    {
+                        try
+                        {
+                            write(bytes);
+                        }
+                        catch (IOException ex)
+                        {
+                            failure.compareAndSet(null, ex);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Blocks until any checkpoint that has been saved has been written to disk.
+     * @throws IOException If a checkpoint could not be written.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public void flush() throws IOException, InterruptedException
+    {
+        try
+        {
+            writer.submit(new Runnable()
+            {
+                public void run()
+                {
+                    // Nothing to do, previously submitted writes have finished.
+                }
+            }).get();
+        }
+        catch (ExecutionException ex)
+        {
+            throw new IllegalStateException(ex.getCause());
+        }
+        checkFailure();
+    }
+
+
+    /**
+     * Writes any outstanding checkpoint and stops the background thread.
+     * @throws IOException If a checkpoint could not be written.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public void close() throws IOException, InterruptedException
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            writer.shutdown();
+        }
+    }
+
+
+    /**
+     * Reads the most recently written checkpoint.
+     * @return The checkpoint, or null if the file does not exist.
+     * @throws IOException If the file cannot be read or is not a valid checkpoint.
+     */
+    public Checkpoint<T> load() throws IOException
+    {
+        if (!file.exists())
+        {
+            return null;
+        }
+        // The checksum is verified before anything is decoded, so that corrupt lengths
+        // and counts are never used to allocate arrays or lists.
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        int contentLength = bytes.length - 8;
+        if (contentLength < 0)
+        {
+            throw new IOException(file + " is corrupt (truncated).");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, contentLength);
+        if (new DataInputStream(new ByteArrayInputStream(bytes, contentLength, 8)).readLong() != crc.getValue())
+        {
+            throw new IOException(file + " is corrupt (checksum mismatch).");
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, contentLength));
+        if (in.readInt() != MAGIC_NUMBER)
+        {
+            throw new IOException(file + " is not a checkpoint file.");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION)
+        {
+            throw new IOException("Unsupported checkpoint format version: " + version);
+        }
+        int generation = in.readInt();
+        long elapsedTime = in.readLong();
+        int eliteCount = in.readInt();
+        byte[] rngState = readBytes(in);
+        // Each condition state has at least a 4-byte length.
+        int conditionCount = readCount(in, 4);
+        List<byte[]> conditionStates = new ArrayList<byte[]>(conditionCount);
+        for (int i = 0; i < conditionCount; i++)
+        {
+            conditionStates.add(readBytes(in));
+        }
+        // Each candidate has at least an 8-byte fitness score.
+        int size = readCount(in, 8);
+        List<EvaluatedCandidate<T>> population = new ArrayList<EvaluatedCandidate<T>>(size);
+        for (int i = 0; i < size; i++)
+        {
+            double fitness = in.readDouble();
+            population.add(new EvaluatedCandidate<T>(codec.read(in), fitness));
+        }
+        return new Checkpoint<T>(population, generation, elapsedTime, eliteCount, rngState, conditionStates);
+    }
+
+
+    private byte[] encode(Checkpoint<T> checkpoint) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        CheckedOutputStream checked = new CheckedOutputStream(buffer, new CRC32());
+        DataOutputStream out = new DataOutputStream(checked);
+        out.writeInt(MAGIC_NUMBER);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(checkpoint.getGenerationNumber());
+        out.writeLong(checkpoint.getElapsedTime());
+        out.writeInt(checkpoint.getEliteCount());
+        writeBytes(checkpoint.getRNGState(), out);
+        out.writeInt(checkpoint.getConditionStates().size());
+        for (byte[] state : checkpoint.getConditionStates())
+        {
+            writeBytes(state, out);
+        }
+        out.writeInt(checkpoint.getPopulation().size());
+        for (EvaluatedCandidate<T> candidate : checkpoint.getPopulation())
+        {
+            out.writeDouble(candidate.getFitness());
+            codec.write(candidate.getCandidate(), out);
+        }
+        out.flush();
+        new DataOutputStream(buffer).writeLong(checked.getChecksum().getValue());
+        return buffer.toByteArray();
+    }
+
+
+    private void write(byte[] bytes) throws IOException
+    {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try
+        {
+            out.write(bytes);
+            out.getChannel().force(true);
+        }
+        finally
+        {
+            out.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+
+    /**
+     * Reports a failed write once, so that later checkpoints are attempted again
+     * (for example after disk space has been freed).
+     */
+    private void checkFailure() throws IOException
+    {
+        IOException ex = failure.getAndSet(null);
+        if (ex != null)
+        {
+            throw new IOException("Failed to write checkpoint to " + file, ex);
+        }
+    }
+
+
+    private static void writeBytes(byte[] bytes, DataOutputStream out) throws IOException
+    {
+        if (bytes == null)
+        {
+            out.writeInt(-1);
+        }
+        else
+        {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+
+    private static byte[] readBytes(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length == -1)
+        {
+            return null;
+        }
+        if (length < 0 || length > in.available())
+        {
+            throw new IOException("Corrupt checkpoint (invalid length: " + length + ").");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+
+    /**
+     * Reads the number of items that follow and checks that the rest of the checkpoint
+     * is long enough to hold them.
+     * @param minimumItemSize The smallest number of bytes that each item occupies.
+     */
+    private static int readCount(DataInputStream in, int minimumItemSize) throws IOException
+    {
+        int count = in.readInt();
+        if (count < 0 || count > in.available() / minimumItemSize)
+        {
+            throw new IOException("Corrupt checkpoint (invalid count: " + count + ").");
+        }
+        return count;
+    }
+}
@@ -0,0 +1,223 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * <p>A message exchanged between processes, for example between an island coordinator and
+ * its workers.  On the wire, each frame is laid out as follows:</p>
+ * <pre>
+ * int    length of the rest of the frame
+ * byte   message type
+ * byte   flags (bit 0 set if the payload is deflated)
+ * int    uncompressed payload length
+ * byte[] payload
+ * </pre>
+ * <p>Payloads larger than {@link #COMPRESSION_THRESHOLD} bytes are compressed if that makes
+ * them smaller.  The meaning of the type and the payload is up to the protocol that uses
+ * the frames.</p>
+ * @author Daniel Dyer
+ */
+public final class Frame
+{
+    /**
+     * Payloads larger than this many bytes are candidates for compression.
+     */
+    public static final int COMPRESSION_THRESHOLD = 1024;
+
+    private static final byte DEFLATED = 1;
+    private static final int MAX_FRAME_SIZE = 1 << 28;
+
+    private final byte type;
+    private final byte[] payload;
+
+
+    /**
+     * @param type The message type.
+     * @param payload The uncompressed content of the message.
+     */
+    public Frame(byte type, byte[] payload)
+    {
+        this.type = type;
+        this.payload = payload;
+    }
+
+
+    /**
+     * @return The message type.
+     */
+    public byte getType()
+    {
+        return type;
+    }
+
+
+    /**
+     * @return The size of the uncompressed payload in bytes.
+     */
+    public int getSize()
+    {
+        return payload.length;
+    }
+
+
+    /**
+     * @return A stream from which the uncompressed payload can be read.
+     */
+    public DataInputStream getPayload()
+    {
+        return new DataInputStream(new ByteArrayInputStream(payload));
+    }
+
+
+    /**
+     * Writes this frame.  The stream is not flushed, so several frames can be sent together.
+     * @param out The destination of the frame.
+     * @throws IOException If the frame cannot be written.
+     */
+    public void write(DataOutputStream out) throws IOException
+    {
+        byte flags = 0;
+        byte[] data = payload;
+        if (payload.length > COMPRESSION_THRESHOLD)
+        {
+            byte[] compressed = deflate(payload);
+            if (compressed.length < payload.length)
+            {
+                flags = DEFLATED;
+                data = compressed;
+            }
+        }
+        out.writeInt(data.length + 6);
+        out.writeByte(type);
+        out.writeByte(flags);
+        out.writeInt(payload.length);
+        out.write(data);
+    }
+
+
+    /**
+     * Reads a frame, blocking until it has arrived.
+     * @param in The source of the frame.
+     * @return The frame, with its payload decompressed.
+     * @throws IOException If the stream ends or does not contain a valid frame.
+     */
+    public static Frame read(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 6 || length > MAX_FRAME_SIZE)
+        {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        byte type = in.readByte();
+        byte flags = in.readByte();
+        int payloadLength = in.readInt();
+        if (payloadLength < 0 || payloadLength > MAX_FRAME_SIZE)
+        {
+            throw new IOException("Invalid payload length: " + payloadLength);
+        }
+        byte[] data = new byte[length - 6];
+        in.readFully(data);
+        byte[] payload = (flags & DEFLATED) != 0 ? inflate(data, payloadLength) : data;
+        return new Frame(type, payload);
+    }
+
+
+    private static byte[] deflate(byte[] data)
+    {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try
+        {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 2);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished())
+            {
+                buffer.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return buffer.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+
+    private static byte[] inflate(byte[] data, int length) throws IOException
+    {
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(data);
+            byte[] payload = new byte[length];
+            int offset = 0;
+            while (offset < length && !inflater.finished())
+            {
+                int count = inflater.inflate(payload, offset, length - offset);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    break;
+                }
+                offset += count;
+            }
+            if (offset != length)
+            {
+                throw new IOException("Truncated compressed frame.");
+            }
+            return payload;
+        }
+        catch (DataFormatException ex)
+        {
+            throw new IOException("Corrupt compressed frame.", ex);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+
+    /**
+     * Builds the payload of a frame.
+     */
+    public static final class Builder extends DataOutputStream
+    {
+        public Builder()
+        {
+            super(new ByteArrayOutputStream());
+        }
+
+
+        /**
+         * @param type The message type.
+         * @return A frame containing everything written to this builder so far.
+         */
+        public Frame toFrame(byte type)
+        {
+            return new Frame(type, ((ByteArrayOutputStream) out).toByteArray());
+        }
+    }
+}
@@ -0,0 +1,298 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import org.uncommons.watchmaker.framework.EvolutionObserver;
+import org.uncommons.watchmaker.framework.PopulationData;
+
+/**
+ * <p>An {@link EvolutionObserver} that records the statistics and fittest candidate of
+ * every generation in a compact binary journal, for analysis after the evolution has
+ * finished (see {@link GenerationJournalReader}).</p>
+ * <p>The journal is a directory of memory-mapped segment files.  Statistics are written as
+ * fixed-size records to "records" segments and the encoded fittest candidates are appended
+ * to "genomes" segments.  When a segment is full, a new one is started, so the journal can
+ * grow without limit while only the current segments are mapped.  Recording a generation
+ * involves no I/O system calls, just copying bytes into mapped memory.  Each record is
+ * marked as complete only after it has been fully written, so if the process crashes the
+ * journal is still readable up to the last complete generation.</p>
+ * <p>If the directory already contains a journal, new generations are appended to it
+ * (for example when an evolution is resumed from a checkpoint).</p>
+ * @param <T> The type of entity that exists in the evolving population.
+ * @author Daniel Dyer
+ */
+public class GenerationJournal<T> implements EvolutionObserver<T>, Closeable
+{
+    /**
+     * The default number of generations recorded in each records segment.
+     */
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 16;
+
+    /**
+     * The default maximum size (in bytes) of each genomes segment.
+     */
+    public static final int DEFAULT_GENOME_SEGMENT_SIZE = 1 << 26;
+
+    // Layout of each fixed-size record.
+    static final int RECORD_SIZE = 64;
+    static final int GENERATION_OFFSET = 0;
+    static final int POPULATION_SIZE_OFFSET = 4;
+    static final int ELAPSED_TIME_OFFSET = 8;
+    static final int BEST_FITNESS_OFFSET = 16;
+    static final int MEAN_FITNESS_OFFSET = 24;
+    static final int STANDARD_DEVIATION_OFFSET = 32;
+    static final int ELITE_COUNT_OFFSET = 40;
+    static final int GENOME_SEGMENT_OFFSET = 44;
+    static final int GENOME_POSITION_OFFSET = 48;
+    static final int GENOME_LENGTH_OFFSET = 52;
+    static final int FLAGS_OFFSET = 56;
+
+    static final int NATURAL_FLAG = 1;
+    static final int COMPLETE_FLAG = 1 << 31;
+
+    private final File directory;
+    private final CandidateCodec<T> codec;
+    private final int recordsPerSegment;
+    private final int genomeSegmentSize;
+    private final GenomeBuffer genomeBuffer = new GenomeBuffer();
+    private final DataOutputStream genomeOutput = new DataOutputStream(genomeBuffer);
+
+    private MappedByteBuffer records;
+    private int recordSegment;
+    private int recordIndex;
+    private MappedByteBuffer genomes;
+    private int genomeSegment;
+    private int genomePosition;
+
+
+    /**
+     * Creates a journal with the default segment sizes.
+     * @param directory The directory that contains the journal.  It is created if it does
+     * not exist.
+     * @param codec Converts the fittest candidates to bytes.
+     * @throws IOException If the journal cannot be opened.
+     */
+    public GenerationJournal(File directory, CandidateCodec<T> codec) throws IOException
+    {
+        this(directory, codec, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_GENOME_SEGMENT_SIZE);
+    }
+
+
+    /**
+     * @param directory The directory that contains the journal.  It is created if it does
+     * not exist.
+     * @param codec Converts the fittest candidates to bytes.
+     * @param recordsPerSegment The number of generations recorded in each records segment.
+     * @param genomeSegmentSize The size (in bytes) of each genomes segment.  No encoded
+     * candidate may be larger than this.
+     * @throws IOException If the journal cannot be opened.
+     */
+    public GenerationJournal(File directory,
+                             CandidateCodec<T> codec,
+                             int recordsPerSegment,
+                             int genomeSegmentSize) throws IOException
+    {
+        if (recordsPerSegment <= 0 || genomeSegmentSize <= 0)
+        {
+            throw new IllegalArgumentException("Segment sizes must be positive.");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Cannot create journal directory " + directory);
+        }
+        this.directory = directory;
+        this.codec = codec;
+        this.recordsPerSegment = recordsPerSegment;
+        this.genomeSegmentSize = genomeSegmentSize;
+        openForAppend();
+    }
+
+
+    /**
+     * Records the statistics and fittest candidate of a generation.
+     * @param data Statistics about the state of the current generation.
+     */
+    public synchronized void populationUpdate(PopulationData<? extends T> data)
+    {
+        if (records == null)
+        {
+            throw new IllegalStateException("Journal is closed.");
+        }
+        try
+        {
+            genomeBuffer.reset();
+            codec.write(data.getBestCandidate(), genomeOutput);
+            int length = genomeBuffer.size();
+            if (length > genomeSegmentSize)
+            {
+                throw new IllegalArgumentException("Encoded candidate is larger than a genome segment.");
+            }
+            if (genomePosition + length > genomeSegmentSize)
+            {
+                genomes = map(segmentFile("genomes", ++genomeSegment), genomeSegmentSize);
+                genomePosition = 0;
+            }
+            genomes.position(genomePosition);
+            genomes.put(genomeBuffer.getBuffer(), 0, length);
+
+            if (recordIndex == recordsPerSegment)
+            {
+                records = map(segmentFile("records", ++recordSegment), recordsPerSegment * RECORD_SIZE);
+                recordIndex = 0;
+            }
+            int base = recordIndex * RECORD_SIZE;
+            records.putInt(base + GENERATION_OFFSET, data.getGenerationNumber());
+            records.putInt(base + POPULATION_SIZE_OFFSET, data.getPopulationSize());
+            records.putLong(base + ELAPSED_TIME_OFFSET, data.getElapsedTime());
+            records.putDouble(base + BEST_FITNESS_OFFSET, data.getBestCandidateFitness());
+            records.putDouble(base + MEAN_FITNESS_OFFSET, data.getMeanFitness());
+            records.putDouble(base + STANDARD_DEVIATION_OFFSET, data.getFitnessStandardDeviation());
+            records.putInt(base + ELITE_COUNT_OFFSET, data.getEliteCount());
+            records.putInt(base + GENOME_SEGMENT_OFFSET, genomeSegment);
+            records.putInt(base + GENOME_POSITION_OFFSET, genomePosition);
+            records.putInt(base + GENOME_LENGTH_OFFSET, length);
+            // Written last so that readers never see a partial record.
+            records.putInt(base + FLAGS_OFFSET, COMPLETE_FLAG | (data.isNaturalFitness() ? NATURAL_FLAG : 0));
+            ++recordIndex;
+            genomePosition += length;
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException("Failed to write to journal.", ex);
+        }
+    }
+
+
+    /**
+     * Writes any recorded generations that have not yet been written from memory to disk.
+     * This is not necessary for the journal to be read by other processes, only to protect
+     * against losing recent generations if the operating system crashes.
+     */
+    public synchronized void flush()
+    {
+        if (records != null)
+        {
+            records.force();
+            genomes.force();
+        }
+    }
+
+
+    /**
+     * Flushes the journal.  No more generations can be recorded after it is closed.
+     */
+    public synchronized void close()
+    {
+        flush();
+        records = null;
+        genomes = null;
+    }
+
+
+    /**
+     * Finds the end of the existing journal, if there is one, so that new records are
+     * appended to it.
+     */
+    private void openForAppend() throws IOException
+    {
+        recordSegment = 0;
+        while (segmentFile("records", recordSegment + 1).exists())
+        {
+            ++recordSegment;
+        }
+        records = map(segmentFile("records", recordSegment), recordsPerSegment * RECORD_SIZE);
+        recordIndex = countCompleteRecords(records, recordsPerSegment);
+
+        genomeSegment = 0;
+        genomePosition = 0;
+        MappedByteBuffer last = records;
+        int lastIndex = recordIndex - 1;
+        if (lastIndex < 0 && recordSegment > 0)
+        {
+            last = map(segmentFile("records", recordSegment - 1), recordsPerSegment * RECORD_SIZE);
+            lastIndex = recordsPerSegment - 1;
+        }
+        if (lastIndex >= 0)
+        {
+            int base = lastIndex * RECORD_SIZE;
+            genomeSegment = last.getInt(base + GENOME_SEGMENT_OFFSET);
+            genomePosition = last.getInt(base + GENOME_POSITION_OFFSET) + last.getInt(base + GENOME_LENGTH_OFFSET);
+        }
+        genomes = map(segmentFile("genomes", genomeSegment), genomeSegmentSize);
+    }
+
+
+    private File segmentFile(String type, int segment)
+    {
+        return segmentFile(directory, type, segment);
+    }
+
+
+    static File segmentFile(File directory, String type, int segment)
+    {
+        return new File(directory, String.format(Locale.ENGLISH, "%s-%06d.wmj", type, segment));
+    }
+
+
+    /**
+     * @return The number of complete records at the start of a records segment.
+     */
+    static int countCompleteRecords(MappedByteBuffer segment, int capacity)
+    {
+        int count = 0;
+        while (count < capacity && (segment.getInt(count * RECORD_SIZE + FLAGS_OFFSET) & COMPLETE_FLAG) != 0)
+        {
+            ++count;
+        }
+        return count;
+    }
+
+
+    private static MappedByteBuffer map(File file, int size) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            // The mapping remains valid after the file is closed.
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, raf.length()));
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+
+    /**
+     * Allows encoded candidates to be copied without allocating a new array each time.
+     */
+    private static final class GenomeBuffer extends ByteArrayOutputStream
+    {
+        byte[] getBuffer()
+        {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.uncommons.watchmaker.framework.PopulationData;
+
+/**
+ * Reads a journal written by {@link GenerationJournal}.  Records can be read in any order,
+ * either by their position in the journal or by generation number.  Segments are mapped into
+ * memory rather than read, so scanning the statistics of a large journal is fast.  The fittest
+ * candidates are only decoded when they are requested.
+ * @param <T> The type of entity that exists in the evolving population.
+ * @author Daniel Dyer
+ */
+public class GenerationJournalReader<T>
+{
+    private final File directory;
+    private final CandidateCodec<T> codec;
+    private final List<MappedByteBuffer> recordSegments = new ArrayList<MappedByteBuffer>();
+    private final Map<Integer, MappedByteBuffer> genomeSegments = new HashMap<Integer, MappedByteBuffer>();
+    private final int recordsPerSegment;
+    private final int size;
+    // The index of the first record of each run of increasing generation numbers.  A new
+    // run starts wherever an evolution was resumed from an earlier generation.
+    private final List<Integer> runStarts = new ArrayList<Integer>();
+
+
+    /**
+     * Opens a journal for reading.  Generations recorded after it is opened are not visible
+     * to this reader.
+     * @param directory The directory that contains the journal.
+     * @param codec Converts the recorded candidates back from bytes.
+     * @throws IOException If the journal cannot be read.
+     */
+    public GenerationJournalReader(File directory, CandidateCodec<T> codec) throws IOException
+    {
+        this.directory = directory;
+        this.codec = codec;
+        for (int segment = 0; GenerationJournal.segmentFile(directory, "records", segment).exists(); segment++)
+        {
+            recordSegments.add(map(GenerationJournal.segmentFile(directory, "records", segment)));
+        }
+        if (recordSegments.isEmpty())
+        {
+            throw new IOException("No journal found in " + directory);
+        }
+        this.recordsPerSegment = recordSegments.get(0).capacity() / GenerationJournal.RECORD_SIZE;
+        int last = recordSegments.size() - 1;
+        this.size = last * recordsPerSegment
+                    + GenerationJournal.countCompleteRecords(recordSegments.get(last), recordsPerSegment);
+        for (int i = 0; i < size; i++)
+        {
+            if (i == 0 || getGenerationNumber(i) <= getGenerationNumber(i - 1))
+            {
+                runStarts.add(i);
+            }
+        }
+    }
+
+
+    /**
+     * @return The number of generations recorded in the journal.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * Finds a generation by its number.  Generation numbers need not be contiguous and, if
+     * an evolution was resumed from an earlier checkpoint, they start again from that
+     * checkpoint's generation.  The journal is therefore a series of runs of increasing
+     * generation numbers, found when the reader is opened, and each run is binary searched.
+     * If a generation was recorded more than once, the index of the most recent record
+     * is returned.
+     * @param generation The generation number.
+     * @return The index of the record for the generation, or -1 if it was not recorded.
+     */
+    public int indexOf(int generation)
+    {
+        for (int run = runStarts.size() - 1; run >= 0; run--)
+        {
+            int end = run == runStarts.size() - 1 ? size : runStarts.get(run + 1);
+            int index = binarySearch(generation, runStarts.get(run), end - 1);
+            if (index >= 0)
+            {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+
+    private int binarySearch(int generation, int low, int high)
+    {
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int value = getGenerationNumber(middle);
+            if (value < generation)
+            {
+                low = middle + 1;
+            }
+            else if (value > generation)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * @param index The position of a record in the journal.
+     * @return The generation number of the record.
+     */
+    public int getGenerationNumber(int index)
+    {
+        return getRecords(index).getInt(getBase(index) + GenerationJournal.GENERATION_OFFSET);
+    }
+
+
+    /**
+     * @param index The position of a record in the journal.
+     * @return The fitness of the fittest candidate of the recorded generation.
+     */
+    public double getBestCandidateFitness(int index)
+    {
+        return getRecords(index).getDouble(getBase(index) + GenerationJournal.BEST_FITNESS_OFFSET);
+    }
+
+
+    /**
+     * Reads the statistics of a generation without decoding its fittest candidate.
+     * @param index The position of a record in the journal.
+     * @return The recorded statistics.  The best candidate is null.
+     */
+    public PopulationData<T> getStatistics(int index)
+    {
+        return read(index, null);
+    }
+
+
+    /**
+     * Reads the statistics and fittest candidate of a generation.
+     * @param index The position of a record in the journal.
+     * @return The recorded statistics.
+     * @throws IOException If the candidate cannot be decoded.
+     */
+    public PopulationData<T> get(int index) throws IOException
+    {
+        ByteBuffer records = getRecords(index);
+        int base = getBase(index);
+        ByteBuffer genomes = getGenomes(records.getInt(base + GenerationJournal.GENOME_SEGMENT_OFFSET)).duplicate();
+        byte[] bytes = new byte[records.getInt(base + GenerationJournal.GENOME_LENGTH_OFFSET)];
+        genomes.position(records.getInt(base + GenerationJournal.GENOME_POSITION_OFFSET));
+        genomes.get(bytes);
+        return read(index, codec.read(new DataInputStream(new ByteArrayInputStream(bytes))));
+    }
+
+
+    private PopulationData<T> read(int index, T bestCandidate)
+    {
+        ByteBuffer records = getRecords(index);
+        int base = getBase(index);
+        return new PopulationData<T>(bestCandidate,
+                                     records.getDouble(base + GenerationJournal.BEST_FITNESS_OFFSET),
+                                     records.getDouble(base + GenerationJournal.MEAN_FITNESS_OFFSET),
+                                     records.getDouble(base + GenerationJournal.STANDARD_DEVIATION_OFFSET),
+                                     (records.getInt(base + GenerationJournal.FLAGS_OFFSET) & GenerationJournal.NATURAL_FLAG) != 0,
+                                     records.getInt(base + GenerationJournal.POPULATION_SIZE_OFFSET),
+                                     records.getInt(base + GenerationJournal.ELITE_COUNT_OFFSET),
+                                     records.getInt(base + GenerationJournal.GENERATION_OFFSET),
+                                     records.getLong(base + GenerationJournal.ELAPSED_TIME_OFFSET));
+    }
+
+
+    private ByteBuffer getRecords(int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return recordSegments.get(index / recordsPerSegment);
+    }
+
+
+    private int getBase(int index)
+    {
+        return (index % recordsPerSegment) * GenerationJournal.RECORD_SIZE;
+    }
+
+
+    private synchronized ByteBuffer getGenomes(int segment) throws IOException
+    {
+        MappedByteBuffer genomes = genomeSegments.get(segment);
+        if (genomes == null)
+        {
+            genomes = map(GenerationJournal.segmentFile(directory, "genomes", segment));
+            genomeSegments.put(segment, genomes);
+        }
+        return genomes;
+    }
+
+
+    private static MappedByteBuffer map(File file) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+}
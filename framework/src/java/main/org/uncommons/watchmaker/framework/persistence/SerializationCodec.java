@@ -0,0 +1,148 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+
+/**
+ * <p>A {@link CandidateCodec} for any serialisable candidate type, using standard Java
+ * serialisation.  Each candidate is written as a length-prefixed block, so this codec
+ * is convenient but not compact.</p>
+ * <p>Deserialising arbitrary classes from untrusted data can execute code, so when reading,
+ * this codec only loads classes that are compatible with the declared candidate type: the
+ * type, its sub-types and serialisable super-types, enums, strings, boxed primitives and
+ * other numbers, and arrays of any of these or of primitives.  Candidates whose fields refer
+ * to other classes must have those classes permitted explicitly.</p>
+ * @param <T> The type of candidate that this codec can encode.
+ * @author Daniel Dyer
+ */
+public class SerializationCodec<T extends Serializable> implements CandidateCodec<T>
+{
+    private final Class<T> type;
+    private final Class<?>[] permittedTypes;
+
+
+    /**
+     * @param type The type of candidate read by this codec.
+     * @param permittedTypes Further types (and their sub-types) that may be loaded when
+     * reading candidates, for classes that the candidate type refers to.
+     */
+    public SerializationCodec(Class<T> type, Class<?>... permittedTypes)
+    {
+        this.type = type;
+        this.permittedTypes = permittedTypes.clone();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write(T candidate, DataOutput out) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ObjectOutputStream objectStream = new ObjectOutputStream(buffer);
+        objectStream.writeObject(candidate);
+        objectStream.close();
+        out.writeInt(buffer.size());
+        out.write(buffer.toByteArray());
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public T read(DataInput in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+        {
+            throw new IOException("Invalid candidate length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        ObjectInputStream objectStream = new ObjectInputStream(new ByteArrayInputStream(bytes))
+        {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass descriptor) throws IOException,
+                                                                              ClassNotFoundException
+            {
+                Class<?> resolved = super.resolveClass(descriptor);
+                if (!isPermitted(resolved))
+                {
+                    throw new InvalidClassException(descriptor.getName(), "Not permitted in a " + type.getName() + ".");
+                }
+                return resolved;
+            }
+
+
+            @Override
+            protected Class<?> resolveProxyClass(String[] interfaces) throws IOException
+            {
+                throw new InvalidClassException("Proxy classes are not permitted in candidates.");
+            }
+        };
+        try
+        {
+            return type.cast(objectStream.readObject());
+        }
+        catch (ClassNotFoundException ex)
+        {
+            throw new IOException("Unknown candidate class.", ex);
+        }
+        catch (ClassCastException ex)
+        {
+            throw new IOException("Candidate is not a " + type.getName() + ".", ex);
+        }
+    }
+
+
+    private boolean isPermitted(Class<?> resolved)
+    {
+        Class<?> element = resolved;
+        while (element.isArray())
+        {
+            element = element.getComponentType();
+        }
+        if (element.isPrimitive()
+            || type.isAssignableFrom(element)
+            || element.isAssignableFrom(type) // Serialisable super-classes of the candidate type.
+            || Enum.class.isAssignableFrom(element)
+            || Number.class.isAssignableFrom(element)
+            || element == String.class
+            || element == Boolean.class
+            || element == Character.class)
+        {
+            return true;
+        }
+        for (Class<?> permitted : permittedTypes)
+        {
+            if (permitted.isAssignableFrom(element))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -15,12 +15,13 @@
 //=============================================================================
 package org.uncommons.watchmaker.framework.selection;
 
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.EvolutionUtils;
+import org.uncommons.watchmaker.framework.PopulationView;
 import org.uncommons.watchmaker.framework.SelectionStrategy;
+import org.uncommons.watchmaker.framework.ViewSelectionStrategy;
 
 /**
  * <p>A selection strategy that is similar to fitness-proportionate selection
@@ -34,7 +35,7 @@ import org.uncommons.watchmaker.framework.SelectionStrategy;
  * drive the delegate selector.</p>
  * @author Daniel Dyer
  */
-public class RankSelection implements SelectionStrategy<Object>
+public class RankSelection implements ViewSelectionStrategy<Object>
 {
     private final SelectionStrategy<Object> delegate;
 
@@ -69,17 +70,24 @@ public class RankSelection implements SelectionStrategy<Object>
                               int selectionSize,
                               Random rng)
     {
-        List<EvaluatedCandidate<S>> rankedPopulation = new ArrayList<EvaluatedCandidate<S>>(population.size());
-        Iterator<EvaluatedCandidate<S>> iterator = population.iterator();
-        int index = -1;
-        while (iterator.hasNext())
+        return select(new PopulationView<S>(population), naturalFitnessScores, selectionSize, rng);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public <S> List<S> select(PopulationView<S> population,
+                              boolean naturalFitnessScores,
+                              int selectionSize,
+                              Random rng)
+    {
+        double[] rankedScores = new double[population.size()];
+        for (int i = 0; i < rankedScores.length; i++)
         {
-            S candidate = iterator.next().getCandidate();
-            rankedPopulation.add(new EvaluatedCandidate<S>(candidate,
-                                                           mapRankToScore(++index,
-                                                                          population.size())));
+            rankedScores[i] = mapRankToScore(i, rankedScores.length);
         }
-        return delegate.select(rankedPopulation, true, selectionSize, rng);
+        return EvolutionUtils.select(delegate, population.withFitness(rankedScores), true, selectionSize, rng);
     }
 
 
@@ -20,7 +20,9 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import org.uncommons.watchmaker.framework.EvaluatedCandidate;
-import org.uncommons.watchmaker.framework.SelectionStrategy;
+import org.uncommons.watchmaker.framework.PopulationView;
+import org.uncommons.watchmaker.framework.SortRequirement;
+import org.uncommons.watchmaker.framework.ViewSelectionStrategy;
 
 /**
  * <p>Implements selection of <i>n</i> candidates from a population by selecting
@@ -37,7 +39,7 @@ import org.uncommons.watchmaker.framework.SelectionStrategy;
  *
  * @author Daniel Dyer
  */
-public class RouletteWheelSelection implements SelectionStrategy<Object>
+public class RouletteWheelSelection implements ViewSelectionStrategy<Object>, SortRequirement
 {
     /**
      * Selects the required number of candidates from the population with
@@ -56,6 +58,18 @@ public class RouletteWheelSelection implements SelectionStrategy<Object>
                               boolean naturalFitnessScores,
                               int selectionSize,
                               Random rng)
+    {
+        return select(new PopulationView<S>(population), naturalFitnessScores, selectionSize, rng);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public <S> List<S> select(PopulationView<S> population,
+                              boolean naturalFitnessScores,
+                              int selectionSize,
+                              Random rng)
     {
         // Record the cumulative fitness scores.  It doesn't matter whether the
         // population is sorted or not.  We will use these cumulative scores to work out
@@ -65,11 +79,11 @@ public class RouletteWheelSelection implements SelectionStrategy<Object>
         // proportional to the probability of the corresponding candidate in the population
         // being selected.
         double[] cumulativeFitnesses = new double[population.size()];
-        cumulativeFitnesses[0] = getAdjustedFitness(population.get(0).getFitness(),
+        cumulativeFitnesses[0] = getAdjustedFitness(population.getFitness(0),
                                                     naturalFitnessScores);
         for (int i = 1; i < population.size(); i++)
         {
-            double fitness = getAdjustedFitness(population.get(i).getFitness(),
+            double fitness = getAdjustedFitness(population.getFitness(i),
                                                 naturalFitnessScores);
             cumulativeFitnesses[i] = cumulativeFitnesses[i - 1] + fitness;
         }
@@ -84,7 +98,7 @@ public class RouletteWheelSelection implements SelectionStrategy<Object>
                 // Convert negative insertion point to array index.
                 index = Math.abs(index + 1);
             }
-            selection.add(population.get(index).getCandidate());
+            selection.add(population.getCandidate(index));
         }
         return selection;
     }
@@ -107,6 +121,16 @@ public class RouletteWheelSelection implements SelectionStrategy<Object>
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean requiresSortedPopulation()
+    {
+        // The wheel is built from cumulative scores in population order, so any order will do.
+        return false;
+    }
+
+
     /**
      * {@inheritDoc}
      */
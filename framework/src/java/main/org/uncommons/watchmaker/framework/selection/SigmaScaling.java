@@ -15,12 +15,15 @@
 //=============================================================================
 package org.uncommons.watchmaker.framework.selection;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import org.uncommons.maths.statistics.DataSet;
 import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.EvolutionUtils;
+import org.uncommons.watchmaker.framework.PopulationView;
 import org.uncommons.watchmaker.framework.SelectionStrategy;
+import org.uncommons.watchmaker.framework.SortRequirement;
+import org.uncommons.watchmaker.framework.ViewSelectionStrategy;
 
 /**
  * An alternative to straightforward fitness-proportionate selection such as that offered
@@ -32,7 +35,7 @@ import org.uncommons.watchmaker.framework.SelectionStrategy;
  * population where the rate of improvement has slowed.
  * @author Daniel Dyer
  */
-public class SigmaScaling implements SelectionStrategy<Object>
+public class SigmaScaling implements ViewSelectionStrategy<Object>, SortRequirement
 {
     private final SelectionStrategy<Object> delegate;
 
@@ -64,23 +67,37 @@ public class SigmaScaling implements SelectionStrategy<Object>
                               boolean naturalFitnessScores,
                               int selectionSize,
                               Random rng)
+    {
+        return select(new PopulationView<S>(population), naturalFitnessScores, selectionSize, rng);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public <S> List<S> select(PopulationView<S> population,
+                              boolean naturalFitnessScores,
+                              int selectionSize,
+                              Random rng)
     {
         DataSet statistics = new DataSet(population.size());
-        for (EvaluatedCandidate<S> candidate : population)
+        for (int i = 0; i < population.size(); i++)
         {
-            statistics.addValue(candidate.getFitness());
+            statistics.addValue(population.getFitness(i));
         }
 
-        List<EvaluatedCandidate<S>> scaledPopulation = new ArrayList<EvaluatedCandidate<S>>(population.size());
-        for (EvaluatedCandidate<S> candidate : population)
+        double mean = statistics.getArithmeticMean();
+        double standardDeviation = statistics.getStandardDeviation();
+        double[] scaledScores = new double[population.size()];
+        for (int i = 0; i < scaledScores.length; i++)
         {
-            double scaledFitness = getSigmaScaledFitness(candidate.getFitness(),
-                                                         statistics.getArithmeticMean(),
-                                                         statistics.getStandardDeviation());
-            scaledPopulation.add(new EvaluatedCandidate<S>(candidate.getCandidate(),
-                                                           scaledFitness));
+            scaledScores[i] = getSigmaScaledFitness(population.getFitness(i), mean, standardDeviation);
         }
-        return delegate.select(scaledPopulation, naturalFitnessScores, selectionSize, rng);
+        return EvolutionUtils.select(delegate,
+                                     population.withFitness(scaledScores),
+                                     naturalFitnessScores,
+                                     selectionSize,
+                                     rng);
     }
 
 
@@ -103,6 +120,16 @@ public class SigmaScaling implements SelectionStrategy<Object>
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean requiresSortedPopulation()
+    {
+        // Scaling preserves the order of the population, so it is up to the delegate.
+        return EvolutionUtils.requiresSortedPopulation(delegate);
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -19,7 +19,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import org.uncommons.watchmaker.framework.EvaluatedCandidate;
-import org.uncommons.watchmaker.framework.SelectionStrategy;
+import org.uncommons.watchmaker.framework.PopulationView;
+import org.uncommons.watchmaker.framework.SortRequirement;
+import org.uncommons.watchmaker.framework.ViewSelectionStrategy;
 
 /**
  * An alternative to {@link RouletteWheelSelection}
@@ -27,18 +29,27 @@ import org.uncommons.watchmaker.framework.SelectionStrategy;
  * each candidate is consistent with its expected frequency of selection.
  * @author Daniel Dyer
  */
-public class StochasticUniversalSampling implements SelectionStrategy<Object>
+public class StochasticUniversalSampling implements ViewSelectionStrategy<Object>, SortRequirement
 {
     public <S> List<S> select(List<EvaluatedCandidate<S>> population,
                               boolean naturalFitnessScores,
                               int selectionSize,
                               Random rng)
+    {
+        return select(new PopulationView<S>(population), naturalFitnessScores, selectionSize, rng);
+    }
+
+
+    public <S> List<S> select(PopulationView<S> population,
+                              boolean naturalFitnessScores,
+                              int selectionSize,
+                              Random rng)
     {
         // Calculate the sum of all fitness values.
         double aggregateFitness = 0;
-        for (EvaluatedCandidate<S> candidate : population)
+        for (int i = 0; i < population.size(); i++)
         {
-            aggregateFitness += getAdjustedFitness(candidate.getFitness(),
+            aggregateFitness += getAdjustedFitness(population.getFitness(i),
                                                    naturalFitnessScores);
         }
 
@@ -47,12 +58,12 @@ public class StochasticUniversalSampling implements SelectionStrategy<Object>
         double startOffset = rng.nextDouble();
         double cumulativeExpectation = 0;
         int index = 0;
-        for (EvaluatedCandidate<S> candidate : population)
+        for (int i = 0; i < population.size(); i++)
         {
             // Calculate the number of times this candidate is expected to
             // be selected on average and add it to the cumulative total
             // of expected frequencies.
-            cumulativeExpectation += getAdjustedFitness(candidate.getFitness(),
+            cumulativeExpectation += getAdjustedFitness(population.getFitness(i),
                                                         naturalFitnessScores) / aggregateFitness * selectionSize;
 
             // If f is the expected frequency, the candidate will be selected at
@@ -60,7 +71,7 @@ public class StochasticUniversalSampling implements SelectionStrategy<Object>
             // actual count depends on the random starting offset.
             while (cumulativeExpectation > startOffset + index)
             {
-                selection.add(candidate.getCandidate());
+                selection.add(population.getCandidate(i));
                 index++;
             }
         }
@@ -84,6 +95,16 @@ public class StochasticUniversalSampling implements SelectionStrategy<Object>
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean requiresSortedPopulation()
+    {
+        // The wheel is built from cumulative scores in population order, so any order will do.
+        return false;
+    }
+
+
     /**
      * {@inheritDoc}
      */
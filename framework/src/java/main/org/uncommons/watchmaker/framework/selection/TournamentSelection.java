@@ -22,7 +22,9 @@ import org.uncommons.maths.number.ConstantGenerator;
 import org.uncommons.maths.number.NumberGenerator;
 import org.uncommons.maths.random.Probability;
 import org.uncommons.watchmaker.framework.EvaluatedCandidate;
-import org.uncommons.watchmaker.framework.SelectionStrategy;
+import org.uncommons.watchmaker.framework.PopulationView;
+import org.uncommons.watchmaker.framework.SortRequirement;
+import org.uncommons.watchmaker.framework.ViewSelectionStrategy;
 
 /**
  * Selection strategy that picks a pair of candidates at random and then
@@ -31,7 +33,7 @@ import org.uncommons.watchmaker.framework.SelectionStrategy;
  * the less fit candidate being selected is 1 - p).
  * @author Daniel Dyer
  */
-public class TournamentSelection implements SelectionStrategy<Object>
+public class TournamentSelection implements ViewSelectionStrategy<Object>, SortRequirement
 {
     private final NumberGenerator<Probability> selectionProbability;
 
@@ -75,35 +77,54 @@ public class TournamentSelection implements SelectionStrategy<Object>
                               boolean naturalFitnessScores,
                               int selectionSize,
                               Random rng)
+    {
+        return select(new PopulationView<S>(population), naturalFitnessScores, selectionSize, rng);
+    }
+
+
+    public <S> List<S> select(PopulationView<S> population,
+                              boolean naturalFitnessScores,
+                              int selectionSize,
+                              Random rng)
     {
         List<S> selection = new ArrayList<S>(selectionSize);
         for (int i = 0; i < selectionSize; i++)
         {
             // Pick two candidates at random.
-            EvaluatedCandidate<S> candidate1 = population.get(rng.nextInt(population.size()));
-            EvaluatedCandidate<S> candidate2 = population.get(rng.nextInt(population.size()));
+            int candidate1 = rng.nextInt(population.size());
+            int candidate2 = rng.nextInt(population.size());
 
             // Use a random value to decide wether to select the fitter individual or the weaker one.
             boolean selectFitter = selectionProbability.nextValue().nextEvent(rng);
             if (selectFitter == naturalFitnessScores)
             {
                 // Select the fitter candidate.
-                selection.add(candidate2.getFitness() > candidate1.getFitness()
-                              ? candidate2.getCandidate()
-                              : candidate1.getCandidate());
+                selection.add(population.getFitness(candidate2) > population.getFitness(candidate1)
+                              ? population.getCandidate(candidate2)
+                              : population.getCandidate(candidate1));
             }
             else
             {
                 // Select the less fit candidate.
-                selection.add(candidate2.getFitness() > candidate1.getFitness()
-                              ? candidate1.getCandidate()
-                              : candidate2.getCandidate());
+                selection.add(population.getFitness(candidate2) > population.getFitness(candidate1)
+                              ? population.getCandidate(candidate1)
+                              : population.getCandidate(candidate2));
             }
         }
         return selection;
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean requiresSortedPopulation()
+    {
+        // Tournament contestants are chosen at random.
+        return false;
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -22,7 +22,8 @@ import java.util.Random;
 import org.uncommons.maths.number.ConstantGenerator;
 import org.uncommons.maths.number.NumberGenerator;
 import org.uncommons.watchmaker.framework.EvaluatedCandidate;
-import org.uncommons.watchmaker.framework.SelectionStrategy;
+import org.uncommons.watchmaker.framework.PopulationView;
+import org.uncommons.watchmaker.framework.ViewSelectionStrategy;
 
 /**
  * Implements selection of <i>n</i> candidates from a population by simply
@@ -30,7 +31,7 @@ import org.uncommons.watchmaker.framework.SelectionStrategy;
  * rest are discarded).  A candidate is never selected more than once.
  * @author Daniel Dyer
  */
-public class TruncationSelection implements SelectionStrategy<Object>
+public class TruncationSelection implements ViewSelectionStrategy<Object>
 {
     private static final DecimalFormat PERCENT_FORMAT = new DecimalFormat("#0.###%");
     private final NumberGenerator<Double> selectionRatio;
@@ -86,26 +87,45 @@ public class TruncationSelection implements SelectionStrategy<Object>
                               int selectionSize,
                               Random rng)
     {
-        List<S> selection = new ArrayList<S>(selectionSize);
+        return select(new PopulationView<S>(population), naturalFitnessScores, selectionSize, rng);
+    }
 
-        double ratio = selectionRatio.nextValue();
-        assert ratio < 1 && ratio > 0 : "Selection ratio out-of-range: " + ratio;
-        
-        int eligibleCount = (int) Math.round(ratio * population.size());
-        eligibleCount = eligibleCount > selectionSize ? selectionSize : eligibleCount;
 
+    /**
+     * {@inheritDoc}
+     */
+    public <S> List<S> select(PopulationView<S> population,
+                              boolean naturalFitnessScores,
+                              int selectionSize,
+                              Random rng)
+    {
+        List<S> selection = new ArrayList<S>(selectionSize);
+        int eligibleCount = getEligibleCount(population.size(), selectionSize);
         do
         {
             int count = Math.min(eligibleCount, selectionSize - selection.size());
             for (int i = 0; i < count; i++)
             {
-                selection.add(population.get(i).getCandidate());
+                selection.add(population.getCandidate(i));
             }
         } while (selection.size() < selectionSize);
         return selection;
     }
 
 
+    /**
+     * @return How many of the fittest candidates are eligible for selection.
+     */
+    private int getEligibleCount(int populationSize, int selectionSize)
+    {
+        double ratio = selectionRatio.nextValue();
+        assert ratio < 1 && ratio > 0 : "Selection ratio out-of-range: " + ratio;
+
+        int eligibleCount = (int) Math.round(ratio * populationSize);
+        return eligibleCount > selectionSize ? selectionSize : eligibleCount;
+    }
+
+
     /**
      * {@inheritDoc}
      */
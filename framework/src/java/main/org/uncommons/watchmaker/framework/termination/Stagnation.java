@@ -15,7 +15,11 @@
 //=============================================================================
 package org.uncommons.watchmaker.framework.termination;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import org.uncommons.watchmaker.framework.PopulationData;
+import org.uncommons.watchmaker.framework.StatefulTerminationCondition;
 import org.uncommons.watchmaker.framework.TerminationCondition;
 
 /**
@@ -23,7 +27,7 @@ import org.uncommons.watchmaker.framework.TerminationCondition;
  * is observed within a specified number of generations.
  * @author Daniel Dyer
  */
-public class Stagnation implements TerminationCondition
+public class Stagnation implements StatefulTerminationCondition
 {
     private final int generationLimit;
     private final boolean naturalFitness;
@@ -84,6 +88,30 @@ public class Stagnation implements TerminationCondition
     }
 
 
+    /**
+     * Saves the best fitness seen so far and the generation in which it was seen.
+     * @param out The destination of the state.
+     * @throws IOException If the state cannot be written.
+     */
+    public void writeState(DataOutput out) throws IOException
+    {
+        out.writeDouble(bestFitness);
+        out.writeInt(fittestGeneration);
+    }
+
+
+    /**
+     * Restores the best fitness seen so far and the generation in which it was seen.
+     * @param in The source of the state.
+     * @throws IOException If the state cannot be read.
+     */
+    public void readState(DataInput in) throws IOException
+    {
+        bestFitness = in.readDouble();
+        fittestGeneration = in.readInt();
+    }
+
+
     /**
      * Determines the fitness of the current population (either best fitness or
      * mean fitness depending on how the termination condition is configured).
@@ -0,0 +1,220 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link AsynchronousEvolutionObserver} class.
+ * @author Daniel Dyer
+ */
+public class AsynchronousEvolutionObserverTest
+{
+    @Test
+    public void testDeliversAllUpdatesInOrder() throws InterruptedException
+    {
+        RecordingObserver recorder = new RecordingObserver(null);
+        AsynchronousEvolutionObserver<Object> observer = new AsynchronousEvolutionObserver<Object>(recorder, 100);
+        for (int i = 0; i < 50; i++)
+        {
+            observer.populationUpdate(createData(i));
+        }
+        observer.flush();
+        List<Integer> generations = recorder.getGenerations();
+        assert generations.size() == 50 : "Wrong number of updates: " + generations.size();
+        for (int i = 0; i < 50; i++)
+        {
+            assert generations.get(i) == i : "Updates delivered out of order: " + generations;
+        }
+        assert observer.getDroppedCount() == 0 : "No updates should be dropped.";
+        observer.shutdown();
+    }
+
+
+    /**
+     * A blocked observer must not block the thread that publishes updates.  Updates that
+     * the observer can't keep up with are coalesced so that it sees the latest one.
+     */
+    @Test(timeOut = 10000)
+    public void testSlowObserverDoesNotBlock() throws InterruptedException
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingObserver recorder = new RecordingObserver(release);
+        AsynchronousEvolutionObserver<Object> observer = AsynchronousEvolutionObserver.latestOnly(recorder);
+        observer.populationUpdate(createData(0));
+        recorder.awaitFirstUpdate();
+        for (int i = 1; i < 100; i++)
+        {
+            observer.populationUpdate(createData(i)); // Would hang here if dispatch was synchronous.
+        }
+        release.countDown();
+        observer.flush();
+        List<Integer> generations = recorder.getGenerations();
+        assert generations.equals(Arrays.asList(0, 99)) : "Wrong updates delivered: " + generations;
+        assert observer.getDroppedCount() == 98 : "Wrong dropped count: " + observer.getDroppedCount();
+        observer.shutdown();
+    }
+
+
+    @Test
+    public void testEveryNthGeneration() throws InterruptedException
+    {
+        RecordingObserver recorder = new RecordingObserver(null);
+        AsynchronousEvolutionObserver<Object> observer = AsynchronousEvolutionObserver.everyNthGeneration(recorder, 5);
+        for (int i = 0; i < 12; i++)
+        {
+            observer.populationUpdate(createData(i));
+        }
+        observer.flush();
+        List<Integer> generations = recorder.getGenerations();
+        assert generations.equals(Arrays.asList(0, 5, 10)) : "Wrong updates delivered: " + generations;
+        observer.shutdown();
+    }
+
+
+    /**
+     * Updates that arrive during the minimum interval should be coalesced, but the last
+     * one must still be delivered.
+     */
+    @Test(timeOut = 10000)
+    public void testThrottling() throws InterruptedException
+    {
+        RecordingObserver recorder = new RecordingObserver(null);
+        AsynchronousEvolutionObserver<Object> observer = AsynchronousEvolutionObserver.throttled(recorder,
+                                                                                                 500,
+                                                                                                 TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 20; i++)
+        {
+            observer.populationUpdate(createData(i));
+        }
+        observer.flush();
+        List<Integer> generations = recorder.getGenerations();
+        assert generations.size() <= 2 : "Too many updates delivered: " + generations;
+        assert generations.get(generations.size() - 1) == 19 : "Last update not delivered: " + generations;
+        observer.shutdown();
+    }
+
+
+    @Test
+    public void testShutdown() throws InterruptedException
+    {
+        RecordingObserver recorder = new RecordingObserver(null);
+        AsynchronousEvolutionObserver<Object> observer = new AsynchronousEvolutionObserver<Object>(recorder, 10);
+        observer.populationUpdate(createData(0));
+        observer.shutdown();
+        observer.populationUpdate(createData(1)); // Should be ignored.
+        observer.flush();
+        List<Integer> generations = recorder.getGenerations();
+        assert generations.equals(Collections.singletonList(0)) : "Wrong updates delivered: " + generations;
+    }
+
+
+    /**
+     * If the dispatch thread is killed by an error, flushing should fail rather than
+     * waiting forever for updates that will never be delivered.
+     */
+    @Test(timeOut = 10000)
+    public void testDispatcherDeath() throws InterruptedException
+    {
+        final AssertionError error = new AssertionError("Dispatcher killed.");
+        AsynchronousEvolutionObserver<Object> observer = new AsynchronousEvolutionObserver<Object>(
+            new EvolutionObserver<Object>()
+            {
+                public void populationUpdate(PopulationData<? extends Object> data)
+                {
+                    throw error;
+                }
+            },
+            10);
+        for (int i = 0; i < 5; i++)
+        {
+            observer.populationUpdate(createData(i));
+        }
+        try
+        {
+            observer.flush();
+            assert false : "Flush should fail after the dispatch thread has died.";
+        }
+        catch (IllegalStateException ex)
+        {
+            assert ex.getCause() == error : "Wrong cause: " + ex.getCause();
+        }
+        observer.shutdown();
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroBufferSize()
+    {
+        new AsynchronousEvolutionObserver<Object>(new RecordingObserver(null), 0);
+    }
+
+
+    private static PopulationData<Object> createData(int generation)
+    {
+        return new PopulationData<Object>(new Object(), generation, new double[]{generation}, true, 0, generation, 0);
+    }
+
+
+    /**
+     * Records the generation numbers of the updates that it receives, optionally
+     * blocking each delivery until released.
+     */
+    private static final class RecordingObserver implements EvolutionObserver<Object>
+    {
+        private final List<Integer> generations = Collections.synchronizedList(new ArrayList<Integer>());
+        private final CountDownLatch firstUpdate = new CountDownLatch(1);
+        private final CountDownLatch release;
+
+        RecordingObserver(CountDownLatch release)
+        {
+            this.release = release;
+        }
+
+        public void populationUpdate(PopulationData<?> data)
+        {
+            generations.add(data.getGenerationNumber());
+            firstUpdate.countDown();
+            if (release != null)
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        void awaitFirstUpdate() throws InterruptedException
+        {
+            firstUpdate.await();
+        }
+
+        List<Integer> getGenerations()
+        {
+            return new ArrayList<Integer>(generations);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.annotations.Test;
+import org.uncommons.maths.random.Probability;
+import org.uncommons.watchmaker.framework.evaluation.ThreadPoolEvaluationExecutor;
+import org.uncommons.watchmaker.framework.factories.StubIntegerFactory;
+import org.uncommons.watchmaker.framework.operators.IntegerAdjuster;
+import org.uncommons.watchmaker.framework.selection.TournamentSelection;
+import org.uncommons.watchmaker.framework.termination.GenerationCount;
+
+/**
+ * Unit test for the {@link AsynchronousSteadyStateEvolutionEngine} class.
+ * @author Daniel Dyer
+ */
+public class AsynchronousSteadyStateEvolutionEngineTest
+{
+    @Test
+    public void testMultiThreadedEvolution() throws Exception
+    {
+        ThreadPoolEvaluationExecutor threadPool = new ThreadPoolEvaluationExecutor(3);
+        try
+        {
+            AsynchronousSteadyStateEvolutionEngine<Integer> engine = createEngine(1, 10);
+            engine.setEvaluationExecutor(threadPool);
+            checkEvolution(engine);
+            // The workers should have been stopped, leaving the executor's threads free.
+            assert threadPool.submit(new Callable<Boolean>()
+            {
+                public Boolean call()
+                {
+                    return true;
+                }
+            }).get(5, TimeUnit.SECONDS) : "Executor threads not released.";
+        }
+        finally
+        {
+            threadPool.close();
+        }
+    }
+
+
+    @Test
+    public void testSingleThreadedEvolution()
+    {
+        AsynchronousSteadyStateEvolutionEngine<Integer> engine = createEngine(1, 10);
+        engine.setSingleThreaded(true);
+        checkEvolution(engine);
+    }
+
+
+    private void checkEvolution(AsynchronousSteadyStateEvolutionEngine<Integer> engine)
+    {
+        final AtomicInteger snapshots = new AtomicInteger(0);
+        engine.addEvolutionObserver(new EvolutionObserver<Integer>()
+        {
+            private double bestFitness = 0;
+
+            public void populationUpdate(PopulationData<? extends Integer> data)
+            {
+                // With elitism, the best candidate should never be lost.
+                assert data.getBestCandidateFitness() >= bestFitness : "Elite candidate lost.";
+                bestFitness = data.getBestCandidateFitness();
+                assert data.getGenerationNumber() == snapshots.getAndIncrement() : "Wrong snapshot number.";
+            }
+        });
+        GenerationCount condition = new GenerationCount(20);
+        List<EvaluatedCandidate<Integer>> population = engine.evolvePopulation(20,
+                                                                               2,
+                                                                               Arrays.asList(100),
+                                                                               condition);
+        assert population.size() == 20 : "Wrong population size: " + population.size();
+        assert population.get(0).getFitness() > 100 : "Population did not evolve: " + population.get(0).getFitness();
+        assert snapshots.get() == 20 : "Wrong number of snapshots: " + snapshots.get();
+        assert engine.getSatisfiedTerminationConditions().get(0) == condition : "Wrong termination condition.";
+    }
+
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testWorkerFailure()
+    {
+        final AtomicInteger evaluations = new AtomicInteger(0);
+        AsynchronousSteadyStateEvolutionEngine<Integer> engine
+            = new AsynchronousSteadyStateEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                 new IntegerAdjuster(1),
+                                                                 new FitnessEvaluator<Integer>()
+                                                                 {
+                                                                     public double getFitness(Integer candidate,
+                                                                                              List<? extends Integer> population)
+                                                                     {
+                                                                         if (evaluations.incrementAndGet() > 20)
+                                                                         {
+                                                                             throw new IllegalArgumentException("Evaluation failed.");
+                                                                         }
+                                                                         return candidate;
+                                                                     }
+
+                                                                     public boolean isNatural()
+                                                                     {
+                                                                         return true;
+                                                                     }
+                                                                 },
+                                                                 new TournamentSelection(new Probability(0.7)),
+                                                                 1,
+                                                                 true,
+                                                                 5,
+                                                                 FrameworkTestUtils.getRNG());
+        engine.evolve(10, 0, new GenerationCount(100));
+    }
+
+
+    /**
+     * A selection strategy that supports views should be given a view of each snapshot
+     * rather than the list of evaluated candidates.
+     */
+    @Test
+    public void testSelectionFromView()
+    {
+        final AtomicInteger listSelections = new AtomicInteger(0);
+        final AtomicInteger viewSelections = new AtomicInteger(0);
+        final TournamentSelection tournament = new TournamentSelection(new Probability(0.7));
+        ViewSelectionStrategy<Object> selection = new ViewSelectionStrategy<Object>()
+        {
+            public <S> List<S> select(List<EvaluatedCandidate<S>> population,
+                                      boolean naturalFitnessScores,
+                                      int selectionSize,
+                                      Random rng)
+            {
+                listSelections.incrementAndGet();
+                return tournament.select(population, naturalFitnessScores, selectionSize, rng);
+            }
+
+            public <S> List<S> select(PopulationView<S> population,
+                                      boolean naturalFitnessScores,
+                                      int selectionSize,
+                                      Random rng)
+            {
+                viewSelections.incrementAndGet();
+                return tournament.select(population, naturalFitnessScores, selectionSize, rng);
+            }
+        };
+        AsynchronousSteadyStateEvolutionEngine<Integer> engine
+            = new AsynchronousSteadyStateEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                 new IntegerAdjuster(1),
+                                                                 new IntegerEvaluator(),
+                                                                 selection,
+                                                                 1,
+                                                                 true,
+                                                                 5,
+                                                                 FrameworkTestUtils.getRNG());
+        engine.setSingleThreaded(true);
+        engine.evolve(10, 1, new GenerationCount(5));
+        assert viewSelections.get() >= 20 : "Too few selections from views: " + viewSelections.get();
+        assert listSelections.get() == 0 : "Selected from list " + listSelections.get() + " times.";
+    }
+
+
+    /**
+     * An evolution scheme that never produces any offspring must not leave the
+     * request thread waiting forever for evaluations.
+     */
+    @Test(timeOut = 10000, expectedExceptions = IllegalStateException.class)
+    public void testNoOffspringSingleThreaded()
+    {
+        AsynchronousSteadyStateEvolutionEngine<Integer> engine = createBarrenEngine();
+        engine.setSingleThreaded(true);
+        engine.evolve(10, 0, new GenerationCount(5));
+    }
+
+
+    @Test(timeOut = 10000, expectedExceptions = IllegalStateException.class)
+    public void testNoOffspringMultiThreaded()
+    {
+        ThreadPoolEvaluationExecutor threadPool = new ThreadPoolEvaluationExecutor(2);
+        try
+        {
+            AsynchronousSteadyStateEvolutionEngine<Integer> engine = createBarrenEngine();
+            engine.setEvaluationExecutor(threadPool);
+            engine.evolve(10, 0, new GenerationCount(5));
+        }
+        finally
+        {
+            threadPool.close();
+        }
+    }
+
+
+    /**
+     * Offspring are evaluated through the engine's evaluation path, so evaluations that
+     * run out of time are given the penalty score.
+     */
+    @Test(timeOut = 30000)
+    public void testEvaluationTimeout()
+    {
+        FitnessEvaluator<Integer> evaluator = new FitnessEvaluator<Integer>()
+        {
+            public double getFitness(Integer candidate, List<? extends Integer> population)
+            {
+                if (candidate % 2 != 0) // Co-operative, checks for cancellation.
+                {
+                    CancellationToken token = CancellationToken.current();
+                    while (!token.isCancelled())
+                    {
+                        Thread.yield();
+                    }
+                }
+                return Math.abs(candidate) + 1;
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        };
+        ThreadPoolEvaluationExecutor threadPool = new ThreadPoolEvaluationExecutor(2);
+        try
+        {
+            AsynchronousSteadyStateEvolutionEngine<Integer> engine
+                = new AsynchronousSteadyStateEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                     new IntegerAdjuster(1),
+                                                                     evaluator,
+                                                                     new TournamentSelection(new Probability(0.7)),
+                                                                     1,
+                                                                     true,
+                                                                     5,
+                                                                     FrameworkTestUtils.getRNG());
+            engine.setEvaluationExecutor(threadPool);
+            engine.setEvaluationTimeout(5, TimeUnit.MILLISECONDS, 0);
+            List<EvaluatedCandidate<Integer>> population = engine.evolvePopulation(10,
+                                                                                   0,
+                                                                                   Collections.<Integer>emptyList(),
+                                                                                   new GenerationCount(5));
+            boolean bred = false;
+            for (EvaluatedCandidate<Integer> candidate : population)
+            {
+                bred |= candidate.getCandidate() != 0;
+                if (candidate.getCandidate() % 2 != 0)
+                {
+                    assert candidate.getFitness() == 0 : "Timed-out evaluation not penalised.";
+                }
+            }
+            assert bred : "No offspring were inserted.";
+        }
+        finally
+        {
+            threadPool.close();
+        }
+    }
+
+
+    private AsynchronousSteadyStateEvolutionEngine<Integer> createBarrenEngine()
+    {
+        EvolutionaryOperator<Integer> barren = new EvolutionaryOperator<Integer>()
+        {
+            public List<Integer> apply(List<Integer> selectedCandidates, Random rng)
+            {
+                return Collections.emptyList();
+            }
+        };
+        return new AsynchronousSteadyStateEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                   barren,
+                                                                   new IntegerEvaluator(),
+                                                                   new TournamentSelection(new Probability(0.7)),
+                                                                   1,
+                                                                   true,
+                                                                   5,
+                                                                   FrameworkTestUtils.getRNG());
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSnapshotInterval()
+    {
+        createEngine(1, 0);
+    }
+
+
+    private AsynchronousSteadyStateEvolutionEngine<Integer> createEngine(int selectionSize, int snapshotInterval)
+    {
+        return new AsynchronousSteadyStateEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                   new IntegerAdjuster(1),
+                                                                   new IntegerEvaluator(),
+                                                                   new TournamentSelection(new Probability(0.7)),
+                                                                   selectionSize,
+                                                                   true,
+                                                                   snapshotInterval,
+                                                                   FrameworkTestUtils.getRNG());
+    }
+}
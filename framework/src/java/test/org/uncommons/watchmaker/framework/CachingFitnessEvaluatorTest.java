@@ -50,6 +50,18 @@ public class CachingFitnessEvaluatorTest
     }
 
 
+    @Test
+    public void testHitAndMissCounts()
+    {
+        CachingFitnessEvaluator<String> evaluator = new CachingFitnessEvaluator<String>(new IncrementingEvaluator(true));
+        evaluator.getFitness("Test1", Collections.<String>emptyList());
+        evaluator.getFitness("Test2", Collections.<String>emptyList());
+        evaluator.getFitness("Test1", Collections.<String>emptyList());
+        assert evaluator.getHitCount() == 1 : "Wrong hit count: " + evaluator.getHitCount();
+        assert evaluator.getMissCount() == 2 : "Wrong miss count: " + evaluator.getMissCount();
+    }
+
+
     @Test
     public void testNatural()
     {
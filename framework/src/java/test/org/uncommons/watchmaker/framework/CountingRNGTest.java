@@ -0,0 +1,105 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.testng.annotations.Test;
+import org.uncommons.maths.random.MersenneTwisterRNG;
+import org.uncommons.maths.random.XORShiftRNG;
+
+/**
+ * Unit test for the {@link CountingRNG} class.
+ * @author Daniel Dyer
+ */
+public class CountingRNGTest
+{
+    /**
+     * A generator restored from its saved state should produce the same values as the
+     * original, including a spare Gaussian value left over from before it was saved.
+     */
+    @Test
+    public void testRestore() throws IOException
+    {
+        CountingRNG rng = new CountingRNG(new MersenneTwisterRNG());
+        for (int i = 0; i < 100; i++)
+        {
+            rng.nextInt(17);
+            rng.nextDouble();
+            rng.nextLong();
+        }
+        rng.nextGaussian(); // Leaves a spare value.
+        CountingRNG restored = CountingRNG.readState(new DataInputStream(new ByteArrayInputStream(save(rng))));
+        for (int i = 0; i < 100; i++)
+        {
+            assert restored.nextGaussian() == rng.nextGaussian() : "Gaussian values differ at " + i;
+            assert restored.nextInt() == rng.nextInt() : "Int values differ at " + i;
+        }
+    }
+
+
+    /**
+     * Wrapping a generator should not change the sequence of values for methods that
+     * are implemented in terms of its ints.
+     */
+    @Test
+    public void testSameSequence()
+    {
+        XORShiftRNG original = new XORShiftRNG();
+        Random copy = new CountingRNG(new XORShiftRNG(original.getSeed()));
+        for (int i = 0; i < 100; i++)
+        {
+            assert copy.nextInt(1000) == original.nextInt(1000) : "Values differ at " + i;
+            assert copy.nextDouble() == original.nextDouble() : "Values differ at " + i;
+        }
+    }
+
+
+    @Test(expectedExceptions = IOException.class)
+    public void testRejectsNonRepeatableClass() throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeUTF(Random.class.getName());
+        out.writeInt(0);
+        out.writeLong(0);
+        out.writeBoolean(false);
+        out.writeDouble(0);
+        out.close();
+        CountingRNG.readState(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNonRepeatableDelegate()
+    {
+        new CountingRNG(new Random());
+    }
+
+
+    private byte[] save(CountingRNG rng) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        rng.writeState(out);
+        out.close();
+        return buffer.toByteArray();
+    }
+}
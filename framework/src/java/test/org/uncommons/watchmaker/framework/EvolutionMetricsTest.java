@@ -0,0 +1,126 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.testng.annotations.Test;
+import org.uncommons.watchmaker.framework.factories.StubIntegerFactory;
+import org.uncommons.watchmaker.framework.selection.RouletteWheelSelection;
+import org.uncommons.watchmaker.framework.termination.GenerationCount;
+
+/**
+ * Unit test for the {@link EvolutionMetrics} class and the metrics recorded by
+ * evolution engines.
+ * @author Daniel Dyer
+ */
+public class EvolutionMetricsTest
+{
+    @Test
+    public void testEngineMetrics()
+    {
+        GenerationalEvolutionEngine<Integer> engine = createEngine(new IntegerEvaluator());
+        engine.evolvePopulation(10, 0, new GenerationCount(5));
+        EvolutionMetrics metrics = engine.getMetrics();
+        assert metrics.getGenerationCount() == 5 : "Wrong generation count: " + metrics.getGenerationCount();
+        assert metrics.getEvaluationCount() == 50 : "Wrong evaluation count: " + metrics.getEvaluationCount();
+        assert metrics.getEvaluationsPerSecond() > 0 : "Evaluation rate not recorded.";
+        assert metrics.getEvaluationQueueDepth() == 0 : "Tasks still queued: " + metrics.getEvaluationQueueDepth();
+        assert metrics.getWorkerUtilisation() >= 0 && metrics.getWorkerUtilisation() <= 1
+            : "Invalid utilisation: " + metrics.getWorkerUtilisation();
+        assert Double.isNaN(metrics.getCacheHitRate()) : "There is no cache.";
+        assert metrics.getPhaseNanos(EvolutionMetrics.Phase.BREEDING) > 0 : "Breeding time not recorded.";
+        assert metrics.getPhaseNanos(EvolutionMetrics.Phase.EVALUATION) > 0 : "Evaluation time not recorded.";
+        assert metrics.getPhaseNanos(EvolutionMetrics.Phase.MIGRATION) == 0 : "No migration in a single population.";
+
+        metrics.reset();
+        assert metrics.getGenerationCount() == 0 : "Generation count not reset.";
+        assert metrics.getEvaluationCount() == 0 : "Evaluation count not reset.";
+        assert metrics.getPhaseNanos(EvolutionMetrics.Phase.EVALUATION) == 0 : "Evaluation time not reset.";
+    }
+
+
+    /**
+     * Re-used fitness scores and cache hits should be counted separately from evaluations.
+     */
+    @Test
+    public void testReuseAndCacheMetrics()
+    {
+        CachingFitnessEvaluator<Integer> cache = new CachingFitnessEvaluator<Integer>(new IntegerEvaluator());
+        GenerationalEvolutionEngine<Integer> engine = createEngine(cache);
+        engine.setFitnessReuse(true);
+        engine.evolvePopulation(10, 2, new GenerationCount(3));
+        EvolutionMetrics metrics = engine.getMetrics();
+        // The elite are re-used in the two generations after the first.
+        assert metrics.getReusedFitnessCount() >= 4 : "Wrong re-use count: " + metrics.getReusedFitnessCount();
+        assert metrics.getEvaluationCount() + metrics.getReusedFitnessCount() == 30
+            : "Wrong total: " + (metrics.getEvaluationCount() + metrics.getReusedFitnessCount());
+        // The cache compares keys by identity, so only the initial population (which is all
+        // the same Integer instance) gets any hits.
+        assert cache.getHitCount() > 0 : "No cache hits.";
+        double expectedRate = cache.getHitCount() / (double) (cache.getHitCount() + cache.getMissCount());
+        assert metrics.getCacheHitRate() == expectedRate : "Wrong cache hit rate: " + metrics.getCacheHitRate();
+    }
+
+
+    @Test
+    public void testMBean() throws JMException
+    {
+        GenerationalEvolutionEngine<Integer> engine = createEngine(new IntegerEvaluator());
+        engine.evolvePopulation(10, 0, new GenerationCount(2));
+        ObjectName name = engine.getMetrics().registerMBean("EvolutionMetricsTest");
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assert server.isRegistered(name) : "MBean not registered.";
+            Object count = server.getAttribute(name, "EvaluationCount");
+            assert count.equals(20L) : "Wrong evaluation count: " + count;
+        }
+        finally
+        {
+            engine.getMetrics().unregisterMBean();
+        }
+        assert !ManagementFactory.getPlatformMBeanServer().isRegistered(name) : "MBean not unregistered.";
+    }
+
+
+    private GenerationalEvolutionEngine<Integer> createEngine(FitnessEvaluator<Integer> evaluator)
+    {
+        // Returns copies, so that fitness re-use only applies to the elite.
+        EvolutionaryOperator<Integer> copier = new EvolutionaryOperator<Integer>()
+        {
+            public List<Integer> apply(List<Integer> selectedCandidates, Random rng)
+            {
+                List<Integer> result = new ArrayList<Integer>(selectedCandidates.size());
+                for (Integer candidate : selectedCandidates)
+                {
+                    result.add(new Integer(candidate));
+                }
+                return result;
+            }
+        };
+        return new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                        copier,
+                                                        evaluator,
+                                                        new RouletteWheelSelection(),
+                                                        FrameworkTestUtils.getRNG());
+    }
+}
@@ -0,0 +1,143 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.testng.annotations.Test;
+import org.uncommons.watchmaker.framework.selection.RankSelection;
+import org.uncommons.watchmaker.framework.selection.RouletteWheelSelection;
+import org.uncommons.watchmaker.framework.selection.SigmaScaling;
+import org.uncommons.watchmaker.framework.selection.TruncationSelection;
+
+/**
+ * Unit test for the {@link EvolutionUtils} class.
+ * @author Daniel Dyer
+ */
+public class EvolutionUtilsTest
+{
+    @Test
+    public void testSortFittestNatural()
+    {
+        checkSortFittest(true, 1000);
+    }
+
+
+    @Test
+    public void testSortFittestNonNatural()
+    {
+        checkSortFittest(false, 1000);
+    }
+
+
+    /**
+     * Lots of equal scores must not prevent the partitioning from completing.
+     */
+    @Test
+    public void testSortFittestWithDuplicates()
+    {
+        checkSortFittest(true, 3);
+    }
+
+
+    /**
+     * If most of the population is required, it is simply sorted.
+     */
+    @Test
+    public void testSortFittestMajority()
+    {
+        Random rng = FrameworkTestUtils.getRNG();
+        List<EvaluatedCandidate<Integer>> population = createPopulation(100, 100, rng);
+        EvolutionUtils.sortFittest(population, true, 60);
+        List<EvaluatedCandidate<Integer>> sorted = new ArrayList<EvaluatedCandidate<Integer>>(population);
+        EvolutionUtils.sortEvaluatedPopulation(sorted, true);
+        assert population.equals(sorted) : "Population should be completely sorted.";
+    }
+
+
+    /**
+     * Partially sorting a population that is already partially sorted must not change
+     * its order, otherwise a resumed evolution would not be repeatable.
+     */
+    @Test
+    public void testSortFittestIsIdempotent()
+    {
+        List<EvaluatedCandidate<Integer>> population = createPopulation(1000, 5, FrameworkTestUtils.getRNG());
+        EvolutionUtils.sortFittest(population, true, 10);
+        List<EvaluatedCandidate<Integer>> copy = new ArrayList<EvaluatedCandidate<Integer>>(population);
+        EvolutionUtils.sortFittest(copy, true, 10);
+        for (int i = 0; i < population.size(); i++)
+        {
+            assert copy.get(i) == population.get(i) : "Order changed at index " + i;
+        }
+    }
+
+
+    @Test
+    public void testRequiresSortedPopulation()
+    {
+        assert EvolutionUtils.requiresSortedPopulation(new TruncationSelection(0.5d))
+            : "Strategies that don't say otherwise should get a sorted population.";
+        assert EvolutionUtils.requiresSortedPopulation(new RankSelection())
+            : "Rank selection needs a sorted population.";
+        assert !EvolutionUtils.requiresSortedPopulation(new RouletteWheelSelection())
+            : "Roulette wheel selection doesn't need a sorted population.";
+        assert !EvolutionUtils.requiresSortedPopulation(new SigmaScaling())
+            : "Default sigma scaling doesn't need a sorted population.";
+        assert EvolutionUtils.requiresSortedPopulation(new SigmaScaling(new TruncationSelection(0.5d)))
+            : "Sigma scaling should defer to its delegate.";
+    }
+
+
+    private void checkSortFittest(boolean naturalFitness, int distinctScores)
+    {
+        Random rng = FrameworkTestUtils.getRNG();
+        for (int count : new int[]{1, 5, 37, 100})
+        {
+            List<EvaluatedCandidate<Integer>> population = createPopulation(1000, distinctScores, rng);
+            List<EvaluatedCandidate<Integer>> sorted = new ArrayList<EvaluatedCandidate<Integer>>(population);
+            EvolutionUtils.sortEvaluatedPopulation(sorted, naturalFitness);
+
+            EvolutionUtils.sortFittest(population, naturalFitness, count);
+            assert population.size() == sorted.size() : "Population size should be unchanged.";
+            for (int i = 0; i < count; i++)
+            {
+                assert population.get(i).getFitness() == sorted.get(i).getFitness()
+                    : "Wrong fitness at index " + i + ": " + population.get(i).getFitness();
+            }
+            // None of the remaining candidates should be fitter than those at the start.
+            double threshold = sorted.get(count - 1).getFitness();
+            for (int i = count; i < population.size(); i++)
+            {
+                double fitness = population.get(i).getFitness();
+                assert naturalFitness ? fitness <= threshold : fitness >= threshold
+                    : "Fitter candidate left at index " + i + ": " + fitness;
+            }
+        }
+    }
+
+
+    private List<EvaluatedCandidate<Integer>> createPopulation(int size, int distinctScores, Random rng)
+    {
+        List<EvaluatedCandidate<Integer>> population = new ArrayList<EvaluatedCandidate<Integer>>(size);
+        for (int i = 0; i < size; i++)
+        {
+            population.add(new EvaluatedCandidate<Integer>(i, rng.nextInt(distinctScores)));
+        }
+        return population;
+    }
+}
@@ -15,11 +15,22 @@
 //=============================================================================
 package org.uncommons.watchmaker.framework;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
+import org.uncommons.maths.random.MersenneTwisterRNG;
+import org.uncommons.watchmaker.framework.evaluation.ThreadPoolEvaluationExecutor;
 import org.uncommons.watchmaker.framework.factories.StubIntegerFactory;
 import org.uncommons.watchmaker.framework.selection.RouletteWheelSelection;
 import org.uncommons.watchmaker.framework.termination.ElapsedTime;
@@ -82,6 +93,354 @@ public class GenerationalEvolutionEngineTest
     }
 
 
+    /**
+     * In pipelined mode, the next generation should be the same size and should still
+     * include the elite candidates.
+     */
+    @Test
+    public void testPipelinedElitism()
+    {
+        GenerationalEvolutionEngine<Integer> pipelinedEngine = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                                                       new IntegerZeroMaker(),
+                                                                                                       new IntegerEvaluator(),
+                                                                                                       new RouletteWheelSelection(),
+                                                                                                       FrameworkTestUtils.getRNG());
+        pipelinedEngine.setPipelineBatchSize(3);
+        List<EvaluatedCandidate<Integer>> population = pipelinedEngine.evolvePopulation(10,
+                                                                                        2,
+                                                                                        Arrays.asList(7, 11, 13),
+                                                                                        new GenerationCount(3));
+        assert population.size() == 10 : "Wrong population size: " + population.size();
+        // Only the two elite candidates should be non-zero (7 should have been discarded).
+        assert population.get(0).getCandidate() == 13 : "Wrong fittest candidate: " + population.get(0).getCandidate();
+        assert population.get(1).getCandidate() == 11 : "Wrong second candidate: " + population.get(1).getCandidate();
+        assert population.get(2).getCandidate() == 0 : "Non-elite candidate survived: " + population.get(2).getCandidate();
+    }
+
+
+    /**
+     * A single-threaded evolution resumed from a checkpoint should finish with exactly the
+     * same population as the uninterrupted evolution, without re-evaluating the checkpointed
+     * population.  A repeatable RNG is restored from its seed.
+     */
+    @Test
+    public void testCheckpointAndResume()
+    {
+        checkCheckpointAndResume(new MersenneTwisterRNG());
+    }
+
+
+    /**
+     * An RNG that isn't repeatable is restored by deserialising it.
+     */
+    @Test
+    public void testCheckpointAndResumeSerialisedRNG()
+    {
+        checkCheckpointAndResume(new Random());
+    }
+
+
+    /**
+     * Serialised RNG state must not be able to instantiate classes other than RNGs.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testResumeRejectsInvalidRNGState() throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(buffer);
+        out.writeObject(new ArrayList<Object>(Arrays.asList("Not an RNG")));
+        out.close();
+        List<EvaluatedCandidate<Integer>> population = Arrays.asList(new EvaluatedCandidate<Integer>(1, 1));
+        Checkpoint<Integer> checkpoint = new Checkpoint<Integer>(population,
+                                                                 0,
+                                                                 0,
+                                                                 0,
+                                                                 buffer.toByteArray(),
+                                                                 Arrays.asList((byte[]) null));
+        createRandomWalkEngine(new IntegerEvaluator()).resume(checkpoint, new GenerationCount(2));
+    }
+
+
+    private void checkCheckpointAndResume(Random rng)
+    {
+        final List<Checkpoint<Integer>> checkpoints = new ArrayList<Checkpoint<Integer>>();
+        GenerationalEvolutionEngine<Integer> original = createRandomWalkEngine(new IntegerEvaluator(), rng);
+        original.setCheckpointStore(new CheckpointStore<Integer>()
+        {
+            public void save(Checkpoint<Integer> checkpoint)
+            {
+                checkpoints.add(checkpoint);
+            }
+        }, 4);
+        List<EvaluatedCandidate<Integer>> expected = original.evolvePopulation(20, 2, new GenerationCount(10));
+        assert checkpoints.size() == 3 : "Wrong number of checkpoints: " + checkpoints.size();
+        // Two periodic checkpoints and one for the final generation.
+        assert checkpoints.get(0).getGenerationNumber() == 4 : "Wrong generation: " + checkpoints.get(0).getGenerationNumber();
+        assert checkpoints.get(1).getGenerationNumber() == 8 : "Wrong generation: " + checkpoints.get(1).getGenerationNumber();
+        assert checkpoints.get(2).getGenerationNumber() == 9 : "Wrong generation: " + checkpoints.get(2).getGenerationNumber();
+        assert checkpoints.get(0).getRNGState() != null : "RNG state not saved.";
+
+        final AtomicInteger evaluations = new AtomicInteger();
+        GenerationalEvolutionEngine<Integer> resumed = createRandomWalkEngine(new FitnessEvaluator<Integer>()
+        {
+            public double getFitness(Integer candidate, List<? extends Integer> population)
+            {
+                evaluations.incrementAndGet();
+                return candidate;
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        });
+        List<EvaluatedCandidate<Integer>> actual = resumed.resume(checkpoints.get(0), new GenerationCount(10));
+        assert evaluations.get() == 5 * 20 : "Wrong number of evaluations: " + evaluations.get();
+        assert actual.size() == expected.size() : "Wrong population size: " + actual.size();
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assert actual.get(i).getCandidate().equals(expected.get(i).getCandidate())
+                : "Resumed evolution diverged at index " + i + ": " + actual.get(i).getCandidate();
+        }
+    }
+
+
+    /**
+     * By default a checkpoint that cannot be saved (for example because the disk is full)
+     * must not stop the evolution.
+     */
+    @Test
+    public void testCheckpointFailure()
+    {
+        final AtomicInteger attempts = new AtomicInteger();
+        GenerationalEvolutionEngine<Integer> engine = createRandomWalkEngine(new IntegerEvaluator());
+        engine.setCheckpointStore(new CheckpointStore<Integer>()
+        {
+            public void save(Checkpoint<Integer> checkpoint) throws IOException
+            {
+                attempts.incrementAndGet();
+                throw new IOException("Disk full.");
+            }
+        }, 2);
+        List<EvaluatedCandidate<Integer>> population = engine.evolvePopulation(20, 2, new GenerationCount(10));
+        assert population.size() == 20 : "Wrong population size: " + population.size();
+        assert engine.getSatisfiedTerminationConditions().size() == 1 : "Evolution did not complete.";
+        assert attempts.get() == 5 : "Wrong number of checkpoint attempts: " + attempts.get();
+        assert engine.getCheckpointFailure() != null : "Failure not recorded.";
+    }
+
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testStopOnCheckpointFailure()
+    {
+        GenerationalEvolutionEngine<Integer> engine = createRandomWalkEngine(new IntegerEvaluator());
+        engine.setCheckpointStore(new CheckpointStore<Integer>()
+        {
+            public void save(Checkpoint<Integer> checkpoint) throws IOException
+            {
+                throw new IOException("Disk full.");
+            }
+        }, 2, true);
+        engine.evolvePopulation(20, 2, new GenerationCount(10));
+    }
+
+
+    /**
+     * Resuming from an evaluated population should not re-evaluate it, and generation
+     * numbers should start again from zero.
+     */
+    @Test
+    public void testResumeFromEvaluatedPopulation()
+    {
+        List<EvaluatedCandidate<Integer>> start = createRandomWalkEngine(new IntegerEvaluator()).evolvePopulation(20,
+                                                                                                                 2,
+                                                                                                                 new GenerationCount(3));
+        final AtomicInteger evaluations = new AtomicInteger();
+        GenerationalEvolutionEngine<Integer> resumed = createRandomWalkEngine(new FitnessEvaluator<Integer>()
+        {
+            public double getFitness(Integer candidate, List<? extends Integer> population)
+            {
+                evaluations.incrementAndGet();
+                return candidate;
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        });
+        final List<Integer> generations = new ArrayList<Integer>();
+        resumed.addEvolutionObserver(new EvolutionObserver<Integer>()
+        {
+            public void populationUpdate(PopulationData<? extends Integer> populationData)
+            {
+                generations.add(populationData.getGenerationNumber());
+            }
+        });
+
+        List<EvaluatedCandidate<Integer>> population = resumed.resume(start, 2, new GenerationCount(1));
+        assert evaluations.get() == 0 : "Evaluated population should not be re-evaluated: " + evaluations.get();
+        assert population.equals(start) : "Population should be unchanged.";
+
+        resumed.resume(start, 2, new GenerationCount(3));
+        assert evaluations.get() <= 2 * 20 : "Only new generations should be evaluated: " + evaluations.get();
+        assert generations.equals(Arrays.asList(0, 0, 1, 2)) : "Wrong generation numbers: " + generations;
+    }
+
+
+    /**
+     * With random streams, the results should depend only on the master seed, not on the
+     * engine's own RNG or on how many threads are used.
+     */
+    @Test
+    public void testRandomStreams()
+    {
+        GenerationalEvolutionEngine<Integer> singleThreaded = createRandomWalkEngine(new IntegerEvaluator());
+        singleThreaded.setRandomStreams(new RandomStreams(42));
+        List<EvaluatedCandidate<Integer>> expected = singleThreaded.evolvePopulation(20, 2, new GenerationCount(10));
+
+        ThreadPoolEvaluationExecutor threadPool = new ThreadPoolEvaluationExecutor(4);
+        try
+        {
+            GenerationalEvolutionEngine<Integer> multiThreaded = createRandomWalkEngine(new IntegerEvaluator());
+            multiThreaded.setSingleThreaded(false);
+            multiThreaded.setEvaluationExecutor(threadPool);
+            multiThreaded.setRandomStreams(new RandomStreams(42));
+            List<EvaluatedCandidate<Integer>> actual = multiThreaded.evolvePopulation(20, 2, new GenerationCount(10));
+            for (int i = 0; i < expected.size(); i++)
+            {
+                assert actual.get(i).getCandidate().equals(expected.get(i).getCandidate())
+                    : "Multi-threaded evolution diverged at index " + i + ": " + actual.get(i).getCandidate();
+            }
+
+            // Pipelined batches each have their own stream.
+            singleThreaded.setPipelineBatchSize(4);
+            multiThreaded.setPipelineBatchSize(4);
+            expected = singleThreaded.evolvePopulation(20, 2, new GenerationCount(10));
+            actual = multiThreaded.evolvePopulation(20, 2, new GenerationCount(10));
+            for (int i = 0; i < expected.size(); i++)
+            {
+                assert actual.get(i).getCandidate().equals(expected.get(i).getCandidate())
+                    : "Pipelined evolution diverged at index " + i + ": " + actual.get(i).getCandidate();
+            }
+        }
+        finally
+        {
+            threadPool.close();
+        }
+    }
+
+
+    /**
+     * Creates a single-threaded engine in which each candidate takes a random step.
+     */
+    private GenerationalEvolutionEngine<Integer> createRandomWalkEngine(FitnessEvaluator<Integer> evaluator)
+    {
+        return createRandomWalkEngine(evaluator, new MersenneTwisterRNG());
+    }
+
+
+    private GenerationalEvolutionEngine<Integer> createRandomWalkEngine(FitnessEvaluator<Integer> evaluator,
+                                                                        Random rng)
+    {
+        EvolutionaryOperator<Integer> walk = new EvolutionaryOperator<Integer>()
+        {
+            public List<Integer> apply(List<Integer> selectedCandidates, Random rng)
+            {
+                List<Integer> result = new ArrayList<Integer>(selectedCandidates.size());
+                for (Integer candidate : selectedCandidates)
+                {
+                    result.add(candidate + rng.nextInt(5));
+                }
+                return result;
+            }
+        };
+        GenerationalEvolutionEngine<Integer> randomWalkEngine = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                                                        walk,
+                                                                                                        evaluator,
+                                                                                                        new RouletteWheelSelection(),
+                                                                                                        rng);
+        randomWalkEngine.setSingleThreaded(true);
+        return randomWalkEngine;
+    }
+
+
+    /**
+     * When fitness re-use is enabled, elite candidates and offspring that the operators
+     * returned unchanged should not be evaluated again.
+     */
+    @Test
+    public void testFitnessReuse()
+    {
+        int evaluationsWithoutReuse = countEvaluations(false, 0);
+        int evaluationsWithReuse = countEvaluations(true, 0);
+        int pipelinedEvaluationsWithReuse = countEvaluations(true, 4);
+        // Every candidate is evaluated in every generation without re-use.
+        int steps = (evaluationsWithoutReuse - 10) / 10;
+        assert steps > 0 : "No evolution steps.";
+        // With re-use, only the 4 copied offspring in each step need to be evaluated.
+        assert evaluationsWithReuse == 10 + 4 * steps : "Wrong number of evaluations: " + evaluationsWithReuse;
+        assert pipelinedEvaluationsWithReuse == evaluationsWithReuse
+            : "Wrong number of pipelined evaluations: " + pipelinedEvaluationsWithReuse;
+    }
+
+
+    private int countEvaluations(boolean reuse, int pipelineBatchSize)
+    {
+        final AtomicInteger evaluations = new AtomicInteger();
+        FitnessEvaluator<Integer> countingEvaluator = new FitnessEvaluator<Integer>()
+        {
+            public double getFitness(Integer candidate, List<? extends Integer> population)
+            {
+                evaluations.incrementAndGet();
+                return candidate;
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        };
+        // Copies every other candidate, leaving the rest unchanged.
+        EvolutionaryOperator<Integer> copier = new EvolutionaryOperator<Integer>()
+        {
+            public List<Integer> apply(List<Integer> selectedCandidates, Random rng)
+            {
+                List<Integer> result = new ArrayList<Integer>(selectedCandidates);
+                for (int i = 1; i < result.size(); i += 2)
+                {
+                    result.set(i, new Integer(result.get(i)));
+                }
+                return result;
+            }
+        };
+        GenerationalEvolutionEngine<Integer> reuseEngine = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                                                   copier,
+                                                                                                   countingEvaluator,
+                                                                                                   new RouletteWheelSelection(),
+                                                                                                   FrameworkTestUtils.getRNG());
+        reuseEngine.setFitnessReuse(reuse);
+        reuseEngine.setPipelineBatchSize(pipelineBatchSize);
+        List<EvaluatedCandidate<Integer>> population = reuseEngine.evolvePopulation(10, 2, new GenerationCount(4));
+        for (EvaluatedCandidate<Integer> candidate : population)
+        {
+            assert candidate.getFitness() == candidate.getCandidate() : "Wrong fitness: " + candidate.getFitness();
+        }
+        return evaluations.get();
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativePipelineBatchSize()
+    {
+        new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                 new IntegerZeroMaker(),
+                                                 new IntegerEvaluator(),
+                                                 new RouletteWheelSelection(),
+                                                 FrameworkTestUtils.getRNG()).setPipelineBatchSize(-1);
+    }
+
+
     /**
      * The number of candidates preserved by elitism must be less than the total
      * population size.
@@ -151,6 +510,242 @@ public class GenerationalEvolutionEngineTest
     }
 
 
+    /**
+     * Fitness evaluations should be submitted to an executor supplied to the engine
+     * rather than to the default shared worker.
+     */
+    @Test
+    public void testEvaluationExecutor()
+    {
+        final ThreadPoolEvaluationExecutor threadPool = new ThreadPoolEvaluationExecutor(2);
+        final AtomicInteger submissions = new AtomicInteger(0);
+        try
+        {
+            GenerationalEvolutionEngine<Integer> pooledEngine = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                                                        new IntegerZeroMaker(),
+                                                                                                        new IntegerEvaluator(),
+                                                                                                        new RouletteWheelSelection(),
+                                                                                                        FrameworkTestUtils.getRNG());
+            pooledEngine.setEvaluationExecutor(new EvaluationExecutor()
+            {
+                public <V> Future<V> submit(Callable<V> task)
+                {
+                    submissions.incrementAndGet();
+                    return threadPool.submit(task);
+                }
+
+                public int getParallelism()
+                {
+                    return threadPool.getParallelism();
+                }
+
+                public void close()
+                {
+                    threadPool.close();
+                }
+            });
+            pooledEngine.evolve(10, 0, new GenerationCount(3));
+            // Evaluations are submitted in batches, so there may be fewer tasks than candidates.
+            assert submissions.get() >= 3 && submissions.get() <= 30 : "Wrong number of tasks submitted: " + submissions.get();
+        }
+        finally
+        {
+            threadPool.close();
+        }
+    }
+
+
+    /**
+     * A batch evaluator should be asked to score every candidate exactly once per
+     * generation, in slices that cover the whole population.
+     */
+    @Test
+    public void testBatchEvaluation()
+    {
+        final AtomicInteger evaluations = new AtomicInteger(0);
+        BatchFitnessEvaluator<Integer> evaluator = new BatchFitnessEvaluator<Integer>()
+        {
+            private final IntegerEvaluator delegate = new IntegerEvaluator();
+
+            public void getFitnessScores(List<? extends Integer> population,
+                                         int fromIndex,
+                                         int toIndex,
+                                         double[] scores)
+            {
+                assert fromIndex < toIndex && toIndex <= population.size() : "Invalid slice.";
+                for (int i = fromIndex; i < toIndex; i++)
+                {
+                    scores[i] = getFitness(population.get(i), population);
+                }
+            }
+
+            public double getFitness(Integer candidate, List<? extends Integer> population)
+            {
+                evaluations.incrementAndGet();
+                return delegate.getFitness(candidate, population);
+            }
+
+            public boolean isNatural()
+            {
+                return delegate.isNatural();
+            }
+        };
+        EvolutionEngine<Integer> batchEngine = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                                       new IntegerZeroMaker(),
+                                                                                       evaluator,
+                                                                                       new RouletteWheelSelection(),
+                                                                                       FrameworkTestUtils.getRNG());
+        List<EvaluatedCandidate<Integer>> population = batchEngine.evolvePopulation(100, 0, new GenerationCount(5));
+        assert population.size() == 100 : "Wrong population size: " + population.size();
+        assert evaluations.get() == 500 : "Wrong number of evaluations: " + evaluations.get();
+    }
+
+
+    /**
+     * Candidates whose evaluations exceed the time limit should be given the penalty
+     * score, whether or not the evaluator co-operates with cancellation, and the
+     * generation should not wait for evaluations that do not co-operate.
+     */
+    @Test
+    public void testEvaluationTimeout()
+    {
+        FitnessEvaluator<Integer> evaluator = new FitnessEvaluator<Integer>()
+        {
+            public double getFitness(Integer candidate, List<? extends Integer> population)
+            {
+                if (candidate == 1) // Co-operative, checks for cancellation.
+                {
+                    CancellationToken token = CancellationToken.current();
+                    while (!token.isCancelled())
+                    {
+                        Thread.yield();
+                    }
+                }
+                else if (candidate == 2) // Ignores cancellation and interruption.
+                {
+                    long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+                    while (System.nanoTime() < end)
+                    {
+                        Thread.yield();
+                    }
+                }
+                return candidate * 10;
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        };
+        ThreadPoolEvaluationExecutor threadPool = new ThreadPoolEvaluationExecutor(4);
+        try
+        {
+            GenerationalEvolutionEngine<Integer> timedEngine = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                                                       new IntegerZeroMaker(),
+                                                                                                       evaluator,
+                                                                                                       new RouletteWheelSelection(),
+                                                                                                       FrameworkTestUtils.getRNG());
+            timedEngine.setEvaluationExecutor(threadPool);
+            timedEngine.setEvaluationTimeout(50, TimeUnit.MILLISECONDS, 0);
+            long startTime = System.currentTimeMillis();
+            List<EvaluatedCandidate<Integer>> population = timedEngine.evolvePopulation(10,
+                                                                                        0,
+                                                                                        Arrays.asList(1, 2, 3),
+                                                                                        new GenerationCount(1));
+            long elapsedTime = System.currentTimeMillis() - startTime;
+            assert elapsedTime < 1500 : "Engine waited for evaluation that timed out: " + elapsedTime + "ms";
+            assert population.size() == 10 : "Wrong population size: " + population.size();
+            for (EvaluatedCandidate<Integer> candidate : population)
+            {
+                double expected = candidate.getCandidate() == 3 ? 30 : 0;
+                assert candidate.getFitness() == expected : "Wrong fitness for " + candidate.getCandidate()
+                                                            + ": " + candidate.getFitness();
+            }
+        }
+        finally
+        {
+            threadPool.close();
+        }
+    }
+
+
+    /**
+     * Interrupting the request thread during fitness evaluation should cancel the evaluations
+     * and return the last completely evaluated population.
+     */
+    @Test
+    public void testInterruptDuringEvaluation() throws InterruptedException
+    {
+        final AtomicInteger evaluations = new AtomicInteger(0);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        FitnessEvaluator<Integer> evaluator = new FitnessEvaluator<Integer>()
+        {
+            public double getFitness(Integer candidate, List<? extends Integer> population)
+            {
+                if (evaluations.incrementAndGet() > 10) // Block in the second generation.
+                {
+                    blocked.countDown();
+                    try
+                    {
+                        Thread.sleep(10000);
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        // Cancelled, result will be ignored.
+                    }
+                }
+                return candidate;
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        };
+        ThreadPoolEvaluationExecutor threadPool = new ThreadPoolEvaluationExecutor(2);
+        try
+        {
+            GenerationalEvolutionEngine<Integer> blockingEngine = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                                                          new IntegerZeroMaker(),
+                                                                                                          evaluator,
+                                                                                                          new RouletteWheelSelection(),
+                                                                                                          FrameworkTestUtils.getRNG());
+            blockingEngine.setEvaluationExecutor(threadPool);
+            final Thread requestThread = Thread.currentThread();
+            Thread interrupter = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        blocked.await();
+                        requestThread.interrupt();
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        // Test will fail.
+                    }
+                }
+            };
+            interrupter.start();
+            long startTime = System.currentTimeMillis();
+            List<EvaluatedCandidate<Integer>> population = blockingEngine.evolvePopulation(10, 0, new GenerationCount(5));
+            long elapsedTime = System.currentTimeMillis() - startTime;
+            assert Thread.interrupted() : "Interrupted status should be preserved.";
+            assert elapsedTime < 5000 : "Engine did not respond to interrupt promptly: " + elapsedTime + "ms";
+            assert population.size() == 10 : "Should return last complete population: " + population.size();
+            assert blockingEngine.getSatisfiedTerminationConditions().isEmpty()
+                : "Interrupted engine should have no satisfied termination conditions.";
+        }
+        finally
+        {
+            Thread.interrupted();
+            threadPool.close();
+        }
+    }
+
+
     /**
      * Trivial test operator that mutates all integers into zeroes.
      */
@@ -0,0 +1,108 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import org.testng.annotations.Test;
+import org.uncommons.maths.statistics.DataSet;
+
+/**
+ * Unit test for the {@link PopulationData} class.
+ * @author Daniel Dyer
+ */
+public class PopulationDataTest
+{
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * The single-pass statistics should agree with the two-pass calculations.
+     */
+    @Test
+    public void testMeanAndStandardDeviation()
+    {
+        double[] scores = new double[1000];
+        DataSet expected = new DataSet(scores.length);
+        for (int i = 0; i < scores.length; i++)
+        {
+            scores[i] = 1e6 + FrameworkTestUtils.getRNG().nextDouble();
+            expected.addValue(scores[i]);
+        }
+        PopulationData<Object> data = new PopulationData<Object>(new Object(), 0, scores, true, 0, 0, 0);
+        assert data.getPopulationSize() == 1000 : "Wrong population size: " + data.getPopulationSize();
+        assert Math.abs(data.getMeanFitness() - expected.getArithmeticMean()) < 1e-6
+            : "Wrong mean: " + data.getMeanFitness();
+        assert Math.abs(data.getFitnessStandardDeviation() - expected.getStandardDeviation()) < 1e-6
+            : "Wrong standard deviation: " + data.getFitnessStandardDeviation();
+    }
+
+
+    @Test
+    public void testQuantiles()
+    {
+        double[] scores = {5, 1, 4, 2, 3};
+        PopulationData<Object> data = new PopulationData<Object>(new Object(), 5, scores, true, 0, 0, 0);
+        assert data.getMedianFitness() == 3 : "Wrong median: " + data.getMedianFitness();
+        assert data.getFitnessQuantile(0) == 1 : "Wrong minimum: " + data.getFitnessQuantile(0);
+        assert data.getFitnessQuantile(1) == 5 : "Wrong maximum: " + data.getFitnessQuantile(1);
+        // Interpolated between 1 and 2.
+        assert Math.abs(data.getFitnessQuantile(0.125) - 1.5) < EPSILON
+            : "Wrong quantile: " + data.getFitnessQuantile(0.125);
+        assert scores[0] == 5 : "Original scores should not be re-ordered.";
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidQuantile()
+    {
+        new PopulationData<Object>(new Object(), 1, new double[]{1}, true, 0, 0, 0).getFitnessQuantile(1.5);
+    }
+
+
+    @Test
+    public void testWorstCandidateFitness()
+    {
+        double[] scores = {2, 7, 3};
+        PopulationData<Object> natural = new PopulationData<Object>(new Object(), 7, scores, true, 0, 0, 0);
+        assert natural.getWorstCandidateFitness() == 2 : "Wrong worst fitness: " + natural.getWorstCandidateFitness();
+        PopulationData<Object> nonNatural = new PopulationData<Object>(new Object(), 2, scores, false, 0, 0, 0);
+        assert nonNatural.getWorstCandidateFitness() == 7 : "Wrong worst fitness: " + nonNatural.getWorstCandidateFitness();
+    }
+
+
+    @Test
+    public void testDistinctFitnessCount()
+    {
+        double[] scores = {2, 2, 3, 1, 3, 2};
+        PopulationData<Object> data = new PopulationData<Object>(new Object(), 3, scores, true, 0, 0, 0);
+        assert data.getDistinctFitnessCount() == 3 : "Wrong count: " + data.getDistinctFitnessCount();
+    }
+
+
+    /**
+     * Data created from pre-calculated statistics has no individual scores to
+     * calculate further statistics from, so those statistics are not available.
+     */
+    @Test
+    public void testNoScores()
+    {
+        PopulationData<Object> data = new PopulationData<Object>(new Object(), 5, 4, 0.5, true, 2, 0, 0, 100);
+        assert data.getMeanFitness() == 4 : "Wrong mean: " + data.getMeanFitness();
+        assert data.getFitnessStandardDeviation() == 0.5 : "Wrong standard deviation.";
+        assert Double.isNaN(data.getWorstCandidateFitness()) : "Worst fitness should not be available.";
+        assert Double.isNaN(data.getMedianFitness()) : "Median should not be available.";
+        assert Double.isNaN(data.getFitnessQuantile(0.25)) : "Quantile should not be available.";
+        assert data.getDistinctFitnessCount() == 0 : "Distinct count should not be available.";
+    }
+}
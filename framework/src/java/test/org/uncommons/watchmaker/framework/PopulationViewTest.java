@@ -0,0 +1,114 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link PopulationView} class.
+ * @author Daniel Dyer
+ */
+public class PopulationViewTest
+{
+    @Test
+    public void testCopyFromList()
+    {
+        PopulationView<String> view = new PopulationView<String>(createPopulation());
+        assert view.size() == 4 : "Wrong size: " + view.size();
+        assert view.getCandidate(1).equals("B") : "Wrong candidate: " + view.getCandidate(1);
+        assert view.getFitness(1) == 1.0 : "Wrong fitness: " + view.getFitness(1);
+        List<EvaluatedCandidate<String>> copy = view.toEvaluatedCandidates();
+        assert copy.equals(createPopulation()) : "List should match the original population.";
+    }
+
+
+    @Test
+    public void testWithFitness()
+    {
+        PopulationView<String> view = new PopulationView<String>(createPopulation());
+        PopulationView<String> rescored = view.withFitness(new double[]{4, 3, 2, 1});
+        assert rescored.getCandidate(3).equals("D") : "Candidates should be unchanged.";
+        assert rescored.getFitness(3) == 1 : "Wrong fitness: " + rescored.getFitness(3);
+        assert view.getFitness(3) == 2.0 : "Original view should be unchanged.";
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWithWrongNumberOfScores()
+    {
+        new PopulationView<String>(createPopulation()).withFitness(new double[3]);
+    }
+
+
+    /**
+     * Sorting should be stable for both natural and non-natural scores.
+     */
+    @Test
+    public void testSort()
+    {
+        PopulationView<String> view = new PopulationView<String>(createPopulation());
+        PopulationView<String> natural = view.sort(true);
+        checkOrder(natural, "C", "D", "B", "A");
+        PopulationView<String> nonNatural = view.sort(false);
+        checkOrder(nonNatural, "A", "B", "C", "D");
+        checkOrder(view, "A", "B", "C", "D"); // Original view should be unchanged.
+    }
+
+
+    /**
+     * Sorting a larger view should give the same order as sorting a list.
+     */
+    @Test
+    public void testSortMatchesList()
+    {
+        List<EvaluatedCandidate<Integer>> population = new ArrayList<EvaluatedCandidate<Integer>>(500);
+        for (int i = 0; i < 500; i++)
+        {
+            population.add(new EvaluatedCandidate<Integer>(i, FrameworkTestUtils.getRNG().nextInt(50)));
+        }
+        PopulationView<Integer> sorted = new PopulationView<Integer>(population).sort(true);
+        EvolutionUtils.sortEvaluatedPopulation(population, true);
+        assert sorted.toEvaluatedCandidates().equals(population) : "Views and lists sorted differently.";
+        for (int i = 0; i < population.size(); i++)
+        {
+            // The list sort is also stable, so the candidates should be identical too.
+            assert sorted.getCandidate(i).equals(population.get(i).getCandidate()) : "Wrong candidate at " + i;
+        }
+    }
+
+
+    private void checkOrder(PopulationView<String> view, String... expected)
+    {
+        for (int i = 0; i < expected.length; i++)
+        {
+            assert view.getCandidate(i).equals(expected[i])
+                : "Wrong candidate at index " + i + ": " + view.getCandidate(i);
+        }
+    }
+
+
+    private List<EvaluatedCandidate<String>> createPopulation()
+    {
+        List<EvaluatedCandidate<String>> population = new ArrayList<EvaluatedCandidate<String>>(4);
+        population.add(new EvaluatedCandidate<String>("A", 0.5));
+        population.add(new EvaluatedCandidate<String>("B", 1.0));
+        population.add(new EvaluatedCandidate<String>("C", 2.0));
+        population.add(new EvaluatedCandidate<String>("D", 2.0));
+        return population;
+    }
+}
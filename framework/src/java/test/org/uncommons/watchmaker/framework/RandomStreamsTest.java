@@ -0,0 +1,104 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework;
+
+import java.util.Random;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link RandomStreams} class.
+ * @author Daniel Dyer
+ */
+public class RandomStreamsTest
+{
+    @Test
+    public void testRepeatability()
+    {
+        Random rng1 = new RandomStreams(42).getSubstreams(3).getRandom(7);
+        Random rng2 = new RandomStreams(42).getSubstreams(3).getRandom(7);
+        for (int i = 0; i < 100; i++)
+        {
+            assert rng1.nextLong() == rng2.nextLong() : "Same stream should give the same values.";
+        }
+    }
+
+
+    /**
+     * Each call to {@link RandomStreams#getRandom(long)} should restart the stream,
+     * regardless of how much of any other stream has been used.
+     */
+    @Test
+    public void testStreamsAreIndependentOfUsageOrder()
+    {
+        RandomStreams streams = new RandomStreams(42);
+        Random first = streams.getRandom(1);
+        long expected = first.nextLong();
+        Random other = streams.getRandom(2);
+        for (int i = 0; i < 10; i++)
+        {
+            other.nextInt();
+        }
+        assert streams.getRandom(1).nextLong() == expected : "Stream depends on usage of other streams.";
+    }
+
+
+    @Test
+    public void testDifferentIndicesGiveDifferentStreams()
+    {
+        RandomStreams streams = new RandomStreams(42);
+        assert streams.getRandom(0).nextLong() != streams.getRandom(1).nextLong()
+            : "Different indices should give different streams.";
+        assert streams.getSubstreams(0).getSeed() != streams.getSubstreams(1).getSeed()
+            : "Different indices should give different sub-trees.";
+        assert new RandomStreams(42).getRandom(0).nextLong() != new RandomStreams(43).getRandom(0).nextLong()
+            : "Different seeds should give different streams.";
+    }
+
+
+    @Test
+    public void testSeedFromRNG()
+    {
+        RandomStreams streams = new RandomStreams(new Random(5));
+        assert streams.getSeed() == new Random(5).nextLong() : "Wrong seed.";
+    }
+
+
+    /**
+     * Rough check that the doubles are uniformly distributed in [0, 1).
+     */
+    @Test
+    public void testDistribution()
+    {
+        Random rng = new RandomStreams(42).getRandom(0);
+        final int iterations = 10000;
+        int[] buckets = new int[10];
+        for (int i = 0; i < iterations; i++)
+        {
+            double value = rng.nextDouble();
+            assert value >= 0 && value < 1 : "Value out of range: " + value;
+            buckets[(int) (value * buckets.length)]++;
+        }
+        for (int count : buckets)
+        {
+            assert Math.abs(count - iterations / buckets.length) < 150 : "Bucket count too far from expected: " + count;
+        }
+        for (int i = 0; i < 1000; i++)
+        {
+            int value = rng.nextInt(7);
+            assert value >= 0 && value < 7 : "Bounded value out of range: " + value;
+        }
+    }
+}
@@ -100,6 +100,40 @@ public class SteadyStateEvolutionEngineTest
 
 
 
+    /**
+     * Replaced candidates should be merged back into the population so that it
+     * remains sorted without changing the size of the list.
+     */
+    @Test
+    public void testPopulationRemainsSorted()
+    {
+        SteadyStateEvolutionEngine<Integer> steadyState = new SteadyStateEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                                                  new IntegerAdjuster(3),
+                                                                                                  new IntegerEvaluator(),
+                                                                                                  new RouletteWheelSelection(),
+                                                                                                  2,
+                                                                                                  false,
+                                                                                                  FrameworkTestUtils.getRNG());
+        @SuppressWarnings("unchecked")
+        List<EvaluatedCandidate<Integer>> population = Arrays.asList(new EvaluatedCandidate<Integer>(10, 10),
+                                                                     new EvaluatedCandidate<Integer>(8, 8),
+                                                                     new EvaluatedCandidate<Integer>(7, 7),
+                                                                     new EvaluatedCandidate<Integer>(6, 6),
+                                                                     new EvaluatedCandidate<Integer>(5, 5),
+                                                                     new EvaluatedCandidate<Integer>(4, 4));
+        for (int i = 0; i < 20; i++)
+        {
+            population = steadyState.nextEvolutionStep(population, 1, FrameworkTestUtils.getRNG());
+            assert population.size() == 6 : "Population size should be unchanged.";
+            for (int j = 1; j < population.size(); j++)
+            {
+                assert population.get(j - 1).getFitness() >= population.get(j).getFitness()
+                    : "Population is not sorted at index " + j;
+            }
+        }
+    }
+
+
     @Test
     public void testElitism()
     {
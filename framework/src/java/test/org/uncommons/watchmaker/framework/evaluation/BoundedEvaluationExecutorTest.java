@@ -0,0 +1,204 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.evaluation;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link BoundedEvaluationExecutor}.
+ * @author Daniel Dyer
+ */
+public class BoundedEvaluationExecutorTest
+{
+    @Test
+    public void testPermitsReturnedOnCompletion() throws Exception
+    {
+        BoundedEvaluationExecutor executor = new BoundedEvaluationExecutor(new ThreadPoolEvaluationExecutor(2), 2);
+        try
+        {
+            for (int i = 0; i < 10; i++)
+            {
+                final int value = i;
+                Future<Integer> result = executor.submit(new Callable<Integer>()
+                {
+                    public Integer call()
+                    {
+                        return value;
+                    }
+                });
+                assert result.get() == i : "Wrong result: " + result.get();
+            }
+            waitForCapacity(executor, 2);
+        }
+        finally
+        {
+            executor.close();
+        }
+    }
+
+
+    /**
+     * Once the limit is reached, submission should block until a task finishes.
+     * If the submitting thread is interrupted while waiting, the task is rejected.
+     */
+    @Test
+    public void testSubmissionBlocksWhenFull() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        BoundedEvaluationExecutor executor = new BoundedEvaluationExecutor(new ThreadPoolEvaluationExecutor(1), 1);
+        try
+        {
+            Future<Boolean> blocker = executor.submit(new Callable<Boolean>()
+            {
+                public Boolean call() throws InterruptedException
+                {
+                    return release.await(10, TimeUnit.SECONDS);
+                }
+            });
+            assert executor.getAvailableCapacity() == 0 : "Capacity should be exhausted.";
+            Thread.currentThread().interrupt();
+            try
+            {
+                executor.submit(new Callable<Object>()
+                {
+                    public Object call()
+                    {
+                        return null;
+                    }
+                });
+                assert false : "Submission should have been rejected.";
+            }
+            catch (RejectedExecutionException ex)
+            {
+                assert Thread.interrupted() : "Interrupted status should be restored.";
+            }
+            release.countDown();
+            assert blocker.get() : "Blocking task timed out.";
+            waitForCapacity(executor, 1);
+        }
+        finally
+        {
+            Thread.interrupted();
+            executor.close();
+        }
+    }
+
+
+    @Test
+    public void testPermitReturnedOnCancellation() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        BoundedEvaluationExecutor executor = new BoundedEvaluationExecutor(new ThreadPoolEvaluationExecutor(1), 2);
+        try
+        {
+            executor.submit(new Callable<Boolean>()
+            {
+                public Boolean call() throws InterruptedException
+                {
+                    return release.await(10, TimeUnit.SECONDS);
+                }
+            });
+            // This one is queued behind the first and will never start.
+            Future<Object> queued = executor.submit(new Callable<Object>()
+            {
+                public Object call()
+                {
+                    return null;
+                }
+            });
+            assert executor.getAvailableCapacity() == 0 : "Capacity should be exhausted.";
+            assert queued.cancel(false) : "Queued task should be cancellable.";
+            assert executor.getAvailableCapacity() == 1 : "Cancelled task should release its permit.";
+            release.countDown();
+            waitForCapacity(executor, 2);
+        }
+        finally
+        {
+            executor.close();
+        }
+    }
+
+
+    /**
+     * A task that is still running after it is cancelled should keep its permit until
+     * it actually finishes, otherwise the limit on outstanding work would be exceeded.
+     */
+    @Test
+    public void testRunningTaskKeepsPermitWhenCancelled() throws Exception
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        BoundedEvaluationExecutor executor = new BoundedEvaluationExecutor(new ThreadPoolEvaluationExecutor(1), 1);
+        try
+        {
+            Future<Object> running = executor.submit(new Callable<Object>()
+            {
+                public Object call()
+                {
+                    started.countDown();
+                    // Ignore interruption, like an evaluation that doesn't check for it.
+                    boolean finished = false;
+                    while (!finished)
+                    {
+                        try
+                        {
+                            finished = release.await(10, TimeUnit.SECONDS);
+                        }
+                        catch (InterruptedException ex)
+                        {
+                            // Keep waiting.
+                        }
+                    }
+                    return null;
+                }
+            });
+            assert started.await(10, TimeUnit.SECONDS) : "Task did not start.";
+            assert running.cancel(true) : "Running task should be cancellable.";
+            Thread.sleep(50);
+            assert executor.getAvailableCapacity() == 0 : "Permit should be held until the task finishes.";
+            release.countDown();
+            waitForCapacity(executor, 1);
+        }
+        finally
+        {
+            executor.close();
+        }
+    }
+
+
+    private void waitForCapacity(BoundedEvaluationExecutor executor, int capacity) throws InterruptedException
+    {
+        // Permits are released on the worker thread just after results are made available.
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getAvailableCapacity() < capacity && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assert executor.getAvailableCapacity() == capacity : "Wrong capacity: " + executor.getAvailableCapacity();
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroCapacity()
+    {
+        new BoundedEvaluationExecutor(new ThreadPoolEvaluationExecutor(1), 0);
+    }
+}
@@ -0,0 +1,64 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.evaluation;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link ForkJoinEvaluationExecutor}.
+ * @author Daniel Dyer
+ */
+public class ForkJoinEvaluationExecutorTest
+{
+    @Test
+    public void testOwnedPool() throws Exception
+    {
+        ForkJoinEvaluationExecutor executor = new ForkJoinEvaluationExecutor(2);
+        assert executor.getParallelism() == 2 : "Wrong parallelism: " + executor.getParallelism();
+        Future<Integer> result = executor.submit(new Callable<Integer>()
+        {
+            public Integer call()
+            {
+                return 42;
+            }
+        });
+        assert result.get() == 42 : "Wrong result: " + result.get();
+        executor.close();
+        assert ThreadPoolEvaluationExecutorTest.waitForTermination(executor) : "Pool not shut down.";
+    }
+
+
+    /**
+     * A pool supplied by the caller belongs to the caller and should not be shut down.
+     */
+    @Test
+    public void testSharedPool()
+    {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try
+        {
+            new ForkJoinEvaluationExecutor(pool, false).close();
+            assert !pool.isShutdown() : "Shared pool should not be shut down.";
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+}
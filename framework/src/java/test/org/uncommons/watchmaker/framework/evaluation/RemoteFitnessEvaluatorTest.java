@@ -0,0 +1,335 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.evaluation;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.annotations.Test;
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.FitnessEvaluator;
+import org.uncommons.watchmaker.framework.FrameworkTestUtils;
+import org.uncommons.watchmaker.framework.GenerationalEvolutionEngine;
+import org.uncommons.watchmaker.framework.factories.StubIntegerFactory;
+import org.uncommons.watchmaker.framework.operators.IntegerAdjuster;
+import org.uncommons.watchmaker.framework.persistence.Frame;
+import org.uncommons.watchmaker.framework.persistence.SerializationCodec;
+import org.uncommons.watchmaker.framework.selection.RankSelection;
+import org.uncommons.watchmaker.framework.termination.GenerationCount;
+
+/**
+ * Unit test for {@link RemoteFitnessEvaluator} and {@link RemoteEvaluationWorker}.
+ * Workers run on threads in this process and connect over the loopback interface.
+ * @author Daniel Dyer
+ */
+public class RemoteFitnessEvaluatorTest
+{
+    private static final String HOST = "localhost";
+
+    /**
+     * Each candidate in the requested slice should be scored by a worker, and scores
+     * outside of the slice should be left alone.
+     */
+    @Test(timeOut = 20000)
+    public void testBatches() throws Exception
+    {
+        RemoteFitnessEvaluator<Integer> evaluator = createEvaluator();
+        List<Thread> workers = new ArrayList<Thread>();
+        try
+        {
+            workers.add(startWorker(evaluator.getPort(), new ValueFitnessEvaluator()));
+            workers.add(startWorker(evaluator.getPort(), new ValueFitnessEvaluator()));
+            List<Integer> population = new ArrayList<Integer>();
+            for (int i = 0; i < 50; i++)
+            {
+                population.add(i * 2);
+            }
+            double[] scores = new double[population.size()];
+            evaluator.getFitnessScores(population, 5, 45, scores);
+            for (int i = 0; i < scores.length; i++)
+            {
+                double expected = i >= 5 && i < 45 ? population.get(i) : 0;
+                assert scores[i] == expected : "Wrong score at " + i + ": " + scores[i];
+            }
+            assert evaluator.getFitness(7, population) == 7 : "Wrong score for single candidate.";
+        }
+        finally
+        {
+            evaluator.close();
+        }
+        // Closing the evaluator should stop all of its workers.
+        for (Thread worker : workers)
+        {
+            worker.join(5000);
+            assert !worker.isAlive() : "Worker was not stopped.";
+        }
+    }
+
+
+    /**
+     * An engine should be able to use remote evaluation in place of a local fitness function.
+     */
+    @Test(timeOut = 20000)
+    public void testEvolution() throws Exception
+    {
+        RemoteFitnessEvaluator<Integer> evaluator = createEvaluator();
+        try
+        {
+            final AtomicInteger evaluationCount = new AtomicInteger();
+            startWorker(evaluator.getPort(), new ValueFitnessEvaluator()
+            {
+                @Override
+                public double getFitness(Integer candidate, List<? extends Integer> population)
+                {
+                    evaluationCount.incrementAndGet();
+                    return super.getFitness(candidate, population);
+                }
+            });
+            GenerationalEvolutionEngine<Integer> engine = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                                                   new IntegerAdjuster(2),
+                                                                                                   evaluator,
+                                                                                                   new RankSelection(),
+                                                                                                   FrameworkTestUtils.getRNG());
+            engine.setSingleThreaded(true);
+            List<EvaluatedCandidate<Integer>> population = engine.evolvePopulation(20, 0, new GenerationCount(3));
+            assert evaluationCount.get() == 60 : "Wrong number of remote evaluations: " + evaluationCount.get();
+            for (EvaluatedCandidate<Integer> candidate : population)
+            {
+                assert candidate.getFitness() == candidate.getCandidate() : "Wrong fitness for " + candidate.getCandidate();
+            }
+        }
+        finally
+        {
+            evaluator.close();
+        }
+    }
+
+
+    /**
+     * Batches sent to a worker that disappears should be evaluated by another worker.
+     */
+    @Test(timeOut = 20000)
+    public void testWorkerFailure() throws Exception
+    {
+        final RemoteFitnessEvaluator<Integer> evaluator = createEvaluator();
+        try
+        {
+            // A worker that accepts batches and then fails without returning them.  A
+            // replacement is started once it has gone.
+            Socket faultyWorker = new Socket(HOST, evaluator.getPort());
+            DataOutputStream out = new DataOutputStream(faultyWorker.getOutputStream());
+            Frame.Builder hello = new Frame.Builder();
+            hello.writeInt(EvaluationProtocol.VERSION);
+            hello.toFrame(EvaluationProtocol.HELLO).write(out);
+            out.flush();
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(faultyWorker.getInputStream()));
+            Thread failure = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        Frame.read(in);
+                        in.close();
+                    }
+                    catch (IOException ex)
+                    {
+                        throw new IllegalStateException(ex);
+                    }
+                    startWorker(evaluator.getPort(), new ValueFitnessEvaluator());
+                }
+            };
+            failure.setDaemon(true);
+            failure.start();
+
+            List<Integer> population = new ArrayList<Integer>();
+            for (int i = 0; i < 20; i++)
+            {
+                population.add(i);
+            }
+            double[] scores = new double[population.size()];
+            evaluator.getFitnessScores(population, 0, population.size(), scores);
+            for (int i = 0; i < scores.length; i++)
+            {
+                assert scores[i] == i : "Wrong score at " + i + ": " + scores[i];
+            }
+        }
+        finally
+        {
+            evaluator.close();
+        }
+    }
+
+
+    /**
+     * A fitness function that fails on a worker should make the evaluation fail rather than
+     * be retried indefinitely.
+     */
+    @Test(timeOut = 20000, expectedExceptions = IllegalStateException.class)
+    public void testFitnessFunctionFailure() throws Exception
+    {
+        RemoteFitnessEvaluator<Integer> evaluator = createEvaluator();
+        try
+        {
+            startWorker(evaluator.getPort(), new ValueFitnessEvaluator()
+            {
+                @Override
+                public double getFitness(Integer candidate, List<? extends Integer> population)
+                {
+                    throw new IllegalArgumentException("Can't evaluate " + candidate);
+                }
+            });
+            evaluator.getFitness(1, new ArrayList<Integer>());
+        }
+        finally
+        {
+            evaluator.close();
+        }
+    }
+
+
+    /**
+     * If no worker connects before the timeout, the candidates should be evaluated by the
+     * fallback evaluator.
+     */
+    @Test(timeOut = 20000)
+    public void testLocalFallback() throws Exception
+    {
+        RemoteFitnessEvaluator<Integer> evaluator = createEvaluator();
+        try
+        {
+            evaluator.setWorkerTimeout(100, new ValueFitnessEvaluator());
+            List<Integer> population = new ArrayList<Integer>();
+            for (int i = 0; i < 10; i++)
+            {
+                population.add(i * 3);
+            }
+            double[] scores = new double[population.size()];
+            evaluator.getFitnessScores(population, 0, population.size(), scores);
+            for (int i = 0; i < scores.length; i++)
+            {
+                assert scores[i] == population.get(i) : "Wrong score at " + i + ": " + scores[i];
+            }
+        }
+        finally
+        {
+            evaluator.close();
+        }
+    }
+
+
+    /**
+     * Without a fallback evaluator, evaluation should fail if no worker connects before
+     * the timeout.
+     */
+    @Test(timeOut = 20000, expectedExceptions = IllegalStateException.class)
+    public void testNoWorkers() throws Exception
+    {
+        RemoteFitnessEvaluator<Integer> evaluator = createEvaluator();
+        try
+        {
+            evaluator.setWorkerTimeout(100, null);
+            evaluator.getFitness(1, new ArrayList<Integer>());
+        }
+        finally
+        {
+            evaluator.close();
+        }
+    }
+
+
+    /**
+     * A connection that never introduces itself should not hold up workers that connect
+     * after it.  The time-out is shorter than the time that the evaluator waits for the
+     * silent connection's introduction.
+     */
+    @Test(timeOut = 5000)
+    public void testSilentConnection() throws Exception
+    {
+        RemoteFitnessEvaluator<Integer> evaluator = createEvaluator();
+        Socket silentConnection = new Socket(HOST, evaluator.getPort());
+        try
+        {
+            startWorker(evaluator.getPort(), new ValueFitnessEvaluator());
+            assert evaluator.getFitness(5, new ArrayList<Integer>()) == 5 : "Wrong score.";
+        }
+        finally
+        {
+            evaluator.close();
+            silentConnection.close();
+        }
+    }
+
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testEvaluateAfterClose() throws IOException
+    {
+        RemoteFitnessEvaluator<Integer> evaluator = createEvaluator();
+        evaluator.close();
+        evaluator.getFitness(1, new ArrayList<Integer>());
+    }
+
+
+    private RemoteFitnessEvaluator<Integer> createEvaluator() throws IOException
+    {
+        return new RemoteFitnessEvaluator<Integer>(0, new SerializationCodec<Integer>(Integer.class), true, 3, 2);
+    }
+
+
+    private Thread startWorker(final int port, final FitnessEvaluator<Integer> fitnessEvaluator)
+    {
+        Thread worker = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    new RemoteEvaluationWorker<Integer>(fitnessEvaluator,
+                                                        new SerializationCodec<Integer>(Integer.class),
+                                                        2).run(HOST, port);
+                }
+                catch (IOException ex)
+                {
+                    // The evaluator has gone.
+                }
+            }
+        };
+        worker.setDaemon(true);
+        worker.start();
+        return worker;
+    }
+
+
+    private static class ValueFitnessEvaluator implements FitnessEvaluator<Integer>
+    {
+        public double getFitness(Integer candidate, List<? extends Integer> population)
+        {
+            return candidate;
+        }
+
+        public boolean isNatural()
+        {
+            return true;
+        }
+    }
+}
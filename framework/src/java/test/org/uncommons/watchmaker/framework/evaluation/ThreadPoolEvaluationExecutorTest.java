@@ -0,0 +1,129 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.evaluation;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link ThreadPoolEvaluationExecutor}.
+ * @author Daniel Dyer
+ */
+public class ThreadPoolEvaluationExecutorTest
+{
+    @Test
+    public void testClose() throws Exception
+    {
+        ThreadPoolEvaluationExecutor executor = new ThreadPoolEvaluationExecutor(3);
+        assert executor.getParallelism() == 3 : "Wrong parallelism: " + executor.getParallelism();
+        Future<String> result = executor.submit(new Callable<String>()
+        {
+            public String call()
+            {
+                return Thread.currentThread().getName();
+            }
+        });
+        assert result.get().startsWith("EvaluationThread") : "Task ran on wrong thread: " + result.get();
+        executor.close();
+        executor.close(); // Closing twice should be harmless.
+        assert waitForTermination(executor) : "Threads not released after close.";
+    }
+
+
+    @Test(expectedExceptions = RejectedExecutionException.class)
+    public void testSubmitAfterClose()
+    {
+        ThreadPoolEvaluationExecutor executor = new ThreadPoolEvaluationExecutor(1);
+        executor.close();
+        executor.submit(new Callable<Object>()
+        {
+            public Object call()
+            {
+                return null;
+            }
+        });
+    }
+
+
+    /**
+     * When the queue is bounded and full, submission should wait for space rather than
+     * rejecting the task.
+     */
+    @Test
+    public void testBoundedQueue() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final ThreadPoolEvaluationExecutor executor = new ThreadPoolEvaluationExecutor(1, 1);
+        try
+        {
+            Callable<Boolean> task = new Callable<Boolean>()
+            {
+                public Boolean call() throws InterruptedException
+                {
+                    return release.await(10, TimeUnit.SECONDS);
+                }
+            };
+            executor.submit(task); // Occupies the only thread.
+            executor.submit(task); // Fills the queue.
+            final CountDownLatch submitted = new CountDownLatch(1);
+            Thread producer = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    executor.submit(new Callable<Object>()
+                    {
+                        public Object call()
+                        {
+                            return null;
+                        }
+                    });
+                    submitted.countDown();
+                }
+            };
+            producer.start();
+            assert !submitted.await(200, TimeUnit.MILLISECONDS) : "Submission should block while queue is full.";
+            release.countDown();
+            assert submitted.await(5, TimeUnit.SECONDS) : "Submission should proceed once there is space.";
+        }
+        finally
+        {
+            executor.close();
+        }
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroThreads()
+    {
+        new ThreadPoolEvaluationExecutor(0);
+    }
+
+
+    static boolean waitForTermination(ExecutorServiceEvaluationExecutor executor) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!executor.isTerminated() && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        return executor.isTerminated();
+    }
+}
@@ -0,0 +1,101 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.evaluation;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link VirtualThreadEvaluationExecutor}.
+ * @author Daniel Dyer
+ */
+public class VirtualThreadEvaluationExecutorTest
+{
+    /**
+     * Every submitted task should get its own thread, so tasks that all wait for
+     * each other can complete regardless of the number of processors.
+     */
+    @Test
+    public void testThreadPerTask() throws Exception
+    {
+        final int taskCount = 50;
+        final CountDownLatch allStarted = new CountDownLatch(taskCount);
+        VirtualThreadEvaluationExecutor executor = new VirtualThreadEvaluationExecutor();
+        try
+        {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(taskCount);
+            for (int i = 0; i < taskCount; i++)
+            {
+                results.add(executor.submit(new Callable<Boolean>()
+                {
+                    public Boolean call() throws InterruptedException
+                    {
+                        allStarted.countDown();
+                        return allStarted.await(10, TimeUnit.SECONDS);
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results)
+            {
+                assert result.get() : "Tasks did not run concurrently.";
+            }
+        }
+        finally
+        {
+            executor.close();
+        }
+        assert ThreadPoolEvaluationExecutorTest.waitForTermination(executor) : "Executor not shut down.";
+    }
+
+
+    /**
+     * The executor should report the kind of thread that evaluations actually run on.
+     */
+    @Test
+    public void testIsVirtual() throws Exception
+    {
+        VirtualThreadEvaluationExecutor executor = new VirtualThreadEvaluationExecutor();
+        try
+        {
+            boolean virtual = executor.submit(new Callable<Boolean>()
+            {
+                public Boolean call() throws Exception
+                {
+                    try
+                    {
+                        Method isVirtual = Thread.class.getMethod("isVirtual");
+                        return (Boolean) isVirtual.invoke(Thread.currentThread());
+                    }
+                    catch (NoSuchMethodException ex)
+                    {
+                        return false; // Runtime does not have virtual threads.
+                    }
+                }
+            }).get();
+            assert executor.isVirtual() == virtual : "Executor misreports its thread type.";
+        }
+        finally
+        {
+            executor.close();
+        }
+    }
+}
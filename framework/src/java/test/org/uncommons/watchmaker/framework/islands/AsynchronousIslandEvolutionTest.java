@@ -0,0 +1,306 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.islands;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.testng.annotations.Test;
+import org.uncommons.watchmaker.framework.EvolutionEngine;
+import org.uncommons.watchmaker.framework.FitnessEvaluator;
+import org.uncommons.watchmaker.framework.FrameworkTestUtils;
+import org.uncommons.watchmaker.framework.GenerationalEvolutionEngine;
+import org.uncommons.watchmaker.framework.PopulationData;
+import org.uncommons.watchmaker.framework.TerminationCondition;
+import org.uncommons.watchmaker.framework.factories.AbstractCandidateFactory;
+import org.uncommons.watchmaker.framework.factories.StubIntegerFactory;
+import org.uncommons.watchmaker.framework.operators.IdentityOperator;
+import org.uncommons.watchmaker.framework.operators.IntegerAdjuster;
+import org.uncommons.watchmaker.framework.selection.RankSelection;
+import org.uncommons.watchmaker.framework.termination.ElapsedTime;
+import org.uncommons.watchmaker.framework.termination.GenerationCount;
+
+/**
+ * Unit test for the {@link AsynchronousIslandEvolution} class.
+ * @author Daniel Dyer
+ */
+public class AsynchronousIslandEvolutionTest
+{
+    /**
+     * Observers should receive global updates on the request thread and island updates
+     * from every island, and the termination condition should be checked against the
+     * global view.
+     */
+    @Test
+    public void testListeners()
+    {
+        final int islandCount = 3;
+        AsynchronousIslandEvolution<Integer> islandEvolution
+            = new AsynchronousIslandEvolution<Integer>(islandCount,
+                                                       new StubIntegerFactory(),
+                                                       new IntegerAdjuster(2),
+                                                       new ValueFitnessEvaluator(),
+                                                       new RankSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        final Thread requestThread = Thread.currentThread();
+        final AtomicInteger globalUpdates = new AtomicInteger();
+        final AtomicInteger[] islandUpdates = new AtomicInteger[islandCount];
+        for (int i = 0; i < islandCount; i++)
+        {
+            islandUpdates[i] = new AtomicInteger();
+        }
+        islandEvolution.addEvolutionObserver(new IslandEvolutionObserver<Integer>()
+        {
+            public void populationUpdate(PopulationData<? extends Integer> populationData)
+            {
+                assert Thread.currentThread() == requestThread : "Global update should be on the request thread.";
+                globalUpdates.incrementAndGet();
+            }
+
+
+            public void islandPopulationUpdate(int islandIndex, PopulationData<? extends Integer> populationData)
+            {
+                islandUpdates[islandIndex].incrementAndGet();
+            }
+        });
+        GenerationCount condition = new GenerationCount(5);
+        Integer result = islandEvolution.evolve(10, 1, 2, 2, condition);
+
+        assert result != null : "Evolution should return the fittest candidate.";
+        assert globalUpdates.get() > 0 : "Observer should have received global updates.";
+        for (int i = 0; i < islandCount; i++)
+        {
+            assert islandUpdates[i].get() >= 2 : "Island " + i + " should have completed an epoch.";
+        }
+        assert islandEvolution.getPopulationData().getGenerationNumber() >= 4
+            : "Wrong final generation number: " + islandEvolution.getPopulationData().getGenerationNumber();
+        assert islandEvolution.getSatisfiedTerminationConditions().contains(condition)
+            : "Generation count should be satisfied.";
+    }
+
+
+    /**
+     * Migrants sent by one island should be absorbed by the next.  The first island's
+     * population is entirely fitter than the second's, and neither population changes
+     * except through migration, so the second island's best candidate can only improve
+     * through immigration.
+     */
+    @Test
+    public void testMigration()
+    {
+        List<EvolutionEngine<Integer>> islands = new ArrayList<EvolutionEngine<Integer>>(2);
+        islands.add(createIsland(100));
+        islands.add(createIsland(0));
+        AsynchronousIslandEvolution<Integer> islandEvolution = new AsynchronousIslandEvolution<Integer>(islands,
+                                                                                                        true,
+                                                                                                        new Random(42));
+        final AtomicReferenceArray<Integer> bestCandidates = new AtomicReferenceArray<Integer>(2);
+        islandEvolution.addEvolutionObserver(new IslandEvolutionObserver<Integer>()
+        {
+            public void populationUpdate(PopulationData<? extends Integer> populationData){}
+
+
+            public void islandPopulationUpdate(int islandIndex, PopulationData<? extends Integer> populationData)
+            {
+                bestCandidates.set(islandIndex, populationData.getBestCandidate());
+            }
+        });
+        // The islands' speeds are unpredictable, so rather than running for a fixed number of
+        // epochs, run until the immigrants arrive (or give up).
+        TerminationCondition immigrantsArrived = new TerminationCondition()
+        {
+            public boolean shouldTerminate(PopulationData<?> populationData)
+            {
+                Integer best = bestCandidates.get(1);
+                return best != null && best == 100;
+            }
+        };
+        islandEvolution.evolve(10, 1, 1, 2, immigrantsArrived, new ElapsedTime(10000));
+        assert islandEvolution.getSatisfiedTerminationConditions().contains(immigrantsArrived)
+            : "Immigrants were not absorbed, best is " + bestCandidates.get(1);
+    }
+
+
+    @Test
+    public void testInterrupt()
+    {
+        AsynchronousIslandEvolution<Integer> islandEvolution
+            = new AsynchronousIslandEvolution<Integer>(2,
+                                                       new StubIntegerFactory(),
+                                                       new IntegerAdjuster(2),
+                                                       new ValueFitnessEvaluator(),
+                                                       new RankSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        final long timeout = 1000L;
+        final Thread requestThread = Thread.currentThread();
+        islandEvolution.addEvolutionObserver(new IslandEvolutionObserver<Integer>()
+        {
+            public void populationUpdate(PopulationData<? extends Integer> populationData)
+            {
+                if (populationData.getElapsedTime() > timeout / 2)
+                {
+                    requestThread.interrupt();
+                }
+            }
+
+
+            public void islandPopulationUpdate(int islandIndex, PopulationData<? extends Integer> populationData){}
+        });
+        long startTime = System.currentTimeMillis();
+        islandEvolution.evolve(10, 0, 10, 0, new ElapsedTime(timeout));
+        long elapsedTime = System.currentTimeMillis() - startTime;
+        assert Thread.interrupted() : "Thread was not interrupted before timeout.";
+        assert elapsedTime < timeout : "Engine did not respond to interrupt before timeout.";
+        assert islandEvolution.getSatisfiedTerminationConditions().isEmpty()
+            : "Interrupted islands should have no satisfied termination conditions.";
+    }
+
+
+    /**
+     * There may be more islands than threads in the pool, and every island should still get
+     * its turn.  When evolution ends, the islands should already have stopped.
+     */
+    @Test(timeOut = 30000)
+    public void testMoreIslandsThanThreads() throws InterruptedException
+    {
+        final int islandCount = 4;
+        List<EvolutionEngine<Integer>> islands = new ArrayList<EvolutionEngine<Integer>>(islandCount);
+        for (int i = 0; i < islandCount; i++)
+        {
+            islands.add(createIsland(i));
+        }
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try
+        {
+            AsynchronousIslandEvolution<Integer> islandEvolution
+                = new AsynchronousIslandEvolution<Integer>(islands, true, FrameworkTestUtils.getRNG(), pool);
+            final AtomicInteger islandUpdates = new AtomicInteger();
+            islandEvolution.addEvolutionObserver(new IslandEvolutionObserver<Integer>()
+            {
+                public void populationUpdate(PopulationData<? extends Integer> populationData){}
+
+
+                public void islandPopulationUpdate(int islandIndex, PopulationData<? extends Integer> populationData)
+                {
+                    islandUpdates.incrementAndGet();
+                }
+            });
+            Integer result = islandEvolution.evolve(10, 0, 2, 1, new GenerationCount(3));
+            assert result != null : "Every island should have completed an epoch.";
+            int updatesOnReturn = islandUpdates.get();
+            Thread.sleep(100);
+            assert islandUpdates.get() == updatesOnReturn : "Islands evolved after evolution had ended.";
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+
+    /**
+     * Errors, as well as exceptions, on an island should end the evolution and be reported
+     * to the request thread.
+     */
+    @Test(timeOut = 30000)
+    public void testIslandFailure()
+    {
+        FitnessEvaluator<Integer> evaluator = new FitnessEvaluator<Integer>()
+        {
+            public double getFitness(Integer candidate, List<? extends Integer> population)
+            {
+                throw new AssertionError("Evaluation failed.");
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        };
+        AsynchronousIslandEvolution<Integer> islandEvolution
+            = new AsynchronousIslandEvolution<Integer>(2,
+                                                       new StubIntegerFactory(),
+                                                       new IntegerAdjuster(2),
+                                                       evaluator,
+                                                       new RankSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        try
+        {
+            islandEvolution.evolve(10, 0, 2, 1, new GenerationCount(3));
+            assert false : "Island failure was not reported.";
+        }
+        catch (IllegalStateException ex)
+        {
+            Throwable cause = ex.getCause();
+            while (cause != null && !(cause instanceof AssertionError))
+            {
+                cause = cause.getCause();
+            }
+            assert cause != null : "Wrong cause: " + ex.getCause();
+        }
+    }
+
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testGetSatisfiedTerminationConditionsBeforeStart()
+    {
+        AsynchronousIslandEvolution<Integer> islandEvolution
+            = new AsynchronousIslandEvolution<Integer>(3,
+                                                       new StubIntegerFactory(),
+                                                       new IntegerAdjuster(2),
+                                                       new ValueFitnessEvaluator(),
+                                                       new RankSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        // Should throw an IllegalStateException because evolution hasn't started, let alone terminated.
+        islandEvolution.getSatisfiedTerminationConditions();
+    }
+
+
+    private EvolutionEngine<Integer> createIsland(final int value)
+    {
+        GenerationalEvolutionEngine<Integer> island
+            = new GenerationalEvolutionEngine<Integer>(new AbstractCandidateFactory<Integer>()
+                                                       {
+                                                           public Integer generateRandomCandidate(Random rng)
+                                                           {
+                                                               return value;
+                                                           }
+                                                       },
+                                                       new IdentityOperator<Integer>(),
+                                                       new ValueFitnessEvaluator(),
+                                                       new RankSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        island.setSingleThreaded(true);
+        return island;
+    }
+
+
+    private static class ValueFitnessEvaluator implements FitnessEvaluator<Integer>
+    {
+        public double getFitness(Integer candidate, List<? extends Integer> population)
+        {
+            return candidate;
+        }
+
+        public boolean isNatural()
+        {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.islands;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.annotations.Test;
+import org.uncommons.watchmaker.framework.FitnessEvaluator;
+import org.uncommons.watchmaker.framework.FrameworkTestUtils;
+import org.uncommons.watchmaker.framework.GenerationalEvolutionEngine;
+import org.uncommons.watchmaker.framework.PopulationData;
+import org.uncommons.watchmaker.framework.factories.StubIntegerFactory;
+import org.uncommons.watchmaker.framework.operators.IntegerAdjuster;
+import org.uncommons.watchmaker.framework.persistence.Frame;
+import org.uncommons.watchmaker.framework.persistence.SerializationCodec;
+import org.uncommons.watchmaker.framework.selection.RankSelection;
+import org.uncommons.watchmaker.framework.termination.GenerationCount;
+
+/**
+ * Unit test for the {@link DistributedIslandEvolution} class.  Workers run on threads
+ * in this process and connect over the loopback interface.
+ * @author Daniel Dyer
+ */
+public class DistributedIslandEvolutionTest
+{
+    private static final String HOST = "localhost";
+
+    /**
+     * Observers should receive each island's generations from the workers and a global
+     * update at the end of each epoch.
+     */
+    @Test
+    public void testEvolution() throws Exception
+    {
+        final int islandCount = 3;
+        DistributedIslandEvolution<Integer> islandEvolution = createIslandEvolution(islandCount);
+        List<Thread> workers = new ArrayList<Thread>();
+        try
+        {
+            for (int i = 0; i < islandCount; i++)
+            {
+                workers.add(startWorker(islandEvolution.getPort()));
+            }
+            final AtomicInteger epochCount = new AtomicInteger();
+            final AtomicInteger[] generationCounts = new AtomicInteger[islandCount];
+            for (int i = 0; i < islandCount; i++)
+            {
+                generationCounts[i] = new AtomicInteger();
+            }
+            final int[] bestFitness = new int[1];
+            islandEvolution.addEvolutionObserver(new IslandEvolutionObserver<Integer>()
+            {
+                public void populationUpdate(PopulationData<? extends Integer> populationData)
+                {
+                    epochCount.incrementAndGet();
+                    bestFitness[0] = (int) populationData.getBestCandidateFitness();
+                }
+
+
+                public void islandPopulationUpdate(int islandIndex, PopulationData<? extends Integer> populationData)
+                {
+                    generationCounts[islandIndex].incrementAndGet();
+                }
+            });
+
+            Integer result = islandEvolution.evolve(10, 1, 5, 2, new GenerationCount(3));
+            assert epochCount.get() == 3 : "Should have been 3 epochs, was " + epochCount.get();
+            for (int i = 0; i < islandCount; i++)
+            {
+                assert generationCounts[i].get() == 15
+                    : "Island " + i + " should have 15 generations, had " + generationCounts[i].get();
+            }
+            assert result == bestFitness[0] : "Result should be the fittest candidate, was " + result;
+            assert islandEvolution.getSatisfiedTerminationConditions().size() == 1
+                : "Wrong number of satisfied conditions.";
+        }
+        finally
+        {
+            islandEvolution.close();
+        }
+        // Closing the coordinator should stop all of its workers.
+        for (Thread worker : workers)
+        {
+            worker.join(5000);
+            assert !worker.isAlive() : "Worker was not stopped.";
+        }
+    }
+
+
+    /**
+     * If a worker disappears during an epoch, its island should be taken over by
+     * another worker.
+     */
+    @Test(timeOut = 20000)
+    public void testWorkerFailure() throws Exception
+    {
+        final DistributedIslandEvolution<Integer> islandEvolution = createIslandEvolution(2);
+        try
+        {
+            startWorker(islandEvolution.getPort());
+            // A worker that accepts an island and then fails before completing the epoch.
+            // It reports some generations first, which should not be passed on because
+            // the epoch is restarted.  A replacement is started once it has gone.
+            Thread faultyWorker = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        Socket socket = new Socket(HOST, islandEvolution.getPort());
+                        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                        Frame.Builder hello = new Frame.Builder();
+                        hello.writeInt(IslandProtocol.VERSION);
+                        hello.toFrame(IslandProtocol.HELLO).write(out);
+                        out.flush();
+                        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                        Frame.read(in);
+                        Frame.Builder statistics = new Frame.Builder();
+                        statistics.writeInt(2);
+                        for (int i = 0; i < 2; i++)
+                        {
+                            IslandProtocol.writeStatistics(new PopulationData<Integer>(0, 0, 0, 0, true, 10, 0, i, 0),
+                                                           new SerializationCodec<Integer>(Integer.class),
+                                                           statistics);
+                        }
+                        statistics.toFrame(IslandProtocol.STATISTICS).write(out);
+                        out.flush();
+                        socket.close();
+                    }
+                    catch (IOException ex)
+                    {
+                        throw new IllegalStateException(ex);
+                    }
+                    startWorker(islandEvolution.getPort());
+                }
+            };
+            faultyWorker.setDaemon(true);
+            faultyWorker.start();
+
+            final AtomicInteger[] generationCounts = {new AtomicInteger(), new AtomicInteger()};
+            islandEvolution.addEvolutionObserver(new IslandEvolutionObserver<Integer>()
+            {
+                public void populationUpdate(PopulationData<? extends Integer> populationData)
+                {
+                    // Only island updates are checked by this test.
+                }
+
+
+                public void islandPopulationUpdate(int islandIndex, PopulationData<? extends Integer> populationData)
+                {
+                    generationCounts[islandIndex].incrementAndGet();
+                }
+            });
+            islandEvolution.evolve(10, 0, 4, 1, new GenerationCount(2));
+            for (AtomicInteger generationCount : generationCounts)
+            {
+                assert generationCount.get() == 8 : "Each island should have 8 generations, had " + generationCount.get();
+            }
+            assert islandEvolution.getMetrics().getGenerationCount() == 16
+                : "Wrong generation count: " + islandEvolution.getMetrics().getGenerationCount();
+        }
+        finally
+        {
+            islandEvolution.close();
+        }
+    }
+
+
+    /**
+     * If the request thread is interrupted while the workers are part-way through an epoch,
+     * the fittest candidate from the last complete epoch should be returned.
+     */
+    @Test(timeOut = 20000)
+    public void testInterruptDuringEpoch() throws Exception
+    {
+        final int islandCount = 2;
+        DistributedIslandEvolution<Integer> islandEvolution = createIslandEvolution(islandCount);
+        try
+        {
+            final Thread requestThread = Thread.currentThread();
+            final AtomicBoolean interruptRequest = new AtomicBoolean(false);
+            FitnessEvaluator<Integer> evaluator = new ValueFitnessEvaluator()
+            {
+                @Override
+                public double getFitness(Integer candidate, List<? extends Integer> population)
+                {
+                    if (interruptRequest.compareAndSet(true, false))
+                    {
+                        requestThread.interrupt();
+                        try
+                        {
+                            // Make sure that the epoch is still in progress when the interrupt arrives.
+                            Thread.sleep(200);
+                        }
+                        catch (InterruptedException ex)
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return super.getFitness(candidate, population);
+                }
+            };
+            for (int i = 0; i < islandCount; i++)
+            {
+                startWorker(islandEvolution.getPort(), evaluator);
+            }
+            final int[] fittest = new int[1];
+            islandEvolution.addEvolutionObserver(new IslandEvolutionObserver<Integer>()
+            {
+                public void populationUpdate(PopulationData<? extends Integer> populationData)
+                {
+                    fittest[0] = populationData.getBestCandidate();
+                    // Interrupt the next epoch.
+                    interruptRequest.set(true);
+                }
+
+
+                public void islandPopulationUpdate(int islandIndex, PopulationData<? extends Integer> populationData){}
+            });
+            Integer result = islandEvolution.evolve(10, 1, 5, 2, new GenerationCount(10));
+            assert Thread.interrupted() : "Thread was not interrupted.";
+            assert result != null && result == fittest[0]
+                : "Should return the fittest candidate of the last complete epoch, returned " + result;
+            assert islandEvolution.getSatisfiedTerminationConditions().isEmpty()
+                : "Interrupted islands should have no satisfied termination conditions.";
+        }
+        finally
+        {
+            islandEvolution.close();
+        }
+    }
+
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testEvolveAfterClose() throws IOException
+    {
+        DistributedIslandEvolution<Integer> islandEvolution = createIslandEvolution(1);
+        islandEvolution.close();
+        islandEvolution.evolve(10, 0, 1, 0, new GenerationCount(1));
+    }
+
+
+    private DistributedIslandEvolution<Integer> createIslandEvolution(int islandCount) throws IOException
+    {
+        return new DistributedIslandEvolution<Integer>(islandCount,
+                                                       0,
+                                                       new RingMigration(),
+                                                       new SerializationCodec<Integer>(Integer.class),
+                                                       true,
+                                                       FrameworkTestUtils.getRNG());
+    }
+
+
+    private Thread startWorker(int port)
+    {
+        return startWorker(port, new ValueFitnessEvaluator());
+    }
+
+
+    private Thread startWorker(final int port, final FitnessEvaluator<Integer> evaluator)
+    {
+        Thread worker = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                GenerationalEvolutionEngine<Integer> engine
+                    = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                               new IntegerAdjuster(2),
+                                                               evaluator,
+                                                               new RankSelection(),
+                                                               FrameworkTestUtils.getRNG());
+                engine.setSingleThreaded(true);
+                try
+                {
+                    new RemoteIsland<Integer>(engine, new SerializationCodec<Integer>(Integer.class)).run(HOST, port);
+                }
+                catch (IOException ex)
+                {
+                    // The coordinator has gone.
+                }
+            }
+        };
+        worker.setDaemon(true);
+        worker.start();
+        return worker;
+    }
+
+
+    private static class ValueFitnessEvaluator implements FitnessEvaluator<Integer>
+    {
+        public double getFitness(Integer candidate, List<? extends Integer> population)
+        {
+            return candidate;
+        }
+
+        public boolean isNatural()
+        {
+            return true;
+        }
+    }
+}
@@ -15,13 +15,22 @@
 //=============================================================================
 package org.uncommons.watchmaker.framework.islands;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.testng.annotations.Test;
+import org.uncommons.maths.random.MersenneTwisterRNG;
+import org.uncommons.watchmaker.framework.EvolutionMetrics;
 import org.uncommons.watchmaker.framework.FitnessEvaluator;
 import org.uncommons.watchmaker.framework.FrameworkTestUtils;
 import org.uncommons.watchmaker.framework.PopulationData;
+import org.uncommons.watchmaker.framework.RandomStreams;
 import org.uncommons.watchmaker.framework.factories.StubIntegerFactory;
 import org.uncommons.watchmaker.framework.operators.IntegerAdjuster;
+import org.uncommons.watchmaker.framework.selection.RankSelection;
 import org.uncommons.watchmaker.framework.selection.RouletteWheelSelection;
 import org.uncommons.watchmaker.framework.termination.ElapsedTime;
 import org.uncommons.watchmaker.framework.termination.GenerationCount;
@@ -113,6 +122,228 @@ public class IslandEvolutionTest
     }
 
 
+    /**
+     * If the request thread is interrupted while the islands are part-way through an epoch,
+     * the fittest candidate from the last complete epoch should be returned.
+     */
+    @Test(timeOut = 30000)
+    public void testInterruptDuringEpoch()
+    {
+        final Thread requestThread = Thread.currentThread();
+        final AtomicBoolean interruptRequest = new AtomicBoolean(false);
+        FitnessEvaluator<Integer> evaluator = new FitnessEvaluator<Integer>()
+        {
+            public double getFitness(Integer candidate, List<? extends Integer> population)
+            {
+                if (interruptRequest.compareAndSet(true, false))
+                {
+                    requestThread.interrupt();
+                    try
+                    {
+                        // Make sure that the epoch is still in progress when the interrupt arrives.
+                        Thread.sleep(200);
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return candidate;
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        };
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try
+        {
+            IslandEvolution<Integer> islandEvolution = new IslandEvolution<Integer>(2,
+                                                                                    new RingMigration(),
+                                                                                    new StubIntegerFactory(),
+                                                                                    new IntegerAdjuster(2),
+                                                                                    evaluator,
+                                                                                    new RankSelection(),
+                                                                                    FrameworkTestUtils.getRNG(),
+                                                                                    pool);
+            final int[] fittest = new int[1];
+            islandEvolution.addEvolutionObserver(new IslandEvolutionObserver<Integer>()
+            {
+                public void populationUpdate(PopulationData<? extends Integer> populationData)
+                {
+                    fittest[0] = populationData.getBestCandidate();
+                    // Interrupt the next epoch.
+                    interruptRequest.set(true);
+                }
+
+
+                public void islandPopulationUpdate(int islandIndex, PopulationData<? extends Integer> populationData){}
+            });
+            Integer result = islandEvolution.evolve(10, 1, 5, 2, new GenerationCount(10));
+            assert Thread.interrupted() : "Thread was not interrupted.";
+            assert result != null && result == fittest[0]
+                : "Should return the fittest candidate of the last complete epoch, returned " + result;
+            assert islandEvolution.getSatisfiedTerminationConditions().isEmpty()
+                : "Interrupted islands should have no satisfied termination conditions.";
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+
+    /**
+     * Islands evolve concurrently, so without random streams the order in which they draw from
+     * the shared RNG varies from run to run.  With streams, each island has its own sequence and
+     * the whole run is determined by the master seed.
+     */
+    @Test
+    public void testRandomStreams()
+    {
+        List<List<Double>> first = evolveWithStreams(new MersenneTwisterRNG());
+        List<List<Double>> second = evolveWithStreams(new MersenneTwisterRNG());
+        assert first.equals(second) : "Island evolution with the same streams should be repeatable.";
+    }
+
+
+    private List<List<Double>> evolveWithStreams(MersenneTwisterRNG rng)
+    {
+        final int islandCount = 3;
+        IslandEvolution<Integer> islandEvolution = new IslandEvolution<Integer>(islandCount,
+                                                                                new RingMigration(),
+                                                                                new StubIntegerFactory(),
+                                                                                new IntegerAdjuster(2),
+                                                                                new ValueFitnessEvaluator(),
+                                                                                new RankSelection(),
+                                                                                rng);
+        islandEvolution.setRandomStreams(new RandomStreams(42));
+        final List<List<Double>> meanFitnesses = new ArrayList<List<Double>>(islandCount);
+        for (int i = 0; i < islandCount; i++)
+        {
+            meanFitnesses.add(new ArrayList<Double>());
+        }
+        islandEvolution.addEvolutionObserver(new IslandEvolutionObserver<Integer>()
+        {
+            public void populationUpdate(PopulationData<? extends Integer> populationData){}
+
+
+            public void islandPopulationUpdate(int islandIndex, PopulationData<? extends Integer> populationData)
+            {
+                meanFitnesses.get(islandIndex).add(populationData.getMeanFitness());
+            }
+        });
+        islandEvolution.evolve(10, 1, 5, 2, new GenerationCount(3));
+        return meanFitnesses;
+    }
+
+
+    /**
+     * Islands should start each epoch from their evaluated populations, so with an epoch
+     * length of one (no breeding), only the initial populations are ever evaluated.
+     */
+    @Test
+    public void testWarmStart()
+    {
+        final AtomicInteger evaluations = new AtomicInteger();
+        FitnessEvaluator<Integer> evaluator = new FitnessEvaluator<Integer>()
+        {
+            public double getFitness(Integer candidate, List<? extends Integer> population)
+            {
+                evaluations.incrementAndGet();
+                return candidate;
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        };
+        IslandEvolution<Integer> islandEvolution = new IslandEvolution<Integer>(3,
+                                                                                new RingMigration(),
+                                                                                new StubIntegerFactory(),
+                                                                                new IntegerAdjuster(2),
+                                                                                evaluator,
+                                                                                new RankSelection(),
+                                                                                FrameworkTestUtils.getRNG());
+        islandEvolution.evolve(10, 1, 1, 2, new GenerationCount(5));
+        assert evaluations.get() == 3 * 10 : "Wrong number of evaluations: " + evaluations.get();
+    }
+
+
+    /**
+     * Islands and their fitness evaluations should share the pool, and there may be more
+     * islands than threads without the islands starving their own evaluations.
+     */
+    @Test(timeOut = 30000)
+    public void testSharedPool()
+    {
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try
+        {
+            final AtomicInteger foreignThreads = new AtomicInteger();
+            FitnessEvaluator<Integer> evaluator = new FitnessEvaluator<Integer>()
+            {
+                public double getFitness(Integer candidate, List<? extends Integer> population)
+                {
+                    Thread thread = Thread.currentThread();
+                    if (!(thread instanceof ForkJoinWorkerThread) || ((ForkJoinWorkerThread) thread).getPool() != pool)
+                    {
+                        foreignThreads.incrementAndGet();
+                    }
+                    return candidate;
+                }
+
+                public boolean isNatural()
+                {
+                    return true;
+                }
+            };
+            IslandEvolution<Integer> islandEvolution = new IslandEvolution<Integer>(5,
+                                                                                    new RingMigration(),
+                                                                                    new StubIntegerFactory(),
+                                                                                    new IntegerAdjuster(2),
+                                                                                    evaluator,
+                                                                                    new RankSelection(),
+                                                                                    FrameworkTestUtils.getRNG(),
+                                                                                    pool);
+            islandEvolution.evolve(50, 1, 3, 2, new GenerationCount(3));
+            assert foreignThreads.get() == 0 : foreignThreads.get() + " evaluations were not run on the pool.";
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+
+    /**
+     * The combined metrics should report the work done on all of the islands as well as
+     * the number of epochs.
+     */
+    @Test
+    public void testMetrics()
+    {
+        final int islandCount = 3;
+        IslandEvolution<Integer> islandEvolution = new IslandEvolution<Integer>(islandCount,
+                                                                                new RingMigration(),
+                                                                                new StubIntegerFactory(),
+                                                                                new IntegerAdjuster(2),
+                                                                                new DummyFitnessEvaluator(),
+                                                                                new RouletteWheelSelection(),
+                                                                                FrameworkTestUtils.getRNG());
+        islandEvolution.evolve(10, 0, 5, 0, new GenerationCount(2));
+        EvolutionMetrics metrics = islandEvolution.getMetrics();
+        assert metrics.getEpochCount() == 2 : "Wrong epoch count: " + metrics.getEpochCount();
+        long expected = islandCount * 2 * 5;
+        assert metrics.getGenerationCount() == expected
+            : "Wrong generation count: " + metrics.getGenerationCount();
+        assert metrics.getPhaseNanos(EvolutionMetrics.Phase.SELECTION) > 0 : "Island selection time not included.";
+        assert metrics.getPhaseNanos(EvolutionMetrics.Phase.EVALUATION) > 0 : "Island evaluation time not included.";
+    }
+
+
     @Test(expectedExceptions = IllegalStateException.class)
     public void testGetSatisfiedTerminationConditionsBeforeStart()
     {
@@ -140,4 +371,18 @@ public class IslandEvolutionTest
             return true;
         }
     }
+
+
+    private static class ValueFitnessEvaluator implements FitnessEvaluator<Integer>
+    {
+        public double getFitness(Integer candidate, List<? extends Integer> population)
+        {
+            return candidate;
+        }
+
+        public boolean isNatural()
+        {
+            return true;
+        }
+    }
 }
@@ -0,0 +1,81 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.islands;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.testng.annotations.Test;
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.PopulationData;
+import org.uncommons.watchmaker.framework.persistence.CandidateCodec;
+import org.uncommons.watchmaker.framework.persistence.Frame;
+import org.uncommons.watchmaker.framework.persistence.SerializationCodec;
+
+/**
+ * Unit test for the messages exchanged by {@link DistributedIslandEvolution} and
+ * {@link RemoteIsland}.
+ * @author Daniel Dyer
+ */
+public class IslandProtocolTest
+{
+    private final CandidateCodec<String> codec = new SerializationCodec<String>(String.class);
+
+
+    @Test
+    public void testPopulation() throws IOException
+    {
+        List<EvaluatedCandidate<String>> population = new ArrayList<EvaluatedCandidate<String>>();
+        population.add(new EvaluatedCandidate<String>("AAA", 3));
+        population.add(new EvaluatedCandidate<String>("BB", 2.5));
+        population.add(new EvaluatedCandidate<String>("", 0));
+        Frame.Builder payload = new Frame.Builder();
+        IslandProtocol.writePopulation(population, codec, payload);
+
+        DataInputStream in = payload.toFrame(IslandProtocol.RESULT).getPayload();
+        List<EvaluatedCandidate<String>> received = IslandProtocol.readPopulation(codec, in);
+        assert received.size() == population.size() : "Wrong population size: " + received.size();
+        for (int i = 0; i < population.size(); i++)
+        {
+            assert received.get(i).getCandidate().equals(population.get(i).getCandidate())
+                : "Wrong candidate at " + i + ": " + received.get(i).getCandidate();
+            assert received.get(i).getFitness() == population.get(i).getFitness()
+                : "Wrong fitness at " + i + ": " + received.get(i).getFitness();
+        }
+    }
+
+
+    @Test
+    public void testStatistics() throws IOException
+    {
+        PopulationData<String> data = new PopulationData<String>("XYZ", 10, 5, 2, false, 20, 3, 7, 1234);
+        Frame.Builder payload = new Frame.Builder();
+        IslandProtocol.writeStatistics(data, codec, payload);
+
+        DataInputStream in = payload.toFrame(IslandProtocol.STATISTICS).getPayload();
+        PopulationData<String> received = IslandProtocol.readStatistics(codec, false, in);
+        assert received.getBestCandidate().equals("XYZ") : "Wrong best candidate: " + received.getBestCandidate();
+        assert received.getBestCandidateFitness() == 10 : "Wrong best fitness.";
+        assert received.getMeanFitness() == 5 : "Wrong mean fitness.";
+        assert received.getFitnessStandardDeviation() == 2 : "Wrong standard deviation.";
+        assert !received.isNaturalFitness() : "Wrong fitness type.";
+        assert received.getPopulationSize() == 20 : "Wrong population size.";
+        assert received.getEliteCount() == 3 : "Wrong elite count.";
+        assert received.getGenerationNumber() == 7 : "Wrong generation number.";
+        assert received.getElapsedTime() == 1234 : "Wrong elapsed time.";
+    }
+}
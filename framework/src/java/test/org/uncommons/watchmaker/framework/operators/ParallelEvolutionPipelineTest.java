@@ -0,0 +1,59 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.operators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.testng.annotations.Test;
+import org.uncommons.watchmaker.framework.EvolutionaryOperator;
+import org.uncommons.watchmaker.framework.FrameworkTestUtils;
+
+/**
+ * Unit test for pipelines that process chunks of the population in parallel.
+ * @author Daniel Dyer
+ */
+public class ParallelEvolutionPipelineTest
+{
+    @Test
+    public void testCompoundEvolution()
+    {
+        List<Integer> population = new ArrayList<Integer>(100);
+        for (int i = 0; i < 100; i++)
+        {
+            population.add(i * 10);
+        }
+        List<EvolutionaryOperator<Integer>> operators = new ArrayList<EvolutionaryOperator<Integer>>(2);
+        operators.add(new IntegerAdjuster(1));
+        operators.add(new IntegerAdjuster(3));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            EvolutionPipeline<Integer> evolutionScheme = new ParallelEvolutionPipeline<Integer>(operators, pool, 8);
+            population = evolutionScheme.apply(population, FrameworkTestUtils.getRNG());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        // Each candidate should be increased by 4, and the order preserved.
+        assert population.size() == 100 : "Wrong population size: " + population.size();
+        for (int i = 0; i < population.size(); i++)
+        {
+            assert population.get(i) == i * 10 + 4 : "Wrong candidate at index " + i + ": " + population.get(i);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.operators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.uncommons.maths.random.Probability;
+import org.uncommons.watchmaker.framework.EvolutionaryOperator;
+
+/**
+ * Unit test for applying operators to chunks of the population in parallel.
+ * @author Daniel Dyer
+ */
+public class ParallelOperatorTest
+{
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+    private ForkJoinPool pool;
+
+    @BeforeClass
+    public void createPool()
+    {
+        pool = new ForkJoinPool(4);
+    }
+
+
+    @AfterClass
+    public void shutdownPool()
+    {
+        pool.shutdown();
+    }
+
+
+    /**
+     * Offspring must be returned in the order of the candidates they were bred from.
+     */
+    @Test
+    public void testOrder()
+    {
+        List<Integer> population = new ArrayList<Integer>(100);
+        for (int i = 0; i < 100; i++)
+        {
+            population.add(i);
+        }
+        EvolutionaryOperator<Integer> operator = new ParallelOperator<Integer>(new IntegerAdjuster(1), pool, 7);
+        List<Integer> offspring = operator.apply(population, new Random(42));
+        assert offspring.size() == population.size() : "Wrong number of offspring: " + offspring.size();
+        for (int i = 0; i < offspring.size(); i++)
+        {
+            assert offspring.get(i) == i + 1 : "Offspring out of order at index " + i + ": " + offspring.get(i);
+        }
+    }
+
+
+    /**
+     * The results should depend only on the random number generator and the chunk size,
+     * not on the number of threads.
+     */
+    @Test
+    public void testDeterminism()
+    {
+        List<String> population = createPopulation();
+        StringMutation mutation = new StringMutation(ALPHABET, new Probability(0.5));
+        ForkJoinPool singleThread = new ForkJoinPool(1);
+        try
+        {
+            List<String> expected = new ParallelOperator<String>(mutation, singleThread, 10).apply(population,
+                                                                                                   new Random(42));
+            List<String> actual = new ParallelOperator<String>(mutation, pool, 10).apply(population, new Random(42));
+            assert actual.equals(expected) : "Results depend on the number of threads.";
+            assert !actual.equals(population) : "Candidates should have been mutated.";
+        }
+        finally
+        {
+            singleThread.shutdown();
+        }
+    }
+
+
+    /**
+     * Selections no bigger than a chunk are processed on the calling thread using the
+     * generator that is passed in.
+     */
+    @Test
+    public void testSingleChunk()
+    {
+        List<String> population = createPopulation();
+        StringMutation mutation = new StringMutation(ALPHABET, new Probability(0.5));
+        List<String> expected = mutation.apply(population, new Random(42));
+        List<String> actual = new ParallelOperator<String>(mutation, pool, 100).apply(population, new Random(42));
+        assert actual.equals(expected) : "Single chunk should be processed by the wrapped operator alone.";
+    }
+
+
+    /**
+     * A parallel operator wrapping another that uses the same pool should not deadlock.
+     */
+    @Test(timeOut = 10000)
+    public void testNested()
+    {
+        List<String> population = createPopulation();
+        EvolutionaryOperator<String> inner = new ParallelOperator<String>(new StringMutation(ALPHABET,
+                                                                                             new Probability(0.5)),
+                                                                          pool,
+                                                                          2);
+        List<String> offspring = new ParallelOperator<String>(inner, pool, 10).apply(population, new Random(42));
+        assert offspring.size() == population.size() : "Wrong number of offspring: " + offspring.size();
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidChunkSize()
+    {
+        new ParallelOperator<Integer>(new IntegerAdjuster(1), pool, 0);
+    }
+
+
+    private List<String> createPopulation()
+    {
+        List<String> population = new ArrayList<String>(100);
+        for (int i = 0; i < 100; i++)
+        {
+            population.add("ABCDEFGHIJ");
+        }
+        return population;
+    }
+}
@@ -0,0 +1,124 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.operators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+import org.uncommons.watchmaker.framework.EvolutionaryOperator;
+
+/**
+ * Unit test for forked evolutionary schemes that process chunks of the population in
+ * parallel.
+ * @author Daniel Dyer
+ */
+public class ParallelSplitEvolutionTest
+{
+    @Test
+    public void testSplit()
+    {
+        List<Integer> population = new ArrayList<Integer>(100);
+        for (int i = 0; i < 100; i++)
+        {
+            population.add((i + 1) * 10);
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            // Increment 30% of the numbers and decrement the other 70%.
+            SplitEvolution<Integer> evolutionScheme = new ParallelSplitEvolution<Integer>(new IntegerAdjuster(1),
+                                                                                          new IntegerAdjuster(-1),
+                                                                                          0.3d,
+                                                                                          pool,
+                                                                                          8);
+            List<Integer> offspring = evolutionScheme.apply(population, new Random(42));
+            int incrementedCount = 0;
+            for (Integer i : offspring)
+            {
+                if (i % 10 == 1)
+                {
+                    ++incrementedCount;
+                }
+                else
+                {
+                    assert i % 10 == 9 : "Mutation failed.";
+                }
+            }
+            assert offspring.size() == 100 : "Wrong population size: " + offspring.size();
+            assert incrementedCount == 30 : "Should be 30 incremented candidates, is " + incrementedCount;
+
+            // The split and the chunks' random streams depend only on the generator.
+            assert evolutionScheme.apply(population, new Random(42)).equals(offspring)
+                : "Results should be repeatable.";
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+
+    /**
+     * The two operators should be applied at the same time.  Each of these operators waits
+     * for the other to start, so they would time out if they were applied one after the other.
+     */
+    @Test(timeOut = 30000)
+    public void testOperatorsAreConcurrent()
+    {
+        List<Integer> population = new ArrayList<Integer>(10);
+        for (int i = 0; i < 10; i++)
+        {
+            population.add(i);
+        }
+        final CountDownLatch latch = new CountDownLatch(2);
+        EvolutionaryOperator<Integer> operator = new EvolutionaryOperator<Integer>()
+        {
+            public List<Integer> apply(List<Integer> selectedCandidates, Random rng)
+            {
+                latch.countDown();
+                try
+                {
+                    assert latch.await(10, TimeUnit.SECONDS) : "Operators were not applied concurrently.";
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(ex);
+                }
+                return selectedCandidates;
+            }
+        };
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try
+        {
+            SplitEvolution<Integer> evolutionScheme = new ParallelSplitEvolution<Integer>(operator,
+                                                                                          operator,
+                                                                                          0.5d,
+                                                                                          pool,
+                                                                                          100);
+            List<Integer> offspring = evolutionScheme.apply(population, new Random(42));
+            assert offspring.size() == 10 : "Wrong population size: " + offspring.size();
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.uncommons.watchmaker.framework.Checkpoint;
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+
+/**
+ * Unit test for the {@link CheckpointFile} class.
+ * @author Daniel Dyer
+ */
+public class CheckpointFileTest
+{
+    private File file;
+
+    @BeforeMethod
+    public void createFileName() throws IOException
+    {
+        file = File.createTempFile("checkpoint", ".dat");
+        file.delete();
+    }
+
+
+    @AfterMethod
+    public void deleteFile()
+    {
+        file.delete();
+    }
+
+
+    @Test
+    public void testSaveAndLoad() throws Exception
+    {
+        CheckpointFile<String> checkpointFile = new CheckpointFile<String>(file, new SerializationCodec<String>(String.class));
+        assert checkpointFile.load() == null : "Checkpoint loaded from non-existent file.";
+        List<EvaluatedCandidate<String>> population = Arrays.asList(new EvaluatedCandidate<String>("AAA", 3),
+                                                                    new EvaluatedCandidate<String>("BBB", 2),
+                                                                    new EvaluatedCandidate<String>("CCC", 1));
+        byte[] rngState = {1, 2, 3};
+        checkpointFile.save(new Checkpoint<String>(population, 7, 1234, 1, rngState, Arrays.asList(null, new byte[]{4})));
+        checkpointFile.close();
+
+        Checkpoint<String> checkpoint = checkpointFile.load();
+        assert checkpoint.getGenerationNumber() == 7 : "Wrong generation: " + checkpoint.getGenerationNumber();
+        assert checkpoint.getElapsedTime() == 1234 : "Wrong elapsed time: " + checkpoint.getElapsedTime();
+        assert checkpoint.getEliteCount() == 1 : "Wrong elite count: " + checkpoint.getEliteCount();
+        assert Arrays.equals(checkpoint.getRNGState(), rngState) : "Wrong RNG state.";
+        assert checkpoint.getConditionStates().size() == 2 : "Wrong number of condition states.";
+        assert checkpoint.getConditionStates().get(0) == null : "Stateless condition should have no state.";
+        assert Arrays.equals(checkpoint.getConditionStates().get(1), new byte[]{4}) : "Wrong condition state.";
+        assert checkpoint.getPopulation().size() == 3 : "Wrong population size: " + checkpoint.getPopulation().size();
+        for (int i = 0; i < population.size(); i++)
+        {
+            assert checkpoint.getPopulation().get(i).getCandidate().equals(population.get(i).getCandidate())
+                : "Wrong candidate: " + checkpoint.getPopulation().get(i).getCandidate();
+            assert checkpoint.getPopulation().get(i).getFitness() == population.get(i).getFitness()
+                : "Wrong fitness: " + checkpoint.getPopulation().get(i).getFitness();
+        }
+    }
+
+
+    /**
+     * Only the most recent checkpoint is kept.
+     */
+    @Test
+    public void testOverwrite() throws Exception
+    {
+        CheckpointFile<String> checkpointFile = new CheckpointFile<String>(file, new SerializationCodec<String>(String.class));
+        List<EvaluatedCandidate<String>> population = Arrays.asList(new EvaluatedCandidate<String>("AAA", 1),
+                                                                    new EvaluatedCandidate<String>("BBB", 0));
+        for (int generation = 0; generation < 10; generation++)
+        {
+            checkpointFile.save(new Checkpoint<String>(population, generation, 0, 0, null, Arrays.<byte[]>asList()));
+        }
+        checkpointFile.close();
+        Checkpoint<String> checkpoint = checkpointFile.load();
+        assert checkpoint.getGenerationNumber() == 9 : "Wrong generation: " + checkpoint.getGenerationNumber();
+        assert checkpoint.getRNGState() == null : "RNG state should be null.";
+    }
+
+
+    @Test(expectedExceptions = IOException.class)
+    public void testCorruptFile() throws Exception
+    {
+        CheckpointFile<String> checkpointFile = new CheckpointFile<String>(file, new SerializationCodec<String>(String.class));
+        List<EvaluatedCandidate<String>> population = Arrays.asList(new EvaluatedCandidate<String>("AAA", 1),
+                                                                    new EvaluatedCandidate<String>("BBB", 0));
+        checkpointFile.save(new Checkpoint<String>(population, 5, 0, 0, null, Arrays.<byte[]>asList()));
+        checkpointFile.close();
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try
+        {
+            raw.seek(10);
+            int value = raw.read();
+            raw.seek(10);
+            raw.write(value ^ 0xFF);
+        }
+        finally
+        {
+            raw.close();
+        }
+        checkpointFile.load(); // Should throw an IOException.
+    }
+
+
+    @Test(expectedExceptions = IOException.class)
+    public void testTruncatedFile() throws Exception
+    {
+        writeCheckpoint();
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try
+        {
+            raw.setLength(raw.length() / 2);
+        }
+        finally
+        {
+            raw.close();
+        }
+        new CheckpointFile<String>(file, new SerializationCodec<String>(String.class)).load();
+    }
+
+
+    /**
+     * A huge length (that happens to have a valid checksum) must be reported as
+     * a corrupt checkpoint rather than allocated.
+     */
+    @Test(expectedExceptions = IOException.class)
+    public void testInvalidLength() throws Exception
+    {
+        writeCheckpoint();
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try
+        {
+            // Replace the length of the RNG state (after the magic number, version,
+            // generation, elapsed time and elite count) and fix up the checksum.
+            raw.seek(24);
+            raw.writeInt(Integer.MAX_VALUE);
+            byte[] content = new byte[(int) raw.length() - 8];
+            raw.seek(0);
+            raw.readFully(content);
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            raw.writeLong(crc.getValue());
+        }
+        finally
+        {
+            raw.close();
+        }
+        new CheckpointFile<String>(file, new SerializationCodec<String>(String.class)).load();
+    }
+
+
+    private void writeCheckpoint() throws Exception
+    {
+        CheckpointFile<String> checkpointFile = new CheckpointFile<String>(file, new SerializationCodec<String>(String.class));
+        List<EvaluatedCandidate<String>> population = Arrays.asList(new EvaluatedCandidate<String>("AAA", 1),
+                                                                    new EvaluatedCandidate<String>("BBB", 0));
+        checkpointFile.save(new Checkpoint<String>(population, 5, 0, 0, null, Arrays.<byte[]>asList()));
+        checkpointFile.close();
+    }
+}
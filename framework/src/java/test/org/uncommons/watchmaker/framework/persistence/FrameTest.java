@@ -0,0 +1,99 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link Frame} class.
+ * @author Daniel Dyer
+ */
+public class FrameTest
+{
+    private static final byte TYPE = 3;
+
+    @Test
+    public void testSmallFrame() throws IOException
+    {
+        byte[] payload = {1, 2, 3};
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        new Frame(TYPE, payload).write(new DataOutputStream(buffer));
+        // Length, type, flags, uncompressed length and payload.
+        assert buffer.size() == 4 + 1 + 1 + 4 + payload.length : "Small frames should not be compressed.";
+
+        Frame frame = readFrame(buffer.toByteArray());
+        assert frame.getType() == TYPE : "Wrong frame type: " + frame.getType();
+        assert frame.getSize() == payload.length : "Wrong payload size: " + frame.getSize();
+        byte[] received = new byte[payload.length];
+        frame.getPayload().readFully(received);
+        assert Arrays.equals(received, payload) : "Payload not preserved.";
+    }
+
+
+    @Test
+    public void testCompressedFrame() throws IOException
+    {
+        byte[] payload = new byte[Frame.COMPRESSION_THRESHOLD * 8];
+        for (int i = 0; i < payload.length; i++)
+        {
+            payload[i] = (byte) (i % 7);
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        new Frame(TYPE, payload).write(new DataOutputStream(buffer));
+        assert buffer.size() < payload.length : "Large, repetitive frames should be compressed.";
+
+        Frame frame = readFrame(buffer.toByteArray());
+        assert frame.getType() == TYPE : "Wrong frame type: " + frame.getType();
+        byte[] received = new byte[payload.length];
+        frame.getPayload().readFully(received);
+        assert Arrays.equals(received, payload) : "Payload not preserved.";
+    }
+
+
+    @Test
+    public void testBuilder() throws IOException
+    {
+        Frame.Builder builder = new Frame.Builder();
+        builder.writeInt(42);
+        builder.writeUTF("Watchmaker");
+        Frame frame = builder.toFrame(TYPE);
+        assert frame.getType() == TYPE : "Wrong frame type: " + frame.getType();
+        DataInputStream payload = frame.getPayload();
+        assert payload.readInt() == 42 : "Wrong int.";
+        assert payload.readUTF().equals("Watchmaker") : "Wrong string.";
+    }
+
+
+    @Test(expectedExceptions = IOException.class)
+    public void testTruncatedFrame() throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        new Frame(TYPE, new byte[]{1, 2, 3, 4}).write(new DataOutputStream(buffer));
+        readFrame(Arrays.copyOf(buffer.toByteArray(), buffer.size() - 1));
+    }
+
+
+    private Frame readFrame(byte[] bytes) throws IOException
+    {
+        return Frame.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
@@ -0,0 +1,186 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.uncommons.watchmaker.framework.PopulationData;
+
+/**
+ * Unit test for the {@link GenerationJournal} and {@link GenerationJournalReader} classes.
+ * @author Daniel Dyer
+ */
+public class GenerationJournalTest
+{
+    private File directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException
+    {
+        directory = File.createTempFile("journal", "");
+        directory.delete();
+    }
+
+
+    @AfterMethod
+    public void deleteDirectory()
+    {
+        File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+
+    /**
+     * Records should be readable in any order, including across segment boundaries.
+     */
+    @Test
+    public void testRandomAccess() throws IOException
+    {
+        // Small segments so that the journal rolls over many times.
+        GenerationJournal<String> journal = createJournal();
+        for (int generation = 0; generation < 1000; generation++)
+        {
+            journal.populationUpdate(createData(generation));
+        }
+        journal.close();
+        assert GenerationJournal.segmentFile(directory, "records", 9).exists() : "Records segments did not roll over.";
+
+        GenerationJournalReader<String> reader = new GenerationJournalReader<String>(directory, new SerializationCodec<String>(String.class));
+        assert reader.size() == 1000 : "Wrong number of records: " + reader.size();
+        for (int generation : new int[]{999, 0, 500, 99, 100, 1})
+        {
+            int index = reader.indexOf(generation);
+            assert index == generation : "Wrong index for generation " + generation + ": " + index;
+            PopulationData<String> data = reader.get(index);
+            checkData(data, generation);
+            assert data.getBestCandidate().equals(createCandidate(generation)) : "Wrong candidate: " + data.getBestCandidate();
+        }
+        assert reader.getStatistics(42).getBestCandidate() == null : "Candidate should not be decoded.";
+        assert reader.getBestCandidateFitness(42) == 42 : "Wrong best fitness: " + reader.getBestCandidateFitness(42);
+        assert reader.indexOf(1000) == -1 : "Generation should not be found.";
+    }
+
+
+    /**
+     * Re-opening an existing journal should append to it.
+     */
+    @Test
+    public void testAppend() throws IOException
+    {
+        GenerationJournal<String> journal = createJournal();
+        for (int generation = 0; generation < 150; generation++)
+        {
+            journal.populationUpdate(createData(generation));
+        }
+        journal.close();
+        journal = createJournal();
+        for (int generation = 150; generation < 300; generation += 2)
+        {
+            journal.populationUpdate(createData(generation));
+        }
+        journal.close();
+
+        GenerationJournalReader<String> reader = new GenerationJournalReader<String>(directory, new SerializationCodec<String>(String.class));
+        assert reader.size() == 225 : "Wrong number of records: " + reader.size();
+        assert reader.indexOf(149) == 149 : "Wrong index: " + reader.indexOf(149);
+        assert reader.indexOf(298) == 224 : "Wrong index: " + reader.indexOf(298);
+        assert reader.indexOf(151) == -1 : "Unrecorded generation should not be found.";
+        PopulationData<String> data = reader.get(reader.indexOf(160));
+        checkData(data, 160);
+        assert data.getBestCandidate().equals(createCandidate(160)) : "Wrong candidate: " + data.getBestCandidate();
+    }
+
+
+    /**
+     * An evolution resumed from an earlier checkpoint records some generation numbers
+     * again.  Generations recorded before the resume must still be found, and for
+     * generations recorded twice the latest record should be found.
+     */
+    @Test
+    public void testAppendAfterResume() throws IOException
+    {
+        GenerationJournal<String> journal = createJournal();
+        for (int generation = 0; generation < 10; generation++)
+        {
+            journal.populationUpdate(createData(generation));
+        }
+        journal.close();
+        journal = createJournal();
+        for (int generation = 0; generation < 2; generation++)
+        {
+            journal.populationUpdate(createData(generation));
+        }
+        journal.close();
+
+        GenerationJournalReader<String> reader = new GenerationJournalReader<String>(directory, new SerializationCodec<String>(String.class));
+        assert reader.size() == 12 : "Wrong number of records: " + reader.size();
+        assert reader.indexOf(9) == 9 : "Wrong index: " + reader.indexOf(9);
+        assert reader.indexOf(5) == 5 : "Wrong index: " + reader.indexOf(5);
+        assert reader.indexOf(1) == 11 : "Wrong index: " + reader.indexOf(1);
+        assert reader.indexOf(0) == 10 : "Wrong index: " + reader.indexOf(0);
+        assert reader.indexOf(10) == -1 : "Unrecorded generation should not be found.";
+        checkData(reader.get(reader.indexOf(9)), 9);
+    }
+
+
+    private GenerationJournal<String> createJournal() throws IOException
+    {
+        return new GenerationJournal<String>(directory, new SerializationCodec<String>(String.class), 100, 1024);
+    }
+
+
+    private void checkData(PopulationData<String> data, int generation)
+    {
+        assert data.getGenerationNumber() == generation : "Wrong generation: " + data.getGenerationNumber();
+        assert data.getBestCandidateFitness() == generation : "Wrong best fitness: " + data.getBestCandidateFitness();
+        assert data.getMeanFitness() == generation / 2d : "Wrong mean fitness: " + data.getMeanFitness();
+        assert data.getFitnessStandardDeviation() == 1.5 : "Wrong standard deviation: " + data.getFitnessStandardDeviation();
+        assert data.isNaturalFitness() : "Wrong fitness type.";
+        assert data.getPopulationSize() == 20 : "Wrong population size: " + data.getPopulationSize();
+        assert data.getEliteCount() == 2 : "Wrong elite count: " + data.getEliteCount();
+        assert data.getElapsedTime() == generation * 10L : "Wrong elapsed time: " + data.getElapsedTime();
+    }
+
+
+    private static PopulationData<String> createData(int generation)
+    {
+        return new PopulationData<String>(createCandidate(generation),
+                                          generation,
+                                          generation / 2d,
+                                          1.5,
+                                          true,
+                                          20,
+                                          2,
+                                          generation,
+                                          generation * 10L);
+    }
+
+
+    private static String createCandidate(int generation)
+    {
+        return "Candidate " + generation;
+    }
+}
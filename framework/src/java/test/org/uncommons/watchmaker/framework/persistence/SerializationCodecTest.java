@@ -0,0 +1,85 @@
+//=============================================================================
+// Copyright 2006-2010 Daniel W. Dyer
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//=============================================================================
+package org.uncommons.watchmaker.framework.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link SerializationCodec} class.
+ * @author Daniel Dyer
+ */
+public class SerializationCodecTest
+{
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        SerializationCodec<Number> codec = new SerializationCodec<Number>(Number.class);
+        byte[] data = write(new SerializationCodec<Serializable>(Serializable.class), 42);
+        Number candidate = codec.read(new DataInputStream(new ByteArrayInputStream(data)));
+        assert candidate.equals(42) : "Wrong candidate: " + candidate;
+    }
+
+
+    /**
+     * Classes that are not part of the declared candidate type must not be loaded, because
+     * deserialising arbitrary classes from untrusted data can execute code.
+     */
+    @Test(expectedExceptions = IOException.class)
+    public void testUndeclaredClass() throws IOException
+    {
+        byte[] data = write(new SerializationCodec<Serializable>(Serializable.class),
+                            new ArrayList<Object>(Arrays.asList(1, 2)));
+        new SerializationCodec<Integer>(Integer.class).read(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+
+
+    @Test
+    public void testPermittedClass() throws IOException
+    {
+        byte[] data = write(new SerializationCodec<Serializable>(Serializable.class),
+                            new ArrayList<Object>(Arrays.asList(1, 2)));
+        SerializationCodec<ArrayList> codec = new SerializationCodec<ArrayList>(ArrayList.class);
+        ArrayList<?> candidate = codec.read(new DataInputStream(new ByteArrayInputStream(data)));
+        assert candidate.equals(Arrays.asList(1, 2)) : "Wrong candidate: " + candidate;
+    }
+
+
+    @Test(expectedExceptions = IOException.class)
+    public void testNegativeLength() throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        new DataOutputStream(buffer).writeInt(-1);
+        new SerializationCodec<Integer>(Integer.class).read(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+    }
+
+
+    private byte[] write(SerializationCodec<Serializable> codec, Serializable candidate) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        codec.write(candidate, out);
+        out.flush();
+        return buffer.toByteArray();
+    }
+}
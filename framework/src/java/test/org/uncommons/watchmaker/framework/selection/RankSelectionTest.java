@@ -16,8 +16,10 @@
 package org.uncommons.watchmaker.framework.selection;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import org.testng.annotations.Test;
 import org.uncommons.watchmaker.framework.EvaluatedCandidate;
 import org.uncommons.watchmaker.framework.FrameworkTestUtils;
@@ -91,4 +93,39 @@ public class RankSelectionTest
         assert johnCount <= 1 : "Candidate selected wrong number of times (should be 0 or 1, was " + johnCount + ")";
         assert steveCount <= 1 : "Candidate selected wrong number of times (should be 0 or 1, was " + steveCount + ")";
     }
+
+
+    /**
+     * A delegate that can't select from a population view should be given the
+     * ranked scores as a list of evaluated candidates.
+     */
+    @Test
+    public void testListOnlyDelegate()
+    {
+        final List<Double> delegateScores = new ArrayList<Double>();
+        SelectionStrategy<Object> delegate = new SelectionStrategy<Object>()
+        {
+            public <S> List<S> select(List<EvaluatedCandidate<S>> population,
+                                      boolean naturalFitnessScores,
+                                      int selectionSize,
+                                      Random rng)
+            {
+                assert naturalFitnessScores : "Ranked scores should be natural.";
+                List<S> selection = new ArrayList<S>(selectionSize);
+                for (EvaluatedCandidate<S> candidate : population)
+                {
+                    delegateScores.add(candidate.getFitness());
+                    selection.add(candidate.getCandidate());
+                }
+                return selection;
+            }
+        };
+        List<EvaluatedCandidate<String>> population = new ArrayList<EvaluatedCandidate<String>>(3);
+        population.add(new EvaluatedCandidate<String>("Gary", 0.5));
+        population.add(new EvaluatedCandidate<String>("Mary", 1.0));
+        population.add(new EvaluatedCandidate<String>("John", 4.5));
+        List<String> selection = new RankSelection(delegate).select(population, false, 3, FrameworkTestUtils.getRNG());
+        assert selection.equals(Arrays.asList("Gary", "Mary", "John")) : "Wrong selection: " + selection;
+        assert delegateScores.equals(Arrays.asList(3.0, 2.0, 1.0)) : "Wrong ranked scores: " + delegateScores;
+    }
 }
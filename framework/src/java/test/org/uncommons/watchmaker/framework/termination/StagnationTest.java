@@ -15,6 +15,11 @@
 //=============================================================================
 package org.uncommons.watchmaker.framework.termination;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import org.testng.annotations.Test;
 import org.uncommons.watchmaker.framework.PopulationData;
 import org.uncommons.watchmaker.framework.TerminationCondition;
@@ -94,4 +99,24 @@ public class StagnationTest
         data = new PopulationData<Object>(new Object(), 2.2, 1.5, 0.1, true, 10, 0, 4, 4);
         assert stagnation.shouldTerminate(data) : "Stagnation should be triggered after 2 generations without improvement.";
     }
+
+
+    /**
+     * A condition restored from saved state should carry on counting from the generation
+     * of the last improvement, rather than starting again.
+     */
+    @Test
+    public void testSavedState() throws IOException
+    {
+        Stagnation stagnation = new Stagnation(2, true);
+        PopulationData<Object> data = new PopulationData<Object>(new Object(), 2, 1, 0.1, true, 10, 0, 0, 1);
+        assert !stagnation.shouldTerminate(data) : "Stagnation should not be triggered for at least 2 more generations.";
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        stagnation.writeState(new DataOutputStream(buffer));
+
+        Stagnation restored = new Stagnation(2, true);
+        restored.readState(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+        data = new PopulationData<Object>(new Object(), 2, 1, 0.1, true, 10, 0, 2, 3);
+        assert restored.shouldTerminate(data) : "Stagnation should be triggered after 2 generations without improvement.";
+    }
 }